@@ -71,25 +71,17 @@ void MPFDetectionBuffer::GetMediaProperties(map<string, string> &media_propertie
     }
 }
 
-void MPFDetectionBuffer::GetVideoRequest(MPFDetectionVideoRequest &video_request) {
-    video_request.start_frame = detection_request_.video_request().start_frame();
-    video_request.stop_frame = detection_request_.video_request().stop_frame();
-    video_request.has_feed_forward_track = false;
-    //If there is a feed-forward track in the request, copy it into an
-    //MPFVideoTrack
-    if (detection_request_.video_request().has_feed_forward_track()) {
-        video_request.has_feed_forward_track = true;
-        video_request.feed_forward_track.start_frame =
-                detection_request_.video_request().feed_forward_track().start_frame();
-        video_request.feed_forward_track.stop_frame =
-                detection_request_.video_request().feed_forward_track().stop_frame();
-        video_request.feed_forward_track.confidence =
-                detection_request_.video_request().feed_forward_track().confidence();
+namespace {
+    MPFVideoTrack ToMpfVideoTrack(const VideoTrack &track) {
+        MPFVideoTrack mpf_track;
+        mpf_track.start_frame = track.start_frame();
+        mpf_track.stop_frame = track.stop_frame();
+        mpf_track.confidence = track.confidence();
         // Copy the track properties
-        for (auto prop : detection_request_.video_request().feed_forward_track().detection_properties()) {
-            video_request.feed_forward_track.detection_properties[prop.key()] = prop.value();
+        for (auto prop : track.detection_properties()) {
+            mpf_track.detection_properties[prop.key()] = prop.value();
         }
-        for (auto loc : detection_request_.video_request().feed_forward_track().frame_locations()) {
+        for (auto loc : track.frame_locations()) {
             Properties tmp_props;
             for (auto prop : loc.image_location().detection_properties()) {
                 tmp_props[prop.key()] = prop.value();
@@ -100,11 +92,76 @@ void MPFDetectionBuffer::GetVideoRequest(MPFDetectionVideoRequest &video_request
                                      loc.image_location().height(),
                                      loc.image_location().confidence(),
                                      tmp_props);
-            video_request.feed_forward_track.frame_locations[loc.frame()] = tmp_loc;
+            mpf_track.frame_locations[loc.frame()] = tmp_loc;
+        }
+        return mpf_track;
+    }
+
+
+    void AddVideoResponse(const vector<MPFVideoTrack> &tracks,
+                          const int start_frame,
+                          const int stop_frame,
+                          const string &detection_type,
+                          DetectionResponse &detection_response) {
+        DetectionResponse_VideoResponse *video_response = detection_response.add_video_responses();
+        video_response->set_start_frame(start_frame);
+        video_response->set_stop_frame(stop_frame);
+        video_response->set_detection_type(detection_type);
+
+        for (vector<MPFVideoTrack>::const_iterator tracks_iter = tracks.begin(); tracks_iter != tracks.end(); tracks_iter++) {
+            MPFVideoTrack track = *tracks_iter;
+            VideoTrack *new_track = video_response->add_video_tracks();
+            new_track->set_start_frame(track.start_frame);
+            new_track->set_stop_frame(track.stop_frame);
+            new_track->set_confidence(track.confidence);
+
+            for (auto const &prop : track.detection_properties) {
+                org::mitre::mpf::wfm::buffers::PropertyMap *detection_prop = new_track->add_detection_properties();
+                detection_prop->set_key(prop.first);
+                detection_prop->set_value(prop.second);
+            }
+
+            for (map<int, MPFImageLocation>::const_iterator locations_iter = track.frame_locations.begin(); locations_iter != track.frame_locations.end(); locations_iter++) {
+                MPFImageLocation detection = locations_iter->second;
+
+                VideoTrack_FrameLocationMap *new_frame_location = new_track->add_frame_locations();
+
+                new_frame_location->set_frame(locations_iter->first);
+
+                ImageLocation *new_detection = new_frame_location->mutable_image_location();
+                new_detection->set_x_left_upper(detection.x_left_upper);
+                new_detection->set_y_left_upper(detection.y_left_upper);
+                new_detection->set_width(detection.width);
+                new_detection->set_height(detection.height);
+                new_detection->set_confidence(detection.confidence);
+
+                for (auto const &prop : detection.detection_properties) {
+                    org::mitre::mpf::wfm::buffers::PropertyMap *detection_prop = new_detection->add_detection_properties();
+                    detection_prop->set_key(prop.first);
+                    detection_prop->set_value(prop.second);
+                }
+            }
         }
     }
 }
 
+
+void MPFDetectionBuffer::GetVideoRequest(MPFDetectionVideoRequest &video_request) {
+    video_request.start_frame = detection_request_.video_request().start_frame();
+    video_request.stop_frame = detection_request_.video_request().stop_frame();
+    video_request.has_feed_forward_track = false;
+    video_request.feed_forward_tracks.clear();
+    //If there is a feed-forward track in the request, copy it into an
+    //MPFVideoTrack
+    if (detection_request_.video_request().has_feed_forward_track()) {
+        video_request.has_feed_forward_track = true;
+        video_request.feed_forward_track = ToMpfVideoTrack(detection_request_.video_request().feed_forward_track());
+    }
+    for (auto const &track : detection_request_.video_request().feed_forward_tracks()) {
+        video_request.feed_forward_tracks.push_back(ToMpfVideoTrack(track));
+    }
+}
+
 void MPFDetectionBuffer::GetAudioRequest(MPFDetectionAudioRequest &audio_request) {
     audio_request.start_time = detection_request_.audio_request().start_time();
     audio_request.stop_time = detection_request_.audio_request().stop_time();
@@ -208,47 +265,25 @@ std::vector<unsigned char> MPFDetectionBuffer::PackVideoResponse(
 
     DetectionResponse detection_response;
     PackCommonFields(msg_metadata, data_type, error, error_message, detection_response);
+    AddVideoResponse(tracks, start_frame, stop_frame, detection_type, detection_response);
+    return FinalizeDetectionResponse(detection_response);
+}
 
-    DetectionResponse_VideoResponse *video_response = detection_response.add_video_responses();
-    video_response->set_start_frame(start_frame);
-    video_response->set_stop_frame(stop_frame);
-    video_response->set_detection_type(detection_type);
-
-    for (vector<MPFVideoTrack>::const_iterator tracks_iter = tracks.begin(); tracks_iter != tracks.end(); tracks_iter++) {
-        MPFVideoTrack track = *tracks_iter;
-        VideoTrack *new_track = video_response->add_video_tracks();
-        new_track->set_start_frame(track.start_frame);
-        new_track->set_stop_frame(track.stop_frame);
-        new_track->set_confidence(track.confidence);
-
-        for (auto const &prop : track.detection_properties) {
-            org::mitre::mpf::wfm::buffers::PropertyMap *detection_prop = new_track->add_detection_properties();
-            detection_prop->set_key(prop.first);
-            detection_prop->set_value(prop.second);
-        }
-
-        for (map<int, MPFImageLocation>::const_iterator locations_iter = track.frame_locations.begin(); locations_iter != track.frame_locations.end(); locations_iter++) {
-            MPFImageLocation detection = locations_iter->second;
-
-            VideoTrack_FrameLocationMap *new_frame_location = new_track->add_frame_locations();
-
-            new_frame_location->set_frame(locations_iter->first);
-
-            ImageLocation *new_detection = new_frame_location->mutable_image_location();
-            new_detection->set_x_left_upper(detection.x_left_upper);
-            new_detection->set_y_left_upper(detection.y_left_upper);
-            new_detection->set_width(detection.width);
-            new_detection->set_height(detection.height);
-            new_detection->set_confidence(detection.confidence);
+std::vector<unsigned char> MPFDetectionBuffer::PackVideoResponse(
+        const vector<vector<MPFVideoTrack>> &tracks_per_feed_forward_track,
+        const vector<MPFVideoTrack> &feed_forward_tracks,
+        const MPFMessageMetadata &msg_metadata,
+        const MPFDetectionDataType data_type,
+        const string &detection_type,
+        const MPFDetectionError error,
+        const std::string &error_message) const {
 
-            for (auto const &prop : detection.detection_properties) {
-                org::mitre::mpf::wfm::buffers::PropertyMap *detection_prop = new_detection->add_detection_properties();
-                detection_prop->set_key(prop.first);
-                detection_prop->set_value(prop.second);
-            }
-        }
+    DetectionResponse detection_response;
+    PackCommonFields(msg_metadata, data_type, error, error_message, detection_response);
+    for (size_t i = 0; i < feed_forward_tracks.size(); i++) {
+        AddVideoResponse(tracks_per_feed_forward_track.at(i), feed_forward_tracks.at(i).start_frame,
+                         feed_forward_tracks.at(i).stop_frame, detection_type, detection_response);
     }
-
     return FinalizeDetectionResponse(detection_response);
 }
 
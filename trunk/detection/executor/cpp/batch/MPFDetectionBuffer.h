@@ -69,6 +69,8 @@ struct MPFDetectionVideoRequest {
     int stop_frame;
     bool has_feed_forward_track = false;
     MPFVideoTrack feed_forward_track;
+    // Set instead of feed_forward_track when the WFM batches multiple feed-forward tracks into one request.
+    vector<MPFVideoTrack> feed_forward_tracks;
 };
 
 struct MPFDetectionAudioRequest {
@@ -139,6 +141,16 @@ public:
             const MPFDetectionError error,
             const std::string &error_message) const;
 
+    // Packs one VideoResponse for each feed-forward track in the request.
+    std::vector<unsigned char> PackVideoResponse(
+            const vector<vector<MPFVideoTrack>> &tracks_per_feed_forward_track,
+            const vector<MPFVideoTrack> &feed_forward_tracks,
+            const MPFMessageMetadata &msg_metadata,
+            const MPFDetectionDataType data_type,
+            const string &detection_type,
+            const MPFDetectionError error,
+            const std::string &error_message) const;
+
     std::vector<unsigned char> PackAudioResponse(
             const vector<MPFAudioTrack> &tracks,
             const MPFMessageMetadata &msg_metadata,
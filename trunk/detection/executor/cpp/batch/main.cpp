@@ -400,55 +400,97 @@ int run_jobs(Logger &logger, const std::string &broker_uri, const std::string &r
                     if (data_type == MPFDetectionDataType::VIDEO) {
                         vector <MPFVideoTrack> tracks;
 
-                        if (video_request.has_feed_forward_track) {
-                            // Invoke the detection component with
-                            // a feed-forward track
-                            logger.Info('[', job_name, "] Processing feed-forward track on ",
-                                        service_name, '.');
-                            MPFVideoJob video_job(job_name,
-                                                  data_uri,
-                                                  video_request.start_frame,
-                                                  video_request.stop_frame,
-                                                  video_request.feed_forward_track,
-                                                  algorithm_properties,
-                                                  media_properties);
-                            try {
-                                tracks = detection_engine.GetDetections(video_job);
-                            }
-                            catch (...) {
-                                handle_component_exception(error_message, rc);
+                        if (!video_request.feed_forward_tracks.empty()) {
+                            // Components only accept one feed-forward track per job, so each track in a
+                            // batched request is run as a separate job. The response has one VideoResponse
+                            // per feed-forward track so that the WFM can map the results back.
+                            logger.Info('[', job_name, "] Processing ", video_request.feed_forward_tracks.size(),
+                                        " feed-forward tracks on ", service_name, '.');
+                            vector<vector<MPFVideoTrack>> tracks_per_feed_forward_track;
+                            for (auto const &feed_forward_track : video_request.feed_forward_tracks) {
+                                MPFVideoJob video_job(job_name,
+                                                      data_uri,
+                                                      feed_forward_track.start_frame,
+                                                      feed_forward_track.stop_frame,
+                                                      feed_forward_track,
+                                                      algorithm_properties,
+                                                      media_properties);
+                                MPFDetectionError track_rc = MPF_DETECTION_SUCCESS;
+                                std::string track_error_message;
+                                vector<MPFVideoTrack> track_results;
+                                try {
+                                    track_results = detection_engine.GetDetections(video_job);
+                                }
+                                catch (...) {
+                                    handle_component_exception(track_error_message, track_rc);
+                                }
+                                if (track_rc != MPF_DETECTION_SUCCESS) {
+                                    logger.Error('[', job_name, "] Video detection method returned an error for the "
+                                                 "feed-forward track starting at frame ",
+                                                 feed_forward_track.start_frame, '.');
+                                    if (rc == MPF_DETECTION_SUCCESS) {
+                                        rc = track_rc;
+                                        error_message = track_error_message;
+                                    }
+                                }
+                                tracks_per_feed_forward_track.push_back(std::move(track_results));
                             }
+
+                            detection_response_body = detection_buf.PackVideoResponse(
+                                    tracks_per_feed_forward_track, video_request.feed_forward_tracks,
+                                    msg_metadata, data_type, detection_type, rc, error_message);
                         }
                         else {
-                            // Invoke the detection component
-                            // without a feed-forward track
-                            MPFVideoJob video_job(job_name,
-                                                  data_uri,
-                                                  video_request.start_frame,
-                                                  video_request.stop_frame,
-                                                  algorithm_properties,
-                                                  media_properties);
+                            if (video_request.has_feed_forward_track) {
+                                // Invoke the detection component with
+                                // a feed-forward track
+                                logger.Info('[', job_name, "] Processing feed-forward track on ",
+                                            service_name, '.');
+                                MPFVideoJob video_job(job_name,
+                                                      data_uri,
+                                                      video_request.start_frame,
+                                                      video_request.stop_frame,
+                                                      video_request.feed_forward_track,
+                                                      algorithm_properties,
+                                                      media_properties);
+                                try {
+                                    tracks = detection_engine.GetDetections(video_job);
+                                }
+                                catch (...) {
+                                    handle_component_exception(error_message, rc);
+                                }
+                            }
+                            else {
+                                // Invoke the detection component
+                                // without a feed-forward track
+                                MPFVideoJob video_job(job_name,
+                                                      data_uri,
+                                                      video_request.start_frame,
+                                                      video_request.stop_frame,
+                                                      algorithm_properties,
+                                                      media_properties);
 
-                            try {
-                                tracks = detection_engine.GetDetections(video_job);
+                                try {
+                                    tracks = detection_engine.GetDetections(video_job);
+                                }
+                                catch (...) {
+                                    handle_component_exception(error_message, rc);
+                                }
                             }
-                            catch (...) {
-                                handle_component_exception(error_message, rc);
+
+                            if (rc != MPF_DETECTION_SUCCESS) {
+                                logger.Error('[', job_name,
+                                             "] Video detection method returned an error for ",
+                                             data_uri);
                             }
-                        }
 
-                        if (rc != MPF_DETECTION_SUCCESS) {
-                            logger.Error('[', job_name,
-                                         "] Video detection method returned an error for ",
-                                         data_uri);
+                            // Pack video response
+                            detection_response_body = detection_buf.PackVideoResponse(
+                                    tracks, msg_metadata, data_type,
+                                    video_request.start_frame, video_request.stop_frame,
+                                    detection_type, rc, error_message);
                         }
 
-                        // Pack video response
-                        detection_response_body = detection_buf.PackVideoResponse(
-                                tracks, msg_metadata, data_type,
-                                video_request.start_frame, video_request.stop_frame,
-                                detection_type, rc, error_message);
-
                     } else if (data_type == MPFDetectionDataType::AUDIO) {
                         vector <MPFAudioTrack> tracks;
                         if (audio_request.has_feed_forward_track) {
@@ -121,45 +121,56 @@ public class MPFDetectionBuffer {
     }
 
     public MPFDetectionVideoRequest getVideoRequest() {
-        if (detectionRequest.getVideoRequest().hasFeedForwardTrack()) {
-            DetectionProtobuf.VideoTrack track = detectionRequest.getVideoRequest().getFeedForwardTrack();
-
-            // Copy the frame locations map
-            Map<Integer, MPFImageLocation> locations = new HashMap<Integer, MPFImageLocation>();
-            for (int i = 0; i < track.getFrameLocationsList().size(); i++) {
-                DetectionProtobuf.VideoTrack.FrameLocationMap loc_map = track.getFrameLocations(i);
-
-                // Copy the detection properties for this location
-                Map<String, String> locationProps =
-                    copyProperties(loc_map.getImageLocation().getDetectionPropertiesList());
-                // Create a new image location and put it into the new map
-                MPFImageLocation loc = new MPFImageLocation(loc_map.getImageLocation().getXLeftUpper(),
-                                                            loc_map.getImageLocation().getYLeftUpper(),
-                                                            loc_map.getImageLocation().getWidth(),
-                                                            loc_map.getImageLocation().getHeight(),
-                                                            loc_map.getImageLocation().getConfidence(),
-                                                            locationProps);
-                locations.put(loc_map.getFrame(), loc);
+        DetectionProtobuf.DetectionRequest.VideoRequest videoRequest = detectionRequest.getVideoRequest();
+        if (videoRequest.getFeedForwardTracksCount() > 0) {
+            List<MPFVideoTrack> tracks = new ArrayList<>();
+            for (DetectionProtobuf.VideoTrack track : videoRequest.getFeedForwardTracksList()) {
+                tracks.add(toMpfVideoTrack(track));
             }
-            // Copy the properties for the track itself
-            Map<String, String> trackProps = copyProperties(track.getDetectionPropertiesList());
-
-            MPFVideoTrack new_track = new MPFVideoTrack(track.getStartFrame(),
-                                                        track.getStopFrame(),
-                                                        locations,
-                                                        track.getConfidence(),
-                                                        trackProps);
-
             return new MPFDetectionVideoRequest(
-                detectionRequest.getVideoRequest().getStartFrame(),
-                detectionRequest.getVideoRequest().getStopFrame(),
-                new_track);
+                videoRequest.getStartFrame(),
+                videoRequest.getStopFrame(),
+                tracks);
+        }
+        else if (videoRequest.hasFeedForwardTrack()) {
+            return new MPFDetectionVideoRequest(
+                videoRequest.getStartFrame(),
+                videoRequest.getStopFrame(),
+                toMpfVideoTrack(videoRequest.getFeedForwardTrack()));
         }
         else {
             return new MPFDetectionVideoRequest(
-                detectionRequest.getVideoRequest().getStartFrame(),
-                detectionRequest.getVideoRequest().getStopFrame());
+                videoRequest.getStartFrame(),
+                videoRequest.getStopFrame());
+        }
+    }
+
+    private MPFVideoTrack toMpfVideoTrack(DetectionProtobuf.VideoTrack track) {
+        // Copy the frame locations map
+        Map<Integer, MPFImageLocation> locations = new HashMap<Integer, MPFImageLocation>();
+        for (int i = 0; i < track.getFrameLocationsList().size(); i++) {
+            DetectionProtobuf.VideoTrack.FrameLocationMap loc_map = track.getFrameLocations(i);
+
+            // Copy the detection properties for this location
+            Map<String, String> locationProps =
+                copyProperties(loc_map.getImageLocation().getDetectionPropertiesList());
+            // Create a new image location and put it into the new map
+            MPFImageLocation loc = new MPFImageLocation(loc_map.getImageLocation().getXLeftUpper(),
+                                                        loc_map.getImageLocation().getYLeftUpper(),
+                                                        loc_map.getImageLocation().getWidth(),
+                                                        loc_map.getImageLocation().getHeight(),
+                                                        loc_map.getImageLocation().getConfidence(),
+                                                        locationProps);
+            locations.put(loc_map.getFrame(), loc);
         }
+        // Copy the properties for the track itself
+        Map<String, String> trackProps = copyProperties(track.getDetectionPropertiesList());
+
+        return new MPFVideoTrack(track.getStartFrame(),
+                                 track.getStopFrame(),
+                                 locations,
+                                 track.getConfidence(),
+                                 trackProps);
     }
 
     public MPFDetectionImageRequest getImageRequest() {
@@ -267,11 +278,49 @@ public class MPFDetectionBuffer {
                                              final List<MPFVideoTrack> tracks,
                                              final MPFDetectionError errorCode,
                                              final String errorMessage) {
-        byte[] responseContents = null;
+        DetectionProtobuf.DetectionResponse.Builder detectionResponseBuilder
+                = packCommonFields(msgMetadata, errorCode, errorMessage);
+        addVideoResponse(detectionResponseBuilder, msgMetadata, startFrame, stopFrame, detectionType, tracks);
+
+        return detectionResponseBuilder
+                .setRequestId(msgMetadata.getRequestId())
+                .setDataType(translateMPFDetectionDataType(msgMetadata.getDataType()))
+                .build()
+                .toByteArray();
+    }
 
+    /**
+     * Creates the response for a request with multiple feed-forward tracks. The response contains one
+     * VideoResponse for each feed-forward track, in the same order as the request, holding the tracks the
+     * component found for that feed-forward track.
+     */
+    public byte[] createVideoResponseMessage(final MPFMessageMetadata msgMetadata,
+                                             final String detectionType,
+                                             final List<MPFVideoTrack> feedForwardTracks,
+                                             final List<List<MPFVideoTrack>> tracksPerFeedForwardTrack,
+                                             final MPFDetectionError errorCode,
+                                             final String errorMessage) {
         DetectionProtobuf.DetectionResponse.Builder detectionResponseBuilder
                 = packCommonFields(msgMetadata, errorCode, errorMessage);
+        for (int i = 0; i < feedForwardTracks.size(); i++) {
+            addVideoResponse(detectionResponseBuilder, msgMetadata, feedForwardTracks.get(i).getStartFrame(),
+                             feedForwardTracks.get(i).getStopFrame(), detectionType,
+                             tracksPerFeedForwardTrack.get(i));
+        }
+
+        return detectionResponseBuilder
+                .setRequestId(msgMetadata.getRequestId())
+                .setDataType(translateMPFDetectionDataType(msgMetadata.getDataType()))
+                .build()
+                .toByteArray();
+    }
 
+    private static void addVideoResponse(DetectionProtobuf.DetectionResponse.Builder detectionResponseBuilder,
+                                         final MPFMessageMetadata msgMetadata,
+                                         final int startFrame,
+                                         final int stopFrame,
+                                         final String detectionType,
+                                         final List<MPFVideoTrack> tracks) {
         DetectionProtobuf.DetectionResponse.VideoResponse.Builder videoResponseBuilder =
                 detectionResponseBuilder.addVideoResponsesBuilder();
         videoResponseBuilder.setStartFrame(startFrame);
@@ -299,25 +348,16 @@ public class MPFDetectionBuffer {
                     frameLocationMapSet.add(frameLocationMap);
 
                 }
-                DetectionProtobuf.VideoTrack videoTrack = videoResponseBuilder.addVideoTracksBuilder()
+                videoResponseBuilder.addVideoTracksBuilder()
                         .setStartFrame(tracks.get(i).getStartFrame())
                         .setStopFrame(tracks.get(i).getStopFrame())
                         .setConfidence(tracks.get(i).getConfidence())
                         .addAllDetectionProperties(convertProperties(tracks.get(i).getDetectionProperties()))
-                        .addAllFrameLocations(frameLocationMapSet)
-                        .build();
+                        .addAllFrameLocations(frameLocationMapSet);
 
                 LOG.info("Detection properties: {}", Joiner.on(";").withKeyValueSeparator("=").join(tracks.get(i).getDetectionProperties()));
             }
         }
-
-        responseContents = detectionResponseBuilder
-                .setRequestId(msgMetadata.getRequestId())
-                .setDataType(translateMPFDetectionDataType(msgMetadata.getDataType()))
-                .build()
-                .toByteArray();
-
-        return responseContents;
     }
 
     public byte[] createImageResponseMessage(final MPFMessageMetadata msgMetadata,
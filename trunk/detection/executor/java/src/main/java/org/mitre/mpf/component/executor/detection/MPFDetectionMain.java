@@ -26,6 +26,8 @@
 
 package org.mitre.mpf.component.executor.detection;
 
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.activemq.ActiveMQConnectionFactory;
 import org.mitre.mpf.component.api.detection.MPFDetectionComponentBase;
 import org.slf4j.Logger;
@@ -35,9 +37,8 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 import javax.jms.*;
 import java.io.IOException;
-import java.util.Map;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Stream;
 
@@ -62,21 +63,35 @@ public class MPFDetectionMain {
             throw exception;
         }
 
-        MPFDetectionComponentBase component = null;
+        int threadCount = getThreadCount(System.getenv());
+        boolean shareComponent = Boolean.parseBoolean(System.getenv(COMPONENT_THREAD_SAFE_ENV_NAME));
+
+        List<ClassPathXmlApplicationContext> contexts = new ArrayList<>();
+        List<MPFDetectionComponentBase> components = new ArrayList<>();
         Connection connection = null;
         AtomicBoolean quitReceived = new AtomicBoolean(false);
 
-        try (ClassPathXmlApplicationContext context
-                     = new ClassPathXmlApplicationContext("applicationContext.xml")) {
-            context.registerShutdownHook();
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                if (shareComponent && !components.isEmpty()) {
+                    components.add(components.get(0));
+                    continue;
+                }
+                // Each component instance gets its own application context so that components whose beans are
+                // singletons do not end up sharing state between threads.
+                ClassPathXmlApplicationContext context
+                        = new ClassPathXmlApplicationContext("applicationContext.xml");
+                context.registerShutdownHook();
+                contexts.add(context);
+                components.add(initializeComponent(context));
+            }
 
-            component = initializeComponent(context);
             connection = getConnection(getBrokerUri(args));
 
             startWatchingStandardIn(connection, quitReceived, Thread.currentThread());
 
             String queueName = args[0];
-            processMessages(connection, queueName, component);
+            processMessages(connection, queueName, components);
         }
         catch (JMSException e) {
             if (!quitReceived.get()) {
@@ -89,13 +104,96 @@ public class MPFDetectionMain {
             throw e;
         }
         finally {
-            if (component != null) {
-                component.close();
+            // The connection is closed first so that no new requests are received. When there are multiple
+            // detection threads, processMessages waits for them to exit, so no component is in use when the
+            // components are closed.
+            try {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+            finally {
+                components.stream()
+                        .distinct()
+                        .forEach(MPFDetectionComponentBase::close);
+                contexts.forEach(ClassPathXmlApplicationContext::close);
+            }
+        }
+    }
+
+
+    private static void processMessages(Connection connection, String queueName,
+                                        List<MPFDetectionComponentBase> components) throws JMSException {
+        if (components.size() == 1) {
+            processMessages(connection, queueName, components.get(0));
+            return;
+        }
+
+        LOG.info("Starting {} detection threads.", components.size());
+        ExecutorService executor = Executors.newFixedThreadPool(
+                components.size(),
+                new ThreadFactoryBuilder().setNameFormat("DetectionThread-%d").build());
+        CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            for (MPFDetectionComponentBase component : components) {
+                completionService.submit(() -> {
+                    processMessages(connection, queueName, component);
+                    return null;
+                });
+            }
+            // The threads exit when the connection is closed. If one of them fails, the connection is closed below
+            // so that the remaining threads exit.
+            for (int i = 0; i < components.size(); i++) {
+                completionService.take().get();
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            Throwables.throwIfInstanceOf(cause, JMSException.class);
+            Throwables.throwIfUnchecked(cause);
+            throw new IllegalStateException(cause);
+        }
+        catch (InterruptedException e) {
+            LOG.info("Interrupted while waiting for the detection threads to exit.");
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            closeConnection(connection);
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+    }
+
+
+    private static void closeConnection(Connection connection) {
+        try {
+            // Makes the detection threads that are waiting for a message exit. The threads that are processing a
+            // message exit when they next use the connection.
+            connection.close();
+        }
+        catch (JMSException e) {
+            LOG.error("An error occurred while trying to close ActiveMQ connection: " + e.getMessage(), e);
+        }
+    }
+
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    break;
+                }
+                LOG.info("Waiting for the detection threads to finish their current requests.");
             }
-            if (connection != null) {
-                connection.close();
+            catch (InterruptedException e) {
+                // The components can not be closed until the threads that are using them exit, so keep waiting.
+                interrupted = true;
             }
         }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
 
@@ -114,17 +212,87 @@ public class MPFDetectionMain {
             requestConsumer = session.createConsumer(session.createQueue(queueName));
         }
 
-        MPFDetectionMessenger messenger = new MPFDetectionMessenger(component, session);
-
-        Message message;
-        // Null message means the connection was closed.
-        while ((message = requestConsumer.receive()) != null) {
-            messenger.onMessage(message);
+        MPFDetectionMessenger messenger = new MPFDetectionMessenger(
+                component, session, getCommitBatchSize(System.getenv()),
+                getCommitMaxDelayMs(System.getenv()));
+
+        while (true) {
+            // When there are uncommitted responses, only take a message that has already arrived. Otherwise, the
+            // uncommitted responses would not be delivered until the next request arrives. The messenger also
+            // commits before a component call that would hold the responses back for longer than
+            // DETECTION_COMMIT_MAX_DELAY_MS.
+            Message message = messenger.hasUncommittedResponses()
+                    ? requestConsumer.receiveNoWait()
+                    : requestConsumer.receive();
+            if (message != null) {
+                messenger.onMessage(message);
+            }
+            else if (messenger.hasUncommittedResponses()) {
+                messenger.commit();
+            }
+            else {
+                // Null message means the connection was closed.
+                break;
+            }
         }
         LOG.info("Received null message indicating that the ActiveMQ connection was closed. Shutting down...");
     }
 
 
+    public static final String DETECTION_THREADS_ENV_NAME = "DETECTION_THREADS";
+
+    // When set to true, all of the detection threads share a single component instance.
+    public static final String COMPONENT_THREAD_SAFE_ENV_NAME = "COMPONENT_THREAD_SAFE";
+
+    public static int getThreadCount(Map<String, String> environment) {
+        return getPositiveInt(environment, DETECTION_THREADS_ENV_NAME);
+    }
+
+
+    // The number of responses that are sent before committing the session. Batching the commits avoids waiting for
+    // the broker to acknowledge each response when processing many small requests.
+    public static final String COMMIT_BATCH_SIZE_ENV_NAME = "DETECTION_COMMIT_BATCH_SIZE";
+
+    public static int getCommitBatchSize(Map<String, String> environment) {
+        return getPositiveInt(environment, COMMIT_BATCH_SIZE_ENV_NAME);
+    }
+
+
+    // Only applies when DETECTION_COMMIT_BATCH_SIZE is greater than 1. When set to 0, uncommitted responses are
+    // always committed before the next component call.
+    public static final String COMMIT_MAX_DELAY_MS_ENV_NAME = "DETECTION_COMMIT_MAX_DELAY_MS";
+
+    public static int getCommitMaxDelayMs(Map<String, String> environment) {
+        return getInt(environment, COMMIT_MAX_DELAY_MS_ENV_NAME, 100, 0);
+    }
+
+
+    private static int getPositiveInt(Map<String, String> environment, String envName) {
+        return getInt(environment, envName, 1, 1);
+    }
+
+
+    private static int getInt(Map<String, String> environment, String envName, int defaultValue,
+                              int minValue) {
+        var envValue = environment.get(envName);
+        if (envValue == null || envValue.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            int value = Integer.parseInt(envValue.strip());
+            if (value >= minValue) {
+                return value;
+            }
+        }
+        catch (NumberFormatException ignored) {
+            // Handled below.
+        }
+        throw new IllegalArgumentException(String.format(
+                "Expected the %s environment variable to be an integer >= %d, but it was: %s",
+                envName, minValue, envValue));
+    }
+
+
     private static Optional<String> getMediaTypeSelector() {
         return getMediaTypeSelector(System.getenv());
     }
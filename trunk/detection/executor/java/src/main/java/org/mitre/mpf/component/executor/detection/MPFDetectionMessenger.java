@@ -26,6 +26,7 @@
 
 package org.mitre.mpf.component.executor.detection;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableMap;
 import com.google.protobuf.InvalidProtocolBufferException;
 import org.mitre.mpf.component.api.detection.*;
@@ -34,10 +35,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.*;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class MPFDetectionMessenger {
 
@@ -50,12 +49,50 @@ public class MPFDetectionMessenger {
 	private final MPFDetectionComponentInterface component;
 	private final Session session;
 
+	// The number of responses to send before committing the session.
+	private final int commitBatchSize;
+
+	// Uncommitted responses are committed before the next component call unless they would still be committed
+	// within this many milliseconds, based on how long the previous component call took.
+	private final long commitMaxDelayNanos;
+
+	private int uncommittedResponseCount;
+
+	private long oldestUncommittedResponseNanos;
+
+	private long lastComponentCallNanos;
+
+	// Messages sent from a transacted session are sent asynchronously until the session is committed, so the
+	// producers are reused rather than creating a new producer for each response.
+	private final Map<Destination, MessageProducer> replyProducers = new HashMap<>();
+
     public MPFDetectionMessenger(MPFDetectionComponentInterface component, Session session) {
+        this(component, session, 1, 0);
+    }
+
+    public MPFDetectionMessenger(MPFDetectionComponentInterface component, Session session, int commitBatchSize,
+                                 long commitMaxDelayMs) {
         this.component = component;
         this.session = session;
+        this.commitBatchSize = commitBatchSize;
+        this.commitMaxDelayNanos = TimeUnit.MILLISECONDS.toNanos(commitMaxDelayMs);
+    }
+
+    /**
+     * Returns true when responses have been sent, but the session has not been committed. The caller should
+     * call {@link #commit()} before waiting for the next request.
+     */
+    public boolean hasUncommittedResponses() {
+        return uncommittedResponseCount > 0;
+    }
+
+    public void commit() throws JMSException {
+        session.commit();
+        uncommittedResponseCount = 0;
     }
 
     public void onMessage(Message message) {
+		Stopwatch totalStopwatch = Stopwatch.createStarted();
 		try {
             LOG.info("Detection request received with message length = " + ((BytesMessage) message).getBodyLength());
 
@@ -93,6 +130,8 @@ public class MPFDetectionMessenger {
 				if(component.supports(msgMetadata.getDataType())) {
 
 					byte[] responseBytes = null;
+					commitIfComponentCallWouldDelayResponses();
+					Stopwatch componentStopwatch = Stopwatch.createStarted();
 
                     // TODO: Include the exception message in the response message for more detail.
                     if (MPFDataType.AUDIO == msgMetadata.getDataType()) {
@@ -138,7 +177,10 @@ public class MPFDetectionMessenger {
                     } else if (MPFDataType.VIDEO == msgMetadata.getDataType()) {
                         MPFDetectionVideoRequest videoRequest = detectionBuffer.getVideoRequest();
                         List<MPFVideoTrack> tracks = new ArrayList<>();
-                        try {
+                        if (!videoRequest.getFeedForwardTracks().isEmpty()) {
+                            responseBytes = processFeedForwardTracks(
+                                    detectionBuffer, msgMetadata, detectionType, videoRequest);
+                        } else try {
                             tracks = component.getDetections(new MPFVideoJob(msgMetadata.getJobName(),
                                                                             msgMetadata.getDataUri(),
                                                                             msgMetadata.getAlgorithmProperties(),
@@ -175,6 +217,8 @@ public class MPFDetectionMessenger {
 									e.getMessage());
 						}
 					}
+                    componentStopwatch.stop();
+                    lastComponentCallNanos = componentStopwatch.elapsed(TimeUnit.NANOSECONDS);
                     // for debugging purposes
                     LOG.debug("Detection results for file " + msgMetadata.getDataUri() + ":\n" + responseBytes.toString());
 
@@ -183,11 +227,14 @@ public class MPFDetectionMessenger {
                         responseBytesMessage = session.createBytesMessage();
                         responseBytesMessage.writeBytes(responseBytes);
                         ProtoUtils.setMsgProperties(headerProperties, responseBytesMessage);
-	                    MessageProducer replyProducer = session.createProducer(out);
-	                    replyProducer.setPriority(message.getJMSPriority());
-                        replyProducer.send(responseBytesMessage);
-                        session.commit();
-                        LOG.info("Detection response sent for job ID {}", msgMetadata.getJobId());
+                        send(out, responseBytesMessage, message.getJMSPriority());
+                        totalStopwatch.stop();
+                        long componentMs = componentStopwatch.elapsed(TimeUnit.MILLISECONDS);
+                        long totalMs = totalStopwatch.elapsed(TimeUnit.MILLISECONDS);
+                        LOG.info("Detection response sent for job ID {}. Request {} took {} ms: {} ms in the " +
+                                         "component and {} ms in the executor.",
+                                 msgMetadata.getJobId(), msgMetadata.getRequestId(), totalMs, componentMs,
+                                 totalMs - componentMs);
                         LOG.debug(responseBytesMessage.toString());
                     } catch (JMSException e) {
                         LOG.error("Failed to send detection response message due to exception: " + e.getMessage(), e);
@@ -226,11 +273,7 @@ public class MPFDetectionMessenger {
 			// Set the body of the message.
 			response.writeBytes(detectionResponse.toByteArray());
 
-			// Create a transacted producer, send the message, and close the producer.
-			MessageProducer producer = session.createProducer(destination);
-			producer.send(response);
-			session.commit();
-			producer.close();
+			send(destination, response, Message.DEFAULT_PRIORITY);
 
 			// Record the success.
 			LOG.debug("[Request #{}] Built and sent response. Error: {}.", detectionResponse.getRequestId(), detectionResponse.getError());
@@ -240,6 +283,35 @@ public class MPFDetectionMessenger {
 		}
 	}
 
+	private void send(Destination destination, Message response, int priority) throws JMSException {
+		MessageProducer producer = replyProducers.get(destination);
+		if (producer == null) {
+			producer = session.createProducer(destination);
+			replyProducers.put(destination, producer);
+		}
+		producer.send(response, producer.getDeliveryMode(), priority, producer.getTimeToLive());
+
+		if (uncommittedResponseCount == 0) {
+			oldestUncommittedResponseNanos = System.nanoTime();
+		}
+		uncommittedResponseCount++;
+		if (uncommittedResponseCount >= commitBatchSize) {
+			commit();
+		}
+	}
+
+	// The request being processed was prefetched while earlier responses were uncommitted. Committing here also
+	// acknowledges that request, so it will not be redelivered if the executor exits during the component call.
+	private void commitIfComponentCallWouldDelayResponses() throws JMSException {
+		if (uncommittedResponseCount == 0) {
+			return;
+		}
+		long expectedDelay = System.nanoTime() - oldestUncommittedResponseNanos + lastComponentCallNanos;
+		if (expectedDelay >= commitMaxDelayNanos) {
+			commit();
+		}
+	}
+
 	private boolean actAsPreprocessor(MPFMessageMetadata msgMetadata) {
 		if(msgMetadata.getAlgorithmProperties().containsKey(usePreprocessorPropertyName)) {
 			try {
@@ -327,4 +399,38 @@ public class MPFDetectionMessenger {
 		        		e -> e.getKey().substring(propertyPrefix.length()),
 				        Map.Entry::getValue));
 	}
+
+    // Components only accept one feed-forward track per job, so a batched request is run as one job per track.
+    // The response has one VideoResponse per feed-forward track so that the WFM can map the results back.
+    private byte[] processFeedForwardTracks(MPFDetectionBuffer detectionBuffer, MPFMessageMetadata msgMetadata,
+                                            String detectionType, MPFDetectionVideoRequest videoRequest) {
+        List<MPFVideoTrack> feedForwardTracks = videoRequest.getFeedForwardTracks();
+        List<List<MPFVideoTrack>> tracksPerFeedForwardTrack = new ArrayList<>(feedForwardTracks.size());
+        MPFDetectionError error = MPFDetectionError.MPF_DETECTION_SUCCESS;
+        String errorMessage = "";
+        for (MPFVideoTrack feedForwardTrack : feedForwardTracks) {
+            try {
+                tracksPerFeedForwardTrack.add(component.getDetections(new MPFVideoJob(
+                        msgMetadata.getJobName(),
+                        msgMetadata.getDataUri(),
+                        msgMetadata.getAlgorithmProperties(),
+                        msgMetadata.getMediaProperties(),
+                        feedForwardTrack.getStartFrame(),
+                        feedForwardTrack.getStopFrame(),
+                        feedForwardTrack)));
+            }
+            catch (MPFComponentDetectionError e) {
+                LOG.error("Detection failed for the feed-forward track starting at frame {}: {}",
+                          feedForwardTrack.getStartFrame(), e.getMessage());
+                tracksPerFeedForwardTrack.add(Collections.emptyList());
+                if (error == MPFDetectionError.MPF_DETECTION_SUCCESS) {
+                    error = e.getDetectionError();
+                    errorMessage = e.getMessage();
+                }
+            }
+        }
+        return detectionBuffer.createVideoResponseMessage(
+                msgMetadata, detectionType, feedForwardTracks, tracksPerFeedForwardTrack, error, errorMessage);
+    }
+
 }
@@ -27,11 +27,14 @@
 package org.mitre.mpf.component.executor.detection;
 import org.mitre.mpf.component.api.detection.MPFVideoTrack;
 
+import java.util.List;
+
 public class MPFDetectionVideoRequest {
 
     private int startFrame;
     private int stopFrame;
     private MPFVideoTrack feedForwardTrack;
+    private List<MPFVideoTrack> feedForwardTracks = List.of();
 
     public int getStartFrame() {
         return startFrame;
@@ -53,6 +56,11 @@ public class MPFDetectionVideoRequest {
         return feedForwardTrack;   // Could be null; be sure to check
     }
 
+    // Non-empty when the WFM batched multiple feed-forward tracks into one request
+    public List<MPFVideoTrack> getFeedForwardTracks() {
+        return feedForwardTracks;
+    }
+
     // Constructor for a request that does not have a feed-forward track
     public MPFDetectionVideoRequest(int startFrame,
                                     int stopFrame) {
@@ -70,4 +78,14 @@ public class MPFDetectionVideoRequest {
         this.feedForwardTrack = track;
     }
 
+    // Constructor for a request that has multiple feed-forward tracks
+    public MPFDetectionVideoRequest(int startFrame,
+                                    int stopFrame,
+                                    List<MPFVideoTrack> tracks) {
+        this.startFrame = startFrame;
+        this.stopFrame = stopFrame;
+        this.feedForwardTrack = null;
+        this.feedForwardTracks = List.copyOf(tracks);
+    }
+
 }
@@ -72,6 +72,59 @@ public class TestMPFDetectionMain {
     }
 
 
+    @Test
+    public void defaultsToOneDetectionThread() {
+        assertEquals(1, MPFDetectionMain.getThreadCount(Map.of()));
+        assertEquals(1, MPFDetectionMain.getThreadCount(detectionThreadsEnv(" ")));
+    }
+
+    @Test
+    public void canSetDetectionThreads() {
+        assertEquals(8, MPFDetectionMain.getThreadCount(detectionThreadsEnv("8")));
+        assertEquals(4, MPFDetectionMain.getThreadCount(detectionThreadsEnv(" 4 ")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenDetectionThreadsIsZero() {
+        MPFDetectionMain.getThreadCount(detectionThreadsEnv("0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenDetectionThreadsIsNotANumber() {
+        MPFDetectionMain.getThreadCount(detectionThreadsEnv("many"));
+    }
+
+    @Test
+    public void canSetCommitBatchSize() {
+        assertEquals(1, MPFDetectionMain.getCommitBatchSize(Map.of()));
+        assertEquals(16, MPFDetectionMain.getCommitBatchSize(
+                Map.of(MPFDetectionMain.COMMIT_BATCH_SIZE_ENV_NAME, "16")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenCommitBatchSizeIsNegative() {
+        MPFDetectionMain.getCommitBatchSize(Map.of(MPFDetectionMain.COMMIT_BATCH_SIZE_ENV_NAME, "-1"));
+    }
+
+    @Test
+    public void canSetCommitMaxDelay() {
+        assertEquals(100, MPFDetectionMain.getCommitMaxDelayMs(Map.of()));
+        assertEquals(0, MPFDetectionMain.getCommitMaxDelayMs(
+                Map.of(MPFDetectionMain.COMMIT_MAX_DELAY_MS_ENV_NAME, "0")));
+        assertEquals(500, MPFDetectionMain.getCommitMaxDelayMs(
+                Map.of(MPFDetectionMain.COMMIT_MAX_DELAY_MS_ENV_NAME, "500")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenCommitMaxDelayIsNegative() {
+        MPFDetectionMain.getCommitMaxDelayMs(Map.of(MPFDetectionMain.COMMIT_MAX_DELAY_MS_ENV_NAME, "-1"));
+    }
+
+    private static Map<String, String> detectionThreadsEnv(String envValue) {
+        return Map.of(MPFDetectionMain.DETECTION_THREADS_ENV_NAME, envValue);
+    }
+
+
     @Test
     public void testEnvironmentJobProperties() {
         var environment = Map.of(
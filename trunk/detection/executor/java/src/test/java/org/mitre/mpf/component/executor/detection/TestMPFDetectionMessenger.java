@@ -0,0 +1,256 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+package org.mitre.mpf.component.executor.detection;
+
+import org.junit.Test;
+import org.mitre.mpf.component.api.detection.*;
+import org.mitre.mpf.wfm.buffers.DetectionProtobuf;
+import org.mockito.ArgumentCaptor;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestMPFDetectionMessenger {
+
+    private final MPFDetectionComponentInterface _mockComponent = mock(MPFDetectionComponentInterface.class);
+
+    private final Session _mockSession = mock(Session.class);
+
+    private final MessageProducer _mockProducer = mock(MessageProducer.class);
+
+    private final BytesMessage _mockResponse = mock(BytesMessage.class);
+
+
+    public TestMPFDetectionMessenger() throws JMSException, MPFComponentDetectionError {
+        when(_mockComponent.supports(any()))
+                .thenReturn(true);
+        when(_mockComponent.getDetectionType())
+                .thenReturn("FACE");
+        when(_mockComponent.getDetections(any(MPFVideoJob.class)))
+                .then(inv -> {
+                    MPFVideoJob job = inv.getArgument(0);
+                    return List.of(new MPFVideoTrack(job.getStartFrame(), job.getStopFrame(), Map.of(), 0.5f,
+                                                     Map.of()));
+                });
+        when(_mockSession.createProducer(any()))
+                .thenReturn(_mockProducer);
+        when(_mockSession.createBytesMessage())
+                .thenReturn(_mockResponse);
+    }
+
+
+    @Test
+    public void batchedFeedForwardTracksAreProcessedSeparately() throws Exception {
+        var messenger = new MPFDetectionMessenger(_mockComponent, _mockSession);
+        messenger.onMessage(createVideoRequest(
+                createFeedForwardTrack(10, 20), createFeedForwardTrack(30, 40)));
+
+        var jobCaptor = ArgumentCaptor.forClass(MPFVideoJob.class);
+        verify(_mockComponent, times(2))
+                .getDetections(jobCaptor.capture());
+        assertEquals(10, jobCaptor.getAllValues().get(0).getStartFrame());
+        assertEquals(20, jobCaptor.getAllValues().get(0).getStopFrame());
+        assertEquals(30, jobCaptor.getAllValues().get(1).getStartFrame());
+        assertEquals(40, jobCaptor.getAllValues().get(1).getStopFrame());
+
+        var response = getSentResponse();
+        assertEquals(DetectionProtobuf.DetectionError.NO_DETECTION_ERROR, response.getError());
+        assertEquals(2, response.getVideoResponsesCount());
+        assertVideoResponse(response.getVideoResponses(0), 10, 20);
+        assertVideoResponse(response.getVideoResponses(1), 30, 40);
+    }
+
+
+    @Test
+    public void failedFeedForwardTrackDoesNotAffectOtherTracks() throws Exception {
+        doThrow(new MPFComponentDetectionError(MPFDetectionError.MPF_DETECTION_FAILED, "failed"))
+                .when(_mockComponent)
+                .getDetections(argThat((MPFVideoJob job) -> job.getStartFrame() == 10));
+
+        var messenger = new MPFDetectionMessenger(_mockComponent, _mockSession);
+        messenger.onMessage(createVideoRequest(
+                createFeedForwardTrack(10, 20), createFeedForwardTrack(30, 40)));
+
+        var response = getSentResponse();
+        assertEquals(DetectionProtobuf.DetectionError.DETECTION_FAILED, response.getError());
+        assertEquals(2, response.getVideoResponsesCount());
+
+        assertEquals(10, response.getVideoResponses(0).getStartFrame());
+        assertEquals(20, response.getVideoResponses(0).getStopFrame());
+        assertEquals(0, response.getVideoResponses(0).getVideoTracksCount());
+
+        assertVideoResponse(response.getVideoResponses(1), 30, 40);
+    }
+
+
+    @Test
+    public void commitsEachResponseByDefault() throws Exception {
+        var messenger = new MPFDetectionMessenger(_mockComponent, _mockSession);
+        messenger.onMessage(createVideoRequest());
+        messenger.onMessage(createVideoRequest());
+
+        verify(_mockSession, times(2))
+                .commit();
+        assertFalse(messenger.hasUncommittedResponses());
+    }
+
+
+    @Test
+    public void batchesCommitsWhenComponentIsFast() throws Exception {
+        var messenger = new MPFDetectionMessenger(_mockComponent, _mockSession, 3, 60_000);
+        messenger.onMessage(createVideoRequest());
+        messenger.onMessage(createVideoRequest());
+
+        verify(_mockSession, never())
+                .commit();
+        assertTrue(messenger.hasUncommittedResponses());
+
+        messenger.onMessage(createVideoRequest());
+        verify(_mockSession)
+                .commit();
+        assertFalse(messenger.hasUncommittedResponses());
+    }
+
+
+    @Test
+    public void commitsPendingResponsesBeforeSlowComponentCall() throws Exception {
+        var messenger = new MPFDetectionMessenger(_mockComponent, _mockSession, 3, 0);
+        messenger.onMessage(createVideoRequest());
+        verify(_mockSession, never())
+                .commit();
+        assertTrue(messenger.hasUncommittedResponses());
+
+        messenger.onMessage(createVideoRequest());
+
+        // The first response must be committed before the component starts working on the second request.
+        var inOrder = inOrder(_mockComponent, _mockProducer, _mockSession);
+        inOrder.verify(_mockComponent)
+                .getDetections(any(MPFVideoJob.class));
+        inOrder.verify(_mockProducer)
+                .send(eq(_mockResponse), anyInt(), anyInt(), anyLong());
+        inOrder.verify(_mockSession)
+                .commit();
+        inOrder.verify(_mockComponent)
+                .getDetections(any(MPFVideoJob.class));
+        inOrder.verify(_mockProducer)
+                .send(eq(_mockResponse), anyInt(), anyInt(), anyLong());
+        assertTrue(messenger.hasUncommittedResponses());
+    }
+
+
+    @Test
+    public void explicitCommitClearsPendingResponses() throws Exception {
+        var messenger = new MPFDetectionMessenger(_mockComponent, _mockSession, 3, 60_000);
+        messenger.onMessage(createVideoRequest());
+        assertTrue(messenger.hasUncommittedResponses());
+
+        messenger.commit();
+        verify(_mockSession)
+                .commit();
+        assertFalse(messenger.hasUncommittedResponses());
+    }
+
+
+    private static void assertVideoResponse(DetectionProtobuf.DetectionResponse.VideoResponse videoResponse,
+                                            int startFrame, int stopFrame) {
+        assertEquals(startFrame, videoResponse.getStartFrame());
+        assertEquals(stopFrame, videoResponse.getStopFrame());
+        assertEquals(1, videoResponse.getVideoTracksCount());
+        assertEquals(startFrame, videoResponse.getVideoTracks(0).getStartFrame());
+        assertEquals(stopFrame, videoResponse.getVideoTracks(0).getStopFrame());
+    }
+
+
+    private DetectionProtobuf.DetectionResponse getSentResponse() throws Exception {
+        verify(_mockProducer)
+                .send(eq(_mockResponse), anyInt(), anyInt(), anyLong());
+        var bytesCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(_mockResponse)
+                .writeBytes(bytesCaptor.capture());
+        return DetectionProtobuf.DetectionResponse.parseFrom(bytesCaptor.getValue());
+    }
+
+
+    private static DetectionProtobuf.VideoTrack createFeedForwardTrack(int startFrame, int stopFrame) {
+        return DetectionProtobuf.VideoTrack.newBuilder()
+                .setStartFrame(startFrame)
+                .setStopFrame(stopFrame)
+                .build();
+    }
+
+
+    private static BytesMessage createVideoRequest(DetectionProtobuf.VideoTrack... feedForwardTracks)
+            throws JMSException {
+        var videoRequest = DetectionProtobuf.DetectionRequest.VideoRequest.newBuilder()
+                .setStartFrame(10)
+                .setStopFrame(40);
+        for (var track : feedForwardTracks) {
+            videoRequest.addFeedForwardTracks(track);
+        }
+        byte[] requestBytes = DetectionProtobuf.DetectionRequest.newBuilder()
+                .setRequestId(1)
+                .setDataUri("/tmp/video.avi")
+                .setDataType(DetectionProtobuf.DetectionRequest.DataType.VIDEO)
+                .setTaskIndex(0)
+                .setActionIndex(0)
+                .setVideoRequest(videoRequest)
+                .build()
+                .toByteArray();
+
+        var message = mock(BytesMessage.class);
+        when(message.getBodyLength())
+                .thenReturn((long) requestBytes.length);
+        when(message.readBytes(any(byte[].class)))
+                .then(inv -> {
+                    byte[] dest = inv.getArgument(0);
+                    System.arraycopy(requestBytes, 0, dest, 0, requestBytes.length);
+                    return requestBytes.length;
+                });
+        when(message.getPropertyNames())
+                .thenReturn(Collections.emptyEnumeration());
+        when(message.getLongProperty("JobId"))
+                .thenReturn(5L);
+        when(message.getJMSReplyTo())
+                .thenReturn(mock(Destination.class));
+        when(message.getJMSPriority())
+                .thenReturn(4);
+        return message;
+    }
+}
@@ -30,9 +30,9 @@ import com.google.common.base.Stopwatch;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.mitre.mpf.videooverlay.BoundingBox;
-import org.mitre.mpf.videooverlay.BoundingBoxMap;
 import org.mitre.mpf.videooverlay.BoundingBoxSource;
 import org.mitre.mpf.videooverlay.BoundingBoxWriter;
+import org.mitre.mpf.videooverlay.KeyframeBoundingBoxMap;
 import org.mitre.mpf.wfm.buffers.Markup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,6 +53,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.stream.Collectors.toMap;
@@ -85,6 +86,9 @@ public class MarkupRequestConsumer implements MessageListener {
                 .setTaskIndex(request.getTaskIndex())
                 .setActionIndex(request.getActionIndex())
                 .setHasError(false);
+        if (request.hasSegment()) {
+            responseBuilder.setSegment(request.getSegment());
+        }
         return responseBuilder;
     }
 
@@ -116,31 +120,49 @@ public class MarkupRequestConsumer implements MessageListener {
                                Markup.MarkupRequestPropertyMap::getValue));
         writer.setRequestProperties(requestProperties);
 
-        BoundingBoxMap map = new BoundingBoxMap();
+        KeyframeBoundingBoxMap map = new KeyframeBoundingBoxMap();
         int boxesAdded = 0;
         for(Markup.BoundingBoxMapEntry boundingBoxMapEntry : markupRequest.getMapEntriesList()) {
-            Optional<String> label = boundingBoxMapEntry.getBoundingBox().hasLabel() ?
-                    Optional.of(boundingBoxMapEntry.getBoundingBox().getLabel()) : Optional.empty();
-            BoundingBox boundingBox = new BoundingBox(
-                    boundingBoxMapEntry.getBoundingBox().getX(),
-                    boundingBoxMapEntry.getBoundingBox().getY(),
-                    boundingBoxMapEntry.getBoundingBox().getWidth(),
-                    boundingBoxMapEntry.getBoundingBox().getHeight(),
-                    boundingBoxMapEntry.getBoundingBox().getRotationDegrees(),
-                    boundingBoxMapEntry.getBoundingBox().getFlip(),
-                    boundingBoxMapEntry.getBoundingBox().getRed(),
-                    boundingBoxMapEntry.getBoundingBox().getGreen(),
-                    boundingBoxMapEntry.getBoundingBox().getBlue(),
-                    BoundingBoxSource.valueOf(boundingBoxMapEntry.getBoundingBox().getSource().toString()),
-                    boundingBoxMapEntry.getBoundingBox().getMoving(),
-                    boundingBoxMapEntry.getBoundingBox().getExemplar(),
-                    label);
-            map.putOnFrame(boundingBoxMapEntry.getFrameNumber(), boundingBox);
+            map.putOnFrame(boundingBoxMapEntry.getFrameNumber(),
+                           toBoundingBox(boundingBoxMapEntry.getBoundingBox()));
             boxesAdded++;
         }
 
+        // Only the keyframes are sent in the request. The boxes in between are created as each frame is drawn.
+        for (Markup.BoundingBoxTrack track : markupRequest.getTracksList()) {
+            if (track.getKeyframesCount() == 0) {
+                continue;
+            }
+            if (track.hasSpanLastFrame()) {
+                Markup.BoundingBoxMapEntry keyframe = track.getKeyframes(0);
+                map.addSpan(keyframe.getFrameNumber(), track.getSpanLastFrame(),
+                            toBoundingBox(keyframe.getBoundingBox()));
+            }
+            else {
+                var keyframes = new TreeMap<Integer, BoundingBox>();
+                for (Markup.BoundingBoxMapEntry keyframe : track.getKeyframesList()) {
+                    keyframes.put(keyframe.getFrameNumber(), toBoundingBox(keyframe.getBoundingBox()));
+                }
+                map.addInterpolatedTrack(keyframes);
+            }
+            boxesAdded += track.getKeyframesCount();
+        }
+
         log.info("[Markup Request #{}] Marking up {} detections on '{}'.",
-                markupRequest.getRequestId(), markupRequest.getMapEntriesCount(), markupRequest.getDestinationUri());
+                markupRequest.getRequestId(), boxesAdded, markupRequest.getDestinationUri());
+
+        if (markupRequest.hasSegment()) {
+            // The segment must be written even when it has no boxes, because it will be concatenated with
+            // the other segments.
+            Markup.MarkupSegment segment = markupRequest.getSegment();
+            log.info("[Markup Request #{}] Marking up frames {} through {} (segment {} of {}).",
+                    markupRequest.getRequestId(), segment.getBeginFrame(), segment.getEndFrame(),
+                    segment.getIndex() + 1, segment.getCount());
+            writer.setBoundingBoxMap(map);
+            writer.setFrameRange(segment.getBeginFrame(), segment.getEndFrame());
+            writer.markupVideo();
+            return true;
+        }
 
         if(boxesAdded > 0) {
             writer.setBoundingBoxMap(map);
@@ -154,6 +176,24 @@ public class MarkupRequestConsumer implements MessageListener {
         return boxesAdded > 0;
     }
 
+    private static BoundingBox toBoundingBox(Markup.BoundingBox protobufBox) {
+        Optional<String> label = protobufBox.hasLabel() ? Optional.of(protobufBox.getLabel()) : Optional.empty();
+        return new BoundingBox(
+                protobufBox.getX(),
+                protobufBox.getY(),
+                protobufBox.getWidth(),
+                protobufBox.getHeight(),
+                protobufBox.getRotationDegrees(),
+                protobufBox.getFlip(),
+                protobufBox.getRed(),
+                protobufBox.getGreen(),
+                protobufBox.getBlue(),
+                BoundingBoxSource.valueOf(protobufBox.getSource().toString()),
+                protobufBox.getMoving(),
+                protobufBox.getExemplar(),
+                label);
+    }
+
     public void onMessage(Message message) {
         Stopwatch stopwatch = Stopwatch.createStarted();
 
@@ -210,7 +250,8 @@ public class MarkupRequestConsumer implements MessageListener {
 	        }
 
 	        if(!markupResponseBuilder.getHasError()) {
-		        if (markupRequest.getMapEntriesCount() == 0) {
+		        if (markupRequest.getMapEntriesCount() == 0 && markupRequest.getTracksCount() == 0
+                        && !markupRequest.hasSegment()) {
 			        try {
                         String sourceUri = markupRequest.getSourceUri();
                         String sourceExt = FilenameUtils.getExtension(sourceUri);
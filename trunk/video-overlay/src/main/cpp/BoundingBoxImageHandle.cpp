@@ -42,6 +42,10 @@ cv::Size BoundingBoxImageHandle::GetFrameSize() const {
     return videoCapture_.GetFrameSize();
 }
 
+int BoundingBoxImageHandle::GetBeginFrame() const {
+    return 0;
+}
+
 bool BoundingBoxImageHandle::Read(cv::Mat &frame) {
     if (frameRead_) {
         return false; // if the image has already been read once, there is nothing more to do
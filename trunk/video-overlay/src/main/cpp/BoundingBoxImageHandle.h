@@ -42,6 +42,8 @@ public:
 
     cv::Size GetFrameSize() const;
 
+    int GetBeginFrame() const;
+
     bool Read(cv::Mat &frame);
 
     void HandleMarkedFrame(const cv::Mat& frame);
@@ -35,8 +35,17 @@
 
 BoundingBoxVideoHandle::BoundingBoxVideoHandle(std::string destinationPath, const std::string &encoder,
                                                int vp9Crf, bool border, const ResolutionConfig &resCfg,
-                                               MPF::COMPONENT::MPFVideoCapture videoCapture) :
-        destinationPath_(std::move(destinationPath)), videoCapture_(std::move(videoCapture)) {
+                                               MPF::COMPONENT::MPFVideoCapture videoCapture,
+                                               int beginFrame, int endFrame) :
+        destinationPath_(std::move(destinationPath)), videoCapture_(std::move(videoCapture)),
+        beginFrame_(beginFrame), endFrame_(endFrame), nextFrame_(beginFrame) {
+
+    // When marking up a segment of a video, each segment is encoded separately so that every segment begins with a
+    // keyframe. This allows the segments to be concatenated without re-encoding.
+    if (beginFrame_ > 0 && !videoCapture_.SetFramePosition(beginFrame_)) {
+        throw std::runtime_error("Unable to write markup because seeking to frame " + std::to_string(beginFrame_)
+                                 + " failed.");
+    }
 
     int destinationFrameWidth  = videoCapture_.GetFrameSize().width;
     int destinationFrameHeight = videoCapture_.GetFrameSize().height;
@@ -100,7 +109,15 @@ cv::Size BoundingBoxVideoHandle::GetFrameSize() const {
     return videoCapture_.GetFrameSize();
 }
 
+int BoundingBoxVideoHandle::GetBeginFrame() const {
+    return beginFrame_;
+}
+
 bool BoundingBoxVideoHandle::Read(cv::Mat &frame) {
+    if (endFrame_ >= 0 && nextFrame_ > endFrame_) {
+        return false;
+    }
+    nextFrame_++;
     return videoCapture_.Read(frame);
 }
 
@@ -43,12 +43,15 @@ public:
     static constexpr bool showFrameNumbers = true;
 
     BoundingBoxVideoHandle(std::string destinationPath, const std::string &encoder, int vp9Crf, bool border,
-                           const ResolutionConfig &resCfg, MPF::COMPONENT::MPFVideoCapture videoCapture);
+                           const ResolutionConfig &resCfg, MPF::COMPONENT::MPFVideoCapture videoCapture,
+                           int beginFrame = 0, int endFrame = -1);
 
     ~BoundingBoxVideoHandle();
 
     cv::Size GetFrameSize() const;
 
+    int GetBeginFrame() const;
+
     bool Read(cv::Mat &frame);
 
     void HandleMarkedFrame(const cv::Mat& frame);
@@ -60,6 +63,13 @@ private:
 
     MPF::COMPONENT::MPFVideoCapture videoCapture_;
 
+    int beginFrame_;
+
+    // Inclusive. When negative, frames are read until the end of the video.
+    int endFrame_;
+
+    int nextFrame_;
+
     FILE *pipe_;
 };
 
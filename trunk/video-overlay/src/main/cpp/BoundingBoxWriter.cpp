@@ -96,7 +96,7 @@ extern "C" {
 
 JNIEXPORT void JNICALL Java_org_mitre_mpf_videooverlay_BoundingBoxWriter_markupVideoNative
   (JNIEnv *env, jobject boundingBoxWriterInstance, jstring sourceVideoPathJString, jobject mediaMetadata,
-   jstring destinationVideoPathJString, jobject requestProperties)
+   jstring destinationVideoPathJString, jobject requestProperties, jint beginFrame, jint endFrame)
 {
     JniHelper jni(env);
     try {
@@ -131,7 +131,7 @@ JNIEXPORT void JNICALL Java_org_mitre_mpf_videooverlay_BoundingBoxWriter_markupV
             getResolutionConfig(freeType2, videoCapture.GetFrameSize().width, videoCapture.GetFrameSize().height);
 
         BoundingBoxVideoHandle boundingBoxVideoHandle(destinationVideoPath, encoder, vp9Crf, border, resCfg,
-                                                      std::move(videoCapture));
+                                                      std::move(videoCapture), beginFrame, endFrame);
 
         markup(env, freeType2, boundingBoxWriterInstance, mediaMetadata, requestProperties, resCfg,
                boundingBoxVideoHandle);
@@ -262,7 +262,7 @@ void markup(JNIEnv *env, pFreeType2 freeType2, jobject &boundingBoxWriterInstanc
         Size origFrameSize = boundingBoxMediaHandle.GetFrameSize();
         Mat frame;
 
-        jint currentFrameNum = -1;
+        jint currentFrameNum = boundingBoxMediaHandle.GetBeginFrame() - 1;
         while (true) {
             LocalJniFrame perVideoFrameLocalFrame(env, 32);
             currentFrameNum++;
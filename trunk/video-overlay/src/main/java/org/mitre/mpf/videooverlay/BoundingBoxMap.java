@@ -86,11 +86,13 @@ public class BoundingBoxMap extends TreeMap<Integer, List<BoundingBox>> {
             throw new IllegalArgumentException("boundingBox must not be null");
         }
 
-        if (!containsKey(frame)) {
-            put(frame, new ArrayList<BoundingBox>());
+        // Use TreeMap's get so that subclasses which compute entries on demand do not affect stored entries.
+        List<BoundingBox> boxes = super.get(frame);
+        if (boxes == null) {
+            boxes = new ArrayList<>();
+            put(frame, boxes);
         }
-
-        get(frame).add(boundingBox);
+        boxes.add(boundingBox);
     }
 
     /**
@@ -148,28 +150,40 @@ public class BoundingBoxMap extends TreeMap<Integer, List<BoundingBox>> {
 
         putOnFrame(firstFrame, origin);
 
+        for(int frameOffset = 1; frameOffset < interval; frameOffset++) {
+            putOnFrame(firstFrame + frameOffset, interpolate(origin, destination, interval, frameOffset));
+        }
+    }
+
+    /**
+     * Creates the box that appears {@code frameOffset} frames into the animation from {@code origin} to
+     * {@code destination}. Other than its position and size, the box has the same attributes as {@code origin}.
+     * @param origin The original bounding box.
+     * @param destination The target bounding box.
+     * @param interval The number of frames over which the animation occurs.
+     * @param frameOffset The number of frames since the start of the animation.
+     */
+    public static BoundingBox interpolate(BoundingBox origin, BoundingBox destination, int interval,
+                                          int frameOffset) {
         double dx = (destination.getX() - origin.getX()) / (1.0 * interval);
         double dy = (destination.getY() - origin.getY()) / (1.0 * interval);
         double dWidth = (destination.getWidth() - origin.getWidth()) / (1.0 * interval);
         double dHeight = (destination.getHeight() - origin.getHeight()) / (1.0 * interval);
 
-        for(int frameOffset = 1; frameOffset < interval; frameOffset++) {
-            BoundingBox translatedBox = new BoundingBox(
-                    (int) Math.round(origin.getX() + dx * frameOffset),
-                    (int) Math.round(origin.getY() + dy * frameOffset),
-                    (int) Math.round(origin.getWidth() + dWidth * frameOffset),
-                    (int) Math.round(origin.getHeight() + dHeight * frameOffset),
-                    origin.getRotationDegrees(),
-                    origin.getFlip(),
-                    origin.getRed(),
-                    origin.getGreen(),
-                    origin.getBlue(),
-                    BoundingBoxSource.ANIMATION,
-                    origin.isMoving(),
-                    false, // not exemplar
-                    origin.getLabel());
-            putOnFrame(firstFrame + frameOffset, translatedBox);
-        }
+        return new BoundingBox(
+                (int) Math.round(origin.getX() + dx * frameOffset),
+                (int) Math.round(origin.getY() + dy * frameOffset),
+                (int) Math.round(origin.getWidth() + dWidth * frameOffset),
+                (int) Math.round(origin.getHeight() + dHeight * frameOffset),
+                origin.getRotationDegrees(),
+                origin.getFlip(),
+                origin.getRed(),
+                origin.getGreen(),
+                origin.getBlue(),
+                BoundingBoxSource.ANIMATION,
+                origin.isMoving(),
+                false, // not exemplar
+                origin.getLabel());
     }
 
     @Override
@@ -70,6 +70,23 @@ public class BoundingBoxWriter {
 
     public void setRequestProperties(Map<String, String> requestProperties) { this.requestProperties = requestProperties; }
 
+    private int beginFrame = 0;
+
+    private int endFrame = -1;
+
+    /**
+     * Limits video markup to the frames from beginFrame through endFrame, inclusive. By default, the entire video is
+     * marked up.
+     */
+    public void setFrameRange(int beginFrame, int endFrame) {
+        if (beginFrame < 0 || endFrame < beginFrame) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid frame range: beginFrame = %d, endFrame = %d", beginFrame, endFrame));
+        }
+        this.beginFrame = beginFrame;
+        this.endFrame = endFrame;
+    }
+
     /**
      * Sets the BoundingBoxMap associated with this writer. The parameter must not be null.
      */
@@ -131,7 +148,7 @@ public class BoundingBoxWriter {
                           sourceFile.getPath(), sourceFile.exists(),
                           destinationFile.getPath(), destinationFile.exists());
                 markupVideoNative(sourceFile.getAbsolutePath(), mediaMetadata, destinationFile.getAbsolutePath(),
-                                  requestProperties);
+                                  requestProperties, beginFrame, endFrame);
             }
         }
         catch (Exception e) {
@@ -140,7 +157,8 @@ public class BoundingBoxWriter {
     }
 
     private native void markupVideoNative(String sourceVideo, Map<String, String> mediaMetadata,
-                                          String destinationVideo, Map<String, String> requestProperties);
+                                          String destinationVideo, Map<String, String> requestProperties,
+                                          int beginFrame, int endFrame);
 
 	private native void markupImageNative(String sourceImage, Map<String, String> mediaMetadata,
                                           String destinationImage, Map<String, String> requestProperties);
@@ -0,0 +1,226 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+package org.mitre.mpf.videooverlay;
+
+import java.util.*;
+
+/**
+ * A BoundingBoxMap that stores tracks as keyframes and only creates the boxes for a frame when that frame is
+ * requested. Boxes for frames between two keyframes are interpolated in the same way as
+ * {@link BoundingBoxMap#animate}. This avoids holding a box for every frame of every track in memory.
+ *
+ * Only {@link #get} and {@link #containsKey} include the boxes from tracks. The other map methods only see
+ * boxes that were added directly with the methods inherited from BoundingBoxMap. Frames are expected to be
+ * requested in increasing order, which is how BoundingBoxWriter reads them. Requesting an earlier frame
+ * still works, but it is slower.
+ */
+public class KeyframeBoundingBoxMap extends BoundingBoxMap {
+
+    private final List<KeyframeTrack> _tracks = new ArrayList<>();
+
+    // State used to find the tracks that are present on the requested frame.
+    private List<KeyframeTrack> _tracksByFirstFrame = List.of();
+    private int _nextTrackIdx;
+    private final SortedMap<Integer, KeyframeTrack> _activeTracks = new TreeMap<>();
+    private int _currentFrame = Integer.MAX_VALUE;
+    private List<BoundingBox> _currentFrameBoxes;
+
+
+    /**
+     * Adds a track whose boxes are interpolated between the given keyframes. A box is drawn on every frame from
+     * the first keyframe through the last keyframe.
+     *
+     * @param keyframes The 0-based frame index of each keyframe mapped to the box at that keyframe.
+     *                  Must not be null or empty.
+     */
+    public void addInterpolatedTrack(SortedMap<Integer, BoundingBox> keyframes) {
+        if (keyframes == null || keyframes.isEmpty()) {
+            throw new IllegalArgumentException("keyframes must not be null or empty");
+        }
+        if (keyframes.firstKey() < 0) {
+            throw new IllegalArgumentException("keyframes must not contain a frame less than 0");
+        }
+        if (keyframes.containsValue(null)) {
+            throw new IllegalArgumentException("keyframes must not contain null elements");
+        }
+
+        int[] frames = keyframes.keySet().stream().mapToInt(Integer::intValue).toArray();
+        BoundingBox[] boxes = keyframes.values().toArray(BoundingBox[]::new);
+        addTrack(new KeyframeTrack(_tracks.size(), frames, boxes, keyframes.lastKey(), true));
+    }
+
+
+    /**
+     * Lazily equivalent to {@link BoundingBoxMap#putOnFrames}.
+     *
+     * @param firstFrame  The 0-based index on which the boundingBox will first be drawn. Must not be less than 0.
+     * @param lastFrame   The last 0-based index on which the boundingBox will be drawn. Must not be less than
+     *                    firstFrame.
+     * @param boundingBox The bounding box. Must not be null.
+     */
+    public void addSpan(int firstFrame, int lastFrame, BoundingBox boundingBox) {
+        if (firstFrame < 0) {
+            throw new IllegalArgumentException("firstFrame must not be less than 0");
+        }
+        if (lastFrame < firstFrame) {
+            throw new IllegalArgumentException(String.format(
+                    "lastFrame must not be smaller than firstFrame (%s <= %s)", lastFrame, firstFrame));
+        }
+        if (boundingBox == null) {
+            throw new IllegalArgumentException("boundingBox must not be null");
+        }
+        addTrack(new KeyframeTrack(_tracks.size(), new int[] { firstFrame }, new BoundingBox[] { boundingBox },
+                                   lastFrame, false));
+    }
+
+
+    private void addTrack(KeyframeTrack track) {
+        _tracks.add(track);
+        resetCurrentFrame();
+    }
+
+
+    @Override
+    public List<BoundingBox> put(Integer key, List<BoundingBox> value) {
+        resetCurrentFrame();
+        return super.put(key, value);
+    }
+
+    @Override
+    public void putOnFrame(Integer frame, BoundingBox boundingBox) {
+        super.putOnFrame(frame, boundingBox);
+        resetCurrentFrame();
+    }
+
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+
+    @Override
+    public List<BoundingBox> get(Object key) {
+        if (!(key instanceof Integer)) {
+            return null;
+        }
+        int frame = (Integer) key;
+        if (frame != _currentFrame) {
+            _currentFrameBoxes = createBoxes(frame);
+            _currentFrame = frame;
+        }
+        return _currentFrameBoxes;
+    }
+
+
+    private List<BoundingBox> createBoxes(int frame) {
+        if (frame < _currentFrame) {
+            _tracksByFirstFrame = new ArrayList<>(_tracks);
+            _tracksByFirstFrame.sort(Comparator.comparingInt(KeyframeTrack::getFirstFrame));
+            _nextTrackIdx = 0;
+            _activeTracks.clear();
+        }
+
+        while (_nextTrackIdx < _tracksByFirstFrame.size()
+                && _tracksByFirstFrame.get(_nextTrackIdx).getFirstFrame() <= frame) {
+            KeyframeTrack track = _tracksByFirstFrame.get(_nextTrackIdx);
+            _activeTracks.put(track.getIndex(), track);
+            _nextTrackIdx++;
+        }
+        _activeTracks.values().removeIf(t -> t.getLastFrame() < frame);
+
+        List<BoundingBox> storedBoxes = super.get(frame);
+        if (_activeTracks.isEmpty()) {
+            return storedBoxes;
+        }
+
+        List<BoundingBox> boxes = storedBoxes == null
+                ? new ArrayList<>(_activeTracks.size())
+                : new ArrayList<>(storedBoxes);
+        // Tracks are iterated in the order they were added so that overlapping boxes are drawn in a
+        // consistent order.
+        for (KeyframeTrack track : _activeTracks.values()) {
+            boxes.add(track.getBox(frame));
+        }
+        return boxes;
+    }
+
+
+    private void resetCurrentFrame() {
+        _currentFrame = Integer.MAX_VALUE;
+        _currentFrameBoxes = null;
+    }
+
+
+    private static class KeyframeTrack {
+        private final int _index;
+
+        private final int[] _frames;
+
+        private final BoundingBox[] _boxes;
+
+        private final int _lastFrame;
+
+        private final boolean _interpolate;
+
+        public KeyframeTrack(int index, int[] frames, BoundingBox[] boxes, int lastFrame, boolean interpolate) {
+            _index = index;
+            _frames = frames;
+            _boxes = boxes;
+            _lastFrame = lastFrame;
+            _interpolate = interpolate;
+        }
+
+        public int getIndex() {
+            return _index;
+        }
+
+        public int getFirstFrame() {
+            return _frames[0];
+        }
+
+        public int getLastFrame() {
+            return _lastFrame;
+        }
+
+        public BoundingBox getBox(int frame) {
+            int keyframeIdx = Arrays.binarySearch(_frames, frame);
+            if (keyframeIdx >= 0) {
+                return _boxes[keyframeIdx];
+            }
+
+            int prevKeyframeIdx = -keyframeIdx - 2;
+            if (!_interpolate) {
+                return _boxes[prevKeyframeIdx];
+            }
+            int prevFrame = _frames[prevKeyframeIdx];
+            return interpolate(_boxes[prevKeyframeIdx], _boxes[prevKeyframeIdx + 1],
+                               _frames[prevKeyframeIdx + 1] - prevFrame, frame - prevFrame);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+package org.mitre.mpf.videooverlay;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class TestKeyframeBoundingBoxMap {
+
+    private static BoundingBox createBox(int x, int y, int width, int height, String label) {
+        return new BoundingBox(x, y, width, height, 0, false, 0xFF, 0, 0, BoundingBoxSource.DETECTION_ALGORITHM,
+                               false, false, Optional.of(label));
+    }
+
+
+    @Test
+    public void interpolatedTrackMatchesAnimation() {
+        BoundingBox box1 = createBox(0, 0, 10, 10, "1");
+        BoundingBox box2 = createBox(30, 60, 40, 10, "2");
+        BoundingBox box3 = createBox(31, 61, 41, 11, "3");
+        BoundingBox box4 = createBox(5, 5, 5, 5, "4");
+
+        // Expected boxes are created the same way that the workflow manager used to create them.
+        BoundingBoxMap expected = new BoundingBoxMap();
+        expected.animate(box1, box2, 2, 7);
+        expected.putOnFrame(9, box2);
+        expected.animate(box3, box4, 10, 3);
+        expected.putOnFrame(13, box4);
+
+        KeyframeBoundingBoxMap actual = new KeyframeBoundingBoxMap();
+        actual.addInterpolatedTrack(new TreeMap<>(Map.of(2, box1, 9, box2, 10, box3, 13, box4)));
+
+        assertSameFrames(expected, actual, 20);
+    }
+
+
+    @Test
+    public void spanMatchesPutOnFrames() {
+        BoundingBox box = createBox(1, 2, 3, 4, "span");
+
+        BoundingBoxMap expected = new BoundingBoxMap();
+        expected.putOnFrames(3, 8, box);
+
+        KeyframeBoundingBoxMap actual = new KeyframeBoundingBoxMap();
+        actual.addSpan(3, 8, box);
+
+        assertSameFrames(expected, actual, 10);
+    }
+
+
+    @Test
+    public void combinesOverlappingTracksInInsertionOrder() {
+        BoundingBox stored = createBox(0, 0, 1, 1, "stored");
+        BoundingBox late1 = createBox(10, 10, 10, 10, "late1");
+        BoundingBox late2 = createBox(20, 20, 10, 10, "late2");
+        BoundingBox early = createBox(50, 50, 50, 50, "early");
+
+        BoundingBoxMap expected = new BoundingBoxMap();
+        expected.putOnFrame(4, stored);
+        expected.animate(late1, late2, 3, 4);
+        expected.putOnFrame(7, late2);
+        expected.putOnFrames(0, 5, early);
+
+        KeyframeBoundingBoxMap actual = new KeyframeBoundingBoxMap();
+        actual.putOnFrame(4, stored);
+        actual.addInterpolatedTrack(new TreeMap<>(Map.of(3, late1, 7, late2)));
+        actual.addSpan(0, 5, early);
+
+        assertSameFrames(expected, actual, 10);
+    }
+
+
+    private static void assertSameFrames(BoundingBoxMap expected, KeyframeBoundingBoxMap actual, int frameCount) {
+        // Frames are checked in order, and then in reverse order to make sure that random access still works.
+        for (int frame = 0; frame < frameCount; frame++) {
+            Assert.assertEquals("Mismatch on frame " + frame, expected.containsKey(frame), actual.containsKey(frame));
+            Assert.assertEquals("Mismatch on frame " + frame, expected.get(frame), actual.get(frame));
+        }
+        for (int frame = frameCount - 1; frame >= 0; frame--) {
+            Assert.assertEquals("Mismatch on frame " + frame, expected.get(frame), actual.get(frame));
+        }
+    }
+}
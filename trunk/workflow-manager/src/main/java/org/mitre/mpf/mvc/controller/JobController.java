@@ -35,9 +35,12 @@ import org.mitre.mpf.rest.api.*;
 import org.mitre.mpf.wfm.WfmProcessingException;
 import org.mitre.mpf.wfm.businessrules.JobRequestService;
 import org.mitre.mpf.wfm.data.access.JobRequestDao;
+import org.mitre.mpf.wfm.data.access.JobRequestSearch;
+import org.mitre.mpf.wfm.data.access.JobRequestSummary;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
 import org.mitre.mpf.wfm.data.entities.persistent.JobRequest;
 import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.event.JobProgress;
 import org.mitre.mpf.wfm.service.S3StorageBackend;
 import org.mitre.mpf.wfm.service.StorageException;
@@ -61,6 +64,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
@@ -180,8 +184,8 @@ public class JobController {
             = ImmutableMap.<String, String>builder()
             .put("0", "id")
             .put("1", "pipeline")
-            .put("2", "time_received")
-            .put("3", "time_completed")
+            .put("2", "timeReceived")
+            .put("3", "timeCompleted")
             .put("4", "status")
             .put("5", "priority")
             .build();
@@ -189,6 +193,8 @@ public class JobController {
 
     // INTERNAL
     // Parameters come from DataTables library: https://datatables.net/manual/server-side
+    // When the client requests the page after the one it last displayed, it also sends "afterJobId" so the
+    // page can be found using an index seek rather than by skipping "start" rows.
     @RequestMapping(value = {"/jobs-paged"}, method = RequestMethod.POST)
     @ResponseBody
     public JobPageListModel getJobStatusFiltered(
@@ -197,19 +203,23 @@ public class JobController {
             @RequestParam(value = "length", required = false) int length,
             @RequestParam(value = "search", required = false) String search,
             @RequestParam(value = "order[0][column]", defaultValue = "0") String orderByColumn,
-            @RequestParam(value = "order[0][dir]", defaultValue = "desc") String orderDirection) {
-        log.debug("Params draw:{} start:{},length:{},search:{}", draw, start, length, search);
-
-        String sortColumn = JOB_TABLE_COLUMN_NAMES.get(orderByColumn);
-        String sortOrderDirection = orderDirection.equals("desc") ? orderDirection : "asc";
+            @RequestParam(value = "order[0][dir]", defaultValue = "desc") String orderDirection,
+            @RequestParam(value = "afterJobId", required = false) Long afterJobId,
+            @RequestParam(value = "status", required = false) List<BatchJobStatusType> statuses,
+            @RequestParam(value = "pipeline", required = false) String pipeline,
+            @RequestParam(value = "receivedAfter", required = false) Instant receivedAfter,
+            @RequestParam(value = "receivedBefore", required = false) Instant receivedBefore) {
+        log.debug("Params draw:{} start:{},length:{},search:{},afterJobId:{}",
+                  draw, start, length, search, afterJobId);
+
+        String sortProperty = JOB_TABLE_COLUMN_NAMES.getOrDefault(orderByColumn, "id");
+        boolean descending = orderDirection.equals("desc");
+        var jobSearch = new JobRequestSearch(search, statuses, pipeline, receivedAfter, receivedBefore);
 
         //handle paging
-        List<SingleJobInfo> jobInfoModels = jobRequestDao
-                .findByPage(length, start, search, sortColumn, sortOrderDirection)
-                .stream()
-                .map(this::convertJob)
-                .collect(toList());
-        int recordsTotal = (int) jobRequestDao.countAll();
+        List<JobRequestSummary> jobSummaries = jobRequestDao.findSummaryPage(
+                jobSearch, sortProperty, descending, start, length, afterJobId);
+        int recordsTotal = (int) jobRequestDao.countFiltered(JobRequestSearch.ALL);
 
         JobPageListModel model = new JobPageListModel();
         model.setDraw(draw);
@@ -217,13 +227,12 @@ public class JobController {
         model.setRecordsTotal(recordsTotal);
         // Total records, after filtering (i.e. the total number of records after filtering has been applied -
         // not just the number of records being returned for this page of data).
-        model.setRecordsFiltered( search.equals("") ? recordsTotal :
-                                          (int)jobRequestDao.countFiltered(search));
+        model.setRecordsFiltered(jobSearch.isUnfiltered() ? recordsTotal :
+                                         (int) jobRequestDao.countFiltered(jobSearch));
 
         //convert for output
-        for (int i = 0; i < jobInfoModels.size(); i++) {
-            SingleJobInfo job = jobInfoModels.get(i);
-            JobPageModel job_model = new JobPageModel(job);
+        for (JobRequestSummary jobSummary : jobSummaries) {
+            JobPageModel job_model = new JobPageModel(convertJobSummary(jobSummary));
             if(job_model.getOutputObjectPath() != null) {
                 job_model.setOutputFileExists(
                         IoUtils.toLocalPath(job_model.getOutputObjectPath())
@@ -470,6 +479,18 @@ public class JobController {
     }
 
 
+    // The jobs table does not display media URIs, so they are omitted to avoid loading and deserializing the
+    // whole job for every row.
+    private SingleJobInfo convertJobSummary(JobRequestSummary job) {
+        float jobProgressVal = jobProgress.getJobProgress(job.getId())
+                .orElseGet(() -> job.getStatus().isTerminal() ? 100 : 0.0f);
+        return new SingleJobInfo(
+                job.getId(), job.getPipeline(), job.getPriority(), job.getStatus().toString(), jobProgressVal,
+                job.getTimeReceived(), job.getTimeCompleted(), job.getOutputObjectPath(),
+                job.getStatus().isTerminal(), List.of());
+    }
+
+
     private JobCreationResponse resubmitJobInternal(long jobId, Integer jobPriorityParam) {
         log.debug("Attempting to resubmit job with id: {}.", jobId);
         //if there is a priority param passed then use it, if not, use the default
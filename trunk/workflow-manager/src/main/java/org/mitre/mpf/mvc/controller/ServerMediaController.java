@@ -183,6 +183,26 @@ public class ServerMediaController {
     }
 
 
+    // Returns one page of the files directly in fullPath whose names start with prefix, ignoring case.
+    // offset is the number of matching files to skip and limit is the maximum number of files to return.
+    @RequestMapping(value = { "/server/get-files-page" }, method = RequestMethod.GET)
+    @ResponseBody
+    public ServerMediaFilteredListing getFilesPage(HttpServletRequest request, @RequestParam(value="fullPath", required=true) String fullPath,
+                                                   @RequestParam(required = false, defaultValue = "true") boolean useCache,
+                                                   @RequestParam(value="prefix", required=false, defaultValue = "") String prefix,
+                                                   @RequestParam(value="offset", required=false, defaultValue = "0") int offset,
+                                                   @RequestParam(value="limit", required=false, defaultValue = "100") int limit,
+                                                   @RequestParam(value="draw", required=false, defaultValue = "0") int draw) {
+        log.debug("Params fullPath:{} prefix:{} offset:{} limit:{} draw:{} ", fullPath, prefix, offset, limit, draw);
+
+        File dir = new File(fullPath);
+        if(!dir.isDirectory() && fullPath.startsWith(propertiesUtil.getServerMediaTreeRoot())) return null; // security check
+
+        return serverMediaService.getFilesPage(fullPath, prefix, Math.max(0, offset), Math.max(0, limit), draw,
+                                               request.getServletContext(), useCache);
+    }
+
+
     @RequestMapping(value = "/server/node-image", method = RequestMethod.GET)
     @ResponseBody
     public ResponseEntity<?> serve(@RequestParam("nodeFullPath") String nodeFullPath)
@@ -56,7 +56,8 @@ public enum AtmosphereChannel {
 	
 	/** SSPC_JOBSTATUS: job related 
 	 * 	Event(s):
-	 * 		OnStatusChanged - when the status of the job changed */
+	 * 		OnStatusChanged - when the status of the job changed
+	 * 		OnProgressChanged - periodic batch of progress updates for one or more jobs */
 	SSPC_JOBSTATUS,
 
 	/** SSPC_NODE: node related events
@@ -69,6 +69,9 @@ public class DirectoryTreeNode {
     }
 
     public void addNode(DirectoryTreeNode node) {
+        if (this.nodes == null) {
+            this.nodes = new ArrayList<>();
+        }
         this.nodes.add(node);
     }
 
@@ -0,0 +1,44 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.mvc.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Carries the most recent progress of every job whose progress changed since the previous message, so that
+ * progress for many jobs can be sent to clients in a single frame. Each element of "jobs" has the same content
+ * as a {@link JobStatusMessage}.
+ */
+public class JobProgressBatchMessage extends AtmosphereMessage {
+
+    public JobProgressBatchMessage(List<? extends Map<String, ?>> jobs) {
+        super(AtmosphereChannel.SSPC_JOBSTATUS, "OnProgressChanged", Map.of("jobs", jobs));
+    }
+}
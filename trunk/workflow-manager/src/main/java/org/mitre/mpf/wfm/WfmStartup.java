@@ -32,6 +32,8 @@ import org.mitre.mpf.wfm.businessrules.StreamingJobRequestService;
 import org.mitre.mpf.wfm.data.access.JobRequestDao;
 import org.mitre.mpf.wfm.data.access.StreamingJobRequestDao;
 import org.mitre.mpf.wfm.data.entities.persistent.SystemMessage;
+import org.mitre.mpf.wfm.service.JobStatisticsService;
+import org.mitre.mpf.wfm.service.ServerMediaIndex;
 import org.mitre.mpf.wfm.service.ServerMediaService;
 import org.mitre.mpf.wfm.service.SystemMessageService;
 import org.mitre.mpf.wfm.service.component.StartupComponentRegistrationService;
@@ -55,6 +57,7 @@ import javax.management.remote.JMXConnector;
 import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 import javax.servlet.ServletContext;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -70,6 +73,9 @@ public class WfmStartup implements ApplicationListener<ApplicationEvent> {
     @Autowired
     private Optional<StreamingJobRequestDao> streamingJobRequestDao;
 
+    @Autowired
+    private JobStatisticsService jobStatisticsService;
+
     @Autowired
     private Optional<StreamingJobRequestService> streamingJobRequestService;
 
@@ -87,6 +93,9 @@ public class WfmStartup implements ApplicationListener<ApplicationEvent> {
     @Autowired
     private ServerMediaService serverMediaService;
 
+    @Autowired
+    private ServerMediaIndex serverMediaIndex;
+
     // used to prevent the initialization behaviors from being executed more than once
     private static boolean applicationRefreshed = false;
     public boolean isApplicationRefreshed() { return  applicationRefreshed; }
@@ -103,13 +112,15 @@ public class WfmStartup implements ApplicationListener<ApplicationEvent> {
             ContextRefreshedEvent contextRefreshedEvent = (ContextRefreshedEvent) event;
             ApplicationContext appContext = contextRefreshedEvent.getApplicationContext();
 
-            ThreadUtil.start();
+            ThreadUtil.start(propertiesUtil);
 
             if (!applicationRefreshed) {
                 log.info("onApplicationEvent: " + appContext.getDisplayName() + " " + appContext.getId()); // DEBUG
 
                 log.info("Marking any remaining running batch jobs as CANCELLED_BY_SHUTDOWN.");
                 jobRequestDao.cancelJobsInNonTerminalState();
+                jobRequestDao.createSearchIndexes();
+                jobStatisticsService.initialize();
 
                 streamingJobRequestDao.ifPresent(StreamingJobRequestDao::cancelJobsInNonTerminalState);
 
@@ -135,6 +146,15 @@ public class WfmStartup implements ApplicationListener<ApplicationEvent> {
     }
 
     private void startFileIndexing(ApplicationContext appContext)  {
+        if (propertiesUtil.isServerMediaIndexEnabled()) {
+            try {
+                serverMediaIndex.start(propertiesUtil.getServerMediaTreeRoot());
+                return;
+            }
+            catch (IOException e) {
+                log.error("Failed to start the server media index. Directory listings will be cached instead.", e);
+            }
+        }
         if (appContext instanceof WebApplicationContext) {
             WebApplicationContext webContext = (WebApplicationContext) appContext;
             ServletContext servletContext = webContext.getServletContext();
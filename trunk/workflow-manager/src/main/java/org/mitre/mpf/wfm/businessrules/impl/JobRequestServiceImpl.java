@@ -43,6 +43,7 @@ import org.mitre.mpf.wfm.data.access.MarkupResultDao;
 import org.mitre.mpf.wfm.data.entities.persistent.*;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.service.JobStatisticsService;
 import org.mitre.mpf.wfm.service.JobStatusBroadcaster;
 import org.mitre.mpf.wfm.service.S3StorageBackend;
 import org.mitre.mpf.wfm.service.StorageException;
@@ -83,6 +84,8 @@ public class JobRequestServiceImpl implements JobRequestService {
 
     private final JobStatusBroadcaster _jobStatusBroadcaster;
 
+    private final JobStatisticsService _jobStatisticsService;
+
     private final ProducerTemplate _jobRequestProducerTemplate;
 
     @Inject
@@ -96,6 +99,7 @@ public class JobRequestServiceImpl implements JobRequestService {
             JobRequestDao jobRequestDao,
             MarkupResultDao markupResultDao,
             JobStatusBroadcaster jobStatusBroadcaster,
+            JobStatisticsService jobStatisticsService,
             ProducerTemplate jobRequestProducerTemplate) {
         _pipelineService = pipelineService;
         _propertiesUtil = propertiesUtil;
@@ -106,6 +110,7 @@ public class JobRequestServiceImpl implements JobRequestService {
         _jobRequestDao = jobRequestDao;
         _markupResultDao = markupResultDao;
         _jobStatusBroadcaster = jobStatusBroadcaster;
+        _jobStatisticsService = jobStatisticsService;
         _jobRequestProducerTemplate = jobRequestProducerTemplate;
     }
 
@@ -233,6 +238,9 @@ public class JobRequestServiceImpl implements JobRequestService {
                 overriddenAlgoProps);
 
         try {
+            var previousStatistics = jobRequestEntity.getId() > 0
+                    ? JobStatisticsService.snapshot(jobRequestEntity)
+                    : null;
             jobRequestEntity.setId(jobId);
             jobRequestEntity.setPriority(priority);
             jobRequestEntity.setStatus(jobStatus);
@@ -245,6 +253,7 @@ public class JobRequestServiceImpl implements JobRequestService {
             jobRequestEntity.setJob(_jsonUtils.serialize(job));
 
             jobRequestEntity = _jobRequestDao.persist(jobRequestEntity);
+            _jobStatisticsService.update(previousStatistics, jobRequestEntity);
             _jobStatusBroadcaster.broadcast(jobRequestEntity.getId(), 0, jobStatus);
             return jobRequestEntity;
         }
@@ -371,9 +380,11 @@ public class JobRequestServiceImpl implements JobRequestService {
                 } catch (Exception exception) {
                     LOG.warn("[Job {}:*:*] Failed to remove the pending work elements in the message broker for this job. The job must complete the pending work elements before it will cancel the job.", jobId, exception);
                 }
+                var previousStatistics = JobStatisticsService.snapshot(jobRequest);
                 jobRequest.setStatus(BatchJobStatusType.CANCELLING);
                 jobRequest.setJob(_jsonUtils.serialize(_inProgressJobs.getJob(jobId)));
                 _jobRequestDao.persist(jobRequest);
+                _jobStatisticsService.update(previousStatistics, jobRequest);
             } else {
                 LOG.warn("[Job {}:*:*] The job is not in progress and cannot be cancelled at this time.", jobId);
             }
@@ -30,6 +30,7 @@ import org.apache.camel.Exchange;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.access.JobRequestDao;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.event.JobProgress;
 import org.mitre.mpf.wfm.service.JobStatusBroadcaster;
@@ -69,15 +70,47 @@ public class BroadcastEnabledStringCountBasedWfmAggregator extends StringCountBa
             long jobId = newExchange.getOut().getHeader(MpfHeaders.JOB_ID, Long.class);
 
             BatchJob job = inProgressBatchJobs.getJob(jobId);
-            int tasksCompleted = job.getCurrentTaskIndex();
-            int totalTasks = job.getPipelineElements().getTaskCount();
             float progressInCurrentTask = (float) aggregateCount / splitSize;
-            float jobProgress = (tasksCompleted + progressInCurrentTask) / totalTasks * 100;
+            Long taskMediaId = newExchange.getOut().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class);
+            float jobProgress;
+            if (taskMediaId == null) {
+                int tasksCompleted = job.getCurrentTaskIndex();
+                int totalTasks = job.getPipelineElements().getTaskCount();
+                jobProgress = (tasksCompleted + progressInCurrentTask) / totalTasks * 100;
+            }
+            else {
+                jobProgress = getPerMediaJobProgress(job, taskMediaId, progressInCurrentTask);
+            }
 
-            jobStatusBroadcaster.broadcast(jobId, jobProgress, job.getStatus());
             jobProgressStore.setJobProgress(jobId, jobProgress);
+            jobStatusBroadcaster.broadcastProgress(jobId, jobProgress, job.getStatus());
         } catch (Exception e) {
             log.error("Error getting necessary information to create a job progress update.");
         }
     }
+
+
+    /**
+     * When each piece of media moves through the pipeline on its own, the split being aggregated only
+     * describes one piece of media's progress in its own current task. Combining that with the job's current
+     * task index, which is the slowest media's task, would make progress jump backwards whenever responses
+     * for media on different tasks are interleaved. Instead, the job's progress is the average progress of
+     * all of its media.
+     */
+    private float getPerMediaJobProgress(BatchJob job, long mediaId, float progressInCurrentTask) {
+        int totalTasks = job.getPipelineElements().getTaskCount();
+        Media media = job.getMedia(mediaId);
+        jobProgressStore.setMediaProgress(job.getId(), mediaId,
+                                          media.getCurrentTaskIndex() + progressInCurrentTask);
+
+        float tasksCompleted = 0;
+        for (Media jobMedia : job.getMedia()) {
+            // The stored progress is out of date once the media has moved on to a later task.
+            float mediaTasksCompleted = Math.max(
+                    jobMedia.getCurrentTaskIndex(),
+                    jobProgressStore.getMediaProgress(job.getId(), jobMedia.getId()).orElse(0f));
+            tasksCompleted += Math.min(mediaTasksCompleted, totalTasks);
+        }
+        return tasksCompleted / (job.getMedia().size() * totalTasks) * 100;
+    }
 }
@@ -65,6 +65,11 @@ public class CountBasedWfmAggregator<T> extends DefaultWfmAggregator<T> {
 		newExchange.getOut().getHeaders().put(MpfHeaders.JMS_PRIORITY, newExchange.getIn().getHeader(MpfHeaders.JMS_PRIORITY));
 		newExchange.getOut().getHeaders().put(MpfHeaders.CORRELATION_ID, newExchange.getIn().getHeader(MpfHeaders.CORRELATION_ID));
 		newExchange.getOut().getHeaders().put(MpfHeaders.SPLIT_SIZE, splitSize);
+		// Jobs that use per-media task progression need to know which media the aggregated messages are for.
+		Object taskMediaId = newExchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID);
+		if (taskMediaId != null) {
+			newExchange.getOut().getHeaders().put(MpfHeaders.TASK_MEDIA_ID, taskMediaId);
+		}
 
 		// Copy the body of the incoming message into the outgoing message.
 		newExchange.getOut().setBody(newExchange.getIn().getBody());
@@ -28,18 +28,22 @@ package org.mitre.mpf.wfm.camel;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultMessage;
 import org.mitre.mpf.rest.api.pipelines.ActionType;
 import org.mitre.mpf.rest.api.pipelines.Task;
 import org.mitre.mpf.wfm.camel.operations.detection.DetectionTaskSplitter;
 import org.mitre.mpf.wfm.camel.operations.markup.MarkupSplitter;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -68,14 +72,48 @@ public class DefaultTaskSplitter extends WfmSplitter {
     @Override
     public List<Message> wfmSplit(Exchange exchange) {
         BatchJob job = inProgressJobs.getJob(exchange.getIn().getHeader(MpfHeaders.JOB_ID, Long.class));
-        Task task = job.getPipelineElements().getTask(job.getCurrentTaskIndex());
+        if (!job.getSystemPropertiesSnapshot().isPerMediaTaskProgression()) {
+            return splitTask(job, job.getCurrentTaskIndex(), job.getMedia());
+        }
+
+        // Each piece of media moves through the pipeline on its own. The first split for a job includes all of
+        // the job's media. After that, each split is for the single piece of media that just completed a task.
+        Long taskMediaId = exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class);
+        Collection<? extends Media> mediaToSplit;
+        if (taskMediaId == null) {
+            mediaToSplit = job.getMedia();
+        }
+        else {
+            mediaToSplit = List.of(job.getMedia(taskMediaId));
+        }
+
+        var messages = new ArrayList<Message>();
+        for (Media media : mediaToSplit) {
+            List<Message> mediaMessages = splitTask(job, media.getCurrentTaskIndex(), List.of(media));
+            if (mediaMessages.isEmpty()) {
+                // Unless a dummy message is produced, the media will never move on to its next task.
+                Message emptySplitMessage = new DefaultMessage();
+                emptySplitMessage.setHeader(MpfHeaders.EMPTY_SPLIT, true);
+                mediaMessages = List.of(emptySplitMessage);
+            }
+            for (Message message : mediaMessages) {
+                message.setHeader(MpfHeaders.TASK_MEDIA_ID, media.getId());
+            }
+            messages.addAll(mediaMessages);
+        }
+        return messages;
+    }
+
+
+    private List<Message> splitTask(BatchJob job, int taskIndex, Collection<? extends Media> media) {
+        Task task = job.getPipelineElements().getTask(taskIndex);
         ActionType actionType = job.getPipelineElements()
-                .getAlgorithm(job.getCurrentTaskIndex(), 0)
+                .getAlgorithm(taskIndex, 0)
                 .getActionType();
         log.info("[Job {}|{}|*] Task {}/{} - Operation: {} - ActionType: {}.",
                  job.getId(),
-                 job.getCurrentTaskIndex(),
-                 job.getCurrentTaskIndex() + 1,
+                 taskIndex,
+                 taskIndex + 1,
                  job.getPipelineElements().getTaskCount(),
                  actionType,
                  actionType.name());
@@ -84,19 +122,19 @@ public class DefaultTaskSplitter extends WfmSplitter {
             // Check if this job has been cancelled prior to performing the split.
             // If it has been, do not produce any work units.
             log.warn("[Job {}|{}|*] This job has been cancelled. No work will be performed in this task.",
-                     job.getId(), job.getCurrentTaskIndex());
+                     job.getId(), taskIndex);
             return List.of();
         }
 
         switch (actionType) {
             case DETECTION:
-                return detectionSplitter.performSplit(job, task);
+                return detectionSplitter.performSplit(job, task, taskIndex, media);
             case MARKUP:
-                return markupSplitter.performSplit(job, task);
+                return markupSplitter.performSplit(job, task, taskIndex, media);
             default:
                 log.warn("[Job {}|{}|*] Task {} calls an unsupported operation '{}'. " +
                                  "No work will be performed in this task.",
-                         job.getId(), job.getCurrentTaskIndex(), job.getCurrentTaskIndex(),
+                         job.getId(), taskIndex, taskIndex,
                          task.getName());
                 return List.of();
         }
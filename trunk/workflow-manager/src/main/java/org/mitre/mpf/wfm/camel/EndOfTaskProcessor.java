@@ -30,6 +30,7 @@ import org.apache.camel.Exchange;
 import org.mitre.mpf.wfm.WfmProcessingException;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.event.JobProgress;
@@ -58,17 +59,23 @@ public class EndOfTaskProcessor extends WfmProcessor {
     @Override
     public void wfmProcess(Exchange exchange) throws WfmProcessingException {
         long jobId = exchange.getIn().getHeader(MpfHeaders.JOB_ID, Long.class);
-        inProgressBatchJobs.incrementTask(jobId);
         BatchJob job = inProgressBatchJobs.getJob(jobId);
 
-        log.info("[Job {}|{}|*] Task Complete! Progress is now {}/{}.",
-                 jobId,
-                 job.getCurrentTaskIndex() - 1,
-                 job.getCurrentTaskIndex(),
-                 job.getPipelineElements().getTaskCount());
-
+        boolean jobComplete;
+        if (job.getSystemPropertiesSnapshot().isPerMediaTaskProgression()) {
+            jobComplete = completeMediaTask(exchange, job);
+        }
+        else {
+            inProgressBatchJobs.incrementTask(jobId);
+            log.info("[Job {}|{}|*] Task Complete! Progress is now {}/{}.",
+                     jobId,
+                     job.getCurrentTaskIndex() - 1,
+                     job.getCurrentTaskIndex(),
+                     job.getPipelineElements().getTaskCount());
+            jobComplete = job.getCurrentTaskIndex() >= job.getPipelineElements().getTaskCount();
+        }
 
-        if(job.getCurrentTaskIndex() >= job.getPipelineElements().getTaskCount()) {
+        if(jobComplete) {
             //notify of completion - use
             if(!job.isOutputEnabled()) {
                 jobStatusBroadcaster.broadcast(
@@ -87,4 +94,51 @@ public class EndOfTaskProcessor extends WfmProcessor {
 
         exchange.getOut().setHeader(MpfHeaders.JMS_PRIORITY, job.getPriority());
     }
+
+
+    /**
+     * Moves the media that just completed a task on to its next task. When the media still has tasks left, the
+     * TASK_MEDIA_ID header is kept so that the job router only creates work for that media. When the media has
+     * reached the end of the pipeline, but other media are still being processed, routing is stopped.
+     *
+     * @return true when all of the job's media have reached the end of the pipeline
+     */
+    private boolean completeMediaTask(Exchange exchange, BatchJob job) {
+        Long mediaId = exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class);
+        if (mediaId == null) {
+            // The split for the whole job failed, so none of the media can continue.
+            log.warn("[Job {}|*|*] Task did not complete for a specific piece of media. " +
+                             "Skipping the remaining tasks for all media.", job.getId());
+            boolean jobComplete = false;
+            for (Media media : job.getMedia()) {
+                jobComplete |= inProgressBatchJobs.incrementTask(job.getId(), media.getId(), true);
+            }
+            if (!jobComplete) {
+                exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+            }
+            return jobComplete;
+        }
+
+        Media media = job.getMedia(mediaId);
+        // There is no reason to continue processing media that can no longer produce results.
+        boolean skipRemainingTasks = job.isCancelled() || media.isFailed();
+        boolean jobComplete = inProgressBatchJobs.incrementTask(job.getId(), mediaId, skipRemainingTasks);
+
+        log.info("[Job {}|{}|*] Task Complete for Media {}! Progress is now {}/{}.",
+                 job.getId(),
+                 media.getCurrentTaskIndex() - 1,
+                 mediaId,
+                 media.getCurrentTaskIndex(),
+                 job.getPipelineElements().getTaskCount());
+
+        if (media.getCurrentTaskIndex() < job.getPipelineElements().getTaskCount()) {
+            return false;
+        }
+
+        exchange.getOut().removeHeader(MpfHeaders.TASK_MEDIA_ID);
+        if (!jobComplete) {
+            exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+        }
+        return jobComplete;
+    }
 }
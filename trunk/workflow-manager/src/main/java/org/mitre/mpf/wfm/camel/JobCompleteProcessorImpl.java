@@ -42,6 +42,8 @@ import org.apache.http.entity.StringEntity;
 import org.mitre.mpf.interop.*;
 import org.mitre.mpf.rest.api.pipelines.*;
 import org.mitre.mpf.wfm.WfmProcessingException;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionRequestDispatcher;
+import org.mitre.mpf.wfm.camel.operations.markup.MarkupSegmentCombiner;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.access.JobRequestDao;
 import org.mitre.mpf.wfm.data.access.MarkupResultDao;
@@ -54,6 +56,7 @@ import org.mitre.mpf.wfm.event.JobCompleteNotification;
 import org.mitre.mpf.wfm.event.JobProgress;
 import org.mitre.mpf.wfm.event.NotificationConsumer;
 import org.mitre.mpf.wfm.service.CensorPropertiesService;
+import org.mitre.mpf.wfm.service.JobStatisticsService;
 import org.mitre.mpf.wfm.service.JobStatusBroadcaster;
 import org.mitre.mpf.wfm.service.StorageService;
 import org.mitre.mpf.wfm.util.*;
@@ -71,8 +74,10 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
@@ -93,6 +98,12 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
     @Autowired
     private PropertiesUtil propertiesUtil;
 
+    @Autowired
+    private DetectionRequestDispatcher detectionRequestDispatcher;
+
+    @Autowired
+    private MarkupSegmentCombiner markupSegmentCombiner;
+
     @Autowired
     private JsonUtils jsonUtils;
 
@@ -120,6 +131,9 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
     @Autowired
     private JmsUtils jmsUtils;
 
+    @Autowired
+    private JobStatisticsService jobStatisticsService;
+
 
     @Override
     public void wfmProcess(Exchange exchange) throws WfmProcessingException {
@@ -134,6 +148,7 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
                     " Please review the logs for additional information.", jobId);
         } else {
             JobRequest jobRequest = jobRequestDao.findById(jobId);
+            var previousStatistics = JobStatisticsService.snapshot(jobRequest);
             jobRequest.setTimeCompleted(Instant.now());
 
             BatchJob job = inProgressBatchJobs.getJob(jobId);
@@ -157,11 +172,16 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
             jobRequest.setStatus(jobStatus.getValue());
             jobRequest.setJob(jsonUtils.serialize(job));
             jobRequestDao.persist(jobRequest);
+            jobStatisticsService.update(previousStatistics, jobRequest);
 
             IoUtils.deleteEmptyDirectoriesRecursively(propertiesUtil.getJobMarkupDirectory(jobId).toPath());
             IoUtils.deleteEmptyDirectoriesRecursively(propertiesUtil.getJobArtifactsDirectory(jobId).toPath());
             IoUtils.deleteEmptyDirectoriesRecursively(propertiesUtil.getJobOutputObjectsDirectory(jobId).toPath());
 
+            detectionRequestDispatcher.jobCompleted(jobId);
+            // Cancelled jobs also complete here, so this discards segments that will never be combined.
+            markupSegmentCombiner.jobCompleted(jobId);
+
             try {
                 jmsUtils.destroyCancellationRoutes(jobId);
             }
@@ -236,9 +256,11 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
         }
 
         if (jobStatus.getValue() != initialStatus) {
+            var previousStatistics = JobStatisticsService.snapshot(jobRequest);
             jobRequest.setTimeCompleted(Instant.now());
             jobRequest.setStatus(jobStatus.getValue());
             jobRequestDao.persist(jobRequest);
+            jobStatisticsService.update(previousStatistics, jobRequest);
         }
     }
 
@@ -402,10 +424,13 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
                         }
                     }
 
-                    Collection<Track> tracks = inProgressBatchJobs.getTracks(jobId, media.getId(),
-                                                                             taskIndex, actionIndex);
+                    // Only the track types are kept here. The tracks themselves are read again by the supplier
+                    // passed to StreamedActionOutputObject while the output object is being serialized. Reusing
+                    // this read would keep every action's tracks in memory until the whole output object was
+                    // written, which is what streaming the output object avoids.
+                    Set<String> trackTypes = getTrackTypes(jobId, media.getId(), taskIndex, actionIndex);
 
-                    if (tracks.isEmpty()) {
+                    if (trackTypes.isEmpty()) {
                         // Always include detection actions in the output object, even if they do not generate any results.
                         addMissingTrackInfo(JsonActionOutputObject.NO_TRACKS_TYPE, stateKey,
                                 action.getAlgorithm(), mediaOutputObject);
@@ -420,44 +445,28 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
                                 action.getAlgorithm(), mediaOutputObject);
                     }
                     else {
-                        for (Track track : tracks) {
-                            // tasksToMerge will never contain task 0, so the initial null values of
-                            // prevUnmergedTaskType and prevUnmergedAlgorithm are never used.
-                            String type = tasksToMerge.contains(taskIndex) ? prevUnmergedTaskType :
-                                    track.getType();
-                            String algo = tasksToMerge.contains(taskIndex) ? prevUnmergedAlgorithm :
-                                    action.getAlgorithm();
-
-                            JsonTrackOutputObject jsonTrackOutputObject
-                                    = createTrackOutputObject(track, stateKey, type, action, media, job);
-
-                            if (!mediaOutputObject.getDetectionTypes().containsKey(type)) {
-                                mediaOutputObject.getDetectionTypes().put(type, new TreeSet<>());
-                            }
-
-                            SortedSet<JsonActionOutputObject> actionSet =
-                                    mediaOutputObject.getDetectionTypes().get(type);
-                            boolean stateFound = false;
-                            for (JsonActionOutputObject jsonAction : actionSet) {
-                                if (stateKey.equals(jsonAction.getSource())) {
-                                    stateFound = true;
-                                    jsonAction.getTracks().add(jsonTrackOutputObject);
-                                    break;
-                                }
-                            }
-                            if (!stateFound) {
-                                JsonActionOutputObject jsonAction = new JsonActionOutputObject(stateKey, algo);
-                                actionSet.add(jsonAction);
-                                jsonAction.getTracks().add(jsonTrackOutputObject);
-                            }
+                        // tasksToMerge will never contain task 0, so the initial null values of
+                        // prevUnmergedTaskType and prevUnmergedAlgorithm are never used.
+                        boolean isMergedTask = tasksToMerge.contains(taskIndex);
+                        String algo = isMergedTask ? prevUnmergedAlgorithm : action.getAlgorithm();
+                        Set<String> types = isMergedTask
+                                ? Collections.singleton(prevUnmergedTaskType)
+                                : trackTypes;
+                        for (String type : types) {
+                            mediaOutputObject.getDetectionTypes()
+                                    .computeIfAbsent(type, k -> new TreeSet<>())
+                                    .add(new StreamedActionOutputObject(
+                                            stateKey, algo,
+                                            createTrackSupplier(job, media, taskIndex, actionIndex, action,
+                                                                stateKey, type, isMergedTask)));
                         }
                     }
 
                     if (!tasksToMerge.contains(taskIndex)) {
                         // NOTE: If and when we support parallel actions in tasks other then the final one in a
                         // pipeline, this code will need to be updated.
-                        prevUnmergedTaskType = tracks.isEmpty() ? JsonActionOutputObject.NO_TRACKS_TYPE :
-                                tracks.stream().findFirst().get().getType(); // all tracks from same task have same type
+                        prevUnmergedTaskType = trackTypes.isEmpty() ? JsonActionOutputObject.NO_TRACKS_TYPE :
+                                trackTypes.iterator().next(); // all tracks from same task have same type
                         prevUnmergedAlgorithm = action.getAlgorithm();
                     }
 
@@ -476,6 +485,31 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
     }
 
 
+    /**
+     * Creates a supplier that loads the tracks for a single action from the transient store and converts them
+     * to their output form. The tracks are only loaded while the output object is being serialized, so at most
+     * one action's tracks are in memory at a time, regardless of how many tracks the job produced.
+     */
+    private Supplier<SortedSet<JsonTrackOutputObject>> createTrackSupplier(
+            BatchJob job, Media media, int taskIndex, int actionIndex, Action action, String stateKey,
+            String type, boolean isMergedTask) {
+        return () -> inProgressBatchJobs.getTracks(job.getId(), media.getId(), taskIndex, actionIndex)
+                .stream()
+                .filter(t -> isMergedTask || Objects.equals(type, t.getType()))
+                .map(t -> createTrackOutputObject(t, stateKey, type, action, media, job))
+                .collect(toCollection(TreeSet::new));
+    }
+
+
+    // Ordered by the first track of each type, so the first type is the type of the first track.
+    private Set<String> getTrackTypes(long jobId, long mediaId, int taskIndex, int actionIndex) {
+        return inProgressBatchJobs.getTracks(jobId, mediaId, taskIndex, actionIndex)
+                .stream()
+                .map(Track::getType)
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+
     private static List<DetectionProcessingError> getDetectionProcessingErrors(
         BatchJob job, long mediaId, int taskIndex, int actionIndex) {
         return job.getDetectionProcessingErrors()
@@ -492,9 +526,8 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
                                                           BatchJob job) {
         JsonDetectionOutputObject exemplar = createDetectionOutputObject(track.getExemplar());
 
-        String artifactsAndExemplarsOnlyProp = aggregateJobPropertiesUtil.getValue(
-            MpfConstants.OUTPUT_ARTIFACTS_AND_EXEMPLARS_ONLY_PROPERTY, job, media, action);
-        boolean artifactsAndExemplarsOnly = Boolean.parseBoolean(artifactsAndExemplarsOnlyProp);
+        boolean artifactsAndExemplarsOnly = aggregateJobPropertiesUtil.getPropertyView(job, media, action)
+                .getBoolean(MpfConstants.OUTPUT_ARTIFACTS_AND_EXEMPLARS_ONLY_PROPERTY);
 
         List<JsonDetectionOutputObject> detections;
         if (artifactsAndExemplarsOnly) {
@@ -622,6 +655,28 @@ public class JobCompleteProcessorImpl extends WfmProcessor implements JobComplet
     }
 
 
+    /**
+     * An action output object whose tracks are retrieved on demand. The output object is serialized by the
+     * storage backends directly to a file or upload stream, so each action's tracks are created right before
+     * they are written and become garbage right after.
+     */
+    static class StreamedActionOutputObject extends JsonActionOutputObject {
+
+        private final Supplier<SortedSet<JsonTrackOutputObject>> _trackSupplier;
+
+        public StreamedActionOutputObject(String source, String algorithm,
+                                          Supplier<SortedSet<JsonTrackOutputObject>> trackSupplier) {
+            super(source, algorithm);
+            _trackSupplier = trackSupplier;
+        }
+
+        @Override
+        public SortedSet<JsonTrackOutputObject> getTracks() {
+            return _trackSupplier.get();
+        }
+    }
+
+
     @Override
     public void subscribe(NotificationConsumer<JobCompleteNotification> consumer) {
         log.info("Subscribing completion consumer {}.", consumer.getId());
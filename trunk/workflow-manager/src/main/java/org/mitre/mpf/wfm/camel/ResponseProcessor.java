@@ -43,6 +43,12 @@ public abstract class ResponseProcessor<T extends MessageLite> extends WfmProces
 	@Autowired
 	private InProgressBatchJobsService inProgressJobs;
 
+	/**
+	 * May be returned from {@link #processResponse} when the response will be sent back through the route once
+	 * asynchronous work completes. The current exchange is then not forwarded to the rest of the route.
+	 */
+	protected static final Object DEFERRED = new Object();
+
 	private final Class<T> clazz;
 
 
@@ -77,7 +83,10 @@ public abstract class ResponseProcessor<T extends MessageLite> extends WfmProces
 			var job = inProgressJobs.getJob(jobId);
 			exchange.getOut().setHeader(MpfHeaders.JMS_PRIORITY, job.getPriority());
 			Object newBody = processResponse(jobId, exchange.getIn().getBody(clazz), exchange.getIn().getHeaders());
-			if (newBody != null) {
+			if (newBody == DEFERRED) {
+				exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+			}
+			else if (newBody != null) {
 				exchange.getOut().setBody(newBody);
 			}
 		}
@@ -53,6 +53,9 @@ public abstract class WfmProcessor implements WfmProcessorInterface {
 		// Copy any essential headers.
 		exchange.getOut().getHeaders().put(MpfHeaders.JOB_ID, exchange.getIn().getHeader(MpfHeaders.JOB_ID));
 		exchange.getOut().getHeaders().put(MpfHeaders.JMS_PRIORITY, exchange.getIn().getHeader(MpfHeaders.JMS_PRIORITY));
+		if (exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID) != null) {
+			exchange.getOut().getHeaders().put(MpfHeaders.TASK_MEDIA_ID, exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID));
+		}
 
 		// Execute the processor.
 		wfmProcess(exchange);
@@ -36,9 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * This class implements much of the common functionality associated with Camel splitters. Specifically, instances
@@ -92,6 +90,7 @@ public abstract class WfmSplitter implements MonitoredWfmSplitter {
             failed = true;
         }
 
+        Object taskMediaId = exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID);
         boolean emptySplit = messages == null || messages.isEmpty();
         if (emptySplit) {
             // No messages were produced. Unless a dummy message is produced, the workflow will hang.
@@ -104,19 +103,34 @@ public abstract class WfmSplitter implements MonitoredWfmSplitter {
             messages = Collections.singletonList(defaultMessage);
         }
 
-        // Create a correlation id to associate with all messages produced by this split.
-        String correlationId = String.format("%d:%s", jobId, UUID.randomUUID().toString());
-
+        // When a job uses per-media task progression, the messages for each piece of media are aggregated
+        // separately so that each piece of media can move on to its next task on its own.
+        Map<String, List<Message>> messagesByTaskMedia = new HashMap<>();
         for (Message message : messages) {
-            message.setHeader(MpfHeaders.SPLIT_SIZE, messages.size());
-            message.setHeader(MpfHeaders.JOB_ID, jobId);
-            message.setHeader(MpfHeaders.JMS_PRIORITY, exchange.getIn().getHeader(MpfHeaders.JMS_PRIORITY));
-            message.setHeader(MpfHeaders.CORRELATION_ID, correlationId);
+            if (message.getHeader(MpfHeaders.TASK_MEDIA_ID) == null && taskMediaId != null) {
+                message.setHeader(MpfHeaders.TASK_MEDIA_ID, taskMediaId);
+            }
+            messagesByTaskMedia
+                    .computeIfAbsent(Objects.toString(message.getHeader(MpfHeaders.TASK_MEDIA_ID), ""),
+                                     k -> new ArrayList<>())
+                    .add(message);
+        }
+
+        for (List<Message> group : messagesByTaskMedia.values()) {
+            // Create a correlation id to associate with all messages produced by this split.
+            String correlationId = String.format("%d:%s", jobId, UUID.randomUUID().toString());
+
+            for (Message message : group) {
+                message.setHeader(MpfHeaders.SPLIT_SIZE, group.size());
+                message.setHeader(MpfHeaders.JOB_ID, jobId);
+                message.setHeader(MpfHeaders.JMS_PRIORITY, exchange.getIn().getHeader(MpfHeaders.JMS_PRIORITY));
+                message.setHeader(MpfHeaders.CORRELATION_ID, correlationId);
+            }
         }
 
         int messageCount = emptySplit ? 0 : messages.size();
-        log.info("[Job {}|*|*] WfmSplitter class: {}|{} produced {} work units with correlation id '{}' (error = {}).",
-                 jobId, getSplitterName(), getClass().getName(), messageCount, correlationId, failed);
+        log.info("[Job {}|*|*] WfmSplitter class: {}|{} produced {} work units with {} correlation id(s) (error = {}).",
+                 jobId, getSplitterName(), getClass().getName(), messageCount, messagesByTaskMedia.size(), failed);
         return messages;
     }
 }
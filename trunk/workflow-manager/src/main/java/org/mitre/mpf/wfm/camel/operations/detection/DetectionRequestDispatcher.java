@@ -0,0 +1,437 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.camel.operations.detection;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultExchange;
+import org.mitre.mpf.rest.api.pipelines.Action;
+import org.mitre.mpf.rest.api.pipelines.ActionType;
+import org.mitre.mpf.wfm.buffers.DetectionProtobuf;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.enums.MpfEndpoints;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds detection requests in the WFM and releases them to the algorithm queues using deficit round-robin across
+ * jobs, weighted by job priority. Only a bounded number of requests per algorithm are allowed to be on the broker at
+ * once, so a job submitted after a very large job does not have to wait for all of the large job's requests to be
+ * processed before any of its own requests are processed.
+ *
+ * Requests are counted as in-flight from the time they are sent to the broker until the corresponding response
+ * (including cancellation and dead letter responses) is received. When a request can not be sent, it is put back at
+ * the front of its job's queue and the algorithm's requests are held until a retry with exponential backoff. A request
+ * that still can not be sent after the configured number of attempts is completed with a DEAD_LETTER error response,
+ * so that the job's task can still complete.
+ */
+@Component(DetectionRequestDispatcher.REF)
+public class DetectionRequestDispatcher {
+
+    public static final String REF = "detectionRequestDispatcher";
+
+    private static final Logger LOG = LoggerFactory.getLogger(DetectionRequestDispatcher.class);
+
+    private static final String DETECTION_QUEUE_PREFIX = "jms:MPF." + ActionType.DETECTION + '_';
+
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+
+    private final PropertiesUtil _propertiesUtil;
+
+    private final InProgressBatchJobsService _inProgressJobs;
+
+    private final ProducerTemplate _producerTemplate;
+
+    private final CamelContext _camelContext;
+
+    private final DetectionDeadLetterProcessor _deadLetterProcessor;
+
+    private final Map<String, AlgorithmQueue> _algorithmQueues = new ConcurrentHashMap<>();
+
+
+    @Inject
+    DetectionRequestDispatcher(
+            PropertiesUtil propertiesUtil,
+            InProgressBatchJobsService inProgressJobs,
+            ProducerTemplate producerTemplate,
+            CamelContext camelContext,
+            DetectionDeadLetterProcessor deadLetterProcessor) {
+        _propertiesUtil = propertiesUtil;
+        _inProgressJobs = inProgressJobs;
+        _producerTemplate = producerTemplate;
+        _camelContext = camelContext;
+        _deadLetterProcessor = deadLetterProcessor;
+    }
+
+
+    /**
+     * Returns true when the work unit in the exchange should be sent through the dispatcher rather than being
+     * sent directly to its recipient queue.
+     */
+    public boolean shouldDispatch(Exchange exchange) {
+        String recipientQueue = exchange.getIn().getHeader(MpfHeaders.RECIPIENT_QUEUE, String.class);
+        return _propertiesUtil.isDetectionDispatcherEnabled()
+                && recipientQueue != null
+                && recipientQueue.startsWith(DETECTION_QUEUE_PREFIX);
+    }
+
+
+    public void submit(Exchange exchange) {
+        Message in = exchange.getIn();
+        String recipientQueue = in.getHeader(MpfHeaders.RECIPIENT_QUEUE, String.class);
+        long jobId = in.getHeader(MpfHeaders.JOB_ID, Long.class);
+        Integer priority = in.getHeader(MpfHeaders.JMS_PRIORITY, Integer.class);
+        // JMS priorities range from 0 to 9. Adding one ensures every job gets a turn.
+        int weight = 1 + Math.max(0, priority == null ? 4 : priority);
+
+        AlgorithmQueue algorithmQueue = _algorithmQueues.computeIfAbsent(
+                recipientQueue, AlgorithmQueue::new);
+        algorithmQueue.add(jobId, weight, new WorkUnit(jobId, in.getBody(), new HashMap<>(in.getHeaders())));
+        dispatch(algorithmQueue);
+    }
+
+
+    /**
+     * Returns the number of requests for the given broker queue that are being held in the WFM and have not yet
+     * been sent to the broker.
+     */
+    public int getHeldRequestCount(String queueName) {
+        AlgorithmQueue algorithmQueue = _algorithmQueues.get("jms:" + queueName);
+        return algorithmQueue == null ? 0 : algorithmQueue.getHeldCount();
+    }
+
+
+    public void responseReceived(long jobId, String actionName) {
+        if (_algorithmQueues.isEmpty()) {
+            return;
+        }
+        BatchJob job = _inProgressJobs.getJob(jobId);
+        Action action = job.getPipelineElements().getAction(actionName);
+        if (action == null) {
+            return;
+        }
+        ActionType actionType = job.getPipelineElements().getAlgorithm(action.getAlgorithm()).getActionType();
+        AlgorithmQueue algorithmQueue = _algorithmQueues.get(
+                String.format("jms:MPF.%s_%s_REQUEST", actionType, action.getAlgorithm()));
+        if (algorithmQueue != null && algorithmQueue.completed(jobId)) {
+            dispatch(algorithmQueue);
+        }
+    }
+
+
+    /**
+     * Immediately sends all of the job's held requests to the broker so that the job's cancellation routes can
+     * convert them in to cancelled responses.
+     */
+    public void releaseJob(long jobId) {
+        for (AlgorithmQueue algorithmQueue : _algorithmQueues.values()) {
+            send(algorithmQueue, algorithmQueue.releaseJob(jobId));
+        }
+    }
+
+
+    public void jobCompleted(long jobId) {
+        for (AlgorithmQueue algorithmQueue : _algorithmQueues.values()) {
+            if (algorithmQueue.removeJob(jobId)) {
+                dispatch(algorithmQueue);
+            }
+        }
+    }
+
+
+    private void dispatch(AlgorithmQueue algorithmQueue) {
+        if (algorithmQueue.isRetryScheduled()) {
+            // The scheduled retry will send the held requests.
+            return;
+        }
+        int maxInFlight = Math.max(1, _propertiesUtil.getDetectionDispatcherMaxInFlightPerAlgorithm());
+        send(algorithmQueue, algorithmQueue.takeReady(maxInFlight));
+    }
+
+
+    private void send(AlgorithmQueue algorithmQueue, List<WorkUnit> workUnits) {
+        int maxAttempts = Math.max(1, _propertiesUtil.getDetectionDispatcherSendMaxAttempts());
+        for (int i = 0; i < workUnits.size(); i++) {
+            WorkUnit workUnit = workUnits.get(i);
+            try {
+                workUnit.headers.put(MpfHeaders.REQUEST_SENT_TIME, System.currentTimeMillis());
+                _producerTemplate.sendBodyAndHeaders(algorithmQueue.getName(), workUnit.body, workUnit.headers);
+                algorithmQueue.sendSucceeded();
+                continue;
+            }
+            catch (Exception e) {
+                workUnit.attempts++;
+                LOG.error(String.format("[Job %d|*|*] Failed to send a detection request to %s on attempt %d of %d.",
+                                        workUnit.jobId, algorithmQueue.getName(), workUnit.attempts,
+                                        maxAttempts), e);
+            }
+
+            if (workUnit.attempts >= maxAttempts && sendErrorResponse(workUnit)) {
+                // The request still counts as in-flight until its error response is received.
+                continue;
+            }
+            // The broker is most likely unavailable, so the rest of the work units are held as well.
+            algorithmQueue.requeue(workUnits.subList(i, workUnits.size()));
+            scheduleRetry(algorithmQueue);
+            return;
+        }
+    }
+
+
+    private void scheduleRetry(AlgorithmQueue algorithmQueue) {
+        long delay = algorithmQueue.nextRetryDelay(
+                Math.max(1, _propertiesUtil.getDetectionDispatcherSendRetryDelay()));
+        if (algorithmQueue.setRetryScheduled()) {
+            LOG.warn("Sending held detection requests to {} again in {} ms.", algorithmQueue.getName(), delay);
+            ThreadUtil.runAsync(delay, TimeUnit.MILLISECONDS, () -> {
+                algorithmQueue.clearRetryScheduled();
+                dispatch(algorithmQueue);
+            });
+        }
+    }
+
+
+    /**
+     * Gives up on a request by sending a DEAD_LETTER response for it in the same way the dead letter route does, so
+     * that the job's task can still complete.
+     */
+    private boolean sendErrorResponse(WorkUnit workUnit) {
+        try {
+            Exchange exchange = new DefaultExchange(_camelContext);
+            exchange.getIn().setHeaders(new HashMap<>(workUnit.headers));
+            exchange.getIn().setBody(_camelContext.getTypeConverter().convertTo(byte[].class, workUnit.body));
+            _deadLetterProcessor.process(exchange, DetectionProtobuf.DetectionError.DEAD_LETTER, false);
+            _producerTemplate.sendBodyAndHeaders(MpfEndpoints.COMPLETED_DETECTIONS, exchange.getOut().getBody(),
+                                                 exchange.getOut().getHeaders());
+            LOG.error("[Job {}|*|*] Gave up sending a detection request after {} attempts. " +
+                              "A DEAD_LETTER response was sent in its place.", workUnit.jobId, workUnit.attempts);
+            return true;
+        }
+        catch (Exception e) {
+            LOG.error(String.format("[Job %d|*|*] Failed to send the error response for a detection request " +
+                                            "that could not be sent.", workUnit.jobId), e);
+            return false;
+        }
+    }
+
+
+    private static class WorkUnit {
+        final long jobId;
+        final Object body;
+        final Map<String, Object> headers;
+        int attempts;
+
+        WorkUnit(long jobId, Object body, Map<String, Object> headers) {
+            this.jobId = jobId;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+
+
+    private static class JobQueue {
+        final int weight;
+        final Deque<WorkUnit> pending = new ArrayDeque<>();
+        int deficit;
+        int inFlight;
+
+        JobQueue(int weight) {
+            this.weight = weight;
+        }
+    }
+
+
+    /**
+     * The state for a single algorithm queue. The methods return the work units to send rather than sending them
+     * so that messages are not sent to the broker while holding the lock.
+     */
+    private static class AlgorithmQueue {
+        private final String _name;
+
+        private final Map<Long, JobQueue> _jobs = new HashMap<>();
+
+        // Jobs that have requests waiting to be sent, in round-robin order.
+        private final Deque<JobQueue> _activeJobs = new ArrayDeque<>();
+
+        private int _inFlight;
+
+        private int _consecutiveFailures;
+
+        private final AtomicBoolean _retryScheduled = new AtomicBoolean();
+
+        AlgorithmQueue(String name) {
+            _name = name;
+        }
+
+        String getName() {
+            return _name;
+        }
+
+        synchronized void add(long jobId, int weight, WorkUnit workUnit) {
+            JobQueue jobQueue = _jobs.computeIfAbsent(jobId, id -> new JobQueue(weight));
+            if (jobQueue.pending.isEmpty()) {
+                _activeJobs.addLast(jobQueue);
+            }
+            jobQueue.pending.addLast(workUnit);
+        }
+
+        synchronized List<WorkUnit> takeReady(int maxInFlight) {
+            List<WorkUnit> ready = new ArrayList<>();
+            while (_inFlight < maxInFlight && !_activeJobs.isEmpty()) {
+                JobQueue jobQueue = _activeJobs.peekFirst();
+                if (jobQueue.deficit <= 0) {
+                    jobQueue.deficit += jobQueue.weight;
+                }
+                while (jobQueue.deficit > 0 && !jobQueue.pending.isEmpty() && _inFlight < maxInFlight) {
+                    ready.add(jobQueue.pending.removeFirst());
+                    jobQueue.deficit--;
+                    jobQueue.inFlight++;
+                    _inFlight++;
+                }
+
+                if (jobQueue.pending.isEmpty()) {
+                    _activeJobs.removeFirst();
+                    jobQueue.deficit = 0;
+                }
+                else if (jobQueue.deficit <= 0) {
+                    _activeJobs.addLast(_activeJobs.removeFirst());
+                }
+                // Otherwise, the in-flight limit was reached and the job keeps its turn and remaining deficit.
+            }
+            return ready;
+        }
+
+        /**
+         * Puts work units that could not be sent back at the front of their jobs' queues, in their original order.
+         */
+        synchronized void requeue(List<WorkUnit> workUnits) {
+            for (int i = workUnits.size() - 1; i >= 0; i--) {
+                WorkUnit workUnit = workUnits.get(i);
+                JobQueue jobQueue = _jobs.get(workUnit.jobId);
+                if (jobQueue == null) {
+                    // The job completed while the work unit was being sent.
+                    continue;
+                }
+                jobQueue.inFlight--;
+                _inFlight--;
+                if (jobQueue.pending.isEmpty()) {
+                    _activeJobs.addFirst(jobQueue);
+                }
+                jobQueue.pending.addFirst(workUnit);
+            }
+        }
+
+        synchronized int getHeldCount() {
+            return _activeJobs.stream()
+                    .mapToInt(jq -> jq.pending.size())
+                    .sum();
+        }
+
+        synchronized void sendSucceeded() {
+            _consecutiveFailures = 0;
+        }
+
+        synchronized long nextRetryDelay(long initialDelay) {
+            _consecutiveFailures++;
+            int doublings = Math.min(_consecutiveFailures - 1, 16);
+            return Math.min(initialDelay << doublings, Math.max(initialDelay, MAX_RETRY_DELAY_MS));
+        }
+
+        boolean isRetryScheduled() {
+            return _retryScheduled.get();
+        }
+
+        boolean setRetryScheduled() {
+            return _retryScheduled.compareAndSet(false, true);
+        }
+
+        void clearRetryScheduled() {
+            _retryScheduled.set(false);
+        }
+
+        /**
+         * Returns true if the job had a request in flight, meaning that another request may now be sent.
+         */
+        synchronized boolean completed(long jobId) {
+            JobQueue jobQueue = _jobs.get(jobId);
+            if (jobQueue == null || jobQueue.inFlight <= 0) {
+                // The request was sent while the dispatcher was disabled.
+                return false;
+            }
+            jobQueue.inFlight--;
+            _inFlight--;
+            if (jobQueue.inFlight == 0 && jobQueue.pending.isEmpty()) {
+                _jobs.remove(jobId);
+            }
+            return true;
+        }
+
+        synchronized List<WorkUnit> releaseJob(long jobId) {
+            JobQueue jobQueue = _jobs.get(jobId);
+            if (jobQueue == null || jobQueue.pending.isEmpty()) {
+                return List.of();
+            }
+            _activeJobs.remove(jobQueue);
+            List<WorkUnit> released = new ArrayList<>(jobQueue.pending);
+            jobQueue.pending.clear();
+            jobQueue.deficit = 0;
+            // The released requests will still produce responses.
+            jobQueue.inFlight += released.size();
+            _inFlight += released.size();
+            return released;
+        }
+
+        synchronized boolean removeJob(long jobId) {
+            JobQueue jobQueue = _jobs.remove(jobId);
+            if (jobQueue == null) {
+                return false;
+            }
+            if (!jobQueue.pending.isEmpty()) {
+                LOG.warn("[Job {}|*|*] Discarding {} detection requests for {} because the job is complete.",
+                         jobId, jobQueue.pending.size(), _name);
+                _activeJobs.remove(jobQueue);
+            }
+            _inFlight -= jobQueue.inFlight;
+            return true;
+        }
+    }
+}
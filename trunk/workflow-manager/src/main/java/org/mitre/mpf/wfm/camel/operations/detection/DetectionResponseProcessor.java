@@ -40,10 +40,13 @@ import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.data.entities.transients.*;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.segmenting.AdaptiveSegmentingPlanner;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.FrameTimeInfo;
 import org.mitre.mpf.wfm.util.JsonUtils;
 import org.mitre.mpf.wfm.util.ObjectMapperFactory;
+import org.mitre.mpf.wfm.util.PropertyView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -66,18 +69,27 @@ public class DetectionResponseProcessor
     @Autowired
     private InProgressBatchJobsService inProgressJobs;
 
+    @Autowired
+    private AdaptiveSegmentingPlanner adaptiveSegmentingPlanner;
+
+    @Autowired
+    private DetectionRequestDispatcher detectionRequestDispatcher;
+
     public DetectionResponseProcessor() {
         super(DetectionProtobuf.DetectionResponse.class);
     }
 
     @Override
     public Object processResponse(long jobId, DetectionProtobuf.DetectionResponse detectionResponse, Map<String, Object> headers) throws WfmProcessingException {
-        int totalResponses = detectionResponse.getVideoResponsesCount() +
-                detectionResponse.getAudioResponsesCount() +
+        detectionRequestDispatcher.responseReceived(jobId, detectionResponse.getActionName());
+
+        int nonVideoResponses = detectionResponse.getAudioResponsesCount() +
                 detectionResponse.getImageResponsesCount() +
                 detectionResponse.getGenericResponsesCount();
+        int totalResponses = detectionResponse.getVideoResponsesCount() + nonVideoResponses;
 
-        if (totalResponses > 1) {
+        // A request with multiple feed-forward tracks gets one VideoResponse per feed-forward track.
+        if (nonVideoResponses > 1 || (nonVideoResponses == 1 && totalResponses > 1)) {
             throw new WfmProcessingException(
                     // Camel will print out the exchange, including the message body content, in the stack trace.
                     String.format("Unsupported operation. More than one DetectionResponse sub-message found for job %d.", jobId));
@@ -95,7 +107,8 @@ public class DetectionResponseProcessor
             double confidenceThreshold = calculateConfidenceThreshold(action, job, media);
 
             if (detectionResponse.getVideoResponsesCount() != 0) {
-                processVideoResponse(jobId, detectionResponse, detectionResponse.getVideoResponses(0), confidenceThreshold, media);
+                recordVideoProcessingTime(action, detectionResponse, headers);
+                processVideoResponses(jobId, detectionResponse, confidenceThreshold, media);
             } else if (detectionResponse.getAudioResponsesCount() != 0) {
                 processAudioResponse(jobId, detectionResponse, detectionResponse.getAudioResponses(0), confidenceThreshold);
             } else if (detectionResponse.getImageResponsesCount() != 0) {
@@ -113,25 +126,51 @@ public class DetectionResponseProcessor
         return jsonUtils.serialize(new TrackMergingContext(jobId, detectionResponse.getTaskIndex()));
     }
 
+    private void recordVideoProcessingTime(Action action, DetectionProtobuf.DetectionResponse detectionResponse,
+                                           Map<String, Object> headers) {
+        if (detectionResponse.getError() != DetectionProtobuf.DetectionError.NO_DETECTION_ERROR) {
+            return;
+        }
+        long processingTime = detectionResponse.getMetrics().getProcessingTime();
+        if (processingTime < 0) {
+            // Executors echo the request's headers in the response, so when the component did not report its own
+            // processing time, the time since the WFM sent the request is used instead. That also includes the time
+            // the request spent waiting in the broker, so it is an upper bound.
+            Object sentTime = headers.get(MpfHeaders.REQUEST_SENT_TIME);
+            if (!(sentTime instanceof Number)) {
+                return;
+            }
+            processingTime = System.currentTimeMillis() - ((Number) sentTime).longValue();
+        }
+        int frameCount = detectionResponse.getVideoResponsesList().stream()
+                .mapToInt(vr -> vr.getStopFrame() - vr.getStartFrame() + 1)
+                .sum();
+        adaptiveSegmentingPlanner.recordProcessingTime(action.getAlgorithm(), frameCount, processingTime);
+    }
+
     private double calculateConfidenceThreshold(Action action, BatchJob job, Media media) {
-        String confidenceThresholdProperty = aggregateJobPropertiesUtil.getValue(
-                MpfConstants.CONFIDENCE_THRESHOLD_PROPERTY, job, media, action);
+        PropertyView properties = aggregateJobPropertiesUtil.getPropertyView(job, media, action);
 
         try {
-            return Double.parseDouble(confidenceThresholdProperty);
+            return properties.getDouble(MpfConstants.CONFIDENCE_THRESHOLD_PROPERTY);
         }
         catch (NumberFormatException e) {
             log.warn("Invalid confidence threshold specified: value should be numeric. Provided value was: "
-                             + confidenceThresholdProperty);
+                             + properties.get(MpfConstants.CONFIDENCE_THRESHOLD_PROPERTY));
             return job.getSystemPropertiesSnapshot().getConfidenceThreshold();
         }
     }
 
-    private void processVideoResponse(long jobId, DetectionProtobuf.DetectionResponse detectionResponse,
-                                      DetectionProtobuf.DetectionResponse.VideoResponse videoResponse,
-                                      double confidenceThreshold, Media media) {
-        int startFrame = videoResponse.getStartFrame();
-        int stopFrame = videoResponse.getStopFrame();
+    private void processVideoResponses(long jobId, DetectionProtobuf.DetectionResponse detectionResponse,
+                                       double confidenceThreshold, Media media) {
+        int startFrame = detectionResponse.getVideoResponsesList().stream()
+                .mapToInt(DetectionProtobuf.DetectionResponse.VideoResponse::getStartFrame)
+                .min()
+                .getAsInt();
+        int stopFrame = detectionResponse.getVideoResponsesList().stream()
+                .mapToInt(DetectionProtobuf.DetectionResponse.VideoResponse::getStopFrame)
+                .max()
+                .getAsInt();
         var frameTimeInfo = media.getFrameTimeInfo();
         int startTime = frameTimeInfo.getFrameTimeMs(startFrame);
         int stopTime = frameTimeInfo.getFrameTimeMs(stopFrame);
@@ -146,6 +185,19 @@ public class DetectionResponseProcessor
         log.debug("[{}] Response received for {}.", getLogLabel(jobId, detectionResponse), mediaLabel);
         checkErrors(jobId, mediaLabel, detectionResponse, startFrame, stopFrame, startTime, stopTime);
 
+        // Tracks are stored in a single batch so that only one Redis call is needed per response.
+        List<Track> tracks = new ArrayList<>();
+        for (DetectionProtobuf.DetectionResponse.VideoResponse videoResponse
+                : detectionResponse.getVideoResponsesList()) {
+            addVideoTracks(jobId, detectionResponse, videoResponse, confidenceThreshold, frameTimeInfo, tracks);
+        }
+        inProgressJobs.addTracks(tracks);
+    }
+
+    private static void addVideoTracks(long jobId, DetectionProtobuf.DetectionResponse detectionResponse,
+                                       DetectionProtobuf.DetectionResponse.VideoResponse videoResponse,
+                                       double confidenceThreshold, FrameTimeInfo frameTimeInfo,
+                                       List<Track> tracks) {
         // Begin iterating through the tracks that were found by the detector.
         for (DetectionProtobuf.VideoTrack objectTrack : videoResponse.getVideoTracksList()) {
             if (objectTrack.getConfidence() < confidenceThreshold) {
@@ -176,7 +228,7 @@ public class DetectionResponseProcessor
                         detections,
                         toMap(objectTrack.getDetectionPropertiesList()));
 
-                inProgressJobs.addTrack(track);
+                tracks.add(track);
             }
         }
     }
@@ -197,6 +249,7 @@ public class DetectionResponseProcessor
         log.debug("[{}] Response received for {}.", getLogLabel(jobId, detectionResponse), mediaLabel);
         checkErrors(jobId, mediaLabel, detectionResponse, 0, 0, startTime, stopTime);
 
+        List<Track> tracks = new ArrayList<>();
         // Begin iterating through the tracks that were found by the detector.
         for (DetectionProtobuf.AudioTrack objectTrack : audioResponse.getAudioTracksList()) {
             if (objectTrack.getConfidence() >= confidenceThreshold) {
@@ -225,9 +278,10 @@ public class DetectionResponseProcessor
                         ImmutableSortedSet.of(detection),
                         properties);
 
-                inProgressJobs.addTrack(track);
+                tracks.add(track);
             }
         }
+        inProgressJobs.addTracks(tracks);
     }
 
     private void processImageResponse(long jobId, DetectionProtobuf.DetectionResponse detectionResponse,
@@ -238,6 +292,7 @@ public class DetectionResponseProcessor
 
         checkErrors(jobId, mediaLabel, detectionResponse, 0, 1, 0, 0);
 
+        List<Track> tracks = new ArrayList<>();
         // Iterate through the list of detections. It is assumed that detections are not sorted in a meaningful way.
         for (DetectionProtobuf.ImageLocation location : imageResponse.getImageLocationsList()) {
             if (location.getConfidence() >= confidenceThreshold) {
@@ -254,9 +309,10 @@ public class DetectionResponseProcessor
                         location.getConfidence(),
                         ImmutableSortedSet.of(toDetection(location, 0, 0)),
                         toMap(location.getDetectionPropertiesList()));
-                inProgressJobs.addTrack(track);
+                tracks.add(track);
             }
         }
+        inProgressJobs.addTracks(tracks);
     }
 
     private void processGenericResponse(long jobId, DetectionProtobuf.DetectionResponse detectionResponse,
@@ -267,6 +323,7 @@ public class DetectionResponseProcessor
 
         checkErrors(jobId, mediaLabel, detectionResponse, 0, 0, 0, 0);
 
+        List<Track> tracks = new ArrayList<>();
         // Begin iterating through the tracks that were found by the detector.
         for (DetectionProtobuf.GenericTrack objectTrack : genericResponse.getGenericTracksList()) {
             if (objectTrack.getConfidence() >= confidenceThreshold) {
@@ -296,9 +353,10 @@ public class DetectionResponseProcessor
                         ImmutableSortedSet.of(detection),
                         properties);
 
-                inProgressJobs.addTrack(track);
+                tracks.add(track);
             }
         }
+        inProgressJobs.addTracks(tracks);
     }
 
     private void checkErrors(long jobId, String mediaLabel, DetectionProtobuf.DetectionResponse detectionResponse,
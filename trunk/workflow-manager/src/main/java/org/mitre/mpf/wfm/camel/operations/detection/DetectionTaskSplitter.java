@@ -58,12 +58,17 @@ public class DetectionTaskSplitter {
 
     private static final Logger log = LoggerFactory.getLogger(DetectionTaskSplitter.class);
 
+    private static final String JMS_REPLY_TO = StringUtils.replace(MpfEndpoints.COMPLETED_DETECTIONS, "jms:", "");
+
     @Autowired
     private AggregateJobPropertiesUtil aggregateJobPropertiesUtil;
 
     @Autowired
     private InProgressBatchJobsService inProgressBatchJobs;
 
+    @Autowired
+    private AdaptiveSegmentingPlanner adaptiveSegmentingPlanner;
+
     @Autowired
     @Qualifier(ImageMediaSegmenter.REF)
     private MediaSegmenter imageMediaSegmenter;
@@ -83,18 +88,38 @@ public class DetectionTaskSplitter {
 
 
     public List<Message> performSplit(BatchJob job, Task task) {
+        return performSplit(job, task, job.getCurrentTaskIndex(), job.getMedia());
+    }
+
+
+    /**
+     * Creates the detection requests for the given media. When a job uses per-media task progression,
+     * the media may not all be in the job's current task.
+     */
+    public List<Message> performSplit(BatchJob job, Task task, int taskIndex,
+                                      Collection<? extends Media> mediaToSplit) {
         List<Message> messages = new ArrayList<>();
 
         // Is this the first detection task in the pipeline?
-        boolean isFirstDetectionTask = isFirstDetectionTask(job);
+        boolean isFirstDetectionTask = isFirstDetectionTask(job, taskIndex);
+
+        // Media in the same job usually end up with identical properties, so the protobuf version of the
+        // properties is only built once for each distinct set of properties.
+        Map<Map<String, String>, List<AlgorithmPropertyProtocolBuffer.AlgorithmProperty>> algorithmPropertiesCache
+                = new HashMap<>();
 
-        for (Media media : job.getMedia()) {
+        // The videos in this split will be competing for the same algorithm instances.
+        int videoMediaCount = (int) mediaToSplit.stream()
+                .filter(m -> !m.isFailed() && m.getType() == MediaType.VIDEO)
+                .count();
+
+        for (Media media : mediaToSplit) {
             try {
                 if (media.isFailed()) {
                     // If a media is in a failed state (it couldn't be retrieved, it couldn't be inspected, etc.), do nothing with it.
                     log.warn("[Job {}:{}:*] Skipping Media #{} - it is in an error state.",
                             job.getId(),
-                            job.getCurrentTaskIndex(),
+                            taskIndex,
                             media.getId());
                     continue;
                 }
@@ -108,7 +133,7 @@ public class DetectionTaskSplitter {
                 }
                 else {
                     previousTracks = inProgressBatchJobs.getTracks(
-                            job.getId(), media.getId(), job.getCurrentTaskIndex() - 1, 0);
+                            job.getId(), media.getId(), taskIndex - 1, 0);
                 }
 
                 // Iterate through each of the actions and segment the media using the properties provided in that action.
@@ -120,6 +145,13 @@ public class DetectionTaskSplitter {
                     var combinedProperties = new HashMap<String, String>(
                             aggregateJobPropertiesUtil.getPropertyMap(job, media, action));
 
+                    ActionType actionType = job.getPipelineElements()
+                            .getAlgorithm(action.getAlgorithm())
+                            .getActionType();
+                    String recipientQueue = String.format("jms:MPF.%s_%s_REQUEST",
+                                                          actionType,
+                                                          action.getAlgorithm());
+
                     // Segmenting plan is only used by the VideoMediaSegmenter,
                     // so only create the DetectionContext to include the segmenting plan for jobs with video media.
                     SegmentingPlan segmentingPlan = null;
@@ -138,16 +170,22 @@ public class DetectionTaskSplitter {
                                 job.getSystemPropertiesSnapshot().getFrameRateCap(), fps);
                         combinedProperties.put(MpfConstants.MEDIA_SAMPLING_INTERVAL_PROPERTY, calcframeInterval);
 
-                        segmentingPlan = createSegmentingPlan(
-                                job.getSystemPropertiesSnapshot(), combinedProperties, media);
+                        segmentingPlan = adaptiveSegmentingPlanner.adjust(
+                                createSegmentingPlan(job.getSystemPropertiesSnapshot(), combinedProperties, media),
+                                action.getAlgorithm(),
+                                StringUtils.removeStart(recipientQueue, "jms:"),
+                                media,
+                                videoMediaCount);
                     }
 
                     List<AlgorithmPropertyProtocolBuffer.AlgorithmProperty> algorithmProperties
-                            = convertPropertiesMapToAlgorithmPropertiesList(combinedProperties);
+                            = algorithmPropertiesCache.computeIfAbsent(
+                                    combinedProperties,
+                                    DetectionTaskSplitter::convertPropertiesMapToAlgorithmPropertiesList);
 
                     DetectionContext detectionContext = new DetectionContext(
                             job.getId(),
-                            job.getCurrentTaskIndex(),
+                            taskIndex,
                             task.getName(),
                             actionIndex,
                             action.getName(),
@@ -160,22 +198,16 @@ public class DetectionTaskSplitter {
 
                     List<Message> detectionRequestMessages = createDetectionRequestMessages(media, detectionContext);
 
-                    ActionType actionType = job.getPipelineElements()
-                            .getAlgorithm(action.getAlgorithm())
-                            .getActionType();
+                    String mediaType = media.getType().toString();
                     for (Message message : detectionRequestMessages) {
-                        message.setHeader(MpfHeaders.RECIPIENT_QUEUE,
-                                String.format("jms:MPF.%s_%s_REQUEST",
-                                        actionType,
-                                        action.getAlgorithm()));
-                        message.setHeader(MpfHeaders.JMS_REPLY_TO,
-                                StringUtils.replace(MpfEndpoints.COMPLETED_DETECTIONS, "jms:", ""));
-                        message.setHeader(MpfHeaders.MEDIA_TYPE, media.getType().toString());
+                        message.setHeader(MpfHeaders.RECIPIENT_QUEUE, recipientQueue);
+                        message.setHeader(MpfHeaders.JMS_REPLY_TO, JMS_REPLY_TO);
+                        message.setHeader(MpfHeaders.MEDIA_TYPE, mediaType);
                     }
                     messages.addAll(detectionRequestMessages);
                     log.debug("[Job {}|{}|{}] Created {} work units for Media #{}.",
                             job.getId(),
-                            job.getCurrentTaskIndex(),
+                            taskIndex,
                             actionIndex,
                             detectionRequestMessages.size(), media.getId());
                 }
@@ -197,7 +229,7 @@ public class DetectionTaskSplitter {
     convertPropertiesMapToAlgorithmPropertiesList(Map<String, String> propertyMessages) {
 
         if (propertyMessages == null || propertyMessages.isEmpty()) {
-            return new ArrayList<>(0);
+            return List.of();
         }
         else {
             List<AlgorithmPropertyProtocolBuffer.AlgorithmProperty> algorithmProperties
@@ -208,7 +240,8 @@ public class DetectionTaskSplitter {
                                                 .setPropertyValue(entry.getValue())
                                                 .build());
             }
-            return algorithmProperties;
+            // The list is shared between media, so it must not be modified.
+            return Collections.unmodifiableList(algorithmProperties);
         }
     }
 
@@ -296,17 +329,17 @@ public class DetectionTaskSplitter {
     }
 
     /**
-     * Returns {@literal true} iff the current task of this job is the first detection task in the job.
+     * Returns {@literal true} iff the given task is the first detection task in the job.
      */
-    private static boolean isFirstDetectionTask(BatchJob job) {
+    private static boolean isFirstDetectionTask(BatchJob job, int taskIndex) {
         boolean isFirst = false;
         for (int i = 0; i < job.getPipelineElements().getTaskCount(); i++) {
             ActionType actionType = job.getPipelineElements().getAlgorithm(i, 0).getActionType();
             // This is a detection task.
             if (actionType == ActionType.DETECTION) {
-                // If this is the first detection task, it must be true that the current task's index is at most the
-                // current job task's index.
-                isFirst = i >= job.getCurrentTaskIndex();
+                // If the given task is the first detection task, it must be true that the given task's index is at
+                // most the first detection task's index.
+                isFirst = i >= taskIndex;
                 break;
             }
         }
@@ -30,13 +30,17 @@ package org.mitre.mpf.wfm.camel.operations.detection;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedSet;
 import org.apache.camel.Exchange;
+import org.mitre.mpf.rest.api.pipelines.Action;
 import org.mitre.mpf.wfm.camel.WfmProcessor;
 import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingContext;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.data.entities.transients.Detection;
 import org.mitre.mpf.wfm.data.entities.transients.Track;
 import org.mitre.mpf.wfm.enums.MediaType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.JsonUtils;
 import org.slf4j.Logger;
@@ -45,12 +49,13 @@ import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
 import java.awt.geom.Rectangle2D;
-import java.util.Collection;
+import java.util.*;
+import java.util.function.UnaryOperator;
 
-import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toCollection;
 
 @Component(MovingTrackLabelProcessor.REF)
-public class MovingTrackLabelProcessor extends WfmProcessor {
+public class MovingTrackLabelProcessor extends WfmProcessor implements TrackTransformer {
     public static final String REF = "MovingTrackLabelProcessor";
 
     private static final Logger _log = LoggerFactory.getLogger(MovingTrackLabelProcessor.class);
@@ -76,70 +81,60 @@ public class MovingTrackLabelProcessor extends WfmProcessor {
     public void wfmProcess(Exchange exchange) {
         var trackMergingContext = _jsonUtils.deserialize(
                 exchange.getIn().getBody(byte[].class), TrackMergingContext.class);
-        var job = _inProgressJobs.getJob(trackMergingContext.getJobId());
-        var task = job.getPipelineElements().getTask(trackMergingContext.getTaskIndex());
-
-        for (int actionIndex = 0; actionIndex < task.getActions().size(); actionIndex++) {
-           var action = job.getPipelineElements().getAction(
-                   trackMergingContext.getTaskIndex(), actionIndex);
-
-           for (var media : job.getMedia())  {
-               if (media.isFailed() || media.getType() != MediaType.VIDEO) {
-                   continue;
-               }
-
-               var combinedProperties
-                       = _aggregateJobPropertiesUtil.getCombinedProperties(job, media, action);
-
-               var movingTrackLabelsEnabled = Boolean.parseBoolean(
-                       combinedProperties.apply(MpfConstants.MOVING_TRACK_LABELS_ENABLED));
-               if (!movingTrackLabelsEnabled) {
-                   continue;
-               }
-
-               var movingTracksOnly = Boolean.parseBoolean(
-                       combinedProperties.apply(MpfConstants.MOVING_TRACKS_ONLY));
-               var maxIou = Double.parseDouble(
-                       combinedProperties.apply(MpfConstants.MOVING_TRACK_MAX_IOU));
-               int minMovingDetections = Integer.parseInt(
-                       combinedProperties.apply(MpfConstants.MOVING_TRACK_MIN_DETECTIONS));
-
-
-               var originalTracks = _inProgressJobs.getTracks(
-                       job.getId(), media.getId(), trackMergingContext.getTaskIndex(), actionIndex);
-
-               var labeledTracks = updateMovingTracks(movingTracksOnly, maxIou,
-                                                      minMovingDetections, originalTracks);
-
-               int numDropped = originalTracks.size() - labeledTracks.size();
-               if (numDropped != 0) {
-                   _log.warn("Job {}, task {}, action {} originally had {} tracks. {} was " +
-                                 "true so {} tracks were dropped because they were not in motion.",
-                             job.getId(), trackMergingContext.getTaskIndex(), actionIndex,
-                             originalTracks.size(), MpfConstants.MOVING_TRACKS_ONLY, numDropped);
-               }
-               _inProgressJobs.setTracks(job.getId(), media.getId(),
-                                         trackMergingContext.getTaskIndex(), actionIndex,
-                                         labeledTracks);
-           }
-        }
+        TrackPostProcessor.processTracks(_inProgressJobs, trackMergingContext,
+                                         exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class),
+                                         List.of(this));
         exchange.getOut().setBody(exchange.getIn().getBody());
     }
 
 
-    private static Collection<Track> updateMovingTracks(
+    @Override
+    public Optional<UnaryOperator<SortedSet<Track>>> createTransform(
+            BatchJob job, Media media, int taskIndex, int actionIndex, Action action) {
+        if (media.isFailed() || media.getType() != MediaType.VIDEO) {
+            return Optional.empty();
+        }
+
+        var properties = _aggregateJobPropertiesUtil.getPropertyView(job, media, action);
+
+        var movingTrackLabelsEnabled = properties.getBoolean(MpfConstants.MOVING_TRACK_LABELS_ENABLED);
+        if (!movingTrackLabelsEnabled) {
+            return Optional.empty();
+        }
+
+        var movingTracksOnly = properties.getBoolean(MpfConstants.MOVING_TRACKS_ONLY);
+        var maxIou = properties.getDouble(MpfConstants.MOVING_TRACK_MAX_IOU);
+        int minMovingDetections = properties.getInt(MpfConstants.MOVING_TRACK_MIN_DETECTIONS);
+
+        return Optional.of(originalTracks -> {
+            var labeledTracks = updateMovingTracks(movingTracksOnly, maxIou,
+                                                   minMovingDetections, originalTracks);
+
+            int numDropped = originalTracks.size() - labeledTracks.size();
+            if (numDropped != 0) {
+                _log.warn("Job {}, task {}, action {} originally had {} tracks. {} was " +
+                              "true so {} tracks were dropped because they were not in motion.",
+                          job.getId(), taskIndex, actionIndex,
+                          originalTracks.size(), MpfConstants.MOVING_TRACKS_ONLY, numDropped);
+            }
+            return labeledTracks;
+        });
+    }
+
+
+    private static SortedSet<Track> updateMovingTracks(
             boolean movingTracksOnly, double maxIou, int minMovingDetections,
             Collection<Track> originalTracks) {
         if (movingTracksOnly) {
             return originalTracks.stream()
                     .map(t -> processTrack(maxIou, minMovingDetections, t))
                     .filter(t -> Boolean.parseBoolean(t.getTrackProperties().get("MOVING")))
-                    .collect(toList());
+                    .collect(toCollection(TreeSet::new));
         }
         else {
             return originalTracks.stream()
                     .map(t -> processTrack(maxIou, minMovingDetections, t))
-                    .collect(toList());
+                    .collect(toCollection(TreeSet::new));
         }
     }
 
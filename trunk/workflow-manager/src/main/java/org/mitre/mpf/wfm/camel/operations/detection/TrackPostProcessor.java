@@ -0,0 +1,181 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel.operations.detection;
+
+import org.apache.camel.Exchange;
+import org.mitre.mpf.rest.api.pipelines.Action;
+import org.mitre.mpf.wfm.WfmProcessingException;
+import org.mitre.mpf.wfm.camel.WfmProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.padding.DetectionPaddingProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingContext;
+import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingProcessor;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.util.JsonUtils;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs track merging, moving track labeling, and detection padding on the tracks produced by a task. Each set of
+ * tracks is loaded from Redis once, all of the applicable transformations are applied in memory, and then the
+ * result is stored once. Each media and action is processed in parallel.
+ */
+@Component(TrackPostProcessor.REF)
+public class TrackPostProcessor extends WfmProcessor {
+    public static final String REF = "trackPostProcessor";
+
+    private static final Logger _log = LoggerFactory.getLogger(TrackPostProcessor.class);
+
+    private final JsonUtils _jsonUtils;
+
+    private final InProgressBatchJobsService _inProgressJobs;
+
+    private final List<TrackTransformer> _transformers;
+
+
+    @Inject
+    TrackPostProcessor(
+            JsonUtils jsonUtils,
+            InProgressBatchJobsService inProgressJobs,
+            TrackMergingProcessor trackMergingProcessor,
+            MovingTrackLabelProcessor movingTrackLabelProcessor,
+            DetectionPaddingProcessor detectionPaddingProcessor) {
+        _jsonUtils = jsonUtils;
+        _inProgressJobs = inProgressJobs;
+        // Order matters: moving track labels are based on the merged tracks, and padding must be applied last so
+        // that it does not affect the other steps.
+        _transformers = List.of(trackMergingProcessor, movingTrackLabelProcessor, detectionPaddingProcessor);
+    }
+
+
+    @Override
+    public void wfmProcess(Exchange exchange) {
+        var trackMergingContext = _jsonUtils.deserialize(
+                exchange.getIn().getBody(byte[].class), TrackMergingContext.class);
+        processTracks(_inProgressJobs, trackMergingContext,
+                      exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class), _transformers);
+        exchange.getOut().setBody(exchange.getIn().getBody());
+    }
+
+
+    /**
+     * Applies the transformers, in order, to each set of tracks produced by the task identified by the context.
+     * When taskMediaId is not null, only the tracks for that media are processed. This is the case when the job
+     * uses per-media task progression.
+     */
+    public static void processTracks(InProgressBatchJobsService inProgressJobs,
+                                     TrackMergingContext trackMergingContext,
+                                     Long taskMediaId,
+                                     Collection<? extends TrackTransformer> transformers) {
+        BatchJob job = inProgressJobs.getJob(trackMergingContext.getJobId());
+        int taskIndex = trackMergingContext.getTaskIndex();
+        int numActions = job.getPipelineElements().getTask(taskIndex).getActions().size();
+
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (Media media : job.getMedia()) {
+            if (media.isFailed() || (taskMediaId != null && media.getId() != taskMediaId)) {
+                continue;
+            }
+            for (int actionIndex = 0; actionIndex < numActions; actionIndex++) {
+                Action action = job.getPipelineElements().getAction(taskIndex, actionIndex);
+
+                var transforms = new ArrayList<UnaryOperator<SortedSet<Track>>>();
+                for (TrackTransformer transformer : transformers) {
+                    transformer.createTransform(job, media, taskIndex, actionIndex, action)
+                            .ifPresent(transforms::add);
+                }
+                if (transforms.isEmpty()) {
+                    continue; // Avoid loading the tracks when there is nothing to do.
+                }
+
+                int finalActionIndex = actionIndex;
+                // Loading and storing the tracks in Redis runs on the IO pool. The transforms run on the CPU pool,
+                // so that waiting on Redis does not limit how many transforms can run at once, and the transforms
+                // do not take more threads than there are processors.
+                futures.add(ThreadUtil
+                        .callAsync(ThreadUtil.Workload.IO, () -> inProgressJobs.getTracks(
+                                job.getId(), media.getId(), taskIndex, finalActionIndex))
+                        .thenApplyAsync(
+                                tracks -> applyTransforms(tracks, transforms),
+                                ThreadUtil.getExecutor(ThreadUtil.Workload.CPU))
+                        .thenAcceptAsync(
+                                transformed -> storeTracks(inProgressJobs, job.getId(), media.getId(),
+                                                           taskIndex, finalActionIndex, transformed),
+                                ThreadUtil.getExecutor(ThreadUtil.Workload.IO)));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new WfmProcessingException(e.getCause());
+        }
+    }
+
+
+    /**
+     * @return The transformed tracks, or empty when none of the transforms changed the tracks.
+     */
+    private static Optional<SortedSet<Track>> applyTransforms(
+            SortedSet<Track> originalTracks, Iterable<UnaryOperator<SortedSet<Track>>> transforms) {
+        SortedSet<Track> tracks = originalTracks;
+        for (UnaryOperator<SortedSet<Track>> transform : transforms) {
+            tracks = transform.apply(tracks);
+        }
+        return tracks == originalTracks ? Optional.empty() : Optional.of(tracks);
+    }
+
+
+    private static void storeTracks(InProgressBatchJobsService inProgressJobs, long jobId, long mediaId,
+                                    int taskIndex, int actionIndex, Optional<SortedSet<Track>> tracks) {
+        if (tracks.isEmpty()) {
+            _log.debug("[Job {}|{}|{}] No changes were made to the tracks for media {}.",
+                       jobId, taskIndex, actionIndex, mediaId);
+            return;
+        }
+        inProgressJobs.setTracks(jobId, mediaId, taskIndex, actionIndex, tracks.get());
+    }
+}
@@ -0,0 +1,52 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel.operations.detection;
+
+import org.mitre.mpf.rest.api.pipelines.Action;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.function.UnaryOperator;
+
+/**
+ * A post-detection step that modifies the tracks that an action produced for a piece of media.
+ * Transformers are chained together by {@link TrackPostProcessor} so that each set of tracks is only loaded from
+ * and stored in Redis once.
+ */
+@FunctionalInterface
+public interface TrackTransformer {
+
+    /**
+     * @return The operation to apply to the tracks, or an empty Optional when this transformer does not modify the
+     *         tracks for the given media and action. The operation must return its input when it makes no changes.
+     */
+    Optional<UnaryOperator<SortedSet<Track>>> createTransform(
+            BatchJob job, Media media, int taskIndex, int actionIndex, Action action);
+}
@@ -45,6 +45,7 @@ import org.mitre.mpf.wfm.enums.ArtifactExtractionPolicy;
 import org.mitre.mpf.wfm.enums.ArtifactExtractionStatus;
 import org.mitre.mpf.wfm.enums.MediaType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.JsonUtils;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
@@ -110,11 +111,17 @@ public class ArtifactExtractionSplitterImpl extends WfmSplitter {
         }
         boolean notLastTask = (taskIndex < lastTaskIndex);
 
+        // When the job uses per-media task progression, only the media that just completed the task is processed.
+        Long taskMediaId = exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class);
+
         List<Message> messages = new ArrayList<>();
         for (Media media : job.getMedia()) {
             if (media.getType() != MediaType.IMAGE && media.getType() != MediaType.VIDEO) {
                 continue;
             }
+            if (taskMediaId != null && media.getId() != taskMediaId) {
+                continue;
+            }
 
             // If the user has requested output objects for the last task only, and this is
             // not the last task, then skip extraction for this media. Also return an empty
@@ -31,9 +31,10 @@ import com.google.common.primitives.Doubles;
 import org.apache.camel.Exchange;
 import org.apache.commons.lang3.StringUtils;
 import org.mitre.mpf.rest.api.pipelines.Action;
-import org.mitre.mpf.rest.api.pipelines.Task;
 import org.mitre.mpf.wfm.WfmProcessingException;
 import org.mitre.mpf.wfm.camel.WfmProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.TrackPostProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.TrackTransformer;
 import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingContext;
 import org.mitre.mpf.wfm.data.DetectionErrorUtil;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
@@ -44,6 +45,7 @@ import org.mitre.mpf.wfm.data.entities.transients.Track;
 import org.mitre.mpf.wfm.enums.IssueCodes;
 import org.mitre.mpf.wfm.enums.MediaType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.JsonUtils;
 import org.slf4j.Logger;
@@ -56,10 +58,11 @@ import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Rectangle2D;
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.IntStream;
 
 @Component(DetectionPaddingProcessor.REF)
-public class DetectionPaddingProcessor extends WfmProcessor {
+public class DetectionPaddingProcessor extends WfmProcessor implements TrackTransformer {
     public static final String REF = "detectionPaddingProcessor";
 
     private static final Logger _log = LoggerFactory.getLogger(DetectionPaddingProcessor.class);
@@ -86,49 +89,42 @@ public class DetectionPaddingProcessor extends WfmProcessor {
     public void wfmProcess(Exchange exchange) throws WfmProcessingException {
         TrackMergingContext trackMergingContext = _jsonUtils.deserialize(exchange.getIn().getBody(byte[].class),
                                                                          TrackMergingContext.class);
-        BatchJob job = _inProgressBatchJobs.getJob(trackMergingContext.getJobId());
-        Task task = job.getPipelineElements().getTask(trackMergingContext.getTaskIndex());
-
-        for (int actionIndex = 0; actionIndex < task.getActions().size(); actionIndex++) {
-            Action action = job.getPipelineElements().getAction(trackMergingContext.getTaskIndex(), actionIndex);
-
-            for (Media media : job.getMedia()) {
-                if (media.isFailed()
-                        || (media.getType() != MediaType.IMAGE && media.getType() != MediaType.VIDEO)) {
-                    continue;
-                }
-
-                Function<String, String> combinedProperties =
-                        _aggregateJobPropertiesUtil.getCombinedProperties(job, media, action);
-
-                try {
-                    if (!requiresPadding(combinedProperties)) {
-                        continue;
-                    }
-                } catch (DetectionPaddingException e) {
-                    // This should not happen because we checked that the detection properties were valid when the
-                    // job was created.
-                    throw new WfmProcessingException(e);
-                }
-
-                String xPadding = combinedProperties.apply(MpfConstants.DETECTION_PADDING_X);
-                String yPadding = combinedProperties.apply(MpfConstants.DETECTION_PADDING_Y);
+        TrackPostProcessor.processTracks(_inProgressBatchJobs, trackMergingContext,
+                                         exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class),
+                                         List.of(this));
+        exchange.getOut().setBody(exchange.getIn().getBody());
+    }
 
-                int frameWidth = Integer.parseInt(media.getMetadata().get("FRAME_WIDTH"));
-                int frameHeight = Integer.parseInt(media.getMetadata().get("FRAME_HEIGHT"));
 
-                Collection<Track> tracks = _inProgressBatchJobs.getTracks(job.getId(), media.getId(),
-                        trackMergingContext.getTaskIndex(), actionIndex);
+    @Override
+    public Optional<UnaryOperator<SortedSet<Track>>> createTransform(
+            BatchJob job, Media media, int taskIndex, int actionIndex, Action action) {
+        if (media.isFailed()
+                || (media.getType() != MediaType.IMAGE && media.getType() != MediaType.VIDEO)) {
+            return Optional.empty();
+        }
 
-                Collection<Track> newTracks = processTracks(
-                        job.getId(), media.getId(), xPadding, yPadding, frameWidth, frameHeight, tracks);
+        Function<String, String> combinedProperties =
+                _aggregateJobPropertiesUtil.getCombinedProperties(job, media, action);
 
-                _inProgressBatchJobs.setTracks(job.getId(), media.getId(),
-                        trackMergingContext.getTaskIndex(), actionIndex, newTracks);
+        try {
+            if (!requiresPadding(combinedProperties)) {
+                return Optional.empty();
             }
+        } catch (DetectionPaddingException e) {
+            // This should not happen because we checked that the detection properties were valid when the
+            // job was created.
+            throw new WfmProcessingException(e);
         }
 
-        exchange.getOut().setBody(exchange.getIn().getBody());
+        String xPadding = combinedProperties.apply(MpfConstants.DETECTION_PADDING_X);
+        String yPadding = combinedProperties.apply(MpfConstants.DETECTION_PADDING_Y);
+
+        int frameWidth = Integer.parseInt(media.getMetadata().get("FRAME_WIDTH"));
+        int frameHeight = Integer.parseInt(media.getMetadata().get("FRAME_HEIGHT"));
+
+        return Optional.of(tracks -> processTracks(
+                job.getId(), media.getId(), xPadding, yPadding, frameWidth, frameHeight, tracks));
     }
 
 
@@ -182,7 +178,7 @@ public class DetectionPaddingProcessor extends WfmProcessor {
     }
 
 
-    private Collection<Track> processTracks(long jobId, long mediaId, String xPadding, String yPadding,
+    private SortedSet<Track> processTracks(long jobId, long mediaId, String xPadding, String yPadding,
                                             int frameWidth, int frameHeight, Iterable<Track> tracks) {
         var newTracks = new TreeSet<Track>();
         var shrunkToNothingFrames = IntStream.builder();
@@ -31,9 +31,10 @@ import com.google.common.collect.ImmutableSortedSet;
 import org.apache.camel.Exchange;
 import org.apache.commons.lang3.StringUtils;
 import org.mitre.mpf.rest.api.pipelines.Action;
-import org.mitre.mpf.rest.api.pipelines.Task;
 import org.mitre.mpf.wfm.WfmProcessingException;
 import org.mitre.mpf.wfm.camel.WfmProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.TrackPostProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.TrackTransformer;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
 import org.mitre.mpf.wfm.data.entities.persistent.Media;
@@ -41,8 +42,10 @@ import org.mitre.mpf.wfm.data.entities.persistent.SystemPropertiesSnapshot;
 import org.mitre.mpf.wfm.data.entities.transients.*;
 import org.mitre.mpf.wfm.enums.MediaType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.JsonUtils;
+import org.mitre.mpf.wfm.util.PropertyView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,10 +54,11 @@ import org.springframework.stereotype.Component;
 import java.awt.*;
 import java.util.List;
 import java.util.*;
-import java.util.function.Function;
+import java.util.function.UnaryOperator;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toSet;
 
 /**
  * Merges tracks in a video. Also, prunes short video tracks.
@@ -76,7 +80,7 @@ import static java.util.stream.Collectors.toCollection;
  * necessary to modify the default behavior of the track merging algorithm.
  */
 @Component(TrackMergingProcessor.REF)
-public class TrackMergingProcessor extends WfmProcessor {
+public class TrackMergingProcessor extends WfmProcessor implements TrackTransformer {
     public static final String REF = "trackMergingProcessor";
     private static final Logger log = LoggerFactory.getLogger(TrackMergingProcessor.class);
 
@@ -93,121 +97,85 @@ public class TrackMergingProcessor extends WfmProcessor {
     public void wfmProcess(Exchange exchange) throws WfmProcessingException {
         TrackMergingContext trackMergingContext = jsonUtils.deserialize(exchange.getIn().getBody(byte[].class), TrackMergingContext.class);
 
-        BatchJob job = inProgressJobs.getJob(trackMergingContext.getJobId());
+        TrackPostProcessor.processTracks(inProgressJobs, trackMergingContext,
+                                         exchange.getIn().getHeader(MpfHeaders.TASK_MEDIA_ID, Long.class),
+                                         List.of(this));
 
-        Task task = job.getPipelineElements().getTask(trackMergingContext.getTaskIndex());
-        for (int actionIndex = 0; actionIndex < task.getActions().size(); actionIndex++) {
-            Action action = job.getPipelineElements()
-                    .getAction(trackMergingContext.getTaskIndex(), actionIndex);
-
-            for (Media media : job.getMedia()) {
-
-                // NOTE: Only perform track merging and track pruning on video data.
-                if (media.getType() != MediaType.VIDEO || media.isFailed()) {
-                    continue;
-                }
-
-                TrackMergingPlan trackMergingPlan = createTrackMergingPlan(job, media, action);
+        exchange.getOut().setBody(jsonUtils.serialize(trackMergingContext));
+    }
 
-                boolean mergeRequested = trackMergingPlan.isMergeTracks();
-                boolean pruneRequested = trackMergingPlan.getMinTrackLength() > 1;
+    @Override
+    public Optional<UnaryOperator<SortedSet<Track>>> createTransform(
+            BatchJob job, Media media, int taskIndex, int actionIndex, Action action) {
+        // NOTE: Only perform track merging and track pruning on video data.
+        if (media.getType() != MediaType.VIDEO || media.isFailed()) {
+            return Optional.empty();
+        }
 
-                if (!mergeRequested && !pruneRequested) {
-                    continue; // nothing to do
-                }
+        TrackMergingPlan trackMergingPlan = createTrackMergingPlan(job, media, action);
 
-                SortedSet<Track> tracks = inProgressJobs.getTracks(
-                        trackMergingContext.getJobId(), media.getId(), trackMergingContext.getTaskIndex(),
-                        actionIndex);
+        boolean mergeRequested = trackMergingPlan.isMergeTracks();
+        boolean pruneRequested = trackMergingPlan.getMinTrackLength() > 1;
 
-                if (tracks.isEmpty() || !isEligibleForFixup(tracks)) {
-                    continue;
-                }
+        if (!mergeRequested && !pruneRequested) {
+            return Optional.empty(); // nothing to do
+        }
 
-                if (mergeRequested) {
-                    int initialSize = tracks.size();
-                    tracks = new TreeSet<>(combine(tracks, trackMergingPlan));
+        return Optional.of(tracks -> {
+            if (tracks.isEmpty() || !isEligibleForFixup(tracks)) {
+                return tracks;
+            }
 
-                    log.debug("[Job {}|{}|{}] Merging {} tracks down to {} in Media {}.",
-                              trackMergingContext.getJobId(), trackMergingContext.getTaskIndex(), actionIndex,
-                              initialSize, tracks.size(), media.getId());
-                }
+            if (mergeRequested) {
+                int initialSize = tracks.size();
+                tracks = new TreeSet<>(combine(tracks, trackMergingPlan));
 
-                if (pruneRequested) {
-                    int initialSize = tracks.size();
-                    int minTrackLength = trackMergingPlan.getMinTrackLength();
-                    tracks = tracks.stream()
-                            .filter(t -> t.getEndOffsetFrameInclusive() - t.getStartOffsetFrameInclusive() >= minTrackLength - 1)
-                            .collect(toCollection(TreeSet::new));
+                log.debug("[Job {}|{}|{}] Merging {} tracks down to {} in Media {}.",
+                          job.getId(), taskIndex, actionIndex,
+                          initialSize, tracks.size(), media.getId());
+            }
 
-                    log.debug("[Job {}|{}|{}] Pruning {} tracks down to {} tracks at least {} frames long in Media {}.",
-                              trackMergingContext.getJobId(), trackMergingContext.getTaskIndex(), actionIndex,
-                              initialSize, tracks.size(), minTrackLength, media.getId());
-                }
+            if (pruneRequested) {
+                int initialSize = tracks.size();
+                int minTrackLength = trackMergingPlan.getMinTrackLength();
+                tracks = tracks.stream()
+                        .filter(t -> t.getEndOffsetFrameInclusive() - t.getStartOffsetFrameInclusive() >= minTrackLength - 1)
+                        .collect(toCollection(TreeSet::new));
 
-                inProgressJobs.setTracks(trackMergingContext.getJobId(), media.getId(),
-                                         trackMergingContext.getTaskIndex(), actionIndex, tracks);
+                log.debug("[Job {}|{}|{}] Pruning {} tracks down to {} tracks at least {} frames long in Media {}.",
+                          job.getId(), taskIndex, actionIndex,
+                          initialSize, tracks.size(), minTrackLength, media.getId());
             }
-        }
-
-        exchange.getOut().setBody(jsonUtils.serialize(trackMergingContext));
+            return tracks;
+        });
     }
 
     private TrackMergingPlan createTrackMergingPlan(BatchJob job, Media media,
                                                     Action action) {
-        Function<String, String> combinedProperties = aggregateJobPropertiesUtil.getCombinedProperties(
-                job, media, action);
-
-        // If there exist media-specific properties for track merging, use them.
-        String minTrackLengthProperty = combinedProperties.apply(MpfConstants.MIN_TRACK_LENGTH);
-
-        String mergeTracksProperty = combinedProperties.apply(MpfConstants.MERGE_TRACKS_PROPERTY);
-
-        String minGapBetweenTracksProperty = combinedProperties.apply(MpfConstants.MIN_GAP_BETWEEN_TRACKS);
-
-        String minTrackOverlapProperty = combinedProperties.apply(MpfConstants.MIN_TRACK_OVERLAP);
+        PropertyView properties = aggregateJobPropertiesUtil.getPropertyView(job, media, action);
 
         SystemPropertiesSnapshot systemPropertiesSnapshot = job.getSystemPropertiesSnapshot();
 
-        boolean mergeTracks = systemPropertiesSnapshot.isTrackMerging();
-        int minGapBetweenTracks = systemPropertiesSnapshot.getMinAllowableTrackGap();
-        int minTrackLength = systemPropertiesSnapshot.getMinTrackLength();
-        double minTrackOverlap = systemPropertiesSnapshot.getTrackOverlapThreshold();
-
-        if (mergeTracksProperty != null) {
-            mergeTracks = Boolean.parseBoolean(mergeTracksProperty);
-        }
-
-        if (minGapBetweenTracksProperty != null) {
-            try {
-                minGapBetweenTracks = Integer.parseInt(minGapBetweenTracksProperty);
-            } catch (NumberFormatException exception) {
-                log.warn(String.format(
-                        "Attempted to parse %s value of '%s' but encountered an exception. Defaulting to '%s'.",
-                         MpfConstants.MIN_GAP_BETWEEN_TRACKS, minGapBetweenTracksProperty, minGapBetweenTracks),
-                         exception);
+        // If there exist media-specific properties for track merging, use them.
+        boolean mergeTracks = properties.get(MpfConstants.MERGE_TRACKS_PROPERTY) == null
+                ? systemPropertiesSnapshot.isTrackMerging()
+                : properties.getBoolean(MpfConstants.MERGE_TRACKS_PROPERTY);
 
-            }
-        }
+        int minGapBetweenTracks = getIntProperty(properties, MpfConstants.MIN_GAP_BETWEEN_TRACKS,
+                                                 systemPropertiesSnapshot.getMinAllowableTrackGap());
 
-        if (minTrackLengthProperty != null) {
-            try {
-                minTrackLength = Integer.parseInt(minTrackLengthProperty);
-            } catch (NumberFormatException exception) {
-                log.warn(String.format(
-                        "Attempted to parse %s value of '%s', but encountered an exception. Defaulting to '%s'.",
-                         MpfConstants.MIN_TRACK_LENGTH, minTrackLengthProperty, minTrackLength),
-                         exception);
-            }
-        }
+        int minTrackLength = getIntProperty(properties, MpfConstants.MIN_TRACK_LENGTH,
+                                            systemPropertiesSnapshot.getMinTrackLength());
 
-        if (minTrackOverlapProperty != null) {
+        double minTrackOverlap = systemPropertiesSnapshot.getTrackOverlapThreshold();
+        if (properties.get(MpfConstants.MIN_TRACK_OVERLAP) != null) {
             try {
-                minTrackOverlap = Double.parseDouble(minTrackOverlapProperty);
+                minTrackOverlap = properties.getDouble(MpfConstants.MIN_TRACK_OVERLAP);
             } catch (NumberFormatException exception) {
                 log.warn(String.format(
                         "Attempted to parse %s value of '%s', but encountered an exception. Defaulting to '%s'.",
-                        MpfConstants.MIN_TRACK_OVERLAP, minTrackOverlapProperty, minTrackOverlap),
+                        MpfConstants.MIN_TRACK_OVERLAP, properties.get(MpfConstants.MIN_TRACK_OVERLAP),
+                        minTrackOverlap),
                         exception);
             }
         }
@@ -215,47 +183,112 @@ public class TrackMergingProcessor extends WfmProcessor {
         return new TrackMergingPlan(mergeTracks, minGapBetweenTracks, minTrackLength, minTrackOverlap);
     }
 
-    private static Set<Track> combine(SortedSet<Track> sourceTracks, TrackMergingPlan plan) {
+
+    private static int getIntProperty(PropertyView properties, String propertyName, int defaultValue) {
+        if (properties.get(propertyName) == null) {
+            return defaultValue;
+        }
+        try {
+            return properties.getInt(propertyName);
+        } catch (NumberFormatException exception) {
+            log.warn(String.format(
+                    "Attempted to parse %s value of '%s', but encountered an exception. Defaulting to '%s'.",
+                    propertyName, properties.get(propertyName), defaultValue),
+                    exception);
+            return defaultValue;
+        }
+    }
+
+    public static Set<Track> combine(SortedSet<Track> sourceTracks, TrackMergingPlan plan) {
         // Do not attempt to merge an empty or null set.
         if (sourceTracks.isEmpty()) {
             return sourceTracks;
         }
 
-        List<Track> tracks = new LinkedList<>(sourceTracks);
-        List<Track> mergedTracks = new LinkedList<>();
+        // Tracks with different types are never merged, so each type can be processed independently. Types are
+        // compared ignoring case in canMerge, so they are grouped the same way here.
+        Map<String, List<Track>> tracksByType = new HashMap<>();
+        for (Track track : sourceTracks) {
+            tracksByType.computeIfAbsent(StringUtils.upperCase(track.getType()), k -> new ArrayList<>())
+                    .add(track);
+        }
+
+        Set<Track> mergedTracks = tracksByType.values()
+                .parallelStream()
+                .flatMap(tracks -> combineSameType(tracks, plan).stream())
+                .collect(toSet());
 
-        while (tracks.size() > 0) {
+        log.trace("Track merging complete. The {} input tracks were merged as appropriate to form {} output tracks.",
+                  sourceTracks.size(), mergedTracks.size());
+
+        return mergedTracks;
+    }
+
+
+    private static List<Track> combineSameType(Collection<Track> tracks, TrackMergingPlan plan) {
+        // Index the tracks by start frame so that only the tracks that start within the allowed gap need to be
+        // checked. Tracks with the same start frame are kept in their natural order, so candidates are checked in the
+        // same order as they would be when scanning the whole sorted set.
+        NavigableMap<Integer, NavigableSet<Track>> remainingTracks = new TreeMap<>();
+        for (Track track : tracks) {
+            remainingTracks.computeIfAbsent(track.getStartOffsetFrameInclusive(), k -> new TreeSet<>())
+                    .add(track);
+        }
+
+        List<Track> mergedTracks = new ArrayList<>();
+        while (!remainingTracks.isEmpty()) {
             // Pop off the track with the earliest start time.
-            Track merged = tracks.remove(0);
-            boolean performedMerge = false;
-            Track trackToRemove = null;
-
-            for (Track candidate : tracks) {
-                // Iterate through the remaining tracks until a track is found which is within the frame gap and has sufficient region overlap.
-                if (canMerge(merged, candidate, plan)) {
-                    // If one is found, merge them and then push this track back to the beginning of the collection.
-                    tracks.add(0, merge(merged, candidate));
-                    performedMerge = true;
-
-                    // Keep a reference to the track which was merged into the original - it will be removed.
-                    trackToRemove = candidate;
-                    break;
-                }
-            }
+            var merged = new MergedTrackBuilder(pollFirst(remainingTracks));
 
-            if (performedMerge) {
-                // A merge was performed, so it is necessary to remove the merged track.
-                tracks.remove(trackToRemove);
-            } else {
-                // No merge was performed. The current track is no longer a candidate for merging.
-                mergedTracks.add(merged);
+            // Keep merging the first eligible candidate into the current track until there are no more candidates.
+            Track candidate;
+            while ((candidate = pollFirstMergeCandidate(merged, remainingTracks, plan)) != null) {
+                merged.add(candidate);
             }
+            // No more candidates. The current track is no longer a candidate for merging.
+            mergedTracks.add(merged.build());
         }
+        return mergedTracks;
+    }
+
+
+    private static Track pollFirst(NavigableMap<Integer, NavigableSet<Track>> tracksByStartFrame) {
+        var firstEntry = tracksByStartFrame.firstEntry();
+        Track track = firstEntry.getValue().pollFirst();
+        if (firstEntry.getValue().isEmpty()) {
+            tracksByStartFrame.remove(firstEntry.getKey());
+        }
+        return track;
+    }
 
-        log.trace("Track merging complete. The {} input tracks were merged as appropriate to form {} output tracks.",
-                  sourceTracks.size(), mergedTracks.size());
 
-        return new HashSet<>(mergedTracks);
+    private static Track pollFirstMergeCandidate(
+            MergedTrackBuilder track, NavigableMap<Integer, NavigableSet<Track>> tracksByStartFrame, TrackMergingPlan plan) {
+        // isWithinGap only accepts tracks that start after the given track ends, and at most
+        // max(1, minGapBetweenTracks - 1) frames after it ends.
+        long firstStartFrame = track.getEndOffsetFrameInclusive() + 1L;
+        long lastStartFrame = track.getEndOffsetFrameInclusive()
+                + (long) Math.max(1, plan.getMinGapBetweenTracks() - 1);
+        if (firstStartFrame > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        var candidatesByStartFrame = tracksByStartFrame.subMap(
+                (int) firstStartFrame, true, (int) Math.min(lastStartFrame, Integer.MAX_VALUE), true);
+
+        for (var entry : candidatesByStartFrame.entrySet()) {
+            NavigableSet<Track> candidates = entry.getValue();
+            for (Track candidate : candidates) {
+                if (canMerge(track, candidate, plan)) {
+                    candidates.remove(candidate);
+                    if (candidates.isEmpty()) {
+                        tracksByStartFrame.remove(entry.getKey());
+                    }
+                    return candidate;
+                }
+            }
+        }
+        return null;
     }
 
     /** Combines two tracks. This is a destructive method. The contents of track1 reflect the merged track. */
@@ -289,7 +322,7 @@ public class TrackMergingProcessor extends WfmProcessor {
         return merged;
     }
 
-    private static boolean canMerge(Track track1, Track track2, TrackMergingPlan plan) {
+    private static boolean canMerge(MergedTrackBuilder track1, Track track2, TrackMergingPlan plan) {
         return StringUtils.equalsIgnoreCase(track1.getType(), track2.getType())
                 && isEligibleForMerge(track1, track2)
                 && isWithinGap(track1, track2, plan.getMinGapBetweenTracks())
@@ -308,7 +341,7 @@ public class TrackMergingProcessor extends WfmProcessor {
     }
 
     // This method assumes that isEligibleForFixup() has been checked.
-    private static boolean isEligibleForMerge(Track track1, Track track2) {
+    private static boolean isEligibleForMerge(MergedTrackBuilder track1, Track track2) {
         // NOTE: All tracks should be the same type.
         switch (track1.getType().toUpperCase()) {
             case "CLASS":
@@ -318,16 +351,16 @@ public class TrackMergingProcessor extends WfmProcessor {
         }
     }
 
-    private static boolean isSameClassification(Track track1, Track track2) {
-        if (track1.getDetections().isEmpty() || track2.getDetections().isEmpty()) {
+    private static boolean isSameClassification(MergedTrackBuilder track1, Track track2) {
+        if (track1.getLastDetection() == null || track2.getDetections().isEmpty()) {
             return false;
         }
-        String class1 = track1.getDetections().last().getDetectionProperties().get("CLASSIFICATION");
+        String class1 = track1.getLastDetection().getDetectionProperties().get("CLASSIFICATION");
         String class2 = track2.getDetections().first().getDetectionProperties().get("CLASSIFICATION");
         return StringUtils.equalsIgnoreCase(class1, class2);
     }
 
-    private static boolean isWithinGap(Track track1, Track track2, double minGapBetweenTracks) {
+    private static boolean isWithinGap(MergedTrackBuilder track1, Track track2, double minGapBetweenTracks) {
         if (track1.getEndOffsetFrameInclusive() + 1 == track2.getStartOffsetFrameInclusive()) {
             return true; // tracks are adjacent
         }
@@ -335,8 +368,8 @@ public class TrackMergingProcessor extends WfmProcessor {
                 (minGapBetweenTracks - 1 >= track2.getStartOffsetFrameInclusive() - track1.getEndOffsetFrameInclusive());
     }
 
-    private static boolean intersects(Track track1, Track track2, double minTrackOverlap) {
-        Detection track1End = track1.getDetections().last();
+    private static boolean intersects(MergedTrackBuilder track1, Track track2, double minTrackOverlap) {
+        Detection track1End = track1.getLastDetection();
         Detection track2Start = track2.getDetections().first();
 
         Rectangle rectangle1 = new Rectangle(track1End.getX(), track1End.getY(), track1End.getWidth(), track1End.getHeight());
@@ -358,4 +391,89 @@ public class TrackMergingProcessor extends WfmProcessor {
 
         return percentOverlap >= minTrackOverlap;
     }
+
+
+    /**
+     * Accumulates the tracks that are merged into a single track. Calling {@link #merge(Track, Track)} repeatedly
+     * would copy all of the detections merged so far on every call, which is quadratic when a long chain of short
+     * tracks is merged. The resulting track is the same as calling merge on each added track in order.
+     */
+    private static class MergedTrackBuilder {
+        private final Track _firstTrack;
+
+        private final List<Track> _tracks = new ArrayList<>();
+
+        private final SortedMap<String, String> _properties;
+
+        private int _endOffsetFrameInclusive;
+
+        private int _endOffsetTimeInclusive;
+
+        private float _confidence;
+
+        private Detection _lastDetection;
+
+
+        public MergedTrackBuilder(Track firstTrack) {
+            _firstTrack = firstTrack;
+            _tracks.add(firstTrack);
+            _properties = new TreeMap<>(firstTrack.getTrackProperties());
+            _endOffsetFrameInclusive = firstTrack.getEndOffsetFrameInclusive();
+            _endOffsetTimeInclusive = firstTrack.getEndOffsetTimeInclusive();
+            _confidence = firstTrack.getConfidence();
+            _lastDetection = firstTrack.getDetections().isEmpty() ? null : firstTrack.getDetections().last();
+        }
+
+
+        public void add(Track track) {
+            _tracks.add(track);
+            track.getTrackProperties().forEach((k, v) -> _properties.merge(
+                    k, v, (v1, v2) -> v1.equals(v2) ? v1 : v1 + "; " + v2));
+            _endOffsetFrameInclusive = track.getEndOffsetFrameInclusive();
+            _endOffsetTimeInclusive = track.getEndOffsetTimeInclusive();
+            _confidence = Math.max(_confidence, track.getConfidence());
+            if (!track.getDetections().isEmpty()
+                    && (_lastDetection == null || track.getDetections().last().compareTo(_lastDetection) > 0)) {
+                _lastDetection = track.getDetections().last();
+            }
+        }
+
+
+        public String getType() {
+            return _firstTrack.getType();
+        }
+
+        public int getEndOffsetFrameInclusive() {
+            return _endOffsetFrameInclusive;
+        }
+
+        public Detection getLastDetection() {
+            return _lastDetection;
+        }
+
+
+        public Track build() {
+            if (_tracks.size() == 1) {
+                return _firstTrack;
+            }
+
+            var detections = _tracks.stream()
+                    .flatMap(t -> t.getDetections().stream())
+                    .collect(ImmutableSortedSet.toImmutableSortedSet(Comparator.naturalOrder()));
+
+            return new Track(
+                    _firstTrack.getJobId(),
+                    _firstTrack.getMediaId(),
+                    _firstTrack.getTaskIndex(),
+                    _firstTrack.getActionIndex(),
+                    _firstTrack.getStartOffsetFrameInclusive(),
+                    _endOffsetFrameInclusive,
+                    _firstTrack.getStartOffsetTimeInclusive(),
+                    _endOffsetTimeInclusive,
+                    _firstTrack.getType(),
+                    _confidence,
+                    detections,
+                    _properties);
+        }
+    }
 }
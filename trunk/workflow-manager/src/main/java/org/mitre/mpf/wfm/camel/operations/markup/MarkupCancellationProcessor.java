@@ -42,18 +42,19 @@ public class MarkupCancellationProcessor implements Processor {
 
         Markup.MarkupRequest request = Markup.MarkupRequest.parseFrom(exchange.getIn().getBody(byte[].class));
 
-        exchange.getOut().setBody(
-            Markup.MarkupResponse.newBuilder()
+        Markup.MarkupResponse.Builder responseBuilder = Markup.MarkupResponse.newBuilder()
                 .setMediaIndex(request.getMediaIndex())
                 .setTaskIndex(request.getTaskIndex())
                 .setActionIndex(request.getActionIndex())
                 .setMediaId(request.getMediaId())
                 .setRequestId(request.getRequestId())
                 .setHasError(true)
-                .setErrorMessage("This request was cancelled.")
-                .build()
-                .toByteArray()
-        );
+                .setErrorMessage("This request was cancelled.");
+        if (request.hasSegment()) {
+            responseBuilder.setSegment(request.getSegment());
+        }
+
+        exchange.getOut().setBody(responseBuilder.build().toByteArray());
     }
 
 }
@@ -68,9 +68,21 @@ public class MarkupResponseProcessor extends ResponseProcessor<Markup.MarkupResp
     @Autowired
     private StorageService storageService;
 
+    @Autowired
+    private MarkupSegmentCombiner markupSegmentCombiner;
+
     @Override
     public Object processResponse(long jobId, Markup.MarkupResponse markupResponse, Map<String, Object> headers) throws WfmProcessingException {
         log.debug("[Job {}:{}:{}] Received response for Media {} (Index = {}). Error? {}", jobId, markupResponse.getTaskIndex(), markupResponse.getActionIndex(), markupResponse.getMediaId(), markupResponse.getMediaIndex(), markupResponse.getHasError() ? markupResponse.getErrorMessage() : "None.");
+
+        if (markupResponse.hasSegment()) {
+            // The markup result is only created once all of the video's segments have been marked up and combined.
+            // The combined response comes back through this route without a segment, and takes the place of the
+            // last segment's response in the task's aggregation.
+            boolean isLastSegment = markupSegmentCombiner.addSegment(jobId, markupResponse, headers);
+            return isLastSegment ? DEFERRED : null;
+        }
+
         MarkupResult markupResult = new MarkupResult();
         markupResult.setTaskIndex(markupResponse.getTaskIndex());
         markupResult.setActionIndex(markupResponse.getActionIndex());
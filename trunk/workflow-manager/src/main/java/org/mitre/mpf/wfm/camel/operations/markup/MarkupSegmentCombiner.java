@@ -0,0 +1,229 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel.operations.markup;
+
+import org.apache.camel.ProducerTemplate;
+import org.mitre.mpf.wfm.buffers.Markup;
+import org.mitre.mpf.wfm.enums.MpfEndpoints;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Collects the responses for the segments of a video that was split by {@link MarkupSplitter}. Once all of a
+ * video's segments have been marked up, they are concatenated in to a single file on the IO workload and the
+ * combined response is sent back to {@link MpfEndpoints#COMPLETED_MARKUP}.
+ */
+@Component
+public class MarkupSegmentCombiner {
+    private static final Logger log = LoggerFactory.getLogger(MarkupSegmentCombiner.class);
+
+    private final ProducerTemplate producerTemplate;
+
+    // Keyed on job id and then on the combined destination URI, which is unique to each video and markup action.
+    private final Map<Long, Map<String, Markup.MarkupResponse[]>> segmentResponses = new HashMap<>();
+
+
+    @Inject
+    MarkupSegmentCombiner(ProducerTemplate producerTemplate) {
+        this.producerTemplate = producerTemplate;
+    }
+
+
+    /**
+     * Records the response for one segment. Returns true when it was the video's last segment. The combined
+     * response is then sent to {@link MpfEndpoints#COMPLETED_MARKUP} with the given headers once the segments
+     * have been concatenated.
+     */
+    public boolean addSegment(long jobId, Markup.MarkupResponse response, Map<String, Object> headers) {
+        Markup.MarkupSegment segment = response.getSegment();
+        String combinedUri = segment.getCombinedDestinationUri();
+        Markup.MarkupResponse[] responses;
+        synchronized (segmentResponses) {
+            Map<String, Markup.MarkupResponse[]> jobResponses
+                    = segmentResponses.computeIfAbsent(jobId, k -> new HashMap<>());
+            responses = jobResponses.computeIfAbsent(
+                    combinedUri, k -> new Markup.MarkupResponse[segment.getCount()]);
+            responses[segment.getIndex()] = response;
+            if (Arrays.stream(responses).anyMatch(Objects::isNull)) {
+                return false;
+            }
+            jobResponses.remove(combinedUri);
+            if (jobResponses.isEmpty()) {
+                segmentResponses.remove(jobId);
+            }
+        }
+
+        var combinedHeaders = new HashMap<>(headers);
+        ThreadUtil.runAsync(ThreadUtil.Workload.IO, () -> {
+            Markup.MarkupResponse combinedResponse = combine(combinedUri, Arrays.asList(responses));
+            producerTemplate.sendBodyAndHeaders(
+                    MpfEndpoints.COMPLETED_MARKUP, combinedResponse.toByteArray(), combinedHeaders);
+        }).exceptionally(e -> {
+            log.error(String.format("[Job %s] Failed to send the combined markup response for \"%s\".",
+                                    jobId, combinedUri), e);
+            return null;
+        });
+        return true;
+    }
+
+
+    /**
+     * Discards the segments of videos that were not completely marked up, such as when the job was cancelled.
+     */
+    public void jobCompleted(long jobId) {
+        Map<String, Markup.MarkupResponse[]> jobResponses;
+        synchronized (segmentResponses) {
+            jobResponses = segmentResponses.remove(jobId);
+        }
+        if (jobResponses == null) {
+            return;
+        }
+        log.warn("[Job {}] Discarding the marked up segments of {} video(s) that were not completely marked up.",
+                 jobId, jobResponses.size());
+        jobResponses.values().stream()
+                .flatMap(Arrays::stream)
+                .filter(r -> r != null && r.hasOutputFileUri())
+                .map(r -> Paths.get(URI.create(r.getOutputFileUri())))
+                .forEach(MarkupSegmentCombiner::deleteSegment);
+    }
+
+
+    private Markup.MarkupResponse combine(String combinedUri, List<Markup.MarkupResponse> responses) {
+        Markup.MarkupResponse.Builder combinedResponse = responses.get(0).toBuilder()
+                .clearSegment()
+                .clearErrorMessage()
+                .clearErrorStackTrace()
+                .setHasError(false)
+                .setTimeProcessing(responses.stream()
+                                           .mapToLong(Markup.MarkupResponse::getTimeProcessing)
+                                           .sum());
+
+        List<Path> segmentPaths = responses.stream()
+                .filter(Markup.MarkupResponse::hasOutputFileUri)
+                .map(r -> Paths.get(URI.create(r.getOutputFileUri())))
+                .collect(toList());
+        try {
+            Optional<Markup.MarkupResponse> failedSegment = responses.stream()
+                    .filter(Markup.MarkupResponse::getHasError)
+                    .findFirst();
+            if (failedSegment.isPresent()) {
+                String errorMessage = responses.stream()
+                        .filter(Markup.MarkupResponse::getHasError)
+                        .map(Markup.MarkupResponse::getErrorMessage)
+                        .distinct()
+                        .collect(joining("; "));
+                return combinedResponse
+                        .setHasError(true)
+                        .setErrorMessage(errorMessage)
+                        .setErrorStackTrace(failedSegment.get().getErrorStackTrace())
+                        .clearOutputFileUri()
+                        .build();
+            }
+
+            concatenate(segmentPaths, Paths.get(URI.create(combinedUri)));
+            return combinedResponse
+                    .setOutputFileUri(combinedUri)
+                    .build();
+        }
+        catch (IOException e) {
+            log.error(String.format("Failed to concatenate the marked up segments in to \"%s\".", combinedUri), e);
+            return combinedResponse
+                    .setHasError(true)
+                    .setErrorMessage("Failed to concatenate the marked up segments due to: " + e.getMessage())
+                    .clearOutputFileUri()
+                    .build();
+        }
+        finally {
+            segmentPaths.forEach(MarkupSegmentCombiner::deleteSegment);
+        }
+    }
+
+
+    private static void deleteSegment(Path segmentPath) {
+        try {
+            Files.deleteIfExists(segmentPath);
+        }
+        catch (IOException e) {
+            log.warn("Failed to delete the marked up segment \"{}\" due to: {}", segmentPath, e.getMessage());
+        }
+    }
+
+
+    /**
+     * Uses ffmpeg's concat demuxer to join the segments. Each segment was encoded separately with the same
+     * settings, so the streams are copied without re-encoding.
+     */
+    protected void concatenate(List<Path> segmentPaths, Path destinationPath) throws IOException {
+        Path listPath = Files.createTempFile(destinationPath.getParent(), "segments", ".txt");
+        try {
+            Files.write(listPath, segmentPaths.stream()
+                    .map(p -> "file '" + p.toString().replace("'", "'\\''") + '\'')
+                    .collect(toList()));
+
+            String[] command = {
+                    "ffmpeg", "-hide_banner", "-loglevel", "error", "-f", "concat", "-safe", "0",
+                    "-i", listPath.toString(), "-c", "copy", "-y", destinationPath.toString()
+            };
+            log.info("Concatenating marked up segments using ffmpeg with the following command: {}",
+                     Arrays.toString(command));
+
+            var process = new ProcessBuilder(command)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            process.getOutputStream().close();
+            String errorOutput = new String(process.getErrorStream().readAllBytes(), StandardCharsets.UTF_8);
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new IOException(String.format("ffmpeg exited with exit code %s: %s",
+                                                    exitCode, errorOutput.strip()));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for ffmpeg to concatenate the segments.");
+        }
+        finally {
+            Files.deleteIfExists(listPath);
+        }
+    }
+}
@@ -29,6 +29,7 @@ package org.mitre.mpf.wfm.camel.operations.markup;
 import org.apache.camel.Message;
 import org.apache.camel.impl.DefaultMessage;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.tika.mime.MimeTypes;
 import org.javasimon.aop.Monitored;
 import org.mitre.mpf.rest.api.pipelines.Action;
@@ -36,7 +37,6 @@ import org.mitre.mpf.rest.api.pipelines.ActionType;
 import org.mitre.mpf.rest.api.pipelines.Algorithm;
 import org.mitre.mpf.rest.api.pipelines.Task;
 import org.mitre.mpf.videooverlay.BoundingBox;
-import org.mitre.mpf.videooverlay.BoundingBoxMap;
 import org.mitre.mpf.videooverlay.BoundingBoxSource;
 import org.mitre.mpf.wfm.buffers.Markup;
 import org.mitre.mpf.wfm.data.IdGenerator;
@@ -52,6 +52,7 @@ import org.mitre.mpf.wfm.enums.MediaType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
 import org.mitre.mpf.wfm.enums.MpfEndpoints;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.util.KeyframeFinder;
 import org.mitre.mpf.wfm.util.MarkupJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
 import org.slf4j.Logger;
@@ -64,6 +65,7 @@ import java.awt.*;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.*;
+import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 
 @Component
@@ -86,11 +88,30 @@ public class MarkupSplitter {
 
 
     public List<Message> performSplit(BatchJob job, Task task) {
+        return performSplit(job, task, job.getCurrentTaskIndex(), job.getMedia());
+    }
+
+
+    /**
+     * Creates the markup requests for the given media. When a job uses per-media task progression,
+     * the media may not all be in the job's current task.
+     */
+    public List<Message> performSplit(BatchJob job, Task task, int taskIndex,
+                                      Collection<? extends Media> mediaToSplit) {
         List<Message> messages = new ArrayList<>();
 
         int lastDetectionTaskIndex = findLastDetectionTaskIndex(job.getPipelineElements());
 
-        hibernateMarkupResultDao.deleteByJobId(job.getId());
+        // When a job uses per-media task progression, the other media may have already been marked up, so only the
+        // results for the media being split are removed.
+        if (mediaToSplit.size() == job.getMedia().size()) {
+            hibernateMarkupResultDao.deleteByJobId(job.getId());
+        }
+        else {
+            hibernateMarkupResultDao.deleteByJobIdAndMediaIds(
+                    job.getId(),
+                    mediaToSplit.stream().map(Media::getId).collect(Collectors.toList()));
+        }
 
         for (int actionIndex = 0; actionIndex < task.getActions().size(); actionIndex++) {
             String actionName = task.getActions().get(actionIndex);
@@ -98,18 +119,21 @@ public class MarkupSplitter {
             int mediaIndex = -1;
             for (Media media : job.getMedia()) {
                 mediaIndex++;
+                if (!mediaToSplit.contains(media)) {
+                    // The media index must still be incremented so that it matches the media's position in the job.
+                    continue;
+                }
                 if (media.isFailed()) {
                     log.debug("Skipping '{}: {}' - it is in an error state.", media.getId(), media.getLocalPath());
                 } else if(media.getType() != MediaType.IMAGE && media.getType() != MediaType.VIDEO) {
                     log.debug("Skipping Media {} - only image and video files are eligible for markup.", media.getId());
                 } else {
-                    List<Markup.BoundingBoxMapEntry> boundingBoxMapEntryList
-                            = createMap(job, media, lastDetectionTaskIndex,
-                                        job.getPipelineElements().getTask(lastDetectionTaskIndex))
-                            .toBoundingBoxMapEntryList();
+                    List<Markup.BoundingBoxTrack> boundingBoxTracks
+                            = createBoundingBoxTracks(job, media, lastDetectionTaskIndex,
+                                                      job.getPipelineElements().getTask(lastDetectionTaskIndex));
 
                     Path destinationPath;
-                    if (boundingBoxMapEntryList.isEmpty()) {
+                    if (boundingBoxTracks.isEmpty()) {
                         destinationPath = propertiesUtil.createMarkupPath(job.getId(), media.getId(),
                                 getFileExtension(media.getMimeType()));
                     } else {
@@ -119,14 +143,14 @@ public class MarkupSplitter {
 
                     Markup.MarkupRequest.Builder requestBuilder = Markup.MarkupRequest.newBuilder()
                             .setMediaIndex(mediaIndex)
-                            .setTaskIndex(job.getCurrentTaskIndex())
+                            .setTaskIndex(taskIndex)
                             .setActionIndex(actionIndex)
                             .setMediaId(media.getId())
                             .setMediaType(Markup.MediaType.valueOf(media.getType().toString().toUpperCase()))
                             .setRequestId(IdGenerator.next())
                             .setSourceUri(media.getProcessingPath().toUri().toString())
                             .setDestinationUri(destinationPath.toUri().toString())
-                            .addAllMapEntries(boundingBoxMapEntryList);
+                            .addAllTracks(boundingBoxTracks);
 
                     for (var entry : media.getMetadata().entrySet()) {
                         requestBuilder.addMediaMetadataBuilder()
@@ -141,11 +165,42 @@ public class MarkupSplitter {
                     }
 
                     Algorithm algorithm = job.getPipelineElements().getAlgorithm(action.getAlgorithm());
-                    DefaultMessage message = new DefaultMessage(); // We will sort out the headers later.
-                    message.setHeader(MpfHeaders.RECIPIENT_QUEUE, String.format("jms:MPF.%s_%s_REQUEST", algorithm.getActionType(), action.getAlgorithm()));
-                    message.setHeader(MpfHeaders.JMS_REPLY_TO, StringUtils.replace(MpfEndpoints.COMPLETED_MARKUP, "jms:", ""));
-                    message.setBody(requestBuilder.build());
-                    messages.add(message);
+                    List<Integer> segmentBeginFrames = boundingBoxTracks.isEmpty()
+                            ? List.of()
+                            : getSegmentBeginFrames(job, media);
+                    if (segmentBeginFrames.size() < 2) {
+                        messages.add(createMessage(action, algorithm, requestBuilder.build()));
+                        continue;
+                    }
+
+                    int frameCount = Integer.parseInt(media.getMetadata("FRAME_COUNT"));
+                    String extension = getMarkedUpMediaExtensionForMediaType(job, media);
+                    for (int i = 0; i < segmentBeginFrames.size(); i++) {
+                        int beginFrame = segmentBeginFrames.get(i);
+                        int endFrame = i + 1 < segmentBeginFrames.size()
+                                ? segmentBeginFrames.get(i + 1) - 1
+                                : frameCount - 1;
+                        Path segmentPath = propertiesUtil.createMarkupPath(job.getId(), media.getId(), extension);
+
+                        Markup.MarkupRequest.Builder segmentRequestBuilder = requestBuilder.clone()
+                                .setRequestId(IdGenerator.next())
+                                .setDestinationUri(segmentPath.toUri().toString())
+                                .clearTracks();
+                        segmentRequestBuilder.getSegmentBuilder()
+                                .setIndex(i)
+                                .setCount(segmentBeginFrames.size())
+                                .setBeginFrame(beginFrame)
+                                .setEndFrame(endFrame)
+                                .setCombinedDestinationUri(destinationPath.toUri().toString());
+                        for (Markup.BoundingBoxTrack boundingBoxTrack : boundingBoxTracks) {
+                            if (overlaps(boundingBoxTrack, beginFrame, endFrame)) {
+                                segmentRequestBuilder.addTracks(boundingBoxTrack);
+                            }
+                        }
+                        messages.add(createMessage(action, algorithm, segmentRequestBuilder.build()));
+                    }
+                    log.info("[Job {}] Split the markup for media {} into {} segments.",
+                             job.getId(), media.getId(), segmentBeginFrames.size());
                 }
             }
         }
@@ -154,6 +209,73 @@ public class MarkupSplitter {
     }
 
 
+    private static Message createMessage(Action action, Algorithm algorithm, Markup.MarkupRequest request) {
+        DefaultMessage message = new DefaultMessage(); // We will sort out the headers later.
+        message.setHeader(MpfHeaders.RECIPIENT_QUEUE, String.format("jms:MPF.%s_%s_REQUEST", algorithm.getActionType(), action.getAlgorithm()));
+        message.setHeader(MpfHeaders.JMS_REPLY_TO, StringUtils.replace(MpfEndpoints.COMPLETED_MARKUP, "jms:", ""));
+        message.setBody(request);
+        return message;
+    }
+
+
+    /**
+     * Returns the first frame of each segment when the video's markup should be split in to segments. Otherwise,
+     * returns an empty list.
+     */
+    private List<Integer> getSegmentBeginFrames(BatchJob job, Media media) {
+        if (media.getType() != MediaType.VIDEO) {
+            return List.of();
+        }
+        int segmentLength = NumberUtils.toInt(
+                markupJobPropertiesUtil.getValue(MpfConstants.MARKUP_VIDEO_SEGMENT_LENGTH, job, media), 0);
+        int frameCount = NumberUtils.toInt(media.getMetadata("FRAME_COUNT"), 0);
+        if (segmentLength <= 0 || frameCount <= segmentLength) {
+            return List.of();
+        }
+        return getSegmentBeginFrames(frameCount, segmentLength,
+                                     KeyframeFinder.getKeyframes(media.getProcessingPath()));
+    }
+
+
+    /**
+     * Splits the video in to segments of approximately segmentLength frames. When there is a keyframe near a segment
+     * boundary, the boundary is moved to the keyframe so that the markup component does not need to decode the
+     * frames before the boundary when it seeks to the start of the segment.
+     */
+    static List<Integer> getSegmentBeginFrames(int frameCount, int segmentLength,
+                                               NavigableSet<Integer> keyframes) {
+        int maxShift = segmentLength / 2;
+        List<Integer> beginFrames = new ArrayList<>();
+        beginFrames.add(0);
+        for (int target = segmentLength; target < frameCount; target += segmentLength) {
+            Integer nearestKeyframe = null;
+            Integer before = keyframes.floor(target);
+            if (before != null && target - before <= maxShift) {
+                nearestKeyframe = before;
+            }
+            Integer after = keyframes.ceiling(target);
+            if (after != null && after < frameCount && after - target <= maxShift
+                    && (nearestKeyframe == null || after - target < target - nearestKeyframe)) {
+                nearestKeyframe = after;
+            }
+            int beginFrame = nearestKeyframe == null ? target : nearestKeyframe;
+            if (beginFrame > beginFrames.get(beginFrames.size() - 1)) {
+                beginFrames.add(beginFrame);
+            }
+        }
+        return beginFrames;
+    }
+
+
+    private static boolean overlaps(Markup.BoundingBoxTrack track, int beginFrame, int endFrame) {
+        int firstFrame = track.getKeyframes(0).getFrameNumber();
+        int lastFrame = track.hasSpanLastFrame()
+                ? track.getSpanLastFrame()
+                : track.getKeyframes(track.getKeyframesCount() - 1).getFrameNumber();
+        return firstFrame <= endFrame && lastFrame >= beginFrame;
+    }
+
+
     /**
      * Returns the last task in the pipeline containing a detection action. This effectively filters preprocessor
      * detections so that the output is not cluttered with motion detections.
@@ -169,8 +291,12 @@ public class MarkupSplitter {
         return taskIndex;
     }
 
-    /** Creates a BoundingBoxMap containing all of the tracks which were produced by the specified action history keys. */
-    private BoundingBoxMap createMap(BatchJob job, Media media, int taskIndex, Task task) {
+    /**
+     * Creates the markup tracks for all of the tracks produced by the specified task. Only the detections are
+     * included. The markup component fills in the boxes between detections when it draws each frame.
+     */
+    private List<Markup.BoundingBoxTrack> createBoundingBoxTracks(BatchJob job, Media media, int taskIndex,
+                                                                  Task task) {
         boolean labelFromDetections = Boolean.parseBoolean(
                 markupJobPropertiesUtil.getValue(MpfConstants.MARKUP_LABELS_FROM_DETECTIONS, job, media));
         String labelTextPropToShow =
@@ -178,16 +304,20 @@ public class MarkupSplitter {
         String labelNumericPropToShow =
                 markupJobPropertiesUtil.getValue(MpfConstants.MARKUP_LABELS_NUMERIC_PROP_TO_SHOW, job, media);
         Iterator<Color> trackColors = getTrackColors();
-        BoundingBoxMap boundingBoxMap = new BoundingBoxMap();
+        List<Markup.BoundingBoxTrack> boundingBoxTracks = new ArrayList<>();
         long mediaId = media.getId();
         for (int actionIndex = 0; actionIndex < task.getActions().size(); actionIndex++) {
             SortedSet<Track> tracks = inProgressJobs.getTracks(job.getId(), mediaId, taskIndex, actionIndex);
             for (Track track : tracks) {
-                addTrackToBoundingBoxMap(track, boundingBoxMap, trackColors.next(), labelFromDetections,
-                        labelTextPropToShow, labelNumericPropToShow);
+                Markup.BoundingBoxTrack boundingBoxTrack = createBoundingBoxTrack(
+                        track, trackColors.next(), labelFromDetections, labelTextPropToShow,
+                        labelNumericPropToShow);
+                if (boundingBoxTrack.getKeyframesCount() > 0) {
+                    boundingBoxTracks.add(boundingBoxTrack);
+                }
             }
         }
-        return boundingBoxMap;
+        return boundingBoxTracks;
     }
 
 
@@ -205,9 +335,10 @@ public class MarkupSplitter {
                 .map(s -> Boolean.parseBoolean(s.strip()));
     }
 
-    private static void addTrackToBoundingBoxMap(Track track, BoundingBoxMap boundingBoxMap, Color trackColor,
-                                                 boolean labelFromDetections, String labelTextPropToShow,
-                                                 String labelNumericPropToShow) {
+    static Markup.BoundingBoxTrack createBoundingBoxTrack(Track track, Color trackColor,
+                                                          boolean labelFromDetections,
+                                                          String labelTextPropToShow,
+                                                          String labelNumericPropToShow) {
         OptionalDouble trackRotation = getRotation(track.getTrackProperties());
         Optional<Boolean> trackFlip = getFlip(track.getTrackProperties());
 
@@ -218,12 +349,10 @@ public class MarkupSplitter {
             moving = Boolean.parseBoolean(track.getTrackProperties().get("MOVING"));
         }
 
+        Markup.BoundingBoxTrack.Builder trackBuilder = Markup.BoundingBoxTrack.newBuilder();
         List<Detection> orderedDetections = new ArrayList<>(track.getDetections());
         Collections.sort(orderedDetections);
-        for (int i = 0; i < orderedDetections.size(); i++) {
-            Detection detection = orderedDetections.get(i);
-            int currentFrame = detection.getMediaOffsetFrame();
-
+        for (Detection detection : orderedDetections) {
             BoundingBoxSource detectionSource = BoundingBoxSource.DETECTION_ALGORITHM;
             if (Boolean.parseBoolean(detection.getDetectionProperties().get("FILLED_GAP"))) {
                 detectionSource = BoundingBoxSource.TRACKING_FILLED_GAP;
@@ -257,54 +386,21 @@ public class MarkupSplitter {
             if ("SPEECH".equalsIgnoreCase(objectType) || "AUDIO".equalsIgnoreCase(objectType)) {
                 // Special case: Speech doesn't populate object locations for each frame in the video, so you have to
                 // go by the track start and stop frames.
-                boundingBoxMap.putOnFrames(track.getStartOffsetFrameInclusive(),
-                                           track.getEndOffsetFrameInclusive(), boundingBox);
+                trackBuilder.addKeyframesBuilder()
+                        .setFrameNumber(track.getStartOffsetFrameInclusive())
+                        .setBoundingBox(boundingBox.toProtocolBuffer());
+                trackBuilder.setSpanLastFrame(track.getEndOffsetFrameInclusive());
                 break;
             }
 
-            boolean isLastDetection = (i == (orderedDetections.size() - 1));
-            if (isLastDetection) {
-                boundingBoxMap.putOnFrame(currentFrame, boundingBox);
-                break;
-            }
-
-            Detection nextDetection = orderedDetections.get(i + 1);
-            int gapBetweenNextDetection = nextDetection.getMediaOffsetFrame() - detection.getMediaOffsetFrame();
-            if (gapBetweenNextDetection == 1) {
-                boundingBoxMap.putOnFrame(currentFrame, boundingBox);
-            }
-            else {
-                // Since the gap between frames is greater than 1 and we are not at the last result in the
-                // collection, we draw bounding boxes on each frame in the collection such that on the
-                // first frame, the bounding box is at the position given by the object location, and on the
-                // last frame in the interval, the bounding box is very close to the position given by the object
-                // location of the next result. Consequently, the original bounding box appears to resize
-                // and translate to the position and size of the next result's bounding box.
-
-                OptionalDouble nextDetectionRotation = getRotation(nextDetection.getDetectionProperties());
-                Optional<Boolean> nextDetectionFlip = getFlip(nextDetection.getDetectionProperties());
-
-                if (labelFromDetections) { // get detection-level details
-                    label = getLabel(nextDetection, labelTextPropToShow, labelNumericPropToShow);
-                }
-
-                BoundingBox nextBoundingBox = new BoundingBox(
-                        nextDetection.getX(),
-                        nextDetection.getY(),
-                        nextDetection.getWidth(),
-                        nextDetection.getHeight(),
-                        nextDetectionRotation.orElse(trackRotation.orElse(0)),
-                        nextDetectionFlip.orElse(trackFlip.orElse(false)),
-                        boundingBox.getRed(),
-                        boundingBox.getBlue(),
-                        boundingBox.getGreen(),
-                        BoundingBoxSource.ANIMATION,
-                        moving,
-                        false, // not exemplar
-                        label);
-                boundingBoxMap.animate(boundingBox, nextBoundingBox, currentFrame, gapBetweenNextDetection);
-            }
+            // When there is a gap between this detection and the next one, the markup component draws boxes on
+            // each frame in the gap such that the original bounding box appears to resize and translate to the
+            // position and size of the next detection's bounding box.
+            trackBuilder.addKeyframesBuilder()
+                    .setFrameNumber(detection.getMediaOffsetFrame())
+                    .setBoundingBox(boundingBox.toProtocolBuffer());
         }
+        return trackBuilder.build();
     }
 
 
@@ -0,0 +1,207 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+package org.mitre.mpf.wfm.camel.operations.mediainspection;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.mitre.mpf.wfm.enums.MediaType;
+import org.mitre.mpf.wfm.util.FrameTimeInfo;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stores the results of media inspection on disk, keyed by the SHA-256 hash of the media's
+ * content, so that media that has already been inspected does not need to be decoded again.
+ * Entries are evicted in least recently used order using the files' last modified times.
+ */
+@Component
+public class MediaInspectionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MediaInspectionCache.class);
+
+    private final PropertiesUtil _propertiesUtil;
+
+    private final ObjectMapper _objectMapper;
+
+    @Inject
+    MediaInspectionCache(PropertiesUtil propertiesUtil, ObjectMapper objectMapper) {
+        _propertiesUtil = propertiesUtil;
+        _objectMapper = objectMapper;
+    }
+
+
+    public Optional<Entry> get(String sha256) {
+        if (!_propertiesUtil.isMediaInspectionCacheEnabled() || sha256 == null) {
+            return Optional.empty();
+        }
+        Path entryPath = getEntryPath(sha256);
+        if (!Files.exists(entryPath)) {
+            return Optional.empty();
+        }
+        try {
+            var entry = _objectMapper.readValue(entryPath.toFile(), Entry.class);
+            Files.setLastModifiedTime(entryPath, FileTime.from(Instant.now()));
+            LOG.info("Found cached media inspection results for media with hash {}.", sha256);
+            return Optional.of(entry);
+        }
+        catch (IOException e) {
+            LOG.warn(String.format(
+                    "Failed to read the media inspection cache entry at \"%s\". It will be removed.",
+                    entryPath), e);
+            deleteQuietly(entryPath);
+            return Optional.empty();
+        }
+    }
+
+
+    public void put(String sha256, Entry entry) {
+        if (!_propertiesUtil.isMediaInspectionCacheEnabled() || sha256 == null) {
+            return;
+        }
+        Path entryPath = getEntryPath(sha256);
+        Path tempPath = entryPath.resolveSibling(UUID.randomUUID() + ".tmp");
+        try {
+            _objectMapper.writeValue(tempPath.toFile(), entry);
+            // Another thread may be storing the same media, but both would write the same content.
+            Files.move(tempPath, entryPath, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            LOG.warn(String.format(
+                    "Failed to store media inspection results for media with hash %s.", sha256), e);
+            deleteQuietly(tempPath);
+            return;
+        }
+        evictIfNeeded();
+    }
+
+
+    private void evictIfNeeded() {
+        int maxEntries = _propertiesUtil.getMediaInspectionCacheMaxEntries();
+        Map<Path, FileTime> entries;
+        try (Stream<Path> paths = Files.list(getCacheDir())) {
+            entries = paths
+                    .filter(p -> p.getFileName().toString().endsWith(".json"))
+                    .collect(Collectors.toMap(p -> p, MediaInspectionCache::getLastModifiedTime));
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to list the media inspection cache entries.", e);
+            return;
+        }
+
+        int numToRemove = entries.size() - maxEntries;
+        if (numToRemove <= 0) {
+            return;
+        }
+        LOG.info("Removing {} least recently used entries from the media inspection cache.",
+                 numToRemove);
+        entries.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue())
+                .limit(numToRemove)
+                .map(Map.Entry::getKey)
+                .forEach(MediaInspectionCache::deleteQuietly);
+    }
+
+
+    private Path getCacheDir() {
+        return _propertiesUtil.getMediaInspectionCacheDirectory().toPath();
+    }
+
+    private Path getEntryPath(String sha256) {
+        return getCacheDir().resolve(sha256 + ".json");
+    }
+
+    private static FileTime getLastModifiedTime(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        }
+        catch (IOException e) {
+            // The entry was probably removed by another thread, so evict it first.
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            LOG.warn(String.format("Failed to delete \"%s\".", path), e);
+        }
+    }
+
+
+
+    public static class Entry {
+        private final MediaType _mediaType;
+        public MediaType getMediaType() { return _mediaType; }
+
+        private final String _mimeType;
+        public String getMimeType() { return _mimeType; }
+
+        private final int _length;
+        public int getLength() { return _length; }
+
+        private final ImmutableMap<String, String> _metadata;
+        public ImmutableMap<String, String> getMetadata() { return _metadata; }
+
+        private final FrameTimeInfo _frameTimeInfo;
+        public FrameTimeInfo getFrameTimeInfo() { return _frameTimeInfo; }
+
+        @JsonCreator
+        public Entry(
+                @JsonProperty("mediaType") MediaType mediaType,
+                @JsonProperty("mimeType") String mimeType,
+                @JsonProperty("length") int length,
+                @JsonProperty("metadata") Map<String, String> metadata,
+                @JsonProperty("frameTimeInfo") FrameTimeInfo frameTimeInfo) {
+            _mediaType = mediaType;
+            _mimeType = mimeType;
+            _length = length;
+            _metadata = ImmutableMap.copyOf(metadata);
+            _frameTimeInfo = frameTimeInfo;
+        }
+    }
+}
@@ -28,6 +28,7 @@ package org.mitre.mpf.wfm.camel.operations.mediainspection;
 
 import com.google.common.base.Preconditions;
 import org.apache.camel.Exchange;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.exception.TikaException;
@@ -58,13 +59,17 @@ import org.xml.sax.helpers.DefaultHandler;
 import javax.imageio.ImageIO;
 import javax.inject.Inject;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
@@ -96,14 +101,18 @@ public class MediaInspectionProcessor extends WfmProcessor {
 
     private final MediaMetadataValidator _mediaMetadataValidator;
 
+    private final MediaInspectionCache _mediaInspectionCache;
+
     @Inject
     public MediaInspectionProcessor(
             PropertiesUtil propertiesUtil, InProgressBatchJobsService inProgressJobs,
-            IoUtils ioUtils, MediaMetadataValidator mediaMetadataValidator) {
+            IoUtils ioUtils, MediaMetadataValidator mediaMetadataValidator,
+            MediaInspectionCache mediaInspectionCache) {
         _propertiesUtil = propertiesUtil;
         _inProgressJobs = inProgressJobs;
         _ioUtils = ioUtils;
         _mediaMetadataValidator = mediaMetadataValidator;
+        _mediaInspectionCache = mediaInspectionCache;
     }
 
     @Override
@@ -131,9 +140,15 @@ public class MediaInspectionProcessor extends WfmProcessor {
             try {
                 Path localPath = media.getLocalPath();
 
-                try (InputStream inputStream = Files.newInputStream(localPath)) {
+                // Detect the MIME type from the same stream used to compute the hash so the file
+                // is only read once.
+                try (var digestStream = new DigestInputStream(Files.newInputStream(localPath),
+                                                              DigestUtils.getSha256Digest());
+                        InputStream inputStream = new BufferedInputStream(digestStream)) {
                     LOG.debug("Calculating hash for '{}'.", localPath);
-                    sha = DigestUtils.sha256Hex(inputStream);
+                    mimeType = _ioUtils.getMimeType(inputStream, localPath);
+                    inputStream.transferTo(OutputStream.nullOutputStream());
+                    sha = Hex.encodeHexString(digestStream.getMessageDigest().digest());
                 } catch (IOException ioe) {
                     String errorMessage = "Could not calculate the SHA-256 hash for the file due to IOException: "
                             + ioe;
@@ -141,7 +156,27 @@ public class MediaInspectionProcessor extends WfmProcessor {
                     LOG.error(errorMessage, ioe);
                 }
 
-                mimeType = _ioUtils.getMimeType(localPath);
+                if (mimeType == null) {
+                    mimeType = _ioUtils.getMimeType(localPath);
+                }
+
+                var cachedInspection = _mediaInspectionCache.get(sha);
+                if (cachedInspection.isPresent()) {
+                    var entry = cachedInspection.get();
+                    _inProgressJobs.addMediaInspectionInfo(
+                            jobId, mediaId, sha, entry.getMediaType(), entry.getMimeType(),
+                            entry.getLength(), entry.getMetadata());
+                    if (entry.getFrameTimeInfo() != null) {
+                        _inProgressJobs.addFrameTimeInfo(jobId, mediaId, entry.getFrameTimeInfo());
+                    }
+                    LOG.info("[Job {}] Media with URI {} (id={}) has data type {} and mime type {}. " +
+                                     "Using cached media inspection results.",
+                             jobId, media.getUri(), media.getId(), media.getType(),
+                             media.getMimeType());
+                    setHeaders(exchange, jobId, mediaId);
+                    return;
+                }
+                int initialIssueCount = getIssueCount(jobId, mediaId);
 
                 mediaMetadata.put("MIME_TYPE", mimeType);
                 mediaType = MediaTypeUtils.parse(mimeType);
@@ -182,6 +217,18 @@ public class MediaInspectionProcessor extends WfmProcessor {
                         LOG.warn("Treating job {}'s media {} as UNKNOWN data type.", jobId, mediaId);
                         break;
                 }
+
+                // Image inspection may convert the media to a different format, so only
+                // video and audio results can be reused. Results that produced warnings or
+                // errors are not cached so that they are reported for every job.
+                if ((mediaType == MediaType.VIDEO || mediaType == MediaType.AUDIO)
+                        && getIssueCount(jobId, mediaId) == initialIssueCount) {
+                    var frameTimeInfo = mediaType == MediaType.VIDEO
+                            ? _inProgressJobs.getJob(jobId).getMedia(mediaId).getFrameTimeInfo()
+                            : null;
+                    _mediaInspectionCache.put(sha, new MediaInspectionCache.Entry(
+                            mediaType, mimeType, length, mediaMetadata, frameTimeInfo));
+                }
             } catch (Exception e) {
                 LOG.error("[Job {}|*|*] Failed to inspect {} due to an exception.", jobId, media.getUri(), e);
                 if (e instanceof TikaException) {
@@ -205,6 +252,13 @@ public class MediaInspectionProcessor extends WfmProcessor {
             _inProgressJobs.setJobStatus(jobId, BatchJobStatusType.ERROR);
         }
     }
+
+    private int getIssueCount(long jobId, long mediaId) {
+        var job = _inProgressJobs.getJob(jobId);
+        return job.getWarnings().getOrDefault(mediaId, Set.of()).size()
+                + job.getErrors().getOrDefault(mediaId, Set.of()).size();
+    }
+
     private static void setHeaders(Exchange exchange, long jobId, long mediaId) {
         // Copy these headers to the output exchange.
         exchange.getOut().setHeader(MpfHeaders.CORRELATION_ID, exchange.getIn().getHeader(MpfHeaders.CORRELATION_ID));
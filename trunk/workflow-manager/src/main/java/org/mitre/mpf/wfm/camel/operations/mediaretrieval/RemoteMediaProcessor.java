@@ -36,10 +36,11 @@ import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.IssueCodes;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.service.RemoteMediaCache;
 import org.mitre.mpf.wfm.service.S3StorageBackend;
-import org.mitre.mpf.wfm.service.StorageException;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.util.RangedDownloader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -47,7 +48,11 @@ import org.springframework.stereotype.Component;
 import javax.inject.Inject;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.function.Function;
 
 /** This processor downloads a file from a remote URI to the local filesystem. */
@@ -64,16 +69,20 @@ public class RemoteMediaProcessor extends WfmProcessor {
 
     private final AggregateJobPropertiesUtil _aggregateJobPropertiesUtil;
 
+    private final RemoteMediaCache _remoteMediaCache;
+
     @Inject
     public RemoteMediaProcessor(
             InProgressBatchJobsService inProgressJobs,
             S3StorageBackend s3Service,
             PropertiesUtil propertiesUtil,
-            AggregateJobPropertiesUtil aggregateJobPropertiesUtil) {
+            AggregateJobPropertiesUtil aggregateJobPropertiesUtil,
+            RemoteMediaCache remoteMediaCache) {
         _inProgressJobs = inProgressJobs;
         _s3Service = s3Service;
         _propertiesUtil = propertiesUtil;
         _aggregateJobPropertiesUtil = aggregateJobPropertiesUtil;
+        _remoteMediaCache = remoteMediaCache;
     }
 
 
@@ -96,15 +105,28 @@ public class RemoteMediaProcessor extends WfmProcessor {
                 try {
                     Function<String, String> combinedProperties = _aggregateJobPropertiesUtil
                             .getCombinedProperties(job, media);
+                    boolean isCacheEnabled = _propertiesUtil.isRemoteMediaCacheEnabled();
                     if (S3StorageBackend.requiresS3MediaDownload(combinedProperties)) {
-                        _s3Service.downloadFromS3(media, combinedProperties);
+                        String eTag = isCacheEnabled
+                                ? _s3Service.getETag(media.getUri(), combinedProperties)
+                                : null;
+                        _remoteMediaCache.retrieve(
+                                jobId, media.getUri(), eTag, media.getLocalPath(),
+                                p -> _s3Service.downloadFromS3(media.getUri(), combinedProperties, p, eTag));
                     }
                     else {
-                        downloadFile(jobId, media);
+                        var rangedDownloader = RangedDownloader.create(combinedProperties, _propertiesUtil);
+                        var remoteFileInfo = isCacheEnabled || rangedDownloader.isEnabled()
+                                ? getRemoteFileInfo(media.getUri())
+                                : RemoteFileInfo.UNKNOWN;
+                        _remoteMediaCache.retrieve(
+                                jobId, media.getUri(), isCacheEnabled ? remoteFileInfo.version : null,
+                                media.getLocalPath(),
+                                p -> downloadFile(media.getUri(), remoteFileInfo, rangedDownloader, p));
                     }
                     media.getLocalPath().toFile().deleteOnExit();
                 }
-                catch (StorageException e) {
+                catch (Exception e) { // specifying "http::" will cause an IllegalArgumentException
                     String message = handleMediaRetrievalException(
                             media, media.getLocalPath().toFile(), e);
                     handleMediaRetrievalFailure(jobId, media, message);
@@ -125,36 +147,180 @@ public class RemoteMediaProcessor extends WfmProcessor {
     }
 
 
-    private void downloadFile(long jobId, Media media) {
-        File localFile = null;
-        for (int i = 0; i <= _propertiesUtil.getRemoteMediaDownloadRetries(); i++) {
-            String errorMessage;
+    private void downloadFile(String uri, RemoteFileInfo remoteFileInfo,
+                              RangedDownloader rangedDownloader, Path destination) throws IOException {
+        if (remoteFileInfo.acceptsRanges && rangedDownloader.shouldSplit(remoteFileInfo.size)) {
+            rangedDownloader.download(uri, remoteFileInfo.size, destination,
+                                      (begin, end) -> openRange(uri, remoteFileInfo, begin, end));
+            return;
+        }
+
+        for (int i = 0; ; i++) {
             try {
-                localFile = media.getLocalPath().toFile();
-                FileUtils.copyURLToFile(new URL(media.getUri()), localFile);
-                log.debug("Successfully retrieved {} and saved it to '{}'.", media.getUri(), media.getLocalPath());
-                break;
+                copyToFile(uri, remoteFileInfo, destination);
+                log.debug("Successfully retrieved {} and saved it to '{}'.", uri, destination);
+                return;
+            } catch (RemoteFileChangedException e) {
+                throw e;
             } catch (IOException e) { // "javax.net.ssl.SSLException: SSL peer shut down incorrectly" has been observed.
-                errorMessage = handleMediaRetrievalException(media, localFile, e);
-            } catch (Exception e) { // specifying "http::" will cause an IllegalArgumentException
-                errorMessage = handleMediaRetrievalException(media, localFile, e);
-                handleMediaRetrievalFailure(jobId, media, errorMessage);
-                break; // exception is not recoverable
+                if (i >= _propertiesUtil.getRemoteMediaDownloadRetries()) {
+                    throw e;
+                }
+                log.warn("Failed to retrieve {}.", uri, e);
+                deleteOrLeakFile(destination.toFile());
             }
 
-            if (i < _propertiesUtil.getRemoteMediaDownloadRetries()) {
-                try {
-                    int sleepMillisec = _propertiesUtil.getRemoteMediaDownloadSleep() * (i + 1);
-                    log.warn("Sleeping for {} ms before trying to retrieve {} again.", sleepMillisec, media.getUri());
-                    Thread.sleep(sleepMillisec);
-                } catch (InterruptedException e) {
-                    log.warn("Sleep interrupted.");
-                    Thread.currentThread().interrupt();
-                    break; // abort download attempt
+            try {
+                int sleepMillisec = _propertiesUtil.getRemoteMediaDownloadSleep() * (i + 1);
+                log.warn("Sleeping for {} ms before trying to retrieve {} again.", sleepMillisec, uri);
+                Thread.sleep(sleepMillisec);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(
+                        "Interrupted while waiting to retry the download of " + uri); // abort download attempt
+            }
+        }
+    }
+
+
+    private static void copyToFile(String uri, RemoteFileInfo remoteFileInfo, Path destination)
+            throws IOException {
+        var connection = openConnection(uri, remoteFileInfo);
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_PRECON_FAILED) {
+                throw new RemoteFileChangedException(uri);
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format(
+                        "Failed to retrieve %s because the response code was %s.", uri, responseCode));
+            }
+            try (InputStream inputStream = connection.getInputStream()) {
+                FileUtils.copyInputStreamToFile(inputStream, destination.toFile());
+            }
+        }
+        finally {
+            connection.disconnect();
+        }
+    }
+
+
+    private static InputStream openRange(String uri, RemoteFileInfo remoteFileInfo, long begin, long end)
+            throws IOException {
+        var connection = openConnection(uri, remoteFileInfo);
+        connection.setRequestProperty("Range", "bytes=" + begin + '-' + end);
+        int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_PRECON_FAILED) {
+            connection.disconnect();
+            throw new RemoteFileChangedException(uri);
+        }
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+            connection.disconnect();
+            throw new IOException(String.format(
+                    "Expected a partial content response when requesting bytes %s-%s of %s, but the " +
+                            "response code was %s.",
+                    begin, end, uri, responseCode));
+        }
+        return connection.getInputStream();
+    }
+
+
+    /**
+     * Opens a GET request that fails with 412 Precondition Failed when the remote file is no longer the version
+     * described by remoteFileInfo. This prevents a newer version of the file from being cached under the version
+     * from the HEAD request, and prevents combining ranges from different versions of the file.
+     */
+    private static HttpURLConnection openConnection(String uri, RemoteFileInfo remoteFileInfo)
+            throws IOException {
+        var connection = (HttpURLConnection) new URL(uri).openConnection();
+        if (remoteFileInfo.eTag != null) {
+            connection.setRequestProperty("If-Match", remoteFileInfo.eTag);
+        }
+        else if (remoteFileInfo.lastModified != null) {
+            connection.setRequestProperty("If-Unmodified-Since", remoteFileInfo.lastModified);
+        }
+        return connection;
+    }
+
+
+    /**
+     * Uses a HEAD request to get the ETag or Last-Modified value that identifies the current
+     * version of the remote media, its size, and whether the server supports range requests.
+     */
+    private static RemoteFileInfo getRemoteFileInfo(String uri) {
+        try {
+            var connection = (HttpURLConnection) new URL(uri).openConnection();
+            try {
+                connection.setRequestMethod("HEAD");
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    return RemoteFileInfo.UNKNOWN;
+                }
+                String eTag = connection.getHeaderField("ETag");
+                if (eTag != null && eTag.startsWith("W/")) {
+                    // Weak ETags can not be used with If-Match.
+                    eTag = null;
                 }
-            } else {
-                handleMediaRetrievalFailure(jobId, media, errorMessage);
+                String lastModified = connection.getLastModified() > 0
+                        ? connection.getHeaderField("Last-Modified")
+                        : null;
+                boolean acceptsRanges = "bytes".equalsIgnoreCase(
+                        connection.getHeaderField("Accept-Ranges"));
+                return new RemoteFileInfo(eTag, lastModified, connection.getLastModified(),
+                                          connection.getContentLengthLong(), acceptsRanges);
+            }
+            finally {
+                connection.disconnect();
+            }
+        }
+        catch (IOException | ClassCastException e) {
+            log.warn("Failed to get the ETag, Last-Modified, and Content-Length values for {}. " +
+                             "It will be downloaded with a single request and without using the " +
+                             "remote media cache.", uri, e);
+            return RemoteFileInfo.UNKNOWN;
+        }
+    }
+
+
+    private static class RemoteFileInfo {
+        static final RemoteFileInfo UNKNOWN = new RemoteFileInfo(null, null, 0, -1, false);
+
+        // Strong ETag, or null when the server did not provide one.
+        final String eTag;
+
+        // Last-Modified header value, or null when the server did not provide one.
+        final String lastModified;
+
+        // ETag or Last-Modified value, or null when neither is available. The GET requests are conditional on
+        // the same value, so the downloaded content is always this version.
+        final String version;
+
+        final long size;
+
+        final boolean acceptsRanges;
+
+        RemoteFileInfo(String eTag, String lastModified, long lastModifiedMillis, long size,
+                       boolean acceptsRanges) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            if (eTag != null) {
+                version = eTag;
             }
+            else if (lastModified != null) {
+                version = Long.toString(lastModifiedMillis);
+            }
+            else {
+                version = null;
+            }
+            this.size = size;
+            this.acceptsRanges = acceptsRanges;
+        }
+    }
+
+
+    private static class RemoteFileChangedException extends IOException {
+        RemoteFileChangedException(String uri) {
+            super(String.format("Failed to download %s because it changed after its version was retrieved.",
+                                uri));
         }
     }
 
@@ -34,11 +34,9 @@ import org.mitre.mpf.wfm.camel.BroadcastEnabledStringCountBasedWfmAggregator;
 import org.mitre.mpf.wfm.camel.SplitCompletedPredicate;
 import org.mitre.mpf.wfm.camel.WfmAggregator;
 import org.mitre.mpf.wfm.camel.operations.detection.DetectionResponseProcessor;
-import org.mitre.mpf.wfm.camel.operations.detection.MovingTrackLabelProcessor;
+import org.mitre.mpf.wfm.camel.operations.detection.TrackPostProcessor;
 import org.mitre.mpf.wfm.camel.operations.detection.artifactextraction.ArtifactExtractionProcessor;
 import org.mitre.mpf.wfm.camel.operations.detection.artifactextraction.ArtifactExtractionSplitterImpl;
-import org.mitre.mpf.wfm.camel.operations.detection.padding.DetectionPaddingProcessor;
-import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingProcessor;
 import org.mitre.mpf.wfm.enums.MpfEndpoints;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.slf4j.Logger;
@@ -99,9 +97,7 @@ public class DetectionResponseRouteBuilder extends RouteBuilder {
 					.aggregate(header(MpfHeaders.CORRELATION_ID), aggregator)
 					.completionPredicate(new SplitCompletedPredicate(true)) // We need to forward the body of the last message on to the next processor.
 					.removeHeader(MpfHeaders.SPLIT_COMPLETED)
-					.process(TrackMergingProcessor.REF) // Track merging is trivial. If it becomes a heavy lift, put in a splitter/aggregator to divide the work.
-					.process(MovingTrackLabelProcessor.REF) // Detect and flag moving tracks. Remove stationary tracks if requested by job.
-					.process(DetectionPaddingProcessor.REF)
+					.process(TrackPostProcessor.REF) // Merge, prune, and label moving tracks, then pad detections. Each track set is loaded and stored once.
 					.split().method(ArtifactExtractionSplitterImpl.REF, "split")
 						.parallelProcessing() // Create work units and process them in any order.
 						.streaming() // Aggregate responses in any order.
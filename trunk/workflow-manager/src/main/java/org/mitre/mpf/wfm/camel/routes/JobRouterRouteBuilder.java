@@ -30,6 +30,7 @@ import org.apache.camel.ExchangePattern;
 import org.apache.camel.builder.RouteBuilder;
 import org.mitre.mpf.wfm.camel.DefaultTaskSplitter;
 import org.mitre.mpf.wfm.camel.JobCompleteProcessorImpl;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionRequestDispatcher;
 import org.mitre.mpf.wfm.enums.MpfEndpoints;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.slf4j.Logger;
@@ -46,6 +47,9 @@ public class JobRouterRouteBuilder extends RouteBuilder {
 	public static final String ENTRY_POINT = "jms:MPF.JOB_ROUTER";
 	public static final String ROUTE_ID = "Job Router Route";
 
+	public static final String WORK_UNIT_ENTRY_POINT = "direct:jobRouterWorkUnits";
+	public static final String WORK_UNIT_ROUTE_ID = "Job Router Work Unit Route";
+
 	private final String entryPoint, routeId;
 
 	public JobRouterRouteBuilder() {
@@ -78,10 +82,22 @@ public class JobRouterRouteBuilder extends RouteBuilder {
 								.to(MpfEndpoints.TASK_RESULTS_AGGREGATOR)
 							.otherwise()
 								.marshal().protobuf()
-								.recipientList(header(MpfHeaders.RECIPIENT_QUEUE))
+								.to(WORK_UNIT_ENTRY_POINT)
 				.endChoice()
 					.endChoice() // For unknown reasons, the split() DSL is ended by 'endChoice'.
 				.end()
 			.endChoice();
+
+		// Detection requests may be held by the dispatcher so that large jobs do not starve smaller jobs.
+		from(WORK_UNIT_ENTRY_POINT)
+			.routeId(WORK_UNIT_ROUTE_ID)
+			.choice()
+				.when(method(DetectionRequestDispatcher.REF, "shouldDispatch"))
+					.bean(DetectionRequestDispatcher.REF, "submit")
+				.otherwise()
+					.process(exchange -> exchange.getIn().setHeader(MpfHeaders.REQUEST_SENT_TIME,
+					                                                 System.currentTimeMillis()))
+					.recipientList(header(MpfHeaders.RECIPIENT_QUEUE))
+			.end();
 	}
 }
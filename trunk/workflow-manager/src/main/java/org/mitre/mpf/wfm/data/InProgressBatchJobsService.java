@@ -34,6 +34,7 @@ import org.mitre.mpf.wfm.WfmProcessingException;
 import org.mitre.mpf.wfm.data.entities.persistent.*;
 import org.mitre.mpf.wfm.data.entities.transients.Track;
 import org.mitre.mpf.wfm.enums.*;
+import org.mitre.mpf.wfm.service.RemoteMediaCache;
 import org.mitre.mpf.wfm.util.FrameTimeInfo;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
 import org.slf4j.Logger;
@@ -50,6 +51,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.stream.Collectors.joining;
 
@@ -63,17 +65,23 @@ public class InProgressBatchJobsService {
 
     private final Redis _redis;
 
-    private final Map<Long, BatchJobImpl> _jobs = new HashMap<>();
+    private final RemoteMediaCache _remoteMediaCache;
+
+    // Jobs are tracked in a concurrent map and only the job being modified is locked, so that
+    // updates to one job, and Redis I/O in particular, never block work on other jobs.
+    private final Map<Long, BatchJobImpl> _jobs = new ConcurrentHashMap<>();
 
 
     @Inject
-    public InProgressBatchJobsService(PropertiesUtil propertiesUtil, Redis redis) {
+    public InProgressBatchJobsService(PropertiesUtil propertiesUtil, Redis redis,
+                                      RemoteMediaCache remoteMediaCache) {
         _propertiesUtil = propertiesUtil;
         _redis = redis;
+        _remoteMediaCache = remoteMediaCache;
     }
 
 
-    public synchronized BatchJob addJob(
+    public BatchJob addJob(
             long jobId,
             String externalId,
             SystemPropertiesSnapshot propertiesSnapshot,
@@ -86,10 +94,6 @@ public class InProgressBatchJobsService {
             Map<String, String> jobProperties,
             Map<String, ? extends Map<String, String>> algorithmProperties) {
 
-        if (_jobs.containsKey(jobId)) {
-            throw new IllegalArgumentException(String.format("Job with id %s already exists.", jobId));
-        }
-
         var mediaInfo = media.stream()
                 .map(m -> String.format("\"%s\" (id=%s)", m.getUri(), m.getId()))
                 .collect(joining(", "));
@@ -112,7 +116,9 @@ public class InProgressBatchJobsService {
                 mediaImpls,
                 jobProperties,
                 algorithmProperties);
-        _jobs.put(jobId, job);
+        if (_jobs.putIfAbsent(jobId, job) != null) {
+            throw new IllegalArgumentException(String.format("Job with id %s already exists.", jobId));
+        }
 
         media.stream()
                 .filter(Media::isFailed)
@@ -122,7 +128,7 @@ public class InProgressBatchJobsService {
     }
 
 
-    public synchronized BatchJob getJob(long jobId) {
+    public BatchJob getJob(long jobId) {
         return getJobImpl(jobId);
     }
 
@@ -136,11 +142,17 @@ public class InProgressBatchJobsService {
     }
 
 
-    public synchronized void clearJob(long jobId) {
+    public void clearJob(long jobId) {
         LOG.info("Clearing all job information for job: {}", jobId);
-        BatchJobImpl job = getJobImpl(jobId);
+        BatchJobImpl job = _jobs.remove(jobId);
+        if (job == null) {
+            throw new WfmProcessingException("Unable to locate batch job with id: " + jobId);
+        }
         _redis.clearTracks(job);
-        _jobs.remove(jobId);
+        job.getPropertyViews().clear();
+        // The job's copies of remote media are hard links to the remote media cache, so deleting
+        // them below does not remove the cached media.
+        _remoteMediaCache.release(jobId);
         for (Media media : job.getMedia()) {
             if (media.getUriScheme().isRemote()) {
                 try {
@@ -168,47 +180,58 @@ public class InProgressBatchJobsService {
         }
     }
 
-    public synchronized void clearOnInitializationError(long jobId) {
+    public void clearOnInitializationError(long jobId) {
         _jobs.remove(jobId);
     }
 
-    public synchronized boolean containsJob(long jobId) {
+    public boolean containsJob(long jobId) {
         return _jobs.containsKey(jobId);
     }
 
-    public synchronized boolean cancelJob(long jobId) {
+    public boolean cancelJob(long jobId) {
         LOG.info("Marking job {} as cancelled.", jobId);
         getJobImpl(jobId).setCancelled(true);
         return true;
     }
 
-    public synchronized SortedSet<Track> getTracks(long jobId, long mediaId, int taskIndex, int actionIndex) {
+    public SortedSet<Track> getTracks(long jobId, long mediaId, int taskIndex, int actionIndex) {
         return _redis.getTracks(jobId, mediaId, taskIndex, actionIndex);
     }
 
 
-    public synchronized void addTrack(Track track) {
+    public void addTrack(Track track) {
         LOG.debug("Storing new track for job {}'s media {}.", track.getJobId(), track.getMediaId());
         _redis.addTrack(track);
     }
 
-    public synchronized void setTracks(long jobId, long mediaId, int taskIndex, int actionIndex,
-                                       Collection<Track> tracks) {
+
+    public void addTracks(Collection<Track> tracks) {
+        if (tracks.isEmpty()) {
+            return;
+        }
+        var firstTrack = tracks.iterator().next();
+        LOG.debug("Storing {} new tracks for job {}'s media {}.",
+                  tracks.size(), firstTrack.getJobId(), firstTrack.getMediaId());
+        _redis.addTracks(tracks);
+    }
+
+    public void setTracks(long jobId, long mediaId, int taskIndex, int actionIndex,
+                          Collection<Track> tracks) {
         LOG.info("Replacing tracks for job {}'s media {}", jobId, mediaId);
         _redis.setTracks(jobId, mediaId, taskIndex, actionIndex, tracks);
     }
 
 
-    public synchronized void addJobWarning(long jobId, IssueCodes code, String message) {
+    public void addJobWarning(long jobId, IssueCodes code, String message) {
         addWarning(jobId, 0, code, message);
     }
 
-    public synchronized void addWarning(long jobId, long mediaId, IssueCodes code, String message) {
+    public void addWarning(long jobId, long mediaId, IssueCodes code, String message) {
         addWarning(jobId, mediaId, code, message, IssueSources.WORKFLOW_MANAGER);
     }
 
-    public synchronized void addWarning(long jobId, long mediaId, IssueCodes code, String message,
-                                        IssueSources source) {
+    public void addWarning(long jobId, long mediaId, IssueCodes code, String message,
+                           IssueSources source) {
         var codeString = IssueCodes.toString(code);
         LOG.warn("Adding the following warning to job {}'s media {}: {} - {}", jobId, mediaId, codeString, message);
 
@@ -216,57 +239,99 @@ public class InProgressBatchJobsService {
     }
 
 
-    public synchronized void addJobError(long jobId, IssueCodes code, String message) {
+    public void addJobError(long jobId, IssueCodes code, String message) {
         addError(jobId, 0, code, message);
     }
 
-    public synchronized void addError(long jobId, long mediaId, IssueCodes code, String message) {
+    public void addError(long jobId, long mediaId, IssueCodes code, String message) {
         addError(jobId, mediaId, code, message, IssueSources.WORKFLOW_MANAGER);
     }
 
-    public synchronized void addError(long jobId, long mediaId, IssueCodes code, String message, IssueSources source) {
+    public void addError(long jobId, long mediaId, IssueCodes code, String message, IssueSources source) {
         var codeString = IssueCodes.toString(code);
 
         LOG.error("Adding the following error to job {}'s media {}: {} - {}", jobId, mediaId, codeString, message);
 
-        getJobImpl(jobId).addError(mediaId, IssueSources.toString(source), codeString, message);
+        var job = getJobImpl(jobId);
+        job.addError(mediaId, IssueSources.toString(source), codeString, message);
 
         if (source != IssueSources.MARKUP && mediaId != 0) {
-            getMediaImpl(jobId, mediaId).setFailed(true);
+            synchronized (job) {
+                getMediaImpl(job, mediaId).setFailed(true);
+            }
         }
     }
 
 
-    public synchronized void addDetectionProcessingError(DetectionProcessingError error) {
+    public void addDetectionProcessingError(DetectionProcessingError error) {
         LOG.info("Adding detection processing error for job {}'s media {}: {} - {}",
                  error.getJobId(), error.getMediaId(), error.getErrorCode(), error.getErrorMessage());
-        getJobImpl(error.getJobId()).addDetectionProcessingError(error);
+        var job = getJobImpl(error.getJobId());
+        job.addDetectionProcessingError(error);
 
-        var media = getMediaImpl(error.getJobId(), error.getMediaId());
-        media.setFailed(true);
+        synchronized (job) {
+            getMediaImpl(job, error.getMediaId()).setFailed(true);
+        }
     }
 
 
-    public synchronized Multimap<Long, JsonIssueDetails> getMergedDetectionErrors(long jobId) {
+    public Multimap<Long, JsonIssueDetails> getMergedDetectionErrors(long jobId) {
         return DetectionErrorUtil.getMergedDetectionErrors(getJob(jobId));
     }
 
 
-    public synchronized void setJobStatus(long jobId, BatchJobStatusType batchJobStatusType) {
+    public void setJobStatus(long jobId, BatchJobStatusType batchJobStatusType) {
         var job = getJobImpl(jobId);
-        if (job.getStatus() != batchJobStatusType) {
-            LOG.info("Setting status of job {} to {}", jobId, batchJobStatusType);
-            getJobImpl(jobId).setStatus(batchJobStatusType);
+        synchronized (job) {
+            if (job.getStatus() != batchJobStatusType) {
+                LOG.info("Setting status of job {} to {}", jobId, batchJobStatusType);
+                job.setStatus(batchJobStatusType);
+            }
         }
     }
 
 
-    public synchronized void incrementTask(long jobId) {
+    public void incrementTask(long jobId) {
         var job = getJobImpl(jobId);
-        int currentTask = job.getCurrentTaskIndex();
-        int nextTask = currentTask + 1;
-        LOG.info("Changing job {}'s current task index from {} to {}", jobId, currentTask, nextTask);
-        job.setCurrentTaskIndex(nextTask);
+        synchronized (job) {
+            int currentTask = job.getCurrentTaskIndex();
+            int nextTask = currentTask + 1;
+            LOG.info("Changing job {}'s current task index from {} to {}", jobId, currentTask, nextTask);
+            job.setCurrentTaskIndex(nextTask);
+        }
+    }
+
+
+
+    /**
+     * Moves a piece of media on to its next task when the job uses per-media task progression.
+     * The job's current task index is kept at the lowest task index of all of the job's media.
+     *
+     * @param skipRemainingTasks when true, the media is moved past the last task of the pipeline
+     * @return true if this call moved the last of the job's media past the end of the pipeline
+     */
+    public boolean incrementTask(long jobId, long mediaId, boolean skipRemainingTasks) {
+        var job = getJobImpl(jobId);
+        synchronized (job) {
+            int taskCount = job.getPipelineElements().getTaskCount();
+            var media = getMediaImpl(job, mediaId);
+            int currentTask = media.getCurrentTaskIndex();
+            if (currentTask >= taskCount) {
+                return false;
+            }
+
+            int nextTask = skipRemainingTasks ? taskCount : currentTask + 1;
+            LOG.info("Changing job {}'s current task index for media {} from {} to {}",
+                     jobId, mediaId, currentTask, nextTask);
+            media.setCurrentTaskIndex(nextTask);
+
+            int lowestTask = job.getMedia().stream()
+                    .mapToInt(Media::getCurrentTaskIndex)
+                    .min()
+                    .orElse(taskCount);
+            job.setCurrentTaskIndex(lowestTask);
+            return lowestTask >= taskCount;
+        }
     }
 
 
@@ -279,8 +344,8 @@ public class InProgressBatchJobsService {
     private static final String LOCAL_FILE_NOT_READABLE = "File is not readable";
 
 
-    public synchronized Media initMedia(String uriStr, Map<String, String> mediaSpecificProperties,
-                                        Map<String, String> providedMetadataProperties) {
+    public Media initMedia(String uriStr, Map<String, String> mediaSpecificProperties,
+                           Map<String, String> providedMetadataProperties) {
         long mediaId = IdGenerator.next();
         LOG.info("Initializing media from {} with id {}", uriStr, mediaId);
 
@@ -327,35 +392,45 @@ public class InProgressBatchJobsService {
     }
 
 
-    public synchronized void addMediaInspectionInfo(
+    public void addMediaInspectionInfo(
             long jobId, long mediaId, String sha256, MediaType mediaType, String mimeType, int length,
             Map<String, String> metadata) {
         LOG.info("Adding media metadata to job {}'s media {}.", jobId, mediaId);
-        MediaImpl media = getMediaImpl(jobId, mediaId);
-        media.setSha256(sha256);
-        media.setType(mediaType);
-        media.setMimeType(mimeType);
-        media.setLength(length);
-        media.addMetadata(metadata);
+        var job = getJobImpl(jobId);
+        synchronized (job) {
+            MediaImpl media = getMediaImpl(job, mediaId);
+            media.setSha256(sha256);
+            media.setType(mediaType);
+            media.setMimeType(mimeType);
+            media.setLength(length);
+            media.addMetadata(metadata);
+        }
     }
 
-    public synchronized void addConvertedMediaPath(long jobId, long mediaId,
-                                                   Path convertedMediaPath) {
+    public void addConvertedMediaPath(long jobId, long mediaId,
+                                      Path convertedMediaPath) {
         LOG.info("Setting job {}'s media {}'s converted media path to {}",
                  jobId, mediaId, convertedMediaPath);
-        getMediaImpl(jobId, mediaId).setConvertedMediaPath(convertedMediaPath);
+        var job = getJobImpl(jobId);
+        synchronized (job) {
+            getMediaImpl(job, mediaId).setConvertedMediaPath(convertedMediaPath);
+        }
     }
 
-    public synchronized void addFrameTimeInfo(long jobId, long mediaId,
-                                              FrameTimeInfo frameTimeInfo) {
+    public void addFrameTimeInfo(long jobId, long mediaId,
+                                 FrameTimeInfo frameTimeInfo) {
         LOG.info("Adding frame time info to job {}'s media {}.", jobId, mediaId);
-        getMediaImpl(jobId, mediaId).setFrameTimeInfo(frameTimeInfo);
+        var job = getJobImpl(jobId);
+        synchronized (job) {
+            getMediaImpl(job, mediaId).setFrameTimeInfo(frameTimeInfo);
+        }
     }
 
-    private MediaImpl getMediaImpl(long jobId, long mediaId) {
-        MediaImpl media = getJobImpl(jobId).getMedia(mediaId);
+    private static MediaImpl getMediaImpl(BatchJobImpl job, long mediaId) {
+        MediaImpl media = job.getMedia(mediaId);
         if (media == null) {
-            throw new IllegalArgumentException(String.format("Job %s does not have media with id %s", jobId, mediaId));
+            throw new IllegalArgumentException(String.format(
+                    "Job %s does not have media with id %s", job.getId(), mediaId));
         }
         return media;
     }
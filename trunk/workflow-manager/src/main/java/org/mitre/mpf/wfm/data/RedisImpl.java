@@ -30,21 +30,18 @@ import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
 import org.mitre.mpf.wfm.data.entities.transients.Track;
 import org.mitre.mpf.wfm.data.entities.persistent.Media;
 import org.mitre.mpf.wfm.util.JsonUtils;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.BoundListOperations;
-import org.springframework.data.redis.core.RedisCallback;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.*;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.*;
 
 import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 
 
 @Component
@@ -58,9 +55,18 @@ public class RedisImpl implements Redis {
     @Autowired
     private JsonUtils jsonUtils;
 
+    @Autowired
+    private PropertiesUtil propertiesUtil;
+
+    private boolean useBinaryTrackEncoding;
+
 
     @PostConstruct
     private synchronized void init() {
+        useBinaryTrackEncoding = propertiesUtil.isRedisBinaryTrackEncodingEnabled();
+        log.info("Tracks will be stored in Redis using the {} encoding.",
+                 useBinaryTrackEncoding ? "binary" : "Smile");
+
         log.info("Flushing Redis.");
         redisTemplate.execute((RedisCallback<Void>) redisConnection -> {
             redisConnection.flushAll();
@@ -72,28 +78,70 @@ public class RedisImpl implements Redis {
     @Override
     public void addTrack(Track track) {
         redisTemplate.boundListOps(createTrackKey(track))
-                .rightPush(jsonUtils.serialize(track));
+                .rightPush(serialize(track));
     }
 
     @Override
-    public synchronized void setTracks(long jobId, long mediaId, int taskIndex, int actionIndex,
-                                       Collection<Track> tracks) {
-        String key = createTrackKey(jobId, mediaId, taskIndex, actionIndex);
-        redisTemplate.delete(key);
-        BoundListOperations<String, Object> redisTracks = redisTemplate.boundListOps(key);
+    public void addTracks(Collection<Track> tracks) {
+        if (tracks.isEmpty()) {
+            return;
+        }
+        // All of the tracks from a single detection response usually share the same key, so this
+        // normally results in a single multi-value RPUSH.
+        Map<String, List<Object>> serializedTracks = new HashMap<>();
         for (Track track : tracks) {
-            redisTracks.rightPush(jsonUtils.serialize(track));
+            serializedTracks.computeIfAbsent(createTrackKey(track), k -> new ArrayList<>())
+                    .add(serialize(track));
         }
+
+        redisTemplate.executePipelined(new SessionCallback<Void>() {
+            @Override
+            public <K, V> Void execute(RedisOperations<K, V> operations) {
+                ListOperations<String, Object> listOps = typed(operations).opsForList();
+                serializedTracks.forEach(listOps::rightPushAll);
+                return null;
+            }
+        });
+    }
+
+
+    @Override
+    public void setTracks(long jobId, long mediaId, int taskIndex, int actionIndex,
+                          Collection<Track> tracks) {
+        String key = createTrackKey(jobId, mediaId, taskIndex, actionIndex);
+        List<Object> serializedTracks = tracks.stream()
+                .<Object>map(this::serialize)
+                .collect(toList());
+
+        redisTemplate.executePipelined(new SessionCallback<Void>() {
+            @Override
+            public <K, V> Void execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redisOps = typed(operations);
+                redisOps.delete(key);
+                if (!serializedTracks.isEmpty()) {
+                    redisOps.opsForList().rightPushAll(key, serializedTracks);
+                }
+                return null;
+            }
+        });
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static RedisOperations<String, Object> typed(RedisOperations<?, ?> operations) {
+        // The operations passed to a SessionCallback are the same RedisTemplate, but with
+        // its type parameters erased.
+        return (RedisOperations<String, Object>) operations;
     }
 
 
     @Override
-    public synchronized SortedSet<Track> getTracks(long jobId, long mediaId, int taskIndex, int actionIndex) {
+    public SortedSet<Track> getTracks(long jobId, long mediaId, int taskIndex, int actionIndex) {
         return redisTemplate
                 .boundListOps(createTrackKey(jobId, mediaId, taskIndex, actionIndex))
                 .range(0, -1)
                 .stream()
-                .map(o -> jsonUtils.deserialize((byte[]) o, Track.class))
+                .map(o -> deserialize((byte[]) o))
                 .collect(toCollection(TreeSet::new));
     }
 
@@ -114,6 +162,21 @@ public class RedisImpl implements Redis {
     }
 
 
+    private byte[] serialize(Track track) {
+        return useBinaryTrackEncoding
+                ? TrackCodec.encode(track)
+                : jsonUtils.serialize(track);
+    }
+
+
+    // Both formats are always accepted so that the setting only controls how new tracks are written.
+    private Track deserialize(byte[] bytes) {
+        return TrackCodec.isEncoded(bytes)
+                ? TrackCodec.decode(bytes)
+                : jsonUtils.deserialize(bytes, Track.class);
+    }
+
+
     private static String createTrackKey(Track track) {
         return createTrackKey(track.getJobId(), track.getMediaId(), track.getTaskIndex(), track.getActionIndex());
 
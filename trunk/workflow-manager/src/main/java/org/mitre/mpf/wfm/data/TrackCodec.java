@@ -0,0 +1,336 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data;
+
+import org.mitre.mpf.wfm.WfmProcessingException;
+import org.mitre.mpf.wfm.data.entities.transients.Detection;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.enums.ArtifactExtractionStatus;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact binary encoding of {@link Track}s for the Redis transient store.
+ *
+ * Layout (version 1):
+ * <pre>
+ * format version (1 byte)
+ * string table: count, then each string as length + UTF-8 bytes
+ * jobId, mediaId, taskIndex, actionIndex, artifactExtractionTrackIndex
+ * start frame, end frame, start time, end time, type, confidence
+ * track properties: count, then key/value string table references
+ * detections: count, then for each detection:
+ *     frame and time as deltas from the previous detection (or from the track start for the first detection),
+ *     x, y, width, height, confidence, detection properties, artifact path, artifact extraction status
+ * </pre>
+ *
+ * Integers are written as zig-zag encoded varints. Confidences are written as the raw 4 bytes of the float so that
+ * they round trip exactly. Strings are stored once per track in the string table and referenced by index, so
+ * property keys and values that repeat on every detection only take a byte or two after their first use.
+ * A string table reference of 0 means null.
+ *
+ * Smile-encoded data always starts with the ':' character, so {@link #isEncoded(byte[])} can distinguish the two
+ * formats. This allows tracks written with either format to be read back.
+ */
+public final class TrackCodec {
+
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final ArtifactExtractionStatus[] ARTIFACT_EXTRACTION_STATUSES = ArtifactExtractionStatus.values();
+
+    private TrackCodec() {
+    }
+
+
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes.length > 0 && bytes[0] == FORMAT_VERSION;
+    }
+
+
+    public static byte[] encode(Track track) {
+        var stringTable = new StringTable();
+        stringTable.add(track.getType());
+        track.getTrackProperties().forEach(stringTable::add);
+        for (Detection detection : track.getDetections()) {
+            detection.getDetectionProperties().forEach(stringTable::add);
+            stringTable.add(detection.getArtifactPath());
+        }
+
+        var out = new Writer(64 + 32 * track.getDetections().size());
+        out.writeByte(FORMAT_VERSION);
+
+        out.writeVarInt(stringTable.size());
+        for (String str : stringTable.getStrings()) {
+            out.writeString(str);
+        }
+
+        out.writeVarLong(track.getJobId());
+        out.writeVarLong(track.getMediaId());
+        out.writeVarInt(track.getTaskIndex());
+        out.writeVarInt(track.getActionIndex());
+        out.writeVarInt(track.getArtifactExtractionTrackIndex());
+        out.writeVarInt(track.getStartOffsetFrameInclusive());
+        out.writeVarInt(track.getEndOffsetFrameInclusive() - track.getStartOffsetFrameInclusive());
+        out.writeVarInt(track.getStartOffsetTimeInclusive());
+        out.writeVarInt(track.getEndOffsetTimeInclusive() - track.getStartOffsetTimeInclusive());
+        out.writeVarInt(stringTable.getRef(track.getType()));
+        out.writeFloat(track.getConfidence());
+        writeProperties(out, stringTable, track.getTrackProperties());
+
+        out.writeVarInt(track.getDetections().size());
+        int prevFrame = track.getStartOffsetFrameInclusive();
+        int prevTime = track.getStartOffsetTimeInclusive();
+        for (Detection detection : track.getDetections()) {
+            out.writeVarInt(detection.getMediaOffsetFrame() - prevFrame);
+            out.writeVarInt(detection.getMediaOffsetTime() - prevTime);
+            prevFrame = detection.getMediaOffsetFrame();
+            prevTime = detection.getMediaOffsetTime();
+
+            out.writeVarInt(detection.getX());
+            out.writeVarInt(detection.getY());
+            out.writeVarInt(detection.getWidth());
+            out.writeVarInt(detection.getHeight());
+            out.writeFloat(detection.getConfidence());
+            writeProperties(out, stringTable, detection.getDetectionProperties());
+            out.writeVarInt(stringTable.getRef(detection.getArtifactPath()));
+            out.writeByte(detection.getArtifactExtractionStatus().ordinal());
+        }
+        return out.toByteArray();
+    }
+
+
+    public static Track decode(byte[] bytes) {
+        if (!isEncoded(bytes)) {
+            throw new WfmProcessingException(String.format(
+                    "Unable to decode track. Expected format version %s, but the data started with %s.",
+                    FORMAT_VERSION, bytes.length > 0 ? bytes[0] : "nothing"));
+        }
+        try {
+            return decode(ByteBuffer.wrap(bytes, 1, bytes.length - 1));
+        }
+        catch (RuntimeException e) {
+            throw new WfmProcessingException("Failed to decode track: " + e, e);
+        }
+    }
+
+
+    private static Track decode(ByteBuffer in) {
+        int stringCount = readVarInt(in);
+        var strings = new String[stringCount + 1];
+        for (int i = 1; i <= stringCount; i++) {
+            strings[i] = readString(in);
+        }
+
+        long jobId = readVarLong(in);
+        long mediaId = readVarLong(in);
+        int taskIndex = readVarInt(in);
+        int actionIndex = readVarInt(in);
+        int artifactExtractionTrackIndex = readVarInt(in);
+        int startFrame = readVarInt(in);
+        int endFrame = startFrame + readVarInt(in);
+        int startTime = readVarInt(in);
+        int endTime = startTime + readVarInt(in);
+        String type = strings[readVarInt(in)];
+        float confidence = in.getFloat();
+        Map<String, String> trackProperties = readProperties(in, strings);
+
+        int detectionCount = readVarInt(in);
+        var detections = new ArrayList<Detection>(detectionCount);
+        int prevFrame = startFrame;
+        int prevTime = startTime;
+        for (int i = 0; i < detectionCount; i++) {
+            int frame = prevFrame + readVarInt(in);
+            int time = prevTime + readVarInt(in);
+            prevFrame = frame;
+            prevTime = time;
+
+            int x = readVarInt(in);
+            int y = readVarInt(in);
+            int width = readVarInt(in);
+            int height = readVarInt(in);
+            float detectionConfidence = in.getFloat();
+            Map<String, String> detectionProperties = readProperties(in, strings);
+            var detection = new Detection(x, y, width, height, detectionConfidence, frame, time,
+                                          detectionProperties);
+            detection.setArtifactPath(strings[readVarInt(in)]);
+            detection.setArtifactExtractionStatus(ARTIFACT_EXTRACTION_STATUSES[in.get()]);
+            detections.add(detection);
+        }
+
+        var track = new Track(jobId, mediaId, taskIndex, actionIndex, startFrame, endFrame, startTime, endTime,
+                              type, confidence, detections, trackProperties);
+        track.setArtifactExtractionTrackIndex(artifactExtractionTrackIndex);
+        return track;
+    }
+
+
+    private static void writeProperties(Writer out, StringTable stringTable, Map<String, String> properties) {
+        out.writeVarInt(properties.size());
+        properties.forEach((k, v) -> {
+            out.writeVarInt(stringTable.getRef(k));
+            out.writeVarInt(stringTable.getRef(v));
+        });
+    }
+
+
+    private static Map<String, String> readProperties(ByteBuffer in, String[] strings) {
+        int count = readVarInt(in);
+        if (count == 0) {
+            return Map.of();
+        }
+        var properties = new HashMap<String, String>(count * 2);
+        for (int i = 0; i < count; i++) {
+            properties.put(strings[readVarInt(in)], strings[readVarInt(in)]);
+        }
+        return properties;
+    }
+
+
+    private static int readVarInt(ByteBuffer in) {
+        long zigZag = readUnsignedVarLong(in);
+        return (int) ((zigZag >>> 1) ^ -(zigZag & 1));
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long zigZag = readUnsignedVarLong(in);
+        return (zigZag >>> 1) ^ -(zigZag & 1);
+    }
+
+    private static long readUnsignedVarLong(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalStateException("Malformed varint.");
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readVarInt(in);
+        String result = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return result;
+    }
+
+
+
+    private static class StringTable {
+        // Index 0 is reserved for null, so the first string has a reference of 1.
+        private final Map<String, Integer> _refs = new LinkedHashMap<>();
+
+        public void add(String str) {
+            if (str != null) {
+                _refs.putIfAbsent(str, _refs.size() + 1);
+            }
+        }
+
+        public void add(String key, String value) {
+            add(key);
+            add(value);
+        }
+
+        public int getRef(String str) {
+            return str == null ? 0 : _refs.get(str);
+        }
+
+        public int size() {
+            return _refs.size();
+        }
+
+        public Set<String> getStrings() {
+            return _refs.keySet();
+        }
+    }
+
+
+
+    // Not using ByteArrayOutputStream because all of its methods are synchronized.
+    private static class Writer {
+        private byte[] _buffer;
+
+        private int _size;
+
+        public Writer(int initialCapacity) {
+            _buffer = new byte[initialCapacity];
+        }
+
+        public void writeByte(int b) {
+            ensureCapacity(1);
+            _buffer[_size++] = (byte) b;
+        }
+
+        public void writeVarInt(int value) {
+            writeUnsignedVarLong(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+        }
+
+        public void writeVarLong(long value) {
+            writeUnsignedVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeUnsignedVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                _buffer[_size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            _buffer[_size++] = (byte) value;
+        }
+
+        public void writeFloat(float value) {
+            int bits = Float.floatToRawIntBits(value);
+            ensureCapacity(4);
+            _buffer[_size++] = (byte) (bits >>> 24);
+            _buffer[_size++] = (byte) (bits >>> 16);
+            _buffer[_size++] = (byte) (bits >>> 8);
+            _buffer[_size++] = (byte) bits;
+        }
+
+        public void writeString(String str) {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, _buffer, _size, bytes.length);
+            _size += bytes.length;
+        }
+
+        private void ensureCapacity(int additionalBytes) {
+            int required = _size + additionalBytes;
+            if (required > _buffer.length) {
+                _buffer = Arrays.copyOf(_buffer, Math.max(required, _buffer.length * 2));
+            }
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(_buffer, _size);
+        }
+    }
+}
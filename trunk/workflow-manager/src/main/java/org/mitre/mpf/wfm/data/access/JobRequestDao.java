@@ -34,10 +34,30 @@ public interface JobRequestDao extends JpaDao<JobRequest> {
 
     public void cancelJobsInNonTerminalState();
 
-    public List<JobRequest> findByPage(int pageSize, int offset, String searchTerm, String sortColumn,
-                                       String sortOrderDirection);
-
-    public long countFiltered(String searchTerm);
+    /**
+     * Gets one page of job summaries. When afterId is provided and the results are sorted by id or
+     * timeReceived, the page starts immediately after the job with that id (keyset pagination) and offset is
+     * ignored. Otherwise, offset is used.
+     */
+    public List<JobRequestSummary> findSummaryPage(JobRequestSearch search, String sortProperty,
+                                                   boolean descending, int offset, int pageSize, Long afterId);
+
+    /**
+     * Counts the jobs matching the search. The result may be cached for a few seconds so that paging through
+     * the jobs table does not require counting the table on every request.
+     */
+    public long countFiltered(JobRequestSearch search);
+
+    /**
+     * Creates the indexes used by the free-text job search that can not be declared through JPA.
+     */
+    public void createSearchIndexes();
+
+    /**
+     * Computes per-pipeline, per-status job statistics with a single grouped query.
+     * @param pipeline When non-null, only jobs that ran the given pipeline are included.
+     */
+    public List<JobRequestStatistics> getStatistics(String pipeline);
 
     public long getNextId();
 }
@@ -0,0 +1,101 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.data.access;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.commons.lang3.StringUtils;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Criteria used to filter the jobs table. The free-text search term is matched against the job id, status,
+ * pipeline, and the time the job was received. The remaining fields are exact filters that are combined with the
+ * search term using "and".
+ */
+public class JobRequestSearch {
+
+    public static final JobRequestSearch ALL = new JobRequestSearch(null, null, null, null, null);
+
+    private final String _searchTerm;
+    public String getSearchTerm() { return _searchTerm; }
+
+    private final Set<BatchJobStatusType> _statuses;
+    public Set<BatchJobStatusType> getStatuses() { return _statuses; }
+
+    private final String _pipeline;
+    public String getPipeline() { return _pipeline; }
+
+    private final Instant _receivedAfter;
+    public Instant getReceivedAfter() { return _receivedAfter; }
+
+    private final Instant _receivedBefore;
+    public Instant getReceivedBefore() { return _receivedBefore; }
+
+
+    public JobRequestSearch(String searchTerm, Collection<BatchJobStatusType> statuses, String pipeline,
+                            Instant receivedAfter, Instant receivedBefore) {
+        _searchTerm = StringUtils.isBlank(searchTerm) ? null : searchTerm.trim().toLowerCase();
+        _statuses = statuses == null ? ImmutableSet.of() : ImmutableSet.copyOf(statuses);
+        _pipeline = StringUtils.isBlank(pipeline) ? null : pipeline.trim();
+        _receivedAfter = receivedAfter;
+        _receivedBefore = receivedBefore;
+    }
+
+
+    public boolean isUnfiltered() {
+        return _searchTerm == null && _statuses.isEmpty() && _pipeline == null
+                && _receivedAfter == null && _receivedBefore == null;
+    }
+
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof JobRequestSearch)) {
+            return false;
+        }
+        var other = (JobRequestSearch) obj;
+        return Objects.equals(_searchTerm, other._searchTerm)
+                && _statuses.equals(other._statuses)
+                && Objects.equals(_pipeline, other._pipeline)
+                && Objects.equals(_receivedAfter, other._receivedAfter)
+                && Objects.equals(_receivedBefore, other._receivedBefore);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(_searchTerm, _statuses, _pipeline, _receivedAfter, _receivedBefore);
+    }
+}
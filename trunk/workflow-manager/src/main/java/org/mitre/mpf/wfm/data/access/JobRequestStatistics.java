@@ -0,0 +1,71 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.data.access;
+
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+
+/**
+ * Aggregate statistics for the jobs that ran a single pipeline and are currently in a single status.
+ * Times are in milliseconds. The min and max only consider jobs with a positive run time.
+ */
+public class JobRequestStatistics {
+
+    private final String _pipeline;
+    public String getPipeline() { return _pipeline; }
+
+    private final BatchJobStatusType _status;
+    public BatchJobStatusType getStatus() { return _status; }
+
+    private final long _count;
+    public long getCount() { return _count; }
+
+    private final long _totalTime;
+    public long getTotalTime() { return _totalTime; }
+
+    private final long _minTime;
+    public long getMinTime() { return _minTime; }
+
+    private final long _maxTime;
+    public long getMaxTime() { return _maxTime; }
+
+    private final long _validCount;
+    public long getValidCount() { return _validCount; }
+
+
+    public JobRequestStatistics(String pipeline, BatchJobStatusType status, long count, long totalTime,
+                                long minTime, long maxTime, long validCount) {
+        _pipeline = pipeline;
+        _status = status;
+        _count = count;
+        _totalTime = totalTime;
+        _minTime = minTime;
+        _maxTime = maxTime;
+        _validCount = validCount;
+    }
+}
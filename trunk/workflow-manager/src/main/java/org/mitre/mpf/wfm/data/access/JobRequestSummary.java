@@ -0,0 +1,73 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.data.access;
+
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+
+import java.time.Instant;
+
+/**
+ * The columns of a {@link org.mitre.mpf.wfm.data.entities.persistent.JobRequest} that are needed to display it
+ * in a list. The serialized job is intentionally excluded so that listing jobs never loads the LOB column.
+ */
+public class JobRequestSummary {
+
+    private final long _id;
+    public long getId() { return _id; }
+
+    private final String _pipeline;
+    public String getPipeline() { return _pipeline; }
+
+    private final int _priority;
+    public int getPriority() { return _priority; }
+
+    private final BatchJobStatusType _status;
+    public BatchJobStatusType getStatus() { return _status; }
+
+    private final Instant _timeReceived;
+    public Instant getTimeReceived() { return _timeReceived; }
+
+    private final Instant _timeCompleted;
+    public Instant getTimeCompleted() { return _timeCompleted; }
+
+    private final String _outputObjectPath;
+    public String getOutputObjectPath() { return _outputObjectPath; }
+
+
+    public JobRequestSummary(long id, String pipeline, int priority, BatchJobStatusType status,
+                             Instant timeReceived, Instant timeCompleted, String outputObjectPath) {
+        _id = id;
+        _pipeline = pipeline;
+        _priority = priority;
+        _status = status;
+        _timeReceived = timeReceived;
+        _timeCompleted = timeCompleted;
+        _outputObjectPath = outputObjectPath;
+    }
+}
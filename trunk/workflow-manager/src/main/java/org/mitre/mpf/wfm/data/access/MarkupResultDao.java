@@ -28,10 +28,12 @@ package org.mitre.mpf.wfm.data.access;
 
 import org.mitre.mpf.wfm.data.entities.persistent.MarkupResult;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface MarkupResultDao extends JpaDao<MarkupResult> {
 	MarkupResult findByJobIdAndMediaIndex(long jobId, int mediaIndex);
 	List<MarkupResult> findByJobId(long jobId);
 	void deleteByJobId(long jobId);
+	void deleteByJobIdAndMediaIds(long jobId, Collection<Long> mediaIds);
 }
\ No newline at end of file
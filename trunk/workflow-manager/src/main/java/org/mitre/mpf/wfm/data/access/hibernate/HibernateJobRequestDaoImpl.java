@@ -26,11 +26,19 @@
 
 package org.mitre.mpf.wfm.data.access.hibernate;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Query;
 import org.hibernate.engine.jdbc.dialect.internal.StandardDialectResolver;
 import org.hibernate.engine.jdbc.dialect.spi.DatabaseMetaDataDialectResolutionInfoAdapter;
 import org.mitre.mpf.wfm.data.access.JobRequestDao;
+import org.mitre.mpf.wfm.data.access.JobRequestSearch;
+import org.mitre.mpf.wfm.data.access.JobRequestStatistics;
+import org.mitre.mpf.wfm.data.access.JobRequestSummary;
 import org.mitre.mpf.wfm.data.entities.persistent.JobRequest;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.slf4j.Logger;
@@ -41,13 +49,33 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.util.List;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
 
 @Repository
 @Transactional(propagation = Propagation.REQUIRED)
 public class HibernateJobRequestDaoImpl extends AbstractHibernateDao<JobRequest> implements JobRequestDao {
     private static final Logger LOG = LoggerFactory.getLogger(HibernateJobRequestDaoImpl.class);
 
+    private static final Set<String> KEYSET_SORT_PROPERTIES = Set.of("id", "timeReceived");
+
+    private final Cache<JobRequestSearch, Long> _countCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(10, TimeUnit.SECONDS)
+            .maximumSize(100)
+            .build();
+
     public HibernateJobRequestDaoImpl() { this.clazz = JobRequest.class; }
 
     @Override
@@ -65,41 +93,231 @@ public class HibernateJobRequestDaoImpl extends AbstractHibernateDao<JobRequest>
 
 
     @Override
-    public List<JobRequest> findByPage(int pageSize, int offset, String searchTerm, String sortColumn,
-                                       String sortOrderDirection) {
-        var orderByClause = String.format("order by %s %s", sortColumn, sortOrderDirection);
-        Query query;
-        if (StringUtils.isBlank(searchTerm)) {
-            query = getCurrentSession().createQuery("from JobRequest " + orderByClause);
-        }
-        else {
-            query = createSearchQuery(searchTerm, "", orderByClause);
-        }
-        return (List<JobRequest>) query.setFirstResult(offset)
-                .setMaxResults(pageSize)
-                .list();
+    public List<JobRequestSummary> findSummaryPage(JobRequestSearch search, String sortProperty,
+                                                   boolean descending, int offset, int pageSize, Long afterId) {
+        var params = new HashMap<String, Object>();
+        var whereClause = createWhereClause(search, params);
+
+        var direction = descending ? "desc" : "asc";
+        boolean useKeyset = afterId != null && KEYSET_SORT_PROPERTIES.contains(sortProperty);
+        if (useKeyset) {
+            whereClause = addCondition(whereClause, createKeysetCondition(sortProperty, descending));
+            params.put("afterId", afterId);
+        }
+
+        var orderByClause = sortProperty.equals("id")
+                ? " order by jr.id " + direction
+                : String.format(" order by jr.%s %s, jr.id %s", sortProperty, direction, direction);
+
+        var query = getCurrentSession().createQuery(
+                "select new " + JobRequestSummary.class.getName()
+                        + "(jr.id, jr.pipeline, jr.priority, jr.status, jr.timeReceived, jr.timeCompleted,"
+                        + " jr.outputObjectPath)"
+                        + " from JobRequest jr" + whereClause + orderByClause);
+        setParameters(query, params);
+        if (!useKeyset) {
+            query.setFirstResult(offset);
+        }
+        return (List<JobRequestSummary>) query.setMaxResults(pageSize).list();
     }
 
 
     @Override
-    public long countFiltered(String searchTerm) {
-        return (long) createSearchQuery(searchTerm, "select count(*)", "")
-                .list()
-                .get(0);
+    public long countFiltered(JobRequestSearch search) {
+        try {
+            return _countCache.get(search, () -> {
+                var params = new HashMap<String, Object>();
+                var query = getCurrentSession().createQuery(
+                        "select count(*) from JobRequest jr" + createWhereClause(search, params));
+                setParameters(query, params);
+                return (Long) query.uniqueResult();
+            });
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+
+    private static String createKeysetCondition(String sortProperty, boolean descending) {
+        var comparison = descending ? "<" : ">";
+        if (sortProperty.equals("id")) {
+            return "jr.id " + comparison + " :afterId";
+        }
+        var afterValue = String.format(
+                "(select prev.%s from JobRequest prev where prev.id = :afterId)", sortProperty);
+        return String.format("(jr.%s %s %s or (jr.%s = %s and jr.id %s :afterId))",
+                             sortProperty, comparison, afterValue, sortProperty, afterValue, comparison);
     }
 
 
-    private Query createSearchQuery(String searchTerm, String selectClause, String orderByClause) {
-        return getCurrentSession().createQuery(
-                selectClause
-                        + " from JobRequest"
-                        + " where cast(id as string) like :searchTerm"
-                        + " or lower(pipeline) like :searchTerm"
-                        + " or lower(status) like :searchTerm"
-                        + " or to_char(timeReceived, 'YYYY-MM-DD HH24:MI:SS') like :searchTerm"
-                        + " or to_char(timeCompleted, 'YYYY-MM-DD HH24:MI:SS') like :searchTerm "
-                        + orderByClause)
-                .setString("searchTerm", '%' + searchTerm.toLowerCase() + '%');
+    private static String createWhereClause(JobRequestSearch search, Map<String, Object> params) {
+        var whereClause = "";
+        if (search.getSearchTerm() != null) {
+            whereClause = addCondition(whereClause, createSearchTermCondition(search.getSearchTerm(), params));
+        }
+        if (!search.getStatuses().isEmpty()) {
+            whereClause = addCondition(whereClause, "jr.status in (:statuses)");
+            params.put("statuses", search.getStatuses());
+        }
+        if (search.getPipeline() != null) {
+            whereClause = addCondition(whereClause, "jr.pipeline = :pipeline");
+            params.put("pipeline", search.getPipeline());
+        }
+        if (search.getReceivedAfter() != null) {
+            whereClause = addCondition(whereClause, "jr.timeReceived >= :receivedAfter");
+            params.put("receivedAfter", search.getReceivedAfter());
+        }
+        if (search.getReceivedBefore() != null) {
+            whereClause = addCondition(whereClause, "jr.timeReceived < :receivedBefore");
+            params.put("receivedBefore", search.getReceivedBefore());
+        }
+        return whereClause;
+    }
+
+
+    private static String addCondition(String whereClause, String condition) {
+        return whereClause.isEmpty()
+                ? " where " + condition
+                : whereClause + " and " + condition;
+    }
+
+
+    // Each alternative is a predicate that an index can satisfy, rather than formatting every column of every
+    // row as text and matching it with a leading wildcard.
+    private static String createSearchTermCondition(String searchTerm, Map<String, Object> params) {
+        var alternatives = new ArrayList<String>();
+
+        alternatives.add("lower(jr.pipeline) like :searchPattern");
+        params.put("searchPattern", '%' + searchTerm + '%');
+
+        if (StringUtils.isNumeric(searchTerm) && searchTerm.length() < 19) {
+            alternatives.add("jr.id = :searchId");
+            params.put("searchId", Long.parseLong(searchTerm));
+        }
+
+        var matchingStatuses = Stream.of(BatchJobStatusType.values())
+                .filter(s -> s.name().toLowerCase().contains(searchTerm))
+                .collect(toList());
+        if (!matchingStatuses.isEmpty()) {
+            alternatives.add("jr.status in (:searchStatuses)");
+            params.put("searchStatuses", matchingStatuses);
+        }
+
+        getTimeRange(searchTerm).ifPresent(range -> {
+            alternatives.add("(jr.timeReceived >= :searchTimeBegin and jr.timeReceived < :searchTimeEnd)");
+            params.put("searchTimeBegin", range.getLeft());
+            params.put("searchTimeEnd", range.getRight());
+        });
+
+        return alternatives.stream().collect(joining(" or ", "(", ")"));
+    }
+
+
+    private static final Pattern TIME_PREFIX_PATTERN = Pattern.compile(
+            "(\\d{4})(?:-(\\d{1,2})(?:-(\\d{1,2})(?:[ t](\\d{1,2})(?::(\\d{1,2})(?::(\\d{1,2}))?)?)?)?)?");
+
+    /**
+     * Converts a search term like "2021", "2021-03", or "2021-03-04 12:30" in to the range of time it refers to
+     * in the server's time zone.
+     */
+    private static Optional<Pair<Instant, Instant>> getTimeRange(String searchTerm) {
+        var matcher = TIME_PREFIX_PATTERN.matcher(searchTerm);
+        if (!matcher.matches()) {
+            return Optional.empty();
+        }
+
+        var fieldUnits = List.of(ChronoUnit.YEARS, ChronoUnit.MONTHS, ChronoUnit.DAYS, ChronoUnit.HOURS,
+                                 ChronoUnit.MINUTES, ChronoUnit.SECONDS);
+        int[] fields = { 0, 1, 1, 0, 0, 0 };
+        var precision = ChronoUnit.YEARS;
+        for (int i = 0; i < fields.length; i++) {
+            var group = matcher.group(i + 1);
+            if (group != null) {
+                fields[i] = Integer.parseInt(group);
+                precision = fieldUnits.get(i);
+            }
+        }
+
+        try {
+            var begin = LocalDateTime.of(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5])
+                    .atZone(ZoneId.systemDefault());
+            var end = begin.plus(1, precision);
+            return Optional.of(Pair.of(begin.toInstant(), end.toInstant()));
+        }
+        catch (DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+
+
+    private static void setParameters(Query query, Map<String, Object> params) {
+        params.forEach((name, value) -> {
+            if (value instanceof Collection) {
+                query.setParameterList(name, (Collection<?>) value);
+            }
+            else {
+                query.setParameter(name, value);
+            }
+        });
+    }
+
+
+    @Override
+    public void createSearchIndexes() {
+        getCurrentSession().doWork(connection -> {
+            if (!connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")) {
+                return;
+            }
+            // The pg_trgm extension lets "like '%term%'" on the pipeline name use an index. The extension is
+            // optional, so a failure here only makes free-text searches slower.
+            var savepoint = connection.setSavepoint();
+            try (var statement = connection.createStatement()) {
+                statement.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+                statement.execute("CREATE INDEX IF NOT EXISTS job_request_ndx_pipeline_trgm"
+                                          + " ON job_request USING gin (lower(pipeline) gin_trgm_ops)");
+                connection.releaseSavepoint(savepoint);
+            }
+            catch (SQLException e) {
+                connection.rollback(savepoint);
+                LOG.warn("Unable to create the trigram index used to search jobs by pipeline. "
+                                 + "Searching the jobs table will be slower. Cause: " + e.getMessage());
+            }
+        });
+    }
+
+
+    @Override
+    public List<JobRequestStatistics> getStatistics(String pipeline) {
+        var query = getCurrentSession().createSQLQuery(
+                "SELECT pipeline, status, COUNT(*), COALESCE(SUM(duration), 0),"
+                        + " COALESCE(MIN(CASE WHEN duration > 0 THEN duration END), 0),"
+                        + " COALESCE(MAX(CASE WHEN duration > 0 THEN duration END), 0),"
+                        + " COUNT(CASE WHEN duration > 0 THEN 1 END)"
+                        + " FROM (SELECT pipeline, status,"
+                        // Each time is truncated to milliseconds before subtracting, the same way as
+                        // JobStatisticsService, so that the result is a whole number of milliseconds.
+                        + " CAST(ROUND(EXTRACT(EPOCH FROM DATE_TRUNC('milliseconds', time_completed)"
+                        + " - DATE_TRUNC('milliseconds', time_received)) * 1000) AS BIGINT) AS duration"
+                        + " FROM job_request"
+                        + (pipeline == null ? "" : " WHERE pipeline = :pipeline")
+                        + ") AS durations"
+                        + " GROUP BY pipeline, status");
+        if (pipeline != null) {
+            query.setParameter("pipeline", pipeline);
+        }
+
+        var results = new ArrayList<JobRequestStatistics>();
+        for (Object resultObj : query.list()) {
+            var row = (Object[]) resultObj;
+            var status = row[1] == null ? null : BatchJobStatusType.valueOf((String) row[1]);
+            results.add(new JobRequestStatistics(
+                    (String) row[0], status, ((Number) row[2]).longValue(), ((Number) row[3]).longValue(),
+                    ((Number) row[4]).longValue(), ((Number) row[5]).longValue(),
+                    ((Number) row[6]).longValue()));
+        }
+        return results;
     }
 
 
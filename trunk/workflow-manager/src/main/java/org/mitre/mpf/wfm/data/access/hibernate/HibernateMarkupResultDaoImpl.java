@@ -34,6 +34,7 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository(HibernateMarkupResultDaoImpl.REF)
@@ -71,4 +72,15 @@ public class HibernateMarkupResultDaoImpl extends AbstractHibernateDao<MarkupRes
 				.setParameter("jobId", jobId)
 				.executeUpdate();
 	}
+
+	@Override
+	public void deleteByJobIdAndMediaIds(long jobId, Collection<Long> mediaIds) {
+		if (mediaIds.isEmpty()) {
+			return;
+		}
+		getCurrentSession().createQuery("delete from "+MarkupResult.class.getSimpleName()+" where jobId = :jobId and mediaId in (:mediaIds)")
+				.setParameter("jobId", jobId)
+				.setParameterList("mediaIds", mediaIds)
+				.executeUpdate();
+	}
 }
@@ -31,6 +31,8 @@ import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
 import org.mitre.mpf.interop.JsonIssueDetails;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.util.PropertyView;
+import org.mitre.mpf.wfm.util.Tuple;
 
 import java.util.List;
 import java.util.Map;
@@ -77,4 +79,7 @@ public interface BatchJob {
     public Map<Long, Set<JsonIssueDetails>> getErrors();
 
     public List<DetectionProcessingError> getDetectionProcessingErrors();
+
+    // Cache of resolved properties keyed on (media id, action name). Use AggregateJobPropertiesUtil to access it.
+    public Map<Tuple<Long, String>, PropertyView> getPropertyViews();
 }
@@ -28,6 +28,7 @@
 package org.mitre.mpf.wfm.data.entities.persistent;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableMap;
@@ -35,9 +36,13 @@ import com.google.common.collect.ImmutableSortedMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mitre.mpf.interop.JsonIssueDetails;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.util.PropertyView;
 import org.mitre.mpf.wfm.util.TextUtils;
+import org.mitre.mpf.wfm.util.Tuple;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
 
 public class BatchJobImpl implements BatchJob {
@@ -47,7 +52,7 @@ public class BatchJobImpl implements BatchJob {
     public long getId() { return _id; }
 
 
-    private BatchJobStatusType _status = BatchJobStatusType.INITIALIZED;
+    private volatile BatchJobStatusType _status = BatchJobStatusType.INITIALIZED;
     @Override
     public BatchJobStatusType getStatus() { return _status; }
     public void setStatus(BatchJobStatusType status) { _status = status; }
@@ -58,7 +63,7 @@ public class BatchJobImpl implements BatchJob {
     public JobPipelineElements getPipelineElements() { return _pipelineElements; }
 
 
-    private int _currentTaskIndex = 0;
+    private volatile int _currentTaskIndex = 0;
     @Override
     public int getCurrentTaskIndex() { return _currentTaskIndex; }
     public void setCurrentTaskIndex(int currentTaskIndex) { _currentTaskIndex = currentTaskIndex; }
@@ -100,7 +105,7 @@ public class BatchJobImpl implements BatchJob {
     public ImmutableMap<String, String> getJobProperties() { return _jobProperties; }
 
 
-    private boolean _cancelled;
+    private volatile boolean _cancelled;
     @Override
     public boolean isCancelled() { return _cancelled; }
     public void setCancelled(boolean isCancelled) { _cancelled = isCancelled; }
@@ -123,7 +128,7 @@ public class BatchJobImpl implements BatchJob {
     }
     public void addError(long mediaId, String source, String code, String message) {
         var details = new JsonIssueDetails(source, code, message);
-        _errors.computeIfAbsent(mediaId, k -> new HashSet<>()).add(details);
+        _errors.computeIfAbsent(mediaId, k -> ConcurrentHashMap.newKeySet()).add(details);
     }
 
 
@@ -134,7 +139,7 @@ public class BatchJobImpl implements BatchJob {
     }
     public void addWarning(long mediaId, String source, String code, String message) {
         var details = new JsonIssueDetails(source, code, message);
-        _warnings.computeIfAbsent(mediaId, k -> new HashSet<>()).add(details);
+        _warnings.computeIfAbsent(mediaId, k -> ConcurrentHashMap.newKeySet()).add(details);
     }
 
 
@@ -155,6 +160,14 @@ public class BatchJobImpl implements BatchJob {
     }
 
 
+    // Keyed on (media id, action name). The resolved properties are not serialized, so they only exist while
+    // the job is in progress.
+    private final Map<Tuple<Long, String>, PropertyView> _propertyViews = new ConcurrentHashMap<>();
+    @Override
+    @JsonIgnore
+    public Map<Tuple<Long, String>, PropertyView> getPropertyViews() { return _propertyViews; }
+
+
     public BatchJobImpl(
             long id,
             String externalId,
@@ -210,14 +223,23 @@ public class BatchJobImpl implements BatchJob {
                 .entrySet()
                 .stream()
                 .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, e -> ImmutableMap.copyOf(e.getValue())));
-        _detectionProcessingErrors = new ArrayList<>(detectionProcessingErrors);
+        // Detection processing errors, errors, and warnings can be added by multiple threads
+        // concurrently, so concurrent collections are used rather than locking the whole job.
+        _detectionProcessingErrors = new CopyOnWriteArrayList<>(detectionProcessingErrors);
+
+        _errors = new ConcurrentHashMap<>();
+        // Can't just pass errors to ConcurrentHashMap constructor because we also want to copy the sets.
+        errors.forEach((k, v) -> _errors.put(k, copyToConcurrentSet(v)));
+
+        _warnings = new ConcurrentHashMap<>();
+        // Can't just pass warnings to ConcurrentHashMap constructor because we also want to copy the sets.
+        warnings.forEach((k, v) -> _warnings.put(k, copyToConcurrentSet(v)));
+    }
 
-        _errors = new HashMap<>();
-        // Can't just pass errors to HashMap constructor because we also want to copy the sets.
-        errors.forEach((k, v) -> _errors.put(k, new HashSet<>(v)));
 
-        _warnings = new HashMap<>();
-        // Can't just pass warnings to HashMap constructor because we also want to copy the sets.
-        warnings.forEach((k, v) -> _warnings.put(k, new HashSet<>(v)));
+    private static <T> Set<T> copyToConcurrentSet(Collection<T> items) {
+        Set<T> result = ConcurrentHashMap.newKeySet();
+        result.addAll(items);
+        return result;
     }
 }
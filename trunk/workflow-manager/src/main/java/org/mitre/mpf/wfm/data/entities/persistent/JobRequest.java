@@ -36,6 +36,10 @@ import java.time.Instant;
  * persistent data store (as opposed to a transient data store).
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "JOB_REQUEST_NDX_TIME_RECEIVED", columnList = "timeReceived,id"),
+        @Index(name = "JOB_REQUEST_NDX_STATUS", columnList = "status"),
+        @Index(name = "JOB_REQUEST_NDX_PIPELINE", columnList = "pipeline")})
 public class JobRequest {
 
     /** The unique numeric identifier for this job. */
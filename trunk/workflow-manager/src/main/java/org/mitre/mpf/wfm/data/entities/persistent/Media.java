@@ -61,6 +61,12 @@ public interface Media {
     /** A flag indicating if the medium has encountered an error during processing. Will be false if no error occurred. */
     public boolean isFailed();
 
+    /**
+     * The index of the task the medium is currently in when the job uses per-media task progression.
+     * When the job does not use per-media task progression, use {@link BatchJob#getCurrentTaskIndex()} instead.
+     */
+    public int getCurrentTaskIndex();
+
     /** A message indicating what error(s) a medium has encountered during processing. Will be null if no error occurred. */
     public String getErrorMessage();
 
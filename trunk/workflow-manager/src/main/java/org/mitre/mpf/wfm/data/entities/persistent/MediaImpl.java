@@ -75,7 +75,7 @@ public class MediaImpl implements Media {
 
 
     /** If the media needed to be converted to another format, this will contain the path to converted media. */
-    private Path _convertedMediaPath;
+    private volatile Path _convertedMediaPath;
     @Override
     public Optional<Path> getConvertedMediaPath() {
         return Optional.ofNullable(_convertedMediaPath);
@@ -86,41 +86,53 @@ public class MediaImpl implements Media {
 
 
     /** A flag indicating if the medium has encountered an error during processing. Will be false if no error occurred. */
-    private boolean _failed;
+    private volatile boolean _failed;
     @Override
     public boolean isFailed() { return _failed; }
     public void setFailed(boolean failed) { _failed = failed; }
 
 
+    /** The index of the task the medium is currently in when the job uses per-media task progression. */
+    private volatile int _currentTaskIndex = 0;
+    @Override
+    public int getCurrentTaskIndex() { return _currentTaskIndex; }
+    public void setCurrentTaskIndex(int currentTaskIndex) { _currentTaskIndex = currentTaskIndex; }
+
+
     /** A message indicating what error(s) a medium has encountered during processing. Will be null if no error occurred. */
-    private String _errorMessage;
+    private final String _errorMessage;
     @Override
     public String getErrorMessage() { return _errorMessage; }
 
     /** The data type of the medium. For example, VIDEO. */
-    private MediaType _type;
+    private volatile MediaType _type;
     @Override
     public MediaType getType() { return _type; }
     public void setType(MediaType type) { _type = type; }
 
     /** The MIME type of the medium. */
-    private String _mimeType;
+    private volatile String _mimeType;
     @Override
     public String getMimeType() { return _mimeType; }
     public void setMimeType(String mimeType) { _mimeType = mimeType; }
 
 
-    /** The Metadata for the medium. */
-    private final Map<String, String> _metadata = new HashMap<>();
+    /**
+     * The Metadata for the medium. Replaced as a whole when metadata is added, so that it can be read without
+     * holding the job's lock.
+     */
+    private volatile Map<String, String> _metadata = Map.of();
     @Override
-    public Map<String, String> getMetadata() { return Collections.unmodifiableMap(_metadata); }
+    public Map<String, String> getMetadata() { return _metadata; }
     @Override
     public String getMetadata(String key) { return _metadata.get(key); }
-    public void addMetadata(Map<String, String> metadata) {
-        _metadata.putAll(metadata);
+    public synchronized void addMetadata(Map<String, String> metadata) {
+        var newMetadata = new HashMap<>(_metadata);
+        newMetadata.putAll(metadata);
+        _metadata = Collections.unmodifiableMap(newMetadata);
     }
     public void addMetadata(String key, String value) {
-        _metadata.put(key, value);
+        addMetadata(Collections.singletonMap(key, value));
     }
 
 
@@ -138,18 +150,18 @@ public class MediaImpl implements Media {
     public ImmutableMap<String, String> getProvidedMetadata() { return _providedMetadata; }
 
     /** The _length of the medium in frames (for images and videos) or milliseconds (for audio). */
-    private int _length;
+    private volatile int _length;
     @Override
     public int getLength() { return _length; }
     public void setLength(int length) { _length = length; }
 
     /** The SHA 256 hash of the local file (assuming it could be retrieved. */
-    private String _sha256;
+    private volatile String _sha256;
     @Override
     public String getSha256() { return _sha256; }
     public void setSha256(String sha256) { _sha256 = sha256; }
 
-    private FrameTimeInfo _frameTimeInfo;
+    private volatile FrameTimeInfo _frameTimeInfo;
     @Override
     @JsonIgnore
     public FrameTimeInfo getFrameTimeInfo() { return _frameTimeInfo; }
@@ -174,6 +186,9 @@ public class MediaImpl implements Media {
             _errorMessage = createErrorMessage(id, uri, errorMessage);
             _failed = true;
         }
+        else {
+            _errorMessage = null;
+        }
     }
 
 
@@ -189,7 +204,7 @@ public class MediaImpl implements Media {
             @JsonProperty("metadata") Map<String, String> metadata) {
         this(id, uri, uriScheme, localPath, mediaSpecificProperties, providedMetadata, errorMessage);
         if (metadata != null) {
-            _metadata.putAll(metadata);
+            addMetadata(metadata);
         }
     }
 
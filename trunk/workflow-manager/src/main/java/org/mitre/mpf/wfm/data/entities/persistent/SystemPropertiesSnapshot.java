@@ -111,6 +111,10 @@ public class SystemPropertiesSnapshot {
         return Double.parseDouble(_properties.get("detection.video.track.overlap.threshold"));
     }
 
+    public boolean isPerMediaTaskProgression() {
+        return Boolean.parseBoolean(_properties.get("detection.task.progression.per.media"));
+    }
+
     public Optional<URI> getNginxStorageServiceUri() throws StorageException {
         String uriString = _properties.get("http.object.storage.nginx.service.uri");
         if (StringUtils.isBlank(uriString)) {
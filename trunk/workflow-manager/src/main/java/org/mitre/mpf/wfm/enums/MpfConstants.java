@@ -74,7 +74,10 @@ public class MpfConstants {
             MARKUP_LABELS_FROM_DETECTIONS = "MARKUP_LABELS_FROM_DETECTIONS",
             MARKUP_LABELS_TEXT_PROP_TO_SHOW = "MARKUP_LABELS_TEXT_PROP_TO_SHOW",
             MARKUP_LABELS_NUMERIC_PROP_TO_SHOW = "MARKUP_LABELS_NUMERIC_PROP_TO_SHOW",
-            MARKUP_VIDEO_ENCODER = "MARKUP_VIDEO_ENCODER";
+            MARKUP_VIDEO_ENCODER = "MARKUP_VIDEO_ENCODER",
+            MARKUP_VIDEO_SEGMENT_LENGTH = "MARKUP_VIDEO_SEGMENT_LENGTH",
+            REMOTE_MEDIA_DOWNLOAD_PARTS = "REMOTE_MEDIA_DOWNLOAD_PARTS",
+            REMOTE_MEDIA_DOWNLOAD_PART_SIZE_MB = "REMOTE_MEDIA_DOWNLOAD_PART_SIZE_MB";
 
     private MpfConstants() {
     }
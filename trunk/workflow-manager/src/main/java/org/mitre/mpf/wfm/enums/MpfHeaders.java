@@ -43,11 +43,13 @@ public class MpfHeaders {
 		MEDIA_TYPE = "MediaType",
 
 		RECIPIENT_QUEUE = "QueueName",
+		REQUEST_SENT_TIME = "RequestSentTime",
 
 		SPLIT_COMPLETED = "SplitCompleted",
 		SPLIT_SIZE = "SplitSize",
 		SPLITTING_ERROR = "JobSplitError",
 		SUPPRESS_BROADCAST = "SuppressBroadcast",
+		TASK_MEDIA_ID = "TaskMediaId",
 
 		UNSOLICITED = "Unsolicited";
 
@@ -39,6 +39,10 @@ public class JobProgress {
 
     private final Map<Long, Float> _jobProgressMap = new ConcurrentHashMap<>();
 
+    // For jobs that use per-media task progression, the number of tasks each piece of media has completed,
+    // including the completed fraction of its current task.
+    private final Map<Long, Map<Long, Float>> _mediaProgressMap = new ConcurrentHashMap<>();
+
     public Optional<Float> getJobProgress(long jobId){
         return Optional.ofNullable(_jobProgressMap.get(jobId));
     }
@@ -47,7 +51,17 @@ public class JobProgress {
         _jobProgressMap.put(jobId, jobProgress);
     }
 
+    public Optional<Float> getMediaProgress(long jobId, long mediaId) {
+        return Optional.ofNullable(_mediaProgressMap.getOrDefault(jobId, Map.of()).get(mediaId));
+    }
+
+    public void setMediaProgress(long jobId, long mediaId, float tasksCompleted) {
+        _mediaProgressMap.computeIfAbsent(jobId, k -> new ConcurrentHashMap<>())
+                .put(mediaId, tasksCompleted);
+    }
+
     public void removeJob(long jobId) {
         _jobProgressMap.remove(jobId);
+        _mediaProgressMap.remove(jobId);
     }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.segmenting;
+
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionRequestDispatcher;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.util.BrokerQueueMonitor;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Adjusts the segment lengths of a video {@link SegmentingPlan} based on how much of the cluster is available to
+ * process the video. When many instances of the algorithm are idle, the video is split into more, shorter segments
+ * so that all of them can work on it. When the algorithm's queue already has a backlog, longer segments are used
+ * to reduce the per-request overhead, since shorter segments would not finish any sooner. The idle instances are
+ * shared by all of the videos that are split at the same time.
+ *
+ * The configured segment lengths are used as the starting point, and the adjusted target length is kept within a
+ * factor of {@link PropertiesUtil#getAdaptiveSegmentMaxScale()} of the configured target length.
+ */
+@Component
+public class AdaptiveSegmentingPlanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveSegmentingPlanner.class);
+
+    // Weight given to the newest sample when updating the per-frame processing time estimate.
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private final PropertiesUtil _propertiesUtil;
+
+    private final BrokerQueueMonitor _queueMonitor;
+
+    private final DetectionRequestDispatcher _detectionRequestDispatcher;
+
+    private final Map<String, Double> _msPerFrameByAlgorithm = new ConcurrentHashMap<>();
+
+
+    @Inject
+    AdaptiveSegmentingPlanner(PropertiesUtil propertiesUtil, BrokerQueueMonitor queueMonitor,
+                              DetectionRequestDispatcher detectionRequestDispatcher) {
+        _propertiesUtil = propertiesUtil;
+        _queueMonitor = queueMonitor;
+        _detectionRequestDispatcher = detectionRequestDispatcher;
+    }
+
+
+    /**
+     * Records how long a component took to process a segment so that future segments for the same algorithm are
+     * not made so short that per-request overhead dominates.
+     */
+    public void recordProcessingTime(String algorithmName, int frameCount, long processingTimeMs) {
+        if (frameCount <= 0 || processingTimeMs < 0) {
+            return;
+        }
+        double msPerFrame = (double) processingTimeMs / frameCount;
+        _msPerFrameByAlgorithm.merge(
+                algorithmName, msPerFrame,
+                (previous, sample) -> previous + SMOOTHING_FACTOR * (sample - previous));
+    }
+
+
+    /**
+     * @param videoMediaCount the number of videos in the split that includes this media
+     */
+    public SegmentingPlan adjust(SegmentingPlan plan, String algorithmName, String queueName, Media media,
+                                 int videoMediaCount) {
+        if (!_propertiesUtil.isAdaptiveSegmentingEnabled() || media.getLength() <= 0) {
+            return plan;
+        }
+
+        Optional<BrokerQueueMonitor.QueueStatus> queueStatus = _queueMonitor.getQueueStatus(queueName);
+        if (queueStatus.isEmpty()) {
+            return plan;
+        }
+
+        // Requests held by the dispatcher are part of the backlog even though the broker does not know about them yet.
+        long queueSize = queueStatus.get().getQueueSize()
+                + _detectionRequestDispatcher.getHeldRequestCount(queueName);
+
+        int targetLength = calculateTargetLength(
+                plan.getTargetSegmentLength(),
+                media.getLength(),
+                queueStatus.get().getConsumerCount(),
+                queueSize,
+                videoMediaCount,
+                _msPerFrameByAlgorithm.get(algorithmName),
+                _propertiesUtil.getAdaptiveSegmentsPerInstance(),
+                _propertiesUtil.getAdaptiveSegmentMaxScale(),
+                _propertiesUtil.getAdaptiveSegmentMinDurationMs());
+        if (targetLength == plan.getTargetSegmentLength()) {
+            return plan;
+        }
+
+        // Keep the minimum length in the same proportion to the target length as in the configured plan.
+        int minLength = (int) Math.max(
+                1, Math.round((double) plan.getMinSegmentLength() * targetLength / plan.getTargetSegmentLength()));
+
+        LOG.debug("Using a target segment length of {} instead of {} for media {}. The \"{}\" queue has {} " +
+                          "consumers and {} pending messages.",
+                  targetLength, plan.getTargetSegmentLength(), media.getId(), queueName,
+                  queueStatus.get().getConsumerCount(), queueSize);
+
+        return new SegmentingPlan(targetLength, minLength, plan.getSamplingInterval(),
+                                  plan.getMinGapBetweenSegments());
+    }
+
+
+    static int calculateTargetLength(
+            int configuredTargetLength, int frameCount, long consumerCount, long queueSize, int videoMediaCount,
+            Double msPerFrame, int segmentsPerInstance, double maxScale, long minDurationMs) {
+
+        if (configuredTargetLength <= 0 || configuredTargetLength == Integer.MAX_VALUE) {
+            // Segmenting is disabled.
+            return configuredTargetLength;
+        }
+
+        // Requests already in the queue will be handed out before any of this media's segments.
+        long idleInstances = Math.max(1, consumerCount - queueSize);
+        // Without dividing by the number of videos, each video in a large job would be split as if it had all
+        // of the idle instances to itself.
+        long desiredSegmentCount = Math.max(
+                1, idleInstances * Math.max(1, segmentsPerInstance) / Math.max(1, videoMediaCount));
+        long length = (frameCount + desiredSegmentCount - 1) / desiredSegmentCount;
+
+        double scale = Math.max(1, maxScale);
+        long upperBound = (long) Math.ceil(configuredTargetLength * scale);
+        long lowerBound = Math.max(1, (long) Math.floor(configuredTargetLength / scale));
+        if (msPerFrame != null && msPerFrame > 0) {
+            long overheadBound = (long) Math.ceil(minDurationMs / msPerFrame);
+            lowerBound = Math.max(lowerBound, Math.min(overheadBound, upperBound));
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE - 1, Math.max(lowerBound, Math.min(length, upperBound)));
+    }
+}
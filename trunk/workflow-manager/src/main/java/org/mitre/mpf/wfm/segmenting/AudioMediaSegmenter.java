@@ -60,16 +60,21 @@ public class AudioMediaSegmenter implements MediaSegmenter {
         }
 
         return Collections.singletonList(
-                createProtobufMessage(media, context,
+                createProtobufMessage(createRequestPrototype(media, context),
                                       AudioRequest.newBuilder().setStartTime(0).setStopTime(-1).build()));
     }
 
 
-    private static Message createProtobufMessage(Media media, DetectionContext context,
+    private static DetectionProtobuf.DetectionRequest createRequestPrototype(Media media, DetectionContext context) {
+        return MediaSegmenter.createRequestPrototype(
+                media, context, DetectionProtobuf.DetectionRequest.DataType.AUDIO);
+    }
+
+
+    private static Message createProtobufMessage(DetectionProtobuf.DetectionRequest prototype,
                                                  AudioRequest audioRequest) {
         DetectionProtobuf.DetectionRequest request = MediaSegmenter
-                .initializeRequest(media, context)
-                .setDataType(DetectionProtobuf.DetectionRequest.DataType.AUDIO)
+                .createRequest(prototype)
                 .setAudioRequest(audioRequest)
                 .build();
 
@@ -79,6 +84,7 @@ public class AudioMediaSegmenter implements MediaSegmenter {
     }
 
     private static List<Message> createFeedForwardMessages(Media media, DetectionContext context) {
+        DetectionProtobuf.DetectionRequest prototype = createRequestPrototype(media, context);
         List<Message> messages = new ArrayList<>();
         for (Track track : context.getPreviousTracks()) {
 
@@ -99,7 +105,7 @@ public class AudioMediaSegmenter implements MediaSegmenter {
                         .setValue(entry.getValue());
             }
 
-            messages.add(createProtobufMessage(media, context, audioRequest.build()));
+            messages.add(createProtobufMessage(prototype, audioRequest.build()));
         }
         return messages;
     }
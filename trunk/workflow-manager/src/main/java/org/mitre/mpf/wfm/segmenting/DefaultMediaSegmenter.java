@@ -66,14 +66,18 @@ public class DefaultMediaSegmenter implements MediaSegmenter {
         }
 
         return Collections.singletonList(
-                createProtobufMessage(media, context,
+                createProtobufMessage(createRequestPrototype(media, context),
                                       DetectionProtobuf.DetectionRequest.GenericRequest.newBuilder().build()));
     }
 
-    private static Message createProtobufMessage(Media media, DetectionContext context,
+    private static DetectionProtobuf.DetectionRequest createRequestPrototype(Media media, DetectionContext context) {
+        return MediaSegmenter.createRequestPrototype(
+                media, context, DetectionProtobuf.DetectionRequest.DataType.UNKNOWN);
+    }
+
+    private static Message createProtobufMessage(DetectionProtobuf.DetectionRequest prototype,
                                                  DetectionProtobuf.DetectionRequest.GenericRequest genericRequest) {
-        DetectionProtobuf.DetectionRequest detectionRequest = MediaSegmenter.initializeRequest(media, context)
-                .setDataType(DetectionProtobuf.DetectionRequest.DataType.UNKNOWN)
+        DetectionProtobuf.DetectionRequest detectionRequest = MediaSegmenter.createRequest(prototype)
                 .setGenericRequest(genericRequest)
                 .build();
 
@@ -83,6 +87,7 @@ public class DefaultMediaSegmenter implements MediaSegmenter {
     }
 
     private static List<Message> createFeedForwardMessages(Media media, DetectionContext context) {
+        DetectionProtobuf.DetectionRequest prototype = createRequestPrototype(media, context);
         List<Message> messages = new ArrayList<>();
         for (Track track : context.getPreviousTracks()) {
 
@@ -99,7 +104,7 @@ public class DefaultMediaSegmenter implements MediaSegmenter {
                         .setValue(entry.getValue());
             }
 
-            messages.add(createProtobufMessage(media, context, genericRequest.build()));
+            messages.add(createProtobufMessage(prototype, genericRequest.build()));
         }
         return messages;
     }
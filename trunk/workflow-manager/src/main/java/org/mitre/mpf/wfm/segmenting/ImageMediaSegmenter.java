@@ -51,13 +51,15 @@ public class ImageMediaSegmenter implements MediaSegmenter {
 	public List<Message> createDetectionRequestMessages(Media media, DetectionContext context) {
 
 		if (context.isFirstDetectionTask()) {
-			return Collections.singletonList(createProtobufMessage(media, context, ImageRequest.getDefaultInstance()));
+			return Collections.singletonList(createProtobufMessage(
+					createRequestPrototype(media, context), ImageRequest.getDefaultInstance()));
 		}
 		else if (MediaSegmenter.feedForwardIsEnabled(context)) {
 			return createFeedForwardMessages(media, context);
 		}
 		else if (!context.getPreviousTracks().isEmpty()) {
-			return Collections.singletonList(createProtobufMessage(media, context, ImageRequest.getDefaultInstance()));
+			return Collections.singletonList(createProtobufMessage(
+					createRequestPrototype(media, context), ImageRequest.getDefaultInstance()));
 		}
 		else {
 			return Collections.emptyList();
@@ -65,10 +67,15 @@ public class ImageMediaSegmenter implements MediaSegmenter {
 	}
 
 
-	private static Message createProtobufMessage(Media media, DetectionContext context,
+	private static DetectionProtobuf.DetectionRequest createRequestPrototype(Media media, DetectionContext context) {
+		return MediaSegmenter.createRequestPrototype(
+				media, context, DetectionProtobuf.DetectionRequest.DataType.IMAGE);
+	}
+
+
+	private static Message createProtobufMessage(DetectionProtobuf.DetectionRequest prototype,
 	                                             ImageRequest imageRequest) {
-		DetectionProtobuf.DetectionRequest detectionRequest = MediaSegmenter.initializeRequest(media, context)
-				.setDataType(DetectionProtobuf.DetectionRequest.DataType.IMAGE)
+		DetectionProtobuf.DetectionRequest detectionRequest = MediaSegmenter.createRequest(prototype)
 				.setImageRequest(imageRequest)
 				.build();
 
@@ -79,6 +86,7 @@ public class ImageMediaSegmenter implements MediaSegmenter {
 
 
 	private static List<Message> createFeedForwardMessages(Media media, DetectionContext context) {
+		DetectionProtobuf.DetectionRequest prototype = createRequestPrototype(media, context);
 		List<Message> messages = new ArrayList<>();
 		for (Track track : context.getPreviousTracks()) {
 			DetectionProtobuf.ImageLocation imageLocation = MediaSegmenter.createImageLocation(track.getExemplar());
@@ -86,7 +94,7 @@ public class ImageMediaSegmenter implements MediaSegmenter {
 					.setFeedForwardLocation(imageLocation)
 					.build();
 
-			messages.add(createProtobufMessage(media, context, imageRequest));
+			messages.add(createProtobufMessage(prototype, imageRequest));
 		}
 		return messages;
 	}
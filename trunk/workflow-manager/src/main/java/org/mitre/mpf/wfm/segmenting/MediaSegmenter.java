@@ -51,6 +51,12 @@ public interface MediaSegmenter {
 
     public static final String FEED_FORWARD_TOP_CONFIDENCE_COUNT = "FEED_FORWARD_TOP_CONFIDENCE_COUNT";
 
+    public static final String FEED_FORWARD_BATCH_MAX_TRACKS = "FEED_FORWARD_BATCH_MAX_TRACKS";
+
+    public static final String FEED_FORWARD_BATCH_MAX_FRAME_GAP = "FEED_FORWARD_BATCH_MAX_FRAME_GAP";
+
+    public static final String FEED_FORWARD_BATCH_MAX_FRAME_SPAN = "FEED_FORWARD_BATCH_MAX_FRAME_SPAN";
+
     static final Set<String> FEED_FORWARD_TYPES
             = ImmutableSet.of("NONE", "FRAME", "SUPERSET_REGION", "REGION");
 
@@ -61,8 +67,15 @@ public interface MediaSegmenter {
 
 
 
-    public static DetectionProtobuf.DetectionRequest.Builder initializeRequest(
-            Media media, DetectionContext context) {
+    /**
+     * Creates the parts of a detection request that are the same for every request for the given media and action.
+     * Segmenters should create the prototype once and derive each request from it with
+     * {@link #createRequest(DetectionProtobuf.DetectionRequest)}. Since protobuf messages are immutable, the media
+     * metadata and algorithm properties are shared by all of the derived requests instead of being rebuilt for
+     * each one.
+     */
+    public static DetectionProtobuf.DetectionRequest createRequestPrototype(
+            Media media, DetectionContext context, DetectionProtobuf.DetectionRequest.DataType dataType) {
 
         DetectionProtobuf.DetectionRequest.Builder requestBuilder = DetectionProtobuf.DetectionRequest.newBuilder()
                 .setRequestId(0)
@@ -72,6 +85,7 @@ public interface MediaSegmenter {
                 .setActionIndex(context.getActionIndex())
                 .setActionName(context.getActionName())
                 .setDataUri(media.getProcessingPath().toString())
+                .setDataType(dataType)
                 .addAllAlgorithmProperty(getAlgoProps(context));
 
         for (Map.Entry<String, String> entry : media.getMetadata().entrySet()) {
@@ -80,7 +94,13 @@ public interface MediaSegmenter {
                     .setValue(entry.getValue());
         }
 
-        return requestBuilder;
+        return requestBuilder.build();
+    }
+
+
+    public static DetectionProtobuf.DetectionRequest.Builder createRequest(
+            DetectionProtobuf.DetectionRequest prototype) {
+        return prototype.toBuilder();
     }
 
 
@@ -89,6 +109,9 @@ public interface MediaSegmenter {
             return context.getAlgorithmProperties().stream()
                     .filter(ap -> !ap.getPropertyName().equalsIgnoreCase(FEED_FORWARD_TYPE))
                     .filter(ap -> !ap.getPropertyName().equalsIgnoreCase(FEED_FORWARD_TOP_CONFIDENCE_COUNT))
+                    .filter(ap -> !ap.getPropertyName().equalsIgnoreCase(FEED_FORWARD_BATCH_MAX_TRACKS))
+                    .filter(ap -> !ap.getPropertyName().equalsIgnoreCase(FEED_FORWARD_BATCH_MAX_FRAME_GAP))
+                    .filter(ap -> !ap.getPropertyName().equalsIgnoreCase(FEED_FORWARD_BATCH_MAX_FRAME_SPAN))
                     .collect(toList());
         }
         return context.getAlgorithmProperties();
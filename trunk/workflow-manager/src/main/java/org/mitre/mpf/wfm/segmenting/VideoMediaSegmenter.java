@@ -73,6 +73,7 @@ public class VideoMediaSegmenter implements MediaSegmenter {
                 context.getSegmentingPlan().getMinSegmentLength(),
                 context.getSegmentingPlan().getMinGapBetweenSegments());
 
+        DetectionProtobuf.DetectionRequest prototype = createRequestPrototype(media, context);
         List<Message> messages = new ArrayList<>(segments.size());
         for(TimePair segment : segments) {
             assert segment.getStartInclusive() >= 0
@@ -87,19 +88,23 @@ public class VideoMediaSegmenter implements MediaSegmenter {
                     .setStopFrame(segment.getEndInclusive())
                     .build();
 
-            messages.add(createProtobufMessage(media, context, videoRequest));
+            messages.add(createProtobufMessage(prototype, videoRequest));
         }
         return messages;
     }
 
 
+    private static DetectionProtobuf.DetectionRequest createRequestPrototype(Media media, DetectionContext context) {
+        return MediaSegmenter.createRequestPrototype(
+                media, context, DetectionProtobuf.DetectionRequest.DataType.VIDEO);
+    }
+
+
     private static Message createProtobufMessage(
-            Media media,
-            DetectionContext context,
+            DetectionProtobuf.DetectionRequest prototype,
             VideoRequest videoRequest) {
 
-        DetectionProtobuf.DetectionRequest detectionRequest = MediaSegmenter.initializeRequest(media, context)
-                .setDataType(DetectionProtobuf.DetectionRequest.DataType.VIDEO)
+        DetectionProtobuf.DetectionRequest detectionRequest = MediaSegmenter.createRequest(prototype)
                 .setVideoRequest(videoRequest)
                 .build();
 
@@ -110,24 +115,82 @@ public class VideoMediaSegmenter implements MediaSegmenter {
 
 
     private static List<Message> createFeedForwardMessages(Media media, DetectionContext context) {
-        int topConfidenceCount = getTopConfidenceCount(context);
+        int topConfidenceCount = getIntProperty(context, FEED_FORWARD_TOP_CONFIDENCE_COUNT, 0);
+        int batchMaxTracks = getIntProperty(context, FEED_FORWARD_BATCH_MAX_TRACKS, 1);
 
-        List<Message> messages = new ArrayList<>();
+        List<DetectionProtobuf.VideoTrack> feedForwardTracks = new ArrayList<>();
         for (Track track : context.getPreviousTracks()) {
             if (track.getDetections().isEmpty()) {
                 log.warn("Found track with no detections. No feed forward request will be created for: {}", track);
                 continue;
             }
+            feedForwardTracks.add(createFeedForwardTrack(track, topConfidenceCount));
+        }
 
-            VideoRequest videoRequest = createFeedForwardVideoRequest(track, topConfidenceCount);
-            messages.add(createProtobufMessage(media, context, videoRequest));
+        DetectionProtobuf.DetectionRequest prototype = createRequestPrototype(media, context);
+        if (batchMaxTracks > 1) {
+            return createBatchedFeedForwardMessages(
+                    media, prototype, feedForwardTracks, batchMaxTracks,
+                    getIntProperty(context, FEED_FORWARD_BATCH_MAX_FRAME_GAP, 0),
+                    getIntProperty(context, FEED_FORWARD_BATCH_MAX_FRAME_SPAN, 0));
         }
 
+        List<Message> messages = new ArrayList<>(feedForwardTracks.size());
+        for (DetectionProtobuf.VideoTrack feedForwardTrack : feedForwardTracks) {
+            VideoRequest videoRequest = VideoRequest.newBuilder()
+                    .setStartFrame(feedForwardTrack.getStartFrame())
+                    .setStopFrame(feedForwardTrack.getStopFrame())
+                    .setFeedForwardTrack(feedForwardTrack)
+                    .build();
+            messages.add(createProtobufMessage(prototype, videoRequest));
+        }
         return messages;
     }
 
 
-    private static VideoRequest createFeedForwardVideoRequest(Track track, int topConfidenceCount) {
+    /**
+     * Packs tracks that overlap, or are separated by no more than maxFrameGap frames, in to the same request. The
+     * component executor runs each track as a separate job and replies with one VideoResponse per track. A request
+     * contains at most maxTracks tracks and, when maxFrameSpan is positive, covers at most maxFrameSpan frames.
+     */
+    private static List<Message> createBatchedFeedForwardMessages(
+            Media media, DetectionProtobuf.DetectionRequest prototype,
+            List<DetectionProtobuf.VideoTrack> feedForwardTracks,
+            int maxTracks, int maxFrameGap, int maxFrameSpan) {
+
+        feedForwardTracks.sort(Comparator.comparingInt(DetectionProtobuf.VideoTrack::getStartFrame)
+                                       .thenComparingInt(DetectionProtobuf.VideoTrack::getStopFrame));
+
+        List<Message> messages = new ArrayList<>();
+        VideoRequest.Builder batch = null;
+        for (DetectionProtobuf.VideoTrack feedForwardTrack : feedForwardTracks) {
+            if (batch != null) {
+                int newStopFrame = Math.max(batch.getStopFrame(), feedForwardTrack.getStopFrame());
+                boolean canAddToBatch = batch.getFeedForwardTracksCount() < maxTracks
+                        && feedForwardTrack.getStartFrame() - batch.getStopFrame() - 1 <= maxFrameGap
+                        && (maxFrameSpan <= 0 || newStopFrame - batch.getStartFrame() + 1 <= maxFrameSpan);
+                if (canAddToBatch) {
+                    batch.setStopFrame(newStopFrame)
+                            .addFeedForwardTracks(feedForwardTrack);
+                    continue;
+                }
+                messages.add(createProtobufMessage(prototype, batch.build()));
+            }
+            batch = VideoRequest.newBuilder()
+                    .setStartFrame(feedForwardTrack.getStartFrame())
+                    .setStopFrame(feedForwardTrack.getStopFrame())
+                    .addFeedForwardTracks(feedForwardTrack);
+        }
+        if (batch != null) {
+            messages.add(createProtobufMessage(prototype, batch.build()));
+        }
+        log.debug("Created {} feed forward requests for {} tracks in media {}.",
+                  messages.size(), feedForwardTracks.size(), media.getId());
+        return messages;
+    }
+
+
+    private static DetectionProtobuf.VideoTrack createFeedForwardTrack(Track track, int topConfidenceCount) {
 
         Collection<Detection> topDetections = getTopConfidenceDetections(track.getDetections(), topConfidenceCount);
         IntSummaryStatistics frameSummaryStats = topDetections.stream()
@@ -151,11 +214,7 @@ public class VideoMediaSegmenter implements MediaSegmenter {
                     .setImageLocation(MediaSegmenter.createImageLocation(detection));
         }
 
-        return VideoRequest.newBuilder()
-                .setStartFrame(frameSummaryStats.getMin())
-                .setStopFrame(frameSummaryStats.getMax())
-                .setFeedForwardTrack(videoTrackBuilder)
-                .build();
+        return videoTrackBuilder.build();
     }
 
 
@@ -189,12 +248,12 @@ public class VideoMediaSegmenter implements MediaSegmenter {
     }
 
 
-    private static int getTopConfidenceCount(DetectionContext context) {
+    private static int getIntProperty(DetectionContext context, String propertyName, int defaultValue) {
         return context.getAlgorithmProperties()
                 .stream()
-                .filter(ap -> ap.getPropertyName().equalsIgnoreCase(FEED_FORWARD_TOP_CONFIDENCE_COUNT))
+                .filter(ap -> ap.getPropertyName().equalsIgnoreCase(propertyName))
                 .mapToInt(ap -> Integer.parseInt(ap.getPropertyValue()))
                 .findAny()
-                .orElse(0);
+                .orElse(defaultValue);
     }
 }
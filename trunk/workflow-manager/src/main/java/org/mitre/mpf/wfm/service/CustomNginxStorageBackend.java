@@ -208,7 +208,8 @@ public class CustomNginxStorageBackend implements StorageBackend {
 
             List<CompletableFuture<Stream<FilePartETag>>> futures = new ArrayList<>(uploadThreadCount);
             for (int i = 0; i < uploadThreadCount; i++) {
-                futures.add(ThreadUtil.callAsync(() -> worker(dispatcher, uploadSegmentSize)));
+                futures.add(ThreadUtil.callAsync(
+                        ThreadUtil.Workload.IO, () -> worker(dispatcher, uploadSegmentSize)));
             }
 
             return futures.stream()
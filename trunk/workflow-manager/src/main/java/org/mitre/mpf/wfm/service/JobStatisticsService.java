@@ -0,0 +1,259 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.service;
+
+import org.mitre.mpf.rest.api.AggregatePipelineStatsModel;
+import org.mitre.mpf.rest.api.AllJobsStatisticsModel;
+import org.mitre.mpf.wfm.data.access.JobRequestDao;
+import org.mitre.mpf.wfm.data.access.JobRequestStatistics;
+import org.mitre.mpf.wfm.data.entities.persistent.JobRequest;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maintains per-pipeline job statistics in memory so that they do not need to be recomputed from every
+ * {@link JobRequest} each time they are requested. The statistics are loaded from the database once using a
+ * grouped query, then updated whenever a job request is persisted with a new status.
+ */
+@Service
+public class JobStatisticsService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatisticsService.class);
+
+    private static final String UNKNOWN = "unknown";
+
+    private final JobRequestDao _jobRequestDao;
+
+    // pipeline -> status -> statistics. Null until the statistics have been loaded from the database.
+    private Map<String, Map<String, Group>> _groups;
+
+    // Pipelines whose min or max time may have been invalidated by removing a job.
+    private final Set<String> _stalePipelines = new HashSet<>();
+
+
+    @Inject
+    JobStatisticsService(JobRequestDao jobRequestDao) {
+        _jobRequestDao = jobRequestDao;
+    }
+
+
+    public synchronized void initialize() {
+        LOG.info("Loading job statistics.");
+        _groups = new HashMap<>();
+        _stalePipelines.clear();
+        for (JobRequestStatistics statistics : _jobRequestDao.getStatistics(null)) {
+            addGroup(statistics);
+        }
+    }
+
+
+    /**
+     * Captures the parts of a job request that contribute to the statistics. This must be called before
+     * modifying a job request so that its previous contribution can be removed when it is updated.
+     */
+    public static Snapshot snapshot(JobRequest jobRequest) {
+        return new Snapshot(jobRequest);
+    }
+
+
+    /**
+     * Replaces the previous contribution of a job request with its current one.
+     * @param previous The job request's state before it was modified, or null if it is a new job request.
+     * @param current The job request after it was persisted.
+     */
+    public synchronized void update(Snapshot previous, JobRequest current) {
+        if (_groups == null) {
+            // Statistics have not been loaded yet. The job will be included when they are loaded.
+            return;
+        }
+        if (previous != null) {
+            remove(previous);
+        }
+        add(new Snapshot(current));
+    }
+
+
+    public synchronized AllJobsStatisticsModel getStatistics() {
+        long start = System.currentTimeMillis();
+        if (_groups == null) {
+            initialize();
+        }
+        refreshStalePipelines();
+
+        var pipelineStatsMap = new HashMap<String, AggregatePipelineStatsModel>();
+        long totalJobs = 0;
+        for (var pipelineEntry : _groups.entrySet()) {
+            var pipelineStats = new AggregatePipelineStatsModel();
+            var states = new HashMap<String, Long>();
+            for (var statusEntry : pipelineEntry.getValue().entrySet()) {
+                Group group = statusEntry.getValue();
+                states.put(statusEntry.getKey(), group.count);
+                pipelineStats.setCount(pipelineStats.getCount() + group.count);
+                pipelineStats.setValidCount(pipelineStats.getValidCount() + group.validCount);
+                pipelineStats.setTotalTime(pipelineStats.getTotalTime() + group.totalTime);
+                pipelineStats.setMaxTime(Math.max(pipelineStats.getMaxTime(), group.maxTime));
+                if (group.minTime > 0 && (pipelineStats.getMinTime() == 0
+                        || group.minTime < pipelineStats.getMinTime())) {
+                    pipelineStats.setMinTime(group.minTime);
+                }
+            }
+            pipelineStats.setStates(states);
+            pipelineStatsMap.put(pipelineEntry.getKey(), pipelineStats);
+            totalJobs += pipelineStats.getCount();
+        }
+
+        var model = new AllJobsStatisticsModel();
+        model.setTotalJobs((int) totalJobs);
+        model.setJobTypes(pipelineStatsMap.size());
+        model.setAggregatePipelineStatsMap(pipelineStatsMap);
+        model.setElapsedTimeMs(System.currentTimeMillis() - start);
+        return model;
+    }
+
+
+    private void add(Snapshot snapshot) {
+        var group = _groups.computeIfAbsent(snapshot._pipeline, k -> new HashMap<>())
+                .computeIfAbsent(snapshot._status, k -> new Group());
+        group.count++;
+        if (snapshot._duration == null) {
+            return;
+        }
+        long duration = snapshot._duration;
+        group.totalTime += duration;
+        if (duration > 0) {
+            group.validCount++;
+            group.minTime = group.minTime == 0 ? duration : Math.min(group.minTime, duration);
+            group.maxTime = Math.max(group.maxTime, duration);
+        }
+    }
+
+
+    private void remove(Snapshot snapshot) {
+        var statusGroups = _groups.get(snapshot._pipeline);
+        var group = statusGroups == null ? null : statusGroups.get(snapshot._status);
+        if (group == null) {
+            _stalePipelines.add(snapshot._pipeline);
+            return;
+        }
+
+        group.count--;
+        if (snapshot._duration != null) {
+            long duration = snapshot._duration;
+            group.totalTime -= duration;
+            if (duration > 0) {
+                group.validCount--;
+                // The next smallest or largest time is not known, so it must be queried. The database rounds times
+                // to microseconds, so a duration loaded from the database may differ from one computed here by a
+                // millisecond.
+                if (duration <= group.minTime + 1 || duration >= group.maxTime - 1) {
+                    _stalePipelines.add(snapshot._pipeline);
+                }
+            }
+        }
+        if (group.count <= 0) {
+            statusGroups.remove(snapshot._status);
+            if (statusGroups.isEmpty()) {
+                _groups.remove(snapshot._pipeline);
+            }
+        }
+    }
+
+
+    private void refreshStalePipelines() {
+        if (_stalePipelines.isEmpty()) {
+            return;
+        }
+        if (_stalePipelines.contains(UNKNOWN)) {
+            initialize();
+            return;
+        }
+        for (String pipeline : _stalePipelines) {
+            _groups.remove(pipeline);
+            List<JobRequestStatistics> pipelineStatistics = _jobRequestDao.getStatistics(pipeline);
+            pipelineStatistics.forEach(this::addGroup);
+        }
+        _stalePipelines.clear();
+    }
+
+
+    private void addGroup(JobRequestStatistics statistics) {
+        var group = new Group();
+        group.count = statistics.getCount();
+        group.totalTime = statistics.getTotalTime();
+        group.minTime = statistics.getMinTime();
+        group.maxTime = statistics.getMaxTime();
+        group.validCount = statistics.getValidCount();
+        _groups.computeIfAbsent(toKey(statistics.getPipeline()), k -> new HashMap<>())
+                .put(toKey(statistics.getStatus()), group);
+    }
+
+
+    private static String toKey(String pipeline) {
+        return pipeline == null ? UNKNOWN : pipeline;
+    }
+
+    private static String toKey(BatchJobStatusType status) {
+        return status == null ? UNKNOWN : status.name();
+    }
+
+
+    public static final class Snapshot {
+        private final String _pipeline;
+        private final String _status;
+        private final Long _duration;
+
+        private Snapshot(JobRequest jobRequest) {
+            _pipeline = toKey(jobRequest.getPipeline());
+            _status = toKey(jobRequest.getStatus());
+            // Must match the durations computed by JobRequestDao.getStatistics, so that removing a job subtracts
+            // exactly what was added for it. toEpochMilli truncates each time to milliseconds before subtracting.
+            _duration = jobRequest.getTimeReceived() != null && jobRequest.getTimeCompleted() != null
+                    ? jobRequest.getTimeCompleted().toEpochMilli() - jobRequest.getTimeReceived().toEpochMilli()
+                    : null;
+        }
+    }
+
+
+    private static class Group {
+        long count;
+        long totalTime;
+        long minTime;
+        long maxTime;
+        long validCount;
+    }
+}
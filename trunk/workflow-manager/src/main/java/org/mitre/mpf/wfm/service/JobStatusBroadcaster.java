@@ -28,20 +28,40 @@
 package org.mitre.mpf.wfm.service;
 
 import org.mitre.mpf.mvc.controller.AtmosphereController;
+import org.mitre.mpf.mvc.model.JobProgressBatchMessage;
 import org.mitre.mpf.mvc.model.JobStatusMessage;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.StreamingJobStatusType;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.inject.Inject;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 public class JobStatusBroadcaster {
 
+    private static final Logger LOG = LoggerFactory.getLogger(JobStatusBroadcaster.class);
+
     private final PropertiesUtil _propertiesUtil;
 
+    // Most recent progress update for each job that has not been sent yet.
+    private final Map<Long, JobStatusMessage> _pendingProgress = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean _flushScheduled = new AtomicBoolean();
+
+    // Held while a batch job's progress or status is sent. Without it, a flush that drained a job's progress
+    // before a status change could send that progress after the status change.
+    private final Object _sendLock = new Object();
+
     @Inject
     JobStatusBroadcaster(PropertiesUtil propertiesUtil) {
         _propertiesUtil = propertiesUtil;
@@ -54,7 +74,59 @@ public class JobStatusBroadcaster {
 
     public void broadcast(long jobId, double progress, BatchJobStatusType jobStatus, Instant endDate) {
         if (_propertiesUtil.isBroadcastJobStatusEnabled()) {
-            AtmosphereController.broadcast(new JobStatusMessage(jobId, progress, jobStatus, endDate));
+            synchronized (_sendLock) {
+                // Drop any pending progress update so it can not be delivered after this status change.
+                _pendingProgress.remove(jobId);
+                AtmosphereController.broadcast(new JobStatusMessage(jobId, progress, jobStatus, endDate));
+            }
+        }
+    }
+
+
+    /**
+     * Records a progress update for a job. Progress updates are coalesced so that at most one update per job is
+     * sent each web.broadcast.job.progress.interval.ms, and the updates for all jobs are sent in a single
+     * message. The caller never waits for the message to be sent to clients.
+     */
+    public void broadcastProgress(long jobId, double progress, BatchJobStatusType jobStatus) {
+        if (!_propertiesUtil.isBroadcastJobStatusEnabled()) {
+            return;
+        }
+        long interval = _propertiesUtil.getBroadcastJobProgressInterval();
+        if (interval <= 0) {
+            synchronized (_sendLock) {
+                AtmosphereController.broadcast(new JobStatusMessage(jobId, progress, jobStatus, null));
+            }
+            return;
+        }
+
+        _pendingProgress.put(jobId, new JobStatusMessage(jobId, progress, jobStatus, null));
+        if (_flushScheduled.compareAndSet(false, true)) {
+            ThreadUtil.runAsync(interval, TimeUnit.MILLISECONDS, this::flushProgress);
+        }
+    }
+
+
+    void flushProgress() {
+        // Clear the flag before draining so that updates that arrive while draining schedule another flush.
+        _flushScheduled.set(false);
+        synchronized (_sendLock) {
+            var jobs = new ArrayList<Map<String, ?>>();
+            for (Long jobId : _pendingProgress.keySet()) {
+                var message = _pendingProgress.remove(jobId);
+                if (message != null) {
+                    jobs.add(message.getContent());
+                }
+            }
+            if (jobs.isEmpty()) {
+                return;
+            }
+            try {
+                AtmosphereController.broadcast(new JobProgressBatchMessage(jobs));
+            }
+            catch (Exception e) {
+                LOG.warn("Failed to broadcast job progress due to: " + e, e);
+            }
         }
     }
 
@@ -30,6 +30,9 @@ package org.mitre.mpf.wfm.service;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.mitre.mpf.frameextractor.FrameExtractor;
 import org.mitre.mpf.interop.JsonOutputObject;
 import org.mitre.mpf.wfm.camel.operations.detection.artifactextraction.ArtifactExtractionRequest;
@@ -38,10 +41,13 @@ import org.mitre.mpf.wfm.util.PropertiesUtil;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestOutputStream;
 
 
 @Component
@@ -66,9 +72,23 @@ public class LocalStorageBackend implements StorageBackend {
 
     @Override
     public URI store(JsonOutputObject outputObject) throws IOException {
+        return storeWithSha256(outputObject).getLeft();
+    }
+
+
+    /**
+     * Stores the output object and returns its URI along with the SHA-256 hash of its content.
+     * The hash is computed while the file is written so that the file does not need to be read
+     * again when it is uploaded to content-addressed remote storage.
+     */
+    public Pair<URI, String> storeWithSha256(JsonOutputObject outputObject) throws IOException {
         Path outputPath = _propertiesUtil.createDetectionOutputObjectFile(outputObject.getJobId());
-        _objectMapper.writeValue(outputPath.toFile(), outputObject);
-        return outputPath.toUri();
+        var digest = DigestUtils.getSha256Digest();
+        try (var outputStream = new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(outputPath)), digest)) {
+            _objectMapper.writeValue(outputStream, outputObject);
+        }
+        return Pair.of(outputPath.toUri(), Hex.encodeHexString(digest.digest()));
     }
 
 
@@ -0,0 +1,257 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.service;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Shares downloads of remote media between jobs. Media is identified by its URI along with the
+ * ETag or Last-Modified value reported by the remote server, so a changed remote file is
+ * downloaded again. Concurrent requests for the same media wait on a single transfer. Each job's
+ * local path is a hard link to the cached file, so deleting it when the job completes does not
+ * remove the cached copy. Cached files are evicted in least recently used order once the cache
+ * exceeds its size limit, but never while a job that uses them is still running.
+ */
+@Service
+public class RemoteMediaCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RemoteMediaCache.class);
+
+    private final PropertiesUtil _propertiesUtil;
+
+    // All fields below are guarded by "this".
+    private final Map<String, Entry> _entries = new HashMap<>();
+
+    private final SetMultimap<Long, Entry> _jobEntries = HashMultimap.create();
+
+    private long _accessCounter;
+
+
+    @Inject
+    public RemoteMediaCache(PropertiesUtil propertiesUtil) {
+        _propertiesUtil = propertiesUtil;
+    }
+
+
+    /**
+     * Makes the remote media available at the destination path, downloading it only if no other
+     * job has already done so.
+     * @param jobId Job that will reference the cached media until {@link #release(long)} is called.
+     * @param uri URI of the remote media
+     * @param version ETag or Last-Modified value of the remote media. When null, the media's
+     *                freshness can not be checked, so it is downloaded without using the cache.
+     * @param destination Path where the job expects to find the media
+     * @param downloader Function that downloads the media to the path it is given
+     */
+    public void retrieve(long jobId, String uri, String version, Path destination,
+                         Downloader downloader) throws IOException, StorageException {
+        if (!_propertiesUtil.isRemoteMediaCacheEnabled() || version == null) {
+            downloader.download(destination);
+            return;
+        }
+
+        String key = uri + '\n' + version;
+        Entry entry;
+        boolean shouldDownload;
+        synchronized (this) {
+            entry = _entries.get(key);
+            shouldDownload = entry == null;
+            if (shouldDownload) {
+                entry = new Entry(key, getCacheDir().resolve(UUID.randomUUID().toString()));
+                _entries.put(key, entry);
+            }
+            _jobEntries.put(jobId, entry);
+            entry.jobIds.add(jobId);
+            entry.lastAccess = ++_accessCounter;
+        }
+
+        if (shouldDownload) {
+            download(entry, uri, downloader);
+            evictIfNeeded();
+        }
+        else {
+            LOG.info("Using the cached copy of \"{}\" for job {}.", uri, jobId);
+            awaitDownload(entry);
+        }
+        linkOrCopy(entry.path, destination);
+    }
+
+
+    /**
+     * Releases the job's references to cached media so that it can be evicted.
+     */
+    public void release(long jobId) {
+        synchronized (this) {
+            for (Entry entry : _jobEntries.removeAll(jobId)) {
+                entry.jobIds.remove(jobId);
+            }
+        }
+        evictIfNeeded();
+    }
+
+
+    private void download(Entry entry, String uri, Downloader downloader)
+            throws IOException, StorageException {
+        try {
+            LOG.info("Downloading \"{}\" to the remote media cache.", uri);
+            downloader.download(entry.path);
+            entry.size = Files.size(entry.path);
+            entry.download.complete(null);
+        }
+        catch (IOException | StorageException | RuntimeException e) {
+            synchronized (this) {
+                _entries.remove(entry.key, entry);
+                for (long jobId : entry.jobIds) {
+                    _jobEntries.remove(jobId, entry);
+                }
+            }
+            deleteQuietly(entry.path);
+            entry.download.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+
+    private static void awaitDownload(Entry entry) throws IOException, StorageException {
+        try {
+            entry.download.join();
+        }
+        catch (CompletionException e) {
+            // Each waiting job reports the failure using the exception from the shared download.
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new IOException(cause.getMessage(), cause);
+            }
+            if (cause instanceof StorageException) {
+                throw new StorageException(cause.getMessage(), cause);
+            }
+            throw e;
+        }
+    }
+
+
+    private static void linkOrCopy(Path cachedPath, Path destination) throws IOException {
+        Files.deleteIfExists(destination);
+        try {
+            Files.createLink(destination, cachedPath);
+        }
+        catch (IOException | UnsupportedOperationException e) {
+            LOG.warn("Failed to create a hard link from \"{}\" to \"{}\" due to: {}. " +
+                             "The file will be copied instead.", destination, cachedPath, e.toString());
+            Files.copy(cachedPath, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+
+    private void evictIfNeeded() {
+        long maxBytes = _propertiesUtil.getRemoteMediaCacheMaxSizeMb() * 1024L * 1024L;
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (this) {
+            long totalBytes = _entries.values().stream().mapToLong(e -> e.size).sum();
+            if (totalBytes <= maxBytes) {
+                return;
+            }
+            List<Entry> candidates = new ArrayList<>();
+            for (Entry entry : _entries.values()) {
+                if (entry.jobIds.isEmpty() && entry.download.isDone()) {
+                    candidates.add(entry);
+                }
+            }
+            candidates.sort(Comparator.comparingLong(e -> e.lastAccess));
+            for (Entry entry : candidates) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+                _entries.remove(entry.key);
+                totalBytes -= entry.size;
+                evicted.add(entry);
+            }
+        }
+        for (Entry entry : evicted) {
+            LOG.info("Evicting \"{}\" from the remote media cache.", entry.path);
+            deleteQuietly(entry.path);
+        }
+    }
+
+
+    private Path getCacheDir() {
+        return _propertiesUtil.getRemoteMediaCacheDirectory().toPath();
+    }
+
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            LOG.warn(String.format("Failed to delete \"%s\". It must be manually deleted.", path), e);
+        }
+    }
+
+
+    @FunctionalInterface
+    public static interface Downloader {
+        public void download(Path destination) throws IOException, StorageException;
+    }
+
+
+    private static class Entry {
+        final String key;
+
+        final Path path;
+
+        final Set<Long> jobIds = new HashSet<>();
+
+        final CompletableFuture<Void> download = new CompletableFuture<>();
+
+        long lastAccess;
+
+        // Written by the downloading thread before "download" is completed.
+        volatile long size;
+
+        Entry(String key, Path path) {
+            this.key = key;
+            this.path = path;
+        }
+    }
+}
@@ -27,6 +27,7 @@
 
 package org.mitre.mpf.wfm.service;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.auth.AWSCredentials;
@@ -37,9 +38,18 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.http.client.utils.URIBuilder;
@@ -54,11 +64,13 @@ import org.mitre.mpf.wfm.enums.IssueCodes;
 import org.mitre.mpf.wfm.enums.MpfConstants;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.util.RangedDownloader;
 import org.mitre.mpf.wfm.util.ThreadUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.io.InputStream;
@@ -67,9 +79,14 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 
 @Service
@@ -85,6 +102,15 @@ public class S3StorageBackend implements StorageBackend {
 
     private final AggregateJobPropertiesUtil _aggregateJobPropertiesUtil;
 
+    // Keyed on a hash of the endpoint, retry count, and credentials so that the keys do not contain secret keys
+    // in plain text. Evicted clients are shut down to release their connection pools and upload threads, but
+    // not until every operation that leased the client has finished.
+    private final Cache<String, CachedS3Client> _s3Clients = CacheBuilder.newBuilder()
+            .maximumSize(20)
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .<String, CachedS3Client>removalListener(n -> n.getValue().evict())
+            .build();
+
     @Inject
     public S3StorageBackend(PropertiesUtil propertiesUtil,
                             LocalStorageBackend localStorageBackend,
@@ -97,6 +123,13 @@ public class S3StorageBackend implements StorageBackend {
     }
 
 
+    @PreDestroy
+    public void shutdown() {
+        _s3Clients.invalidateAll();
+        _s3Clients.cleanUp();
+    }
+
+
     @Override
     public boolean canStore(JsonOutputObject outputObject) throws StorageException {
         BatchJob job = _inProgressJobs.getJob(outputObject.getJobId());
@@ -105,9 +138,10 @@ public class S3StorageBackend implements StorageBackend {
 
     @Override
     public URI store(JsonOutputObject outputObject) throws StorageException, IOException {
-        URI localUri = _localStorageBackend.store(outputObject);
+        var localUriAndHash = _localStorageBackend.storeWithSha256(outputObject);
         BatchJob job = _inProgressJobs.getJob(outputObject.getJobId());
-        return putInS3IfAbsent(Paths.get(localUri), job.getJobProperties()::get);
+        return putInS3IfAbsent(Paths.get(localUriAndHash.getLeft()), localUriAndHash.getRight(),
+                               job.getJobProperties()::get);
     }
 
 
@@ -162,7 +196,8 @@ public class S3StorageBackend implements StorageBackend {
             }
 
             var future = ThreadUtil.callAsync(
-                    () -> putInS3IfAbsent(Path.of(entry.getValue()), combinedProperties));
+                    ThreadUtil.Workload.IO,
+                    () -> putInS3IfAbsent(Path.of(entry.getValue()), null, combinedProperties));
             future.whenComplete((x, y) -> semaphore.release());
             futures.put(entry.getRowKey(), entry.getColumnKey(), future);
         }
@@ -192,7 +227,7 @@ public class S3StorageBackend implements StorageBackend {
                 = _aggregateJobPropertiesUtil.getCombinedProperties(job, media, action);
         Path markupPath = Paths.get(URI.create(markupResult.getMarkupUri()));
 
-        URI uploadedUri = putInS3IfAbsent(markupPath, combinedProperties);
+        URI uploadedUri = putInS3IfAbsent(markupPath, null, combinedProperties);
         markupResult.setMarkupUri(uploadedUri.toString());
     }
 
@@ -275,32 +310,137 @@ public class S3StorageBackend implements StorageBackend {
 
     public void downloadFromS3(Media media, Function<String, String> combinedProperties)
             throws StorageException {
-        try {
-            AmazonS3 s3Client = getS3DownloadClient(media.getUri(), combinedProperties);
-            String[] pathParts = splitBucketAndObjectKey(media.getUri());
+        downloadFromS3(media.getUri(), combinedProperties, media.getLocalPath());
+    }
+
+
+    public void downloadFromS3(String uri, Function<String, String> combinedProperties, Path destination)
+            throws StorageException {
+        downloadFromS3(uri, combinedProperties, destination, null);
+    }
+
+
+    /**
+     * @param eTag When not null, the download fails unless the object still has this ETag. This prevents a
+     *             newer version of the object from being stored under a previously retrieved ETag.
+     */
+    public void downloadFromS3(String uri, Function<String, String> combinedProperties, Path destination,
+                               String eTag) throws StorageException {
+        try (S3ClientLease lease = getS3DownloadClient(uri, combinedProperties)) {
+            AmazonS3 s3Client = lease.getClient();
+            String[] pathParts = splitBucketAndObjectKey(uri);
             String bucket = pathParts[0];
             String objectKey = pathParts[1];
-            s3Client.getObject(new GetObjectRequest(bucket, objectKey), media.getLocalPath().toFile());
+
+            var rangedDownloader = RangedDownloader.create(combinedProperties, _propertiesUtil);
+            ObjectMetadata metadata = rangedDownloader.isEnabled()
+                    ? s3Client.getObjectMetadata(bucket, objectKey)
+                    : null;
+            if (metadata != null && rangedDownloader.shouldSplit(metadata.getContentLength())) {
+                String rangeETag = eTag == null ? metadata.getETag() : eTag;
+                rangedDownloader.download(
+                        uri, metadata.getContentLength(), destination,
+                        (begin, end) -> getObjectRange(s3Client, bucket, objectKey, rangeETag, begin, end));
+            }
+            else {
+                var request = new GetObjectRequest(bucket, objectKey);
+                if (eTag != null) {
+                    request.setMatchingETagConstraints(List.of(eTag));
+                }
+                // getObject returns null when the ETag constraint is not met.
+                if (s3Client.getObject(request, destination.toFile()) == null) {
+                    throw new StorageException(String.format(
+                            "Failed to download \"%s\" because it no longer has the ETag %s.", uri, eTag));
+                }
+            }
         }
-        catch (SdkClientException e) {
-            throw new StorageException(String.format("Failed to download \"%s\" due to %s", media.getUri(), e),
+        catch (SdkClientException | IOException e) {
+            throw new StorageException(String.format("Failed to download \"%s\" due to %s", uri, e),
                                        e);
         }
     }
 
 
+    private static InputStream getObjectRange(AmazonS3 s3Client, String bucket, String objectKey,
+                                              String eTag, long begin, long end) throws IOException {
+        try {
+            // The ETag constraint prevents combining ranges from different versions of the object.
+            S3Object object = s3Client.getObject(
+                    new GetObjectRequest(bucket, objectKey)
+                            .withRange(begin, end)
+                            .withMatchingETagConstraint(eTag));
+            if (object == null) {
+                throw new IOException(String.format(
+                        "The object \"%s\" was modified while it was being downloaded.", objectKey));
+            }
+            return object.getObjectContent();
+        }
+        catch (SdkClientException e) {
+            throw new IOException(e);
+        }
+    }
+
+
+    /**
+     * Gets the object's ETag using the job's credentials, so that a cached copy of the object is
+     * only used when the job is allowed to access the object and the object has not changed.
+     */
+    public String getETag(String uri, Function<String, String> combinedProperties)
+            throws StorageException {
+        try (S3ClientLease lease = getS3DownloadClient(uri, combinedProperties)) {
+            String[] pathParts = splitBucketAndObjectKey(uri);
+            return lease.getClient().getObjectMetadata(pathParts[0], pathParts[1]).getETag();
+        }
+        catch (SdkClientException e) {
+            throw new StorageException(String.format(
+                    "Failed to get the metadata for \"%s\" due to %s", uri, e), e);
+        }
+    }
+
+
+    /**
+     * The caller must close the returned object's content stream. The S3 client stays leased until then.
+     */
     public S3Object getFromS3(String uri, Function<String, String> properties) throws StorageException {
+        S3ClientLease lease = getS3DownloadClient(uri, properties);
         try {
-            AmazonS3 s3Client = getS3DownloadClient(uri, properties);
             String[] pathParts = splitBucketAndObjectKey(uri);
             String bucket = pathParts[0];
             String objectKey = pathParts[1];
-            return s3Client.getObject(bucket, objectKey);
+            S3Object object = lease.getClient().getObject(bucket, objectKey);
+            S3ObjectInputStream content = object.getObjectContent();
+            object.setObjectContent(new S3ObjectInputStream(content, content.getHttpRequest()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    }
+                    finally {
+                        lease.close();
+                    }
+                }
+
+                @Override
+                public void abort() {
+                    try {
+                        super.abort();
+                    }
+                    finally {
+                        lease.close();
+                    }
+                }
+            });
+            return object;
         }
         catch (SdkClientException e) {
+            lease.close();
             throw new StorageException(String.format("Failed to download \"%s\" due to %s", uri, e),
                                        e);
         }
+        catch (StorageException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
     }
 
 
@@ -318,21 +458,34 @@ public class S3StorageBackend implements StorageBackend {
     }
 
 
-    private URI putInS3IfAbsent(Path path, Function<String, String> properties) throws IOException, StorageException {
-        String hash = hashExistingFile(path);
+    /**
+     * @param hash SHA-256 hash of the file, or null if it has not already been computed
+     */
+    private URI putInS3IfAbsent(Path path, String hash, Function<String, String> properties)
+            throws IOException, StorageException {
+        if (hash == null) {
+            hash = hashExistingFile(path);
+        }
         String objectName = getObjectName(hash);
         URI bucketUri = URI.create(properties.apply(MpfConstants.S3_RESULTS_BUCKET_PROPERTY));
         String resultsBucket = getResultsBucketName(bucketUri);
         LOG.info("Storing \"{}\" in S3 bucket \"{}\" with object key \"{}\" ...", path, bucketUri, objectName);
 
-        try {
-            AmazonS3 s3Client = getS3UploadClient(properties);
+        try (S3ClientLease lease = getS3UploadClient(properties)) {
+            AmazonS3 s3Client = lease.getClient();
             boolean alreadyExists = s3Client.doesObjectExist(resultsBucket, objectName);
             if (alreadyExists) {
                 LOG.info("Did not upload \"{}\" to S3 bucket \"{}\" and object key \"{}\" " +
                                "because a file with the same SHA-256 hash was already there.",
                          path, bucketUri, objectName);
             }
+            else if (useMultipartUpload(path)) {
+                lease.getTransferManager().upload(resultsBucket, objectName, path.toFile())
+                        .waitForCompletion();
+                LOG.info("Successfully stored \"{}\" in S3 bucket \"{}\" with object key \"{}\" " +
+                                 "using a multipart upload.",
+                         path, bucketUri, objectName);
+            }
             else {
                 s3Client.putObject(resultsBucket, objectName, path.toFile());
                 LOG.info("Successfully stored \"{}\" in S3 bucket \"{}\" with object key \"{}\".",
@@ -345,11 +498,15 @@ public class S3StorageBackend implements StorageBackend {
             Files.delete(path);
             return objectUri;
         }
-        catch (SdkClientException e) {
+        catch (AmazonClientException e) {
             var errorMsg = String.format("Failed to upload %s due to S3 error: %s", path, e);
             LOG.error(errorMsg, e);
             throw new StorageException(errorMsg, e);
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StorageException("Interrupted while uploading " + path, e);
+        }
         catch (URISyntaxException e) {
             var errorMsg = "Couldn't build uri: " + e;
             LOG.error(errorMsg, e);
@@ -358,6 +515,12 @@ public class S3StorageBackend implements StorageBackend {
     }
 
 
+    private boolean useMultipartUpload(Path path) throws IOException {
+        long threshold = _propertiesUtil.getS3MultipartUploadThreshold();
+        return threshold > 0 && Files.size(path) >= threshold;
+    }
+
+
     private static String hashExistingFile(Path path) throws IOException {
         try (InputStream is = Files.newInputStream(path)) {
             return DigestUtils.sha256Hex(is);
@@ -372,21 +535,50 @@ public class S3StorageBackend implements StorageBackend {
     }
 
 
-    private AmazonS3 getS3DownloadClient(String mediaUri, Function<String, String> properties) throws StorageException {
+    private S3ClientLease getS3DownloadClient(String mediaUri, Function<String, String> properties)
+            throws StorageException {
         String endpoint = getS3Endpoint(mediaUri);
         return getS3Client(endpoint, _propertiesUtil.getRemoteMediaDownloadRetries(), properties);
     }
 
-    private AmazonS3 getS3UploadClient(Function<String, String> properties) throws StorageException {
+    private S3ClientLease getS3UploadClient(Function<String, String> properties) throws StorageException {
         String endpoint = getS3Endpoint(properties.apply(MpfConstants.S3_RESULTS_BUCKET_PROPERTY));
         return getS3Client(endpoint, _propertiesUtil.getHttpStorageUploadRetryCount(), properties);
 
     }
 
-    private static AmazonS3 getS3Client(String endpoint, int retryCount, Function<String, String> properties) {
-        AWSCredentials credentials = new BasicAWSCredentials(
-                properties.apply(MpfConstants.S3_ACCESS_KEY_PROPERTY),
-                properties.apply(MpfConstants.S3_SECRET_KEY_PROPERTY));
+    /**
+     * The returned lease must be closed when the client is no longer needed, so that a client evicted from the
+     * cache is only shut down after every operation using it has finished.
+     */
+    S3ClientLease getS3Client(String endpoint, int retryCount, Function<String, String> properties) {
+        String accessKey = properties.apply(MpfConstants.S3_ACCESS_KEY_PROPERTY);
+        String secretKey = properties.apply(MpfConstants.S3_SECRET_KEY_PROPERTY);
+        // Each client has its own connection pool, so clients are reused whenever the endpoint and
+        // credentials match.
+        String key = DigestUtils.sha256Hex(
+                String.join("\n", endpoint, String.valueOf(retryCount), accessKey, secretKey));
+        try {
+            while (true) {
+                CachedS3Client cachedClient = _s3Clients.get(key, () -> new CachedS3Client(
+                        createS3Client(endpoint, retryCount, accessKey, secretKey)));
+                if (cachedClient.tryLease()) {
+                    return new S3ClientLease(cachedClient);
+                }
+                // The client was evicted after it was retrieved from the cache, so a new one is needed.
+                _s3Clients.asMap().remove(key, cachedClient);
+            }
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+
+    private static AmazonS3 createS3Client(String endpoint, int retryCount, String accessKey,
+                                           String secretKey) {
+        AWSCredentials credentials = new BasicAWSCredentials(accessKey, secretKey);
 
         ClientConfiguration clientConfig = new ClientConfiguration();
         clientConfig.setMaxErrorRetry(retryCount);
@@ -404,6 +596,105 @@ public class S3StorageBackend implements StorageBackend {
     }
 
 
+    private TransferManager createTransferManager(AmazonS3 s3Client) {
+        int threadCount = Math.max(1, _propertiesUtil.getS3UploadThreadCount());
+        return TransferManagerBuilder.standard()
+                .withS3Client(s3Client)
+                .withMultipartUploadThreshold(_propertiesUtil.getS3MultipartUploadThreshold())
+                .withMinimumUploadPartSize(_propertiesUtil.getS3MultipartUploadPartSize())
+                // Daemon threads so that idle upload threads do not prevent the WFM from exiting.
+                .withExecutorFactory(() -> Executors.newFixedThreadPool(
+                        threadCount,
+                        new ThreadFactoryBuilder().setNameFormat("s3-upload-%d").setDaemon(true).build()))
+                .build();
+    }
+
+
+    /**
+     * An S3 client and the transfer manager that shares its connection pool. The transfer manager is only
+     * created when a multipart upload is needed. The client is shut down once it has been evicted from the cache
+     * and all of its leases have been closed.
+     */
+    private class CachedS3Client {
+        private final AmazonS3 _client;
+
+        private TransferManager _transferManager;
+
+        private int _leaseCount;
+
+        private boolean _evicted;
+
+        private CachedS3Client(AmazonS3 client) {
+            _client = client;
+        }
+
+        private synchronized TransferManager getTransferManager() {
+            if (_transferManager == null) {
+                _transferManager = createTransferManager(_client);
+            }
+            return _transferManager;
+        }
+
+        private synchronized boolean tryLease() {
+            if (_evicted) {
+                return false;
+            }
+            _leaseCount++;
+            return true;
+        }
+
+        private synchronized void release() {
+            _leaseCount--;
+            if (_evicted && _leaseCount == 0) {
+                shutdown();
+            }
+        }
+
+        private synchronized void evict() {
+            _evicted = true;
+            if (_leaseCount == 0) {
+                shutdown();
+            }
+        }
+
+        private void shutdown() {
+            if (_transferManager != null) {
+                _transferManager.shutdownNow(false);
+            }
+            _client.shutdown();
+        }
+    }
+
+
+    /**
+     * Prevents a cached S3 client from being shut down while it is in use.
+     */
+    class S3ClientLease implements AutoCloseable {
+        private final CachedS3Client _cachedClient;
+
+        private final AtomicBoolean _closed = new AtomicBoolean();
+
+        private S3ClientLease(CachedS3Client cachedClient) {
+            _cachedClient = cachedClient;
+        }
+
+        public AmazonS3 getClient() {
+            return _cachedClient._client;
+        }
+
+        public TransferManager getTransferManager() {
+            return _cachedClient.getTransferManager();
+        }
+
+        @Override
+        public void close() {
+            if (_closed.compareAndSet(false, true)) {
+                _cachedClient.release();
+            }
+        }
+    }
+
+
     private static String getS3Endpoint(String uri) throws StorageException {
         try {
             return removePartsAfterHost(uri);
@@ -0,0 +1,492 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.service;
+
+import com.google.common.collect.ImmutableSet;
+import org.mitre.mpf.mvc.model.DirectoryTreeNode;
+import org.mitre.mpf.mvc.model.ServerMediaFile;
+import org.mitre.mpf.mvc.model.ServerMediaFilteredListing;
+import org.mitre.mpf.wfm.util.IoUtils;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+
+/**
+ * In-memory index of the files under the server media tree. The initial scan lists directories in parallel on the
+ * IO thread pool and the index is then kept current using filesystem change notifications, so listing a directory
+ * does not touch the filesystem. Content types are remembered along with the size and modification time of the
+ * file they were detected from, so a file is only sniffed again when it changes.
+ */
+@Component
+public class ServerMediaIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServerMediaIndex.class);
+
+    // Same order as the directory tree and the file listings in the web UI.
+    private static final Comparator<String> NAME_ORDER
+            = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final IoUtils _ioUtils;
+
+    // Keyed by the absolute path of the directory. The files are keyed by the name of the directory entry.
+    private final ConcurrentMap<Path, NavigableMap<String, ServerMediaFile>> _directories
+            = new ConcurrentHashMap<>();
+
+    // Keyed by the real path of the file.
+    private final ConcurrentMap<Path, ContentTypeEntry> _contentTypes = new ConcurrentHashMap<>();
+
+    // A directory that is reachable through symbolic links is watched once, but it is indexed under each of the
+    // absolute paths it can be reached from.
+    private final ConcurrentMap<WatchKey, Set<Path>> _watchedDirectories = new ConcurrentHashMap<>();
+
+    private volatile Path _root;
+
+    private volatile WatchService _watchService;
+
+    private volatile boolean _ready;
+
+    // Only the first directory that can not be watched is logged as a warning.
+    private final AtomicBoolean _loggedWatchFailure = new AtomicBoolean();
+
+    // Blocks waiting for change notifications, so it does not use the shared thread pool.
+    private Thread _eventThread;
+
+
+    @Inject
+    ServerMediaIndex(IoUtils ioUtils) {
+        _ioUtils = ioUtils;
+    }
+
+
+    /**
+     * Starts watching and indexing the directory tree rooted at rootPath. Returns immediately. Until the initial
+     * scan completes, {@link #isReady()} returns false and the listing methods return empty.
+     */
+    public synchronized void start(String rootPath) throws IOException {
+        if (_watchService != null) {
+            return;
+        }
+        Path root = Paths.get(rootPath).toAbsolutePath();
+        Path realRoot = root.toRealPath();
+        _root = root;
+        WatchService watchService = root.getFileSystem().newWatchService();
+        _watchService = watchService;
+        _eventThread = new Thread(() -> processEvents(watchService), "server-media-index-events");
+        _eventThread.setDaemon(true);
+        _eventThread.start();
+
+        long startTime = System.currentTimeMillis();
+        var scan = new Scan();
+        scan.submit(root, ImmutableSet.of(realRoot));
+        scan.finish();
+        scan.getCompletion().thenRun(() -> {
+            _ready = true;
+            LOG.info("Indexed {} files in {} directories under {} in {} ms.",
+                     _contentTypes.size(), _directories.size(), _root, System.currentTimeMillis() - startTime);
+        });
+    }
+
+
+    @PreDestroy
+    public synchronized void stop() {
+        _ready = false;
+        if (_watchService == null) {
+            return;
+        }
+        _eventThread.interrupt();
+        _eventThread = null;
+        try {
+            _watchService.close();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to close the server media watch service: " + e.getMessage(), e);
+        }
+        _watchService = null;
+        _watchedDirectories.clear();
+        _directories.clear();
+    }
+
+
+    public boolean isReady() {
+        return _ready;
+    }
+
+
+    public Optional<List<ServerMediaFile>> getFiles(String dirPath, boolean recurse) {
+        Path dir = Paths.get(dirPath).toAbsolutePath();
+        var files = _ready ? _directories.get(dir) : null;
+        if (files == null) {
+            return Optional.empty();
+        }
+        if (!recurse) {
+            return Optional.of(new ArrayList<>(files.values()));
+        }
+        return Optional.of(_directories.entrySet().stream()
+                .filter(e -> e.getKey().startsWith(dir))
+                .sorted(Map.Entry.comparingByKey())
+                .flatMap(e -> e.getValue().values().stream())
+                .collect(Collectors.toList()));
+    }
+
+
+    /**
+     * Builds the directory tree rooted at dirPath from the indexed directories, so that the directory tree does not
+     * need to be walked on the filesystem.
+     */
+    public Optional<DirectoryTreeNode> getDirectoryTree(String dirPath, String uploadDir) {
+        Path dir = Paths.get(dirPath).toAbsolutePath();
+        if (!_ready || !_directories.containsKey(dir)) {
+            return Optional.empty();
+        }
+        var nodes = new HashMap<Path, DirectoryTreeNode>();
+        // A directory sorts before everything under it, so each parent node exists before its children are added.
+        _directories.keySet().stream()
+                .filter(p -> p.startsWith(dir))
+                .sorted()
+                .forEach(p -> {
+                    var node = new DirectoryTreeNode(p.toFile());
+                    node.setCanUpload(node.getFullPath().startsWith(uploadDir));
+                    nodes.put(p, node);
+                    var parentNode = p.equals(dir) ? null : nodes.get(p.getParent());
+                    if (parentNode != null) {
+                        parentNode.addNode(node);
+                    }
+                });
+        for (var node : nodes.values()) {
+            if (node.getNodes() != null) {
+                node.getNodes().sort(Comparator.comparing(DirectoryTreeNode::getText, NAME_ORDER));
+            }
+        }
+        return Optional.ofNullable(nodes.get(dir));
+    }
+
+
+    /**
+     * Returns up to limit of the files in dirPath whose names start with prefix, ignoring case, skipping the first
+     * offset matches. Only the matching range of the directory is visited.
+     */
+    public Optional<ServerMediaFilteredListing> getPage(String dirPath, String prefix, int offset, int limit,
+                                                        int draw) {
+        var files = _ready ? _directories.get(Paths.get(dirPath).toAbsolutePath()) : null;
+        if (files == null) {
+            return Optional.empty();
+        }
+        // Names that only differ from the prefix by case can sort before it.
+        String from = prefix;
+        String lower;
+        while ((lower = files.lowerKey(from)) != null && lower.equalsIgnoreCase(prefix)) {
+            from = lower;
+        }
+
+        var page = new ArrayList<ServerMediaFile>();
+        int matches = 0;
+        for (var entry : files.tailMap(from, true).entrySet()) {
+            if (!entry.getKey().regionMatches(true, 0, prefix, 0, prefix.length())) {
+                break;
+            }
+            if (matches >= offset && page.size() < limit) {
+                page.add(entry.getValue());
+            }
+            matches++;
+        }
+        return Optional.of(new ServerMediaFilteredListing(draw, matches, files.size(), page));
+    }
+
+
+    /**
+     * Adds files to the index without waiting for the filesystem change notification, so that uploaded files are
+     * listed immediately.
+     */
+    public void addFiles(Collection<Path> files) {
+        for (Path file : files) {
+            Path absolutePath = file.toAbsolutePath();
+            var dirFiles = _directories.get(absolutePath.getParent());
+            if (dirFiles != null) {
+                indexFile(absolutePath, dirFiles);
+            }
+        }
+    }
+
+
+    private void scanDirectory(Path dir, Set<Path> branchRealPaths, Scan scan) throws IOException {
+        watch(dir);
+        // Registered before listing the directory so that changes made while it is being listed are not missed.
+        var files = _directories.computeIfAbsent(dir, d -> new ConcurrentSkipListMap<>(NAME_ORDER));
+
+        var names = new HashSet<String>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                names.add(entry.getFileName().toString());
+                if (Files.isDirectory(entry)) {
+                    if (_directories.containsKey(entry)) {
+                        continue;
+                    }
+                    Path realPath = entry.toRealPath();
+                    if (branchRealPaths.contains(realPath)) {
+                        LOG.warn("Omitting duplicate symbolically linked directory in this branch: {} --> {}",
+                                 entry, realPath);
+                        continue;
+                    }
+                    scan.submit(entry, ImmutableSet.<Path>builder()
+                            .addAll(branchRealPaths).add(realPath).build());
+                }
+                else if (Files.isRegularFile(entry)) {
+                    indexFile(entry, files);
+                }
+            }
+        }
+
+        // Only has an effect when a directory is scanned again after change notifications were lost.
+        files.keySet().retainAll(names);
+        _directories.keySet().stream()
+                .filter(p -> dir.equals(p.getParent()) && !names.contains(p.getFileName().toString()))
+                .collect(Collectors.toList())
+                .forEach(this::removeDirectory);
+    }
+
+
+    private void indexFile(Path file, NavigableMap<String, ServerMediaFile> dirFiles) {
+        try {
+            // file should have real path, parent should have absolute path
+            Path realPath = file.toRealPath();
+            var attributes = Files.readAttributes(realPath, BasicFileAttributes.class);
+            var mediaFile = new ServerMediaFile(realPath.toFile(), file.getParent().toFile(),
+                                                getContentType(realPath, attributes));
+            dirFiles.put(file.getFileName().toString(), mediaFile);
+        }
+        catch (IOException e) {
+            LOG.error("Error indexing {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    private String getContentType(Path realPath, BasicFileAttributes attributes) {
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        var cached = _contentTypes.get(realPath);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.contentType;
+        }
+        String contentType = _ioUtils.getPathContentType(realPath);
+        _contentTypes.put(realPath, new ContentTypeEntry(size, lastModified, contentType));
+        return contentType;
+    }
+
+
+    private void watch(Path dir) {
+        WatchService watchService = _watchService;
+        if (watchService == null) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            _watchedDirectories.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(dir);
+        }
+        catch (ClosedWatchServiceException e) {
+            // The index is being stopped.
+        }
+        catch (IOException e) {
+            // For example, when the limit on the number of inotify watches has been reached. The directory is still
+            // indexed, but changes to it will not be picked up.
+            if (_loggedWatchFailure.compareAndSet(false, true)) {
+                LOG.warn("Unable to watch {} for changes: {}. It will still be indexed, but changes to it and any " +
+                                 "other directories that can not be watched will not appear in the server " +
+                                 "media listings.", dir, e.getMessage());
+            }
+            else {
+                LOG.debug("Unable to watch {} for changes: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+
+    private void removeDirectory(Path dir) {
+        var removedDirs = _directories.keySet().stream()
+                .filter(p -> p.startsWith(dir))
+                .collect(Collectors.toList());
+        for (Path removedDir : removedDirs) {
+            var files = _directories.remove(removedDir);
+            if (files != null) {
+                files.values().forEach(f -> _contentTypes.remove(Paths.get(f.getFullPath())));
+            }
+        }
+        _watchedDirectories.values().forEach(dirs -> dirs.removeIf(p -> p.startsWith(dir)));
+    }
+
+
+    private void processEvents(WatchService watchService) {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            }
+            catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+
+            var dirs = _watchedDirectories.getOrDefault(key, Set.of());
+            for (WatchEvent<?> event : key.pollEvents()) {
+                for (Path dir : dirs) {
+                    try {
+                        handleEvent(dir, event);
+                    }
+                    catch (Exception e) {
+                        LOG.error(String.format("Failed to update the server media index for a change in %s: %s",
+                                                dir, e.getMessage()), e);
+                    }
+                }
+            }
+            if (!key.reset()) {
+                _watchedDirectories.remove(key);
+            }
+        }
+    }
+
+
+    // Package-private so that tests can deliver events that can not be produced reliably, such as OVERFLOW.
+    void handleEvent(Path dir, WatchEvent<?> event) throws IOException {
+        if (event.kind() == OVERFLOW) {
+            LOG.warn("Change notifications for {} were lost. The directory will be scanned again.", dir);
+            var scan = new Scan();
+            scan.submit(dir, getBranchRealPaths(dir));
+            scan.finish();
+            return;
+        }
+
+        var dirFiles = _directories.get(dir);
+        if (dirFiles == null) {
+            return;
+        }
+        Path child = dir.resolve((Path) event.context());
+        if (event.kind() == ENTRY_DELETE) {
+            var removed = dirFiles.remove(child.getFileName().toString());
+            if (removed != null) {
+                _contentTypes.remove(Paths.get(removed.getFullPath()));
+            }
+            else if (_directories.containsKey(child)) {
+                removeDirectory(child);
+            }
+        }
+        else if (Files.isDirectory(child)) {
+            if (event.kind() == ENTRY_CREATE && !_directories.containsKey(child)) {
+                var branchRealPaths = getBranchRealPaths(dir);
+                Path realPath = child.toRealPath();
+                if (!branchRealPaths.contains(realPath)) {
+                    var scan = new Scan();
+                    scan.submit(child, ImmutableSet.<Path>builder()
+                            .addAll(branchRealPaths).add(realPath).build());
+                    scan.finish();
+                }
+            }
+        }
+        else if (Files.isRegularFile(child)) {
+            indexFile(child, dirFiles);
+        }
+    }
+
+
+    private Set<Path> getBranchRealPaths(Path dir) throws IOException {
+        var builder = ImmutableSet.<Path>builder();
+        for (Path p = dir; p != null && p.startsWith(_root); p = p.getParent()) {
+            builder.add(p.toRealPath());
+        }
+        return builder.build();
+    }
+
+
+    /**
+     * Tracks the directories that are still being scanned, so that the completion of a scan that spans many
+     * directories can be detected without any of the scanning threads blocking.
+     */
+    private class Scan {
+        // Starts at one so that the scan can not complete before the caller calls finish.
+        private final AtomicInteger _pending = new AtomicInteger(1);
+
+        private final ThreadUtil.CustomCompletableFuture<Void> _completion = ThreadUtil.newFuture();
+
+        CompletableFuture<Void> getCompletion() {
+            return _completion;
+        }
+
+        void submit(Path dir, Set<Path> branchRealPaths) {
+            _pending.incrementAndGet();
+            ThreadUtil.runAsync(ThreadUtil.Workload.IO, () -> {
+                try {
+                    scanDirectory(dir, branchRealPaths, this);
+                }
+                catch (IOException e) {
+                    LOG.error("Error scanning {}: {}", dir, e.getMessage());
+                }
+                finally {
+                    finish();
+                }
+            });
+        }
+
+        void finish() {
+            if (_pending.decrementAndGet() == 0) {
+                _completion.complete(null);
+            }
+        }
+    }
+
+
+    private static class ContentTypeEntry {
+        final long size;
+        final long lastModified;
+        final String contentType;
+
+        ContentTypeEntry(long size, long lastModified, String contentType) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+        }
+    }
+}
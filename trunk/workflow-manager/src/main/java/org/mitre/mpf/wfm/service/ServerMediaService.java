@@ -28,6 +28,7 @@ package org.mitre.mpf.wfm.service;
 
 import org.mitre.mpf.mvc.model.DirectoryTreeNode;
 import org.mitre.mpf.mvc.model.ServerMediaFile;
+import org.mitre.mpf.mvc.model.ServerMediaFilteredListing;
 
 import javax.servlet.ServletContext;
 import java.io.File;
@@ -46,6 +47,9 @@ public interface ServerMediaService {
 
 	public List<ServerMediaFile> getFiles(String dirPath, ServletContext context, boolean useCache, boolean recurse);
 
+	public ServerMediaFilteredListing getFilesPage(String dirPath, String prefix, int offset, int limit, int draw,
+	                                               ServletContext context, boolean useCache);
+
 	public void addFilesToCache(String dirPath, List<File> files, ServletContext context);
 
 	public void addFileToCache(String dirPath, File file, ServletContext context);
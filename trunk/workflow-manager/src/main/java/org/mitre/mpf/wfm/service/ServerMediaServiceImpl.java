@@ -28,6 +28,7 @@ package org.mitre.mpf.wfm.service;
 
 import org.mitre.mpf.mvc.model.DirectoryTreeNode;
 import org.mitre.mpf.mvc.model.ServerMediaFile;
+import org.mitre.mpf.mvc.model.ServerMediaFilteredListing;
 import org.mitre.mpf.mvc.model.ServerMediaListing;
 import org.mitre.mpf.wfm.util.IoUtils;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
@@ -41,7 +42,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Service
 public class ServerMediaServiceImpl implements ServerMediaService {
@@ -54,7 +57,16 @@ public class ServerMediaServiceImpl implements ServerMediaService {
 	@Autowired
 	private IoUtils ioUtils;
 
+	@Autowired
+	private ServerMediaIndex serverMediaIndex;
+
 	public DirectoryTreeNode getAllDirectories(String nodePath, ServletContext context, boolean useCache, String uploadDir){
+		// the index is kept current, so it is used even when useCache is false
+		var indexedTree = serverMediaIndex.getDirectoryTree(nodePath, uploadDir);
+		if (indexedTree.isPresent()) {
+			return indexedTree.get();
+		}
+
 		// attempt to get attribute from application scope
 		String attributeName = CACHED_DIRECTORY_STRUCTURE_PREFIX + nodePath;
 
@@ -118,15 +130,42 @@ public class ServerMediaServiceImpl implements ServerMediaService {
 	}
 
 	public List<ServerMediaFile> getFiles(String dirPath, ServletContext context, boolean useCache, boolean recurse) {
+		// the index is kept current, so it is used even when useCache is false
+		var indexedFiles = serverMediaIndex.getFiles(dirPath, recurse);
+		if (indexedFiles.isPresent()) {
+			return indexedFiles.get();
+		}
+
 		DirectoryTreeNode node = getAllDirectories(propertiesUtil.getServerMediaTreeRoot(), context,
 				useCache, propertiesUtil.getRemoteMediaDirectory().getAbsolutePath());
 		node = DirectoryTreeNode.find(node, dirPath);
 		return getFiles(node, context, useCache, recurse);
 	}
 
+	public ServerMediaFilteredListing getFilesPage(String dirPath, String prefix, int offset, int limit, int draw,
+	                                              ServletContext context, boolean useCache) {
+		var indexedPage = serverMediaIndex.getPage(dirPath, prefix, offset, limit, draw);
+		if (indexedPage.isPresent()) {
+			return indexedPage.get();
+		}
+
+		List<ServerMediaFile> mediaFiles = getFiles(dirPath, context, useCache, false);
+		List<ServerMediaFile> matches = mediaFiles.stream()
+				.filter(f -> f.getName().regionMatches(true, 0, prefix, 0, prefix.length()))
+				.sorted(Comparator.comparing(ServerMediaFile::getName,
+						String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder())))
+				.collect(Collectors.toList());
+
+		int start = Math.min(offset, matches.size());
+		int end = Math.min(start + limit, matches.size());
+		return new ServerMediaFilteredListing(draw, matches.size(), mediaFiles.size(), matches.subList(start, end));
+	}
+
 	public void addFilesToCache(String dirPath, List<File> files, ServletContext context) {
 		if (files.isEmpty()) return;
 
+		serverMediaIndex.addFiles(files.stream().map(File::toPath).collect(Collectors.toList()));
+
 		// attempt to get attribute from application scope
 		String attributeName = CACHED_FILES_PREFIX + dirPath;
 
@@ -247,10 +247,16 @@ public class AggregateJobPropertiesUtil {
 
 
 
-    public String getValue(String propertyName, BatchJob job, Media media,
-                           Action action) {
-        return getPropertyInfo(
-                propertyName,
+    /**
+     * Returns the resolved properties for the given job, media, and action. The result is cached on the job, so
+     * each property is only resolved and parsed once per (job, media, action).
+     *
+     * @param action The action currently being processed, or null when only media and job level properties
+     *               are relevant.
+     */
+    public PropertyView getPropertyView(BatchJob job, Media media, Action action) {
+        Function<String, String> resolver = propName -> getPropertyInfo(
+                propName,
                 media.getMediaSpecificProperties(),
                 media.getType(),
                 action,
@@ -259,6 +265,20 @@ public class AggregateJobPropertiesUtil {
                 job.getJobProperties(),
                 job.getSystemPropertiesSnapshot()
         ).getValue();
+
+        if (media.getType() == null) {
+            // Workflow properties depend on the media type, so property values may change once media
+            // inspection completes.
+            return new PropertyView(resolver);
+        }
+        var key = new Tuple<>(media.getId(), action == null ? null : action.getName());
+        return job.getPropertyViews().computeIfAbsent(key, k -> new PropertyView(resolver));
+    }
+
+
+    public String getValue(String propertyName, BatchJob job, Media media,
+                           Action action) {
+        return getPropertyView(job, media, action).get(propertyName);
     }
 
 
@@ -289,22 +309,13 @@ public class AggregateJobPropertiesUtil {
 
     public Function<String, String> getCombinedProperties(BatchJob job, Media media,
                                                           Action action) {
-        return propName -> getValue(propName, job, media, action);
+        return getPropertyView(job, media, action)::get;
     }
 
 
 
     public Function<String, String> getCombinedProperties(BatchJob job, Media media) {
-        return propName -> getPropertyInfo(
-                propName,
-                media.getMediaSpecificProperties(),
-                media.getType(),
-                null,
-                job.getPipelineElements(),
-                job.getOverriddenAlgorithmProperties(),
-                job.getJobProperties(),
-                job.getSystemPropertiesSnapshot()
-        ).getValue();
+        return getPropertyView(job, media, null)::get;
     }
 
 
@@ -0,0 +1,148 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.util;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.apache.activemq.broker.jmx.QueueViewMBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerInvocationHandler;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the number of consumers and pending messages for ActiveMQ queues using the broker's JMX interface.
+ * Results are cached briefly so that splitting a job with many pieces of media does not make a JMX call for
+ * each one.
+ */
+@Component
+public class BrokerQueueMonitor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BrokerQueueMonitor.class);
+
+    private final PropertiesUtil _propertiesUtil;
+
+    private final LoadingCache<String, Optional<QueueStatus>> _queueStatusCache = CacheBuilder.newBuilder()
+            .expireAfterWrite(5, TimeUnit.SECONDS)
+            .build(CacheLoader.from(this::loadQueueStatus));
+
+    // Guarded by this.
+    private JMXConnector _connector;
+
+
+    @Inject
+    BrokerQueueMonitor(PropertiesUtil propertiesUtil) {
+        _propertiesUtil = propertiesUtil;
+    }
+
+
+    /**
+     * Returns the current status of the named queue, or an empty Optional if the broker could not be reached.
+     * A queue that the broker does not know about yet is reported as having no consumers and no messages.
+     */
+    public Optional<QueueStatus> getQueueStatus(String queueName) {
+        return _queueStatusCache.getUnchecked(queueName);
+    }
+
+
+    private synchronized Optional<QueueStatus> loadQueueStatus(String queueName) {
+        try {
+            MBeanServerConnection connection = getConnection();
+            ObjectName name = new ObjectName(
+                    "org.apache.activemq:type=Broker,brokerName=localhost,destinationType=Queue,destinationName="
+                            + queueName);
+            if (!connection.isRegistered(name)) {
+                return Optional.of(new QueueStatus(0, 0));
+            }
+            QueueViewMBean queueMbean = MBeanServerInvocationHandler.newProxyInstance(
+                    connection, name, QueueViewMBean.class, true);
+            return Optional.of(new QueueStatus(queueMbean.getConsumerCount(), queueMbean.getQueueSize()));
+        }
+        catch (Exception e) {
+            LOG.warn(String.format("Failed to get the status of the \"%s\" queue from the broker.", queueName), e);
+            closeConnector();
+            return Optional.empty();
+        }
+    }
+
+
+    private MBeanServerConnection getConnection() throws IOException {
+        if (_connector == null) {
+            Map<String, Object> environment = Map.of(
+                    JMXConnector.CREDENTIALS,
+                    new String[] { _propertiesUtil.getAmqBrokerAdminUsername(),
+                            _propertiesUtil.getAmqBrokerAdminPassword() });
+            _connector = JMXConnectorFactory.connect(
+                    new JMXServiceURL(_propertiesUtil.getAmqBrokerJmxUri()), environment);
+        }
+        return _connector.getMBeanServerConnection();
+    }
+
+
+    @PreDestroy
+    public synchronized void closeConnector() {
+        if (_connector == null) {
+            return;
+        }
+        try {
+            _connector.close();
+        }
+        catch (IOException e) {
+            LOG.warn("Failed to close the JMX connection to the broker.", e);
+        }
+        _connector = null;
+    }
+
+
+    public static class QueueStatus {
+        private final long _consumerCount;
+        public long getConsumerCount() { return _consumerCount; }
+
+        private final long _queueSize;
+        public long getQueueSize() { return _queueSize; }
+
+        public QueueStatus(long consumerCount, long queueSize) {
+            _consumerCount = consumerCount;
+            _queueSize = queueSize;
+        }
+    }
+}
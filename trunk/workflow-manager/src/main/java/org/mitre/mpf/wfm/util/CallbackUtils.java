@@ -134,7 +134,7 @@ public class CallbackUtils implements AutoCloseable {
 
 
     public CompletableFuture<HttpResponse> executeRequest(HttpUriRequest request) {
-        var future = ThreadUtil.<HttpResponse>newFuture();
+        var future = ThreadUtil.<HttpResponse>newFuture(ThreadUtil.Workload.CALLBACK);
 
         httpAsyncClient.execute(request, new FutureCallback<>() {
             @Override
@@ -157,7 +157,7 @@ public class CallbackUtils implements AutoCloseable {
 
 
     public CompletableFuture<HttpResponse> executeRequest(HttpUriRequest request, int retries) {
-        return executeRequest(request, retries, 100, ThreadUtil.newFuture());
+        return executeRequest(request, retries, 100, ThreadUtil.newFuture(ThreadUtil.Workload.CALLBACK));
     }
 
 
@@ -202,7 +202,7 @@ public class CallbackUtils implements AutoCloseable {
 
             private void scheduleRetry() {
                 ThreadUtil.runAsync(
-                        nextDelay, TimeUnit.MILLISECONDS,
+                        ThreadUtil.Workload.CALLBACK, nextDelay, TimeUnit.MILLISECONDS,
                         () -> executeRequest(request, retries - 1, nextDelay, future));
             }
 
@@ -27,60 +27,85 @@
 
 package org.mitre.mpf.wfm.util;
 
-import java.util.function.IntUnaryOperator;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
+// Serialized to JSON so that it can be stored in the media inspection cache.
 public class FrameTimeInfo {
     private final boolean _hasConstantFrameRate;
 
     private final boolean _requiresTimeEstimation;
 
-    private final IntUnaryOperator _frameToTimeFn;
+    private final double _fps;
 
+    private final int _startTime;
 
-    private FrameTimeInfo(boolean hasConstantFrameRate,  boolean requiresTimeEstimation,
-                          IntUnaryOperator frameToTimeFn) {
+    // Only present for variable frame rate videos with known timestamps.
+    private final int[] _timeStamps;
+
+
+    @JsonCreator
+    private FrameTimeInfo(
+            @JsonProperty("hasConstantFrameRate") boolean hasConstantFrameRate,
+            @JsonProperty("requiresTimeEstimation") boolean requiresTimeEstimation,
+            @JsonProperty("fps") double fps,
+            @JsonProperty("startTime") int startTime,
+            @JsonProperty("timeStamps") int[] timeStamps) {
         _hasConstantFrameRate = hasConstantFrameRate;
         _requiresTimeEstimation = requiresTimeEstimation;
-        _frameToTimeFn = frameToTimeFn;
+        _fps = fps;
+        _startTime = startTime;
+        _timeStamps = timeStamps;
     }
 
 
     public static FrameTimeInfo forConstantFrameRate(double fps, int startTime,
                                                      boolean requiresTimeEstimation) {
-        return new FrameTimeInfo(true, requiresTimeEstimation, getTimeUsingFps(fps, startTime));
+        return new FrameTimeInfo(true, requiresTimeEstimation, fps, startTime, null);
     }
 
     public static FrameTimeInfo forVariableFrameRate(double fps, int[] timeStamps,
                                                      boolean requiresTimeEstimation) {
-        return new FrameTimeInfo(false, requiresTimeEstimation, frameIdx -> {
-            try {
-                return timeStamps[frameIdx];
-            }
-            catch (ArrayIndexOutOfBoundsException e) {
-                int startTime = timeStamps.length > 0 ? timeStamps[0] : 0;
-                return getTimeUsingFps(fps, startTime).applyAsInt(frameIdx);
-            }
-        });
+        int startTime = timeStamps.length > 0 ? timeStamps[0] : 0;
+        return new FrameTimeInfo(false, requiresTimeEstimation, fps, startTime, timeStamps);
     }
 
     public static FrameTimeInfo forVariableFrameRateWithEstimatedTimes(double fps) {
-        return new FrameTimeInfo(false, true, getTimeUsingFps(fps, 0));
-    }
-
-    private static IntUnaryOperator getTimeUsingFps(double fps, int startTime) {
-        double msPerFrame = 1000 / fps;
-        return frameIdx -> startTime + (int) (frameIdx * msPerFrame);
+        return new FrameTimeInfo(false, true, fps, 0, null);
     }
 
+    @JsonProperty("hasConstantFrameRate")
     public boolean hasConstantFrameRate() {
         return _hasConstantFrameRate;
     }
 
+    @JsonProperty("requiresTimeEstimation")
     public boolean requiresTimeEstimation() {
         return _requiresTimeEstimation;
     }
 
+    @JsonProperty("fps")
+    private double getFps() {
+        return _fps;
+    }
+
+    @JsonProperty("startTime")
+    private int getStartTime() {
+        return _startTime;
+    }
+
+    @JsonProperty("timeStamps")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private int[] getTimeStamps() {
+        return _timeStamps;
+    }
+
     public int getFrameTimeMs(int frameIndex) {
-        return _frameToTimeFn.applyAsInt(frameIndex);
+        if (_timeStamps != null && frameIndex >= 0 && frameIndex < _timeStamps.length) {
+            return _timeStamps[frameIndex];
+        }
+        double msPerFrame = 1000 / _fps;
+        return _startTime + (int) (frameIndex * msPerFrame);
     }
 }
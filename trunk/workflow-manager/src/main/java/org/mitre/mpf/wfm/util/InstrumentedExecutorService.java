@@ -0,0 +1,174 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.util;
+
+import org.javasimon.Counter;
+import org.javasimon.SimonManager;
+import org.javasimon.Split;
+import org.javasimon.Stopwatch;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps an executor to bound the number of tasks it accepts and to record metrics for the Java Simon console.
+ * For each pool, the "queued" and "active" counters report the number of tasks that are waiting and running,
+ * and the "wait" and "run" stopwatches report how long tasks wait before they start and how long they run.
+ *
+ * When the pool is already running or holding maxTasks tasks, the submitting thread runs the task itself. This
+ * provides back-pressure without the possibility of deadlock when a task submits more tasks to the same pool.
+ * Threads that must not run tasks themselves use {@link #executeQueued(Runnable)} instead.
+ */
+class InstrumentedExecutorService extends AbstractExecutorService {
+
+    private final ExecutorService _delegate;
+
+    private final Semaphore _taskPermits;
+
+    private final Counter _queuedCounter;
+
+    private final Counter _activeCounter;
+
+    private final Stopwatch _waitStopwatch;
+
+    private final Stopwatch _runStopwatch;
+
+
+    /**
+     * @param name Prefix for the metrics of this pool.
+     * @param delegate The executor that runs the tasks.
+     * @param maxTasks Maximum number of tasks that may be queued or running at once. When less than or equal to
+     *                 zero, the number of tasks is not limited.
+     */
+    InstrumentedExecutorService(String name, ExecutorService delegate, int maxTasks) {
+        _delegate = delegate;
+        _taskPermits = maxTasks > 0 ? new Semaphore(maxTasks) : null;
+        String prefix = ThreadUtil.class.getName() + '.' + name;
+        _queuedCounter = SimonManager.getCounter(prefix + ".queued");
+        _activeCounter = SimonManager.getCounter(prefix + ".active");
+        _waitStopwatch = SimonManager.getStopwatch(prefix + ".wait");
+        _runStopwatch = SimonManager.getStopwatch(prefix + ".run");
+    }
+
+
+    @Override
+    public void execute(Runnable command) {
+        if (_taskPermits != null && !_taskPermits.tryAcquire()) {
+            runInstrumented(command, _waitStopwatch.start());
+            return;
+        }
+        enqueue(command, true);
+    }
+
+
+    /**
+     * Queues the task even when the pool is full. Used for tasks submitted from a thread that is shared with
+     * unrelated work, like the JDK's single CompletableFuture delay scheduler thread, which would otherwise run
+     * the task and delay every other scheduled task until it finishes.
+     */
+    void executeQueued(Runnable command) {
+        enqueue(command, _taskPermits != null && _taskPermits.tryAcquire());
+    }
+
+
+    private void enqueue(Runnable command, boolean hasPermit) {
+        _queuedCounter.increase();
+        Split waitSplit = _waitStopwatch.start();
+        try {
+            _delegate.execute(() -> {
+                _queuedCounter.decrease();
+                try {
+                    runInstrumented(command, waitSplit);
+                }
+                finally {
+                    if (hasPermit) {
+                        releasePermit();
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            _queuedCounter.decrease();
+            if (hasPermit) {
+                releasePermit();
+            }
+            throw e;
+        }
+    }
+
+
+    private void runInstrumented(Runnable command, Split waitSplit) {
+        waitSplit.stop();
+        _activeCounter.increase();
+        Split runSplit = _runStopwatch.start();
+        try {
+            command.run();
+        }
+        finally {
+            runSplit.stop();
+            _activeCounter.decrease();
+        }
+    }
+
+
+    private void releasePermit() {
+        if (_taskPermits != null) {
+            _taskPermits.release();
+        }
+    }
+
+
+    @Override
+    public void shutdown() {
+        _delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return _delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return _delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return _delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return _delegate.awaitTermination(timeout, unit);
+    }
+}
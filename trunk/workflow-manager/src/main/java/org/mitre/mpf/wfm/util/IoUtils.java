@@ -83,6 +83,27 @@ public class IoUtils {
         }
     }
 
+    /**
+     * Detects the MIME type using the beginning of the provided stream, so that the caller can
+     * continue to consume the stream (e.g. to compute a hash) without opening the file again.
+     */
+    public String getMimeType(InputStream inputStream, Path filePath) throws WfmProcessingException {
+        try {
+            String mimeType = _tikaInstance.detect(inputStream, filePath.getFileName().toString());
+
+            if (mimeType == null || mimeType.equals("application/octet-stream")) {
+                String fileMimeType = getMimeTypeUsingFile(filePath);
+                if (fileMimeType != null) {
+                    mimeType = fileMimeType;
+                }
+            }
+
+            return mimeType;
+        } catch (Exception e) {
+            throw new WfmProcessingException("Could not determine the MIME type for the media.", e);
+        }
+    }
+
     public String getMimeTypeUsingTika(Path filePath) throws IOException {
         return _tikaInstance.detect(filePath);
     }
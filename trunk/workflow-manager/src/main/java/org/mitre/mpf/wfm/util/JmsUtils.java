@@ -33,6 +33,7 @@ import org.apache.camel.Route;
 import org.apache.camel.builder.RouteBuilder;
 import org.mitre.mpf.rest.api.pipelines.ActionType;
 import org.mitre.mpf.rest.api.pipelines.Algorithm;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionRequestDispatcher;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
 import org.mitre.mpf.wfm.enums.MpfEndpoints;
@@ -54,6 +55,9 @@ public class JmsUtils {
     @Autowired
     private CamelContext _camelContext;
 
+    @Autowired
+    private DetectionRequestDispatcher _detectionRequestDispatcher;
+
 
     public void cancel(final long jobId) throws Exception {
         _camelContext.addRoutes(new RouteBuilder() {
@@ -75,6 +79,9 @@ public class JmsUtils {
                 }
             }
         });
+        // Requests still held by the dispatcher have not been sent to the broker yet. Once released, they are
+        // picked up by the cancellation routes created above.
+        _detectionRequestDispatcher.releaseJob(jobId);
     }
 
     /**
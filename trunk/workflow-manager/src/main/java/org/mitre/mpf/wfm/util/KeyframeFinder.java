@@ -0,0 +1,102 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+public class KeyframeFinder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyframeFinder.class);
+
+    private KeyframeFinder() {
+    }
+
+
+    /**
+     * Returns the zero-based indices of the video's keyframes. Only the packet headers are read, so
+     * none of the frames are decoded. ffprobe reports packets in decoding order, so the indices may be off by a few
+     * frames in videos with open GOPs. Returns an empty set when ffprobe fails.
+     */
+    public static NavigableSet<Integer> getKeyframes(Path mediaPath) {
+        String[] command = {
+                "ffprobe", "-hide_banner", "-select_streams", "v",
+                "-show_entries", "packet=flags",
+                "-print_format", "csv=print_section=0", mediaPath.toString()
+        };
+        LOG.info("Getting keyframes using ffprobe with the following command: {}",
+                 Arrays.toString(command));
+
+        try {
+            var process = new ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            process.getOutputStream().close();
+
+            var keyframes = new TreeSet<Integer>();
+            try (var reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                // Expected line format: K_ for keyframes and __ for other frames.
+                String line;
+                int packetIndex = 0;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    if (line.charAt(0) == 'K') {
+                        keyframes.add(packetIndex);
+                    }
+                    packetIndex++;
+                }
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                LOG.warn("Failed to get keyframes for {} because ffprobe exited with exit code {}.",
+                         mediaPath, exitCode);
+                return new TreeSet<>();
+            }
+            return keyframes;
+        }
+        catch (IOException e) {
+            LOG.warn(String.format("An error occurred while trying to get keyframes for %s: %s",
+                                   mediaPath, e.getMessage()), e);
+            return new TreeSet<>();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new TreeSet<>();
+        }
+    }
+}
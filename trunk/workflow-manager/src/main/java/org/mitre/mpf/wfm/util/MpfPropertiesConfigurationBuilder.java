@@ -52,6 +52,7 @@ public class MpfPropertiesConfigurationBuilder {
             "node.auto.",
             "remote.media.download.",
             "web.broadcast.job.status.enabled",
+            "web.broadcast.job.progress.interval.ms",
             "web.job.polling.interval",
             "http.callback.timeout.ms",
             "warn.",
@@ -125,6 +125,9 @@ public class PropertiesUtil {
         markupDirectory = createOrFail(share, "markup", permissions);
         outputObjectsDirectory = createOrFail(share, "output-objects", permissions);
         remoteMediaDirectory = createOrFail(share, "remote-media", permissions);
+        // The remote media cache's index is kept in memory, so files from a previous run can not be reused.
+        remoteMediaCacheDirectory = createOrClear(share, "remote-media-cache", permissions);
+        mediaInspectionCacheDirectory = createOrFail(share, "media-inspection-cache", permissions);
         temporaryMediaDirectory = createOrClear(share, "tmp", permissions);
         uploadedComponentsDirectory = createOrFail(share, getComponentUploadDirName(), permissions);
         createOrFail(getPluginDeploymentPath(), "",
@@ -374,6 +377,12 @@ public class PropertiesUtil {
     private File remoteMediaDirectory;
     public File getRemoteMediaDirectory() { return remoteMediaDirectory; }
 
+    private File remoteMediaCacheDirectory;
+    public File getRemoteMediaCacheDirectory() { return remoteMediaCacheDirectory; }
+
+    private File mediaInspectionCacheDirectory;
+    public File getMediaInspectionCacheDirectory() { return mediaInspectionCacheDirectory; }
+
     private File temporaryMediaDirectory;
     public File getTemporaryMediaDirectory() { return temporaryMediaDirectory; }
 
@@ -578,6 +587,10 @@ public class PropertiesUtil {
         return mpfPropertiesConfig.getString("web.server.media.tree.base");
     }
 
+    public boolean isServerMediaIndexEnabled() {
+        return mpfPropertiesConfig.getBoolean("web.server.media.index.enabled");
+    }
+
     public int getWebMaxFileUploadCnt() {
         return mpfPropertiesConfig.getInt("web.max.file.upload.cnt");
     }
@@ -586,6 +599,10 @@ public class PropertiesUtil {
         return mpfPropertiesConfig.getBoolean("web.broadcast.job.status.enabled");
     }
 
+    public long getBroadcastJobProgressInterval() {
+        return mpfPropertiesConfig.getLong("web.broadcast.job.progress.interval.ms");
+    }
+
     //
     // Version information
     //
@@ -657,6 +674,14 @@ public class PropertiesUtil {
         return mpfPropertiesConfig.getBoolean("mpf.ansible.local-only", false);
     }
 
+    //
+    // Redis settings
+    //
+
+    public boolean isRedisBinaryTrackEncodingEnabled() {
+        return mpfPropertiesConfig.getBoolean("redis.track.binary.encoding.enabled");
+    }
+
     //
     // Remote media settings
     //
@@ -669,6 +694,98 @@ public class PropertiesUtil {
         return mpfPropertiesConfig.getInt("remote.media.download.sleep");
     }
 
+    public boolean isRemoteMediaCacheEnabled() {
+        return mpfPropertiesConfig.getBoolean("remote.media.cache.enabled");
+    }
+
+    public long getRemoteMediaCacheMaxSizeMb() {
+        return mpfPropertiesConfig.getLong("remote.media.cache.max.size.mb");
+    }
+
+    //
+    // Media inspection settings
+    //
+
+    public boolean isMediaInspectionCacheEnabled() {
+        return mpfPropertiesConfig.getBoolean("media.inspection.cache.enabled");
+    }
+
+    public int getMediaInspectionCacheMaxEntries() {
+        return mpfPropertiesConfig.getInt("media.inspection.cache.max.entries");
+    }
+
+    //
+    // Adaptive segmenting settings
+    //
+
+    public boolean isAdaptiveSegmentingEnabled() {
+        return mpfPropertiesConfig.getBoolean("detection.segment.adaptive.enabled");
+    }
+
+    public double getAdaptiveSegmentMaxScale() {
+        return mpfPropertiesConfig.getDouble("detection.segment.adaptive.max.scale");
+    }
+
+    public int getAdaptiveSegmentsPerInstance() {
+        return mpfPropertiesConfig.getInt("detection.segment.adaptive.segments.per.instance");
+    }
+
+    public long getAdaptiveSegmentMinDurationMs() {
+        return mpfPropertiesConfig.getLong("detection.segment.adaptive.min.duration.ms");
+    }
+
+    //
+    // Detection request dispatcher settings
+    //
+
+    public boolean isDetectionDispatcherEnabled() {
+        return mpfPropertiesConfig.getBoolean("detection.dispatcher.enabled");
+    }
+
+    public int getDetectionDispatcherMaxInFlightPerAlgorithm() {
+        return mpfPropertiesConfig.getInt("detection.dispatcher.max.in.flight.per.algorithm");
+    }
+
+    public long getDetectionDispatcherSendRetryDelay() {
+        return mpfPropertiesConfig.getLong("detection.dispatcher.send.retry.delay.ms");
+    }
+
+    public int getDetectionDispatcherSendMaxAttempts() {
+        return mpfPropertiesConfig.getInt("detection.dispatcher.send.max.attempts");
+    }
+
+    //
+    // Thread pool configuration
+    //
+
+    public int getIoThreadPoolSize() {
+        return mpfPropertiesConfig.getInt("thread.pool.io.size");
+    }
+
+    public int getIoThreadPoolQueueSize() {
+        return mpfPropertiesConfig.getInt("thread.pool.io.queue.size");
+    }
+
+    public boolean isIoThreadPoolVirtualThreadsEnabled() {
+        return mpfPropertiesConfig.getBoolean("thread.pool.io.virtual.threads.enabled");
+    }
+
+    public int getCallbackThreadPoolSize() {
+        return mpfPropertiesConfig.getInt("thread.pool.callback.size");
+    }
+
+    public int getCallbackThreadPoolQueueSize() {
+        return mpfPropertiesConfig.getInt("thread.pool.callback.queue.size");
+    }
+
+    public int getCpuThreadPoolSize() {
+        return mpfPropertiesConfig.getInt("thread.pool.cpu.size");
+    }
+
+    public int getCpuThreadPoolQueueSize() {
+        return mpfPropertiesConfig.getInt("thread.pool.cpu.queue.size");
+    }
+
     //
     // Node management settings
     //
@@ -729,6 +846,18 @@ public class PropertiesUtil {
         return mpfPropertiesConfig.getInt("http.object.storage.upload.retry.count");
     }
 
+    public long getS3MultipartUploadThreshold() {
+        return mpfPropertiesConfig.getLong("http.object.storage.s3.multipart.upload.threshold");
+    }
+
+    public long getS3MultipartUploadPartSize() {
+        return mpfPropertiesConfig.getLong("http.object.storage.s3.multipart.upload.part.size");
+    }
+
+    public int getS3UploadThreadCount() {
+        return mpfPropertiesConfig.getInt("http.object.storage.s3.upload.thread.count");
+    }
+
     public Resource getWorkflowPropertiesFile() {
         return appContext.getResource(mpfPropertiesConfig.getString("workflow.properties.file"));
     }
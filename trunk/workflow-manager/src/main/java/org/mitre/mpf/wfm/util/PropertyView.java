@@ -0,0 +1,133 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+package org.mitre.mpf.wfm.util;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * The resolved job properties for a single (job, media, action) combination. Each property is resolved
+ * through the property hierarchy the first time it is requested and is then remembered, along with the
+ * results of parsing it, for the rest of the job.
+ *
+ * Instances are created by {@link AggregateJobPropertiesUtil#getPropertyView} and are cached on the in-progress
+ * BatchJob.
+ */
+public class PropertyView {
+
+    private final Function<String, String> _resolver;
+
+    private final ConcurrentMap<String, Optional<String>> _values = new ConcurrentHashMap<>();
+
+    // Each of these maps holds either the parsed value or the NumberFormatException produced while parsing.
+    private final ConcurrentMap<String, Object> _intValues = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Object> _doubleValues = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Boolean> _booleanValues = new ConcurrentHashMap<>();
+
+
+    public PropertyView(Function<String, String> resolver) {
+        _resolver = resolver;
+    }
+
+
+    public String get(String propertyName) {
+        return _values.computeIfAbsent(propertyName, pn -> Optional.ofNullable(_resolver.apply(pn)))
+                .orElse(null);
+    }
+
+
+    /**
+     * @throws NumberFormatException when the property is missing or is not an integer
+     */
+    public int getInt(String propertyName) {
+        return getParsed(propertyName, _intValues, Integer::valueOf);
+    }
+
+    public int getInt(String propertyName, int defaultValue) {
+        try {
+            return getInt(propertyName);
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+
+    /**
+     * @throws NumberFormatException when the property is missing or is not a number
+     */
+    public double getDouble(String propertyName) {
+        return getParsed(propertyName, _doubleValues, Double::valueOf);
+    }
+
+    public double getDouble(String propertyName, double defaultValue) {
+        try {
+            return getDouble(propertyName);
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+
+    public boolean getBoolean(String propertyName) {
+        return _booleanValues.computeIfAbsent(propertyName, pn -> Boolean.parseBoolean(get(pn)));
+    }
+
+
+    private <T> T getParsed(String propertyName, ConcurrentMap<String, Object> parsedValues,
+                            Function<String, T> parser) {
+        Object parsed = parsedValues.computeIfAbsent(propertyName, pn -> {
+            String value = get(pn);
+            if (value == null) {
+                return new NumberFormatException(String.format("The \"%s\" property is not set.", pn));
+            }
+            try {
+                return parser.apply(value);
+            }
+            catch (NumberFormatException e) {
+                return e;
+            }
+        });
+
+        if (parsed instanceof NumberFormatException) {
+            // Create a new exception so that the stack trace refers to the current caller.
+            var cause = (NumberFormatException) parsed;
+            var exception = new NumberFormatException(cause.getMessage());
+            exception.initCause(cause);
+            throw exception;
+        }
+        @SuppressWarnings("unchecked")
+        T result = (T) parsed;
+        return result;
+    }
+}
@@ -0,0 +1,205 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.util;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.mitre.mpf.wfm.enums.MpfConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Downloads a large remote file by splitting it in to byte ranges that are downloaded concurrently
+ * and written directly to their positions in a preallocated local file. When a range fails, only
+ * the part of that range that has not been written yet is requested again.
+ */
+public class RangedDownloader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RangedDownloader.class);
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private final int _parallelism;
+
+    private final long _partSize;
+
+    private final int _retries;
+
+    private final int _retrySleepMs;
+
+
+    public RangedDownloader(int parallelism, long partSize, int retries, int retrySleepMs) {
+        _parallelism = parallelism;
+        _partSize = partSize;
+        _retries = retries;
+        _retrySleepMs = retrySleepMs;
+    }
+
+
+    public static RangedDownloader create(Function<String, String> combinedProperties,
+                                          PropertiesUtil propertiesUtil) {
+        int parallelism = NumberUtils.toInt(
+                combinedProperties.apply(MpfConstants.REMOTE_MEDIA_DOWNLOAD_PARTS), 1);
+        long partSizeMb = NumberUtils.toLong(
+                combinedProperties.apply(MpfConstants.REMOTE_MEDIA_DOWNLOAD_PART_SIZE_MB), 0);
+        return new RangedDownloader(parallelism, partSizeMb * 1024 * 1024,
+                                    propertiesUtil.getRemoteMediaDownloadRetries(),
+                                    propertiesUtil.getRemoteMediaDownloadSleep());
+    }
+
+
+    public boolean isEnabled() {
+        return _parallelism > 1 && _partSize > 0;
+    }
+
+
+    /**
+     * @return true when a file of the given size is large enough to be split in to more than one
+     *         range and more than one range may be downloaded at a time.
+     */
+    public boolean shouldSplit(long size) {
+        return isEnabled() && size > _partSize;
+    }
+
+
+    public void download(String uri, long size, Path destination, RangeOpener opener)
+            throws IOException {
+        Queue<Range> ranges = new ConcurrentLinkedQueue<>();
+        for (long begin = 0; begin < size; begin += _partSize) {
+            ranges.add(new Range(begin, Math.min(begin + _partSize, size) - 1));
+        }
+        int workerCount = Math.min(_parallelism, ranges.size());
+        LOG.info("Downloading {} in {} parts using {} concurrent requests.",
+                 uri, ranges.size(), workerCount);
+
+        try (var file = new RandomAccessFile(destination.toFile(), "rw")) {
+            file.setLength(size);
+            FileChannel channel = file.getChannel();
+
+            var failed = new AtomicBoolean();
+            List<CompletableFuture<Void>> workers = new ArrayList<>(workerCount);
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(ThreadUtil.runAsync(ThreadUtil.Workload.IO, () -> {
+                    Range range;
+                    // Stop taking new ranges once any range has failed, since the download
+                    // can no longer succeed.
+                    while (!failed.get() && (range = ranges.poll()) != null) {
+                        try {
+                            downloadRange(uri, range, channel, opener);
+                        }
+                        catch (Exception e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                    }
+                }));
+            }
+
+            try {
+                CompletableFuture.allOf(workers.toArray(CompletableFuture[]::new)).join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw new IOException(e.getCause().getMessage(), e.getCause());
+                }
+                throw e;
+            }
+        }
+    }
+
+
+    private void downloadRange(String uri, Range range, FileChannel channel, RangeOpener opener)
+            throws IOException, InterruptedException {
+        long position = range.begin;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int attempt = 0; ; attempt++) {
+            try (InputStream inputStream = opener.open(position, range.end)) {
+                int bytesRead;
+                while (position <= range.end && (bytesRead = inputStream.read(buffer)) != -1) {
+                    int bytesToWrite = (int) Math.min(bytesRead, range.end - position + 1);
+                    var byteBuffer = ByteBuffer.wrap(buffer, 0, bytesToWrite);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+                if (position <= range.end) {
+                    throw new EOFException(String.format(
+                            "The response for bytes %s-%s of %s ended at byte %s.",
+                            range.begin, range.end, uri, position));
+                }
+                return;
+            }
+            catch (IOException e) {
+                if (attempt >= _retries) {
+                    throw e;
+                }
+                LOG.warn(String.format(
+                        "Failed to download bytes %s-%s of %s. Bytes %s-%s will be requested again.",
+                        range.begin, range.end, uri, position, range.end), e);
+            }
+            Thread.sleep((long) _retrySleepMs * (attempt + 1));
+        }
+    }
+
+
+    @FunctionalInterface
+    public static interface RangeOpener {
+        /**
+         * @param begin Index of the first byte to download
+         * @param end Index of the last byte to download (inclusive)
+         */
+        public InputStream open(long begin, long end) throws IOException;
+    }
+
+
+    private static class Range {
+        final long begin;
+        final long end;
+
+        Range(long begin, long end) {
+            this.begin = begin;
+            this.end = end;
+        }
+    }
+}
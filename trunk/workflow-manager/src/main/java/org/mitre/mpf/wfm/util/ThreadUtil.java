@@ -27,39 +27,81 @@
 
 package org.mitre.mpf.wfm.util;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.*;
 
 public class ThreadUtil {
 
-    private static ExecutorService THREAD_POOL = Executors.newCachedThreadPool();
+    private static final Logger LOG = LoggerFactory.getLogger(ThreadUtil.class);
+
+    /**
+     * Kinds of work that run on their own named and bounded thread pool, so that one kind of work can not
+     * starve the others or create an unbounded number of threads. Work that is not associated with a workload
+     * runs on the general pool.
+     */
+    public enum Workload {
+        /** Blocking network and file transfers, like uploads to remote storage and ranged downloads. */
+        IO,
+        /** Job completion callbacks and their retries. */
+        CALLBACK,
+        /** CPU bound processing, like the track post-processing transforms. */
+        CPU
+    }
+
+    // Replaced as a whole by start and shutdown, so submitting a task only needs to read this field.
+    private static volatile Pools POOLS = new Pools(defaultConfigs());
 
     private ThreadUtil() {
     }
 
 
-    public static synchronized CustomCompletableFuture<Void> runAsync(ThrowingRunnable task) {
-        return callAsync(() -> {
+    public static CustomCompletableFuture<Void> runAsync(ThrowingRunnable task) {
+        return runAsync(null, task);
+    }
+
+    public static CustomCompletableFuture<Void> runAsync(Workload workload, ThrowingRunnable task) {
+        return callAsync(workload, () -> {
             task.run();
             return null;
         });
     }
 
-    public static synchronized CustomCompletableFuture<Void> runAsync(long delay, TimeUnit unit,
-                                                                      ThrowingRunnable task) {
-        return callAsync(delay, unit, () -> {
+    public static CustomCompletableFuture<Void> runAsync(long delay, TimeUnit unit,
+                                                         ThrowingRunnable task) {
+        return runAsync(null, delay, unit, task);
+    }
+
+    public static CustomCompletableFuture<Void> runAsync(Workload workload, long delay, TimeUnit unit,
+                                                         ThrowingRunnable task) {
+        return callAsync(workload, delay, unit, () -> {
             task.run();
             return null;
         });
     }
 
 
-    public static synchronized <T> CustomCompletableFuture<T> callAsync(Callable<T> task) {
-        return new CustomCompletableFuture<>(task, THREAD_POOL);
+    public static <T> CustomCompletableFuture<T> callAsync(Callable<T> task) {
+        return callAsync(null, task);
+    }
+
+    public static <T> CustomCompletableFuture<T> callAsync(Workload workload, Callable<T> task) {
+        return new CustomCompletableFuture<>(task, getExecutor(workload));
     }
 
 
-    public static synchronized <T> CustomCompletableFuture<T> callAsync(long delay, TimeUnit unit, Callable<T> task) {
-        var future = ThreadUtil.<T>newFuture();
+    public static <T> CustomCompletableFuture<T> callAsync(long delay, TimeUnit unit, Callable<T> task) {
+        return callAsync(null, delay, unit, task);
+    }
+
+    public static <T> CustomCompletableFuture<T> callAsync(Workload workload, long delay, TimeUnit unit,
+                                                           Callable<T> task) {
+        var future = ThreadUtil.<T>newFuture(workload);
 
         return (CustomCompletableFuture<T>)  future.completeAsync(() -> {
             try {
@@ -69,17 +111,31 @@ public class ThreadUtil {
                 throw new CompletionException(e);
             }
 
-        }, delayedExecutor(delay, unit));
+        }, delayedExecutor(workload, delay, unit));
     }
 
 
-    public static synchronized Executor delayedExecutor(long delay, TimeUnit unit) {
-        return CompletableFuture.delayedExecutor(delay, unit, THREAD_POOL);
+    public static Executor delayedExecutor(long delay, TimeUnit unit) {
+        return delayedExecutor(null, delay, unit);
+    }
+
+    public static Executor delayedExecutor(Workload workload, long delay, TimeUnit unit) {
+        // The delayed tasks are submitted from the JDK's single delay scheduler thread, so they must be queued
+        // even when the pool is full.
+        ExecutorService executor = getExecutor(workload);
+        Executor queueingExecutor = executor instanceof InstrumentedExecutorService
+                ? ((InstrumentedExecutorService) executor)::executeQueued
+                : executor;
+        return CompletableFuture.delayedExecutor(delay, unit, queueingExecutor);
     }
 
 
     public static <T> CustomCompletableFuture<T> newFuture() {
-        return new CustomCompletableFuture<>(THREAD_POOL);
+        return newFuture(null);
+    }
+
+    public static <T> CustomCompletableFuture<T> newFuture(Workload workload) {
+        return new CustomCompletableFuture<>(getExecutor(workload));
     }
 
     public static <T> CustomCompletableFuture<T> completedFuture(T value) {
@@ -96,6 +152,14 @@ public class ThreadUtil {
     }
 
 
+    public static ExecutorService getExecutor(Workload workload) {
+        Pools pools = POOLS;
+        return workload == null
+                ? pools.general
+                : pools.workloads.get(workload);
+    }
+
+
     @FunctionalInterface
     public interface ThrowingRunnable {
         public void run() throws Exception;
@@ -103,29 +167,159 @@ public class ThreadUtil {
 
 
     public static synchronized void start() {
-        if (THREAD_POOL.isShutdown()) {
-            THREAD_POOL = Executors.newCachedThreadPool();
+        if (POOLS.isShutdown()) {
+            POOLS = new Pools(POOLS.configs);
+        }
+    }
+
+
+    /**
+     * Starts the thread pools using the pool sizes from the properties. If the pools are already running with
+     * different sizes, they are replaced. The previous pools finish the tasks they have already accepted.
+     */
+    public static synchronized void start(PropertiesUtil propertiesUtil) {
+        var configs = new EnumMap<Workload, PoolConfig>(Workload.class);
+        configs.put(Workload.IO, new PoolConfig(
+                propertiesUtil.getIoThreadPoolSize(), propertiesUtil.getIoThreadPoolQueueSize(),
+                propertiesUtil.isIoThreadPoolVirtualThreadsEnabled()));
+        configs.put(Workload.CALLBACK, new PoolConfig(
+                propertiesUtil.getCallbackThreadPoolSize(), propertiesUtil.getCallbackThreadPoolQueueSize(),
+                false));
+        configs.put(Workload.CPU, new PoolConfig(
+                getCpuPoolSize(propertiesUtil.getCpuThreadPoolSize()), propertiesUtil.getCpuThreadPoolQueueSize(),
+                false));
+
+        Pools previousPools = POOLS;
+        if (!previousPools.isShutdown() && previousPools.configs.equals(configs)) {
+            return;
         }
+        POOLS = new Pools(configs);
+        previousPools.general.shutdown();
+        previousPools.workloads.values().forEach(ExecutorService::shutdown);
     }
 
+
     public static synchronized void shutdown() {
+        Pools pools = POOLS;
         try {
-            THREAD_POOL.shutdown();
-            THREAD_POOL.awaitTermination(1, TimeUnit.SECONDS);
+            pools.general.shutdown();
+            pools.workloads.values().forEach(ExecutorService::shutdown);
+            pools.general.awaitTermination(1, TimeUnit.SECONDS);
         }
         catch (InterruptedException ignored) {
             Thread.currentThread().interrupt();
             // No need to do anything, already about to exit.
         }
         finally {
-            THREAD_POOL.shutdownNow();
+            pools.general.shutdownNow();
+            pools.workloads.values().forEach(ExecutorService::shutdownNow);
+        }
+    }
+
+
+    private static Map<Workload, PoolConfig> defaultConfigs() {
+        var configs = new EnumMap<Workload, PoolConfig>(Workload.class);
+        configs.put(Workload.IO, new PoolConfig(32, 1000, false));
+        configs.put(Workload.CALLBACK, new PoolConfig(16, 1000, false));
+        configs.put(Workload.CPU, new PoolConfig(getCpuPoolSize(0), 10000, false));
+        return configs;
+    }
+
+
+    private static int getCpuPoolSize(int configuredSize) {
+        return configuredSize > 0 ? configuredSize : Runtime.getRuntime().availableProcessors();
+    }
+
+
+    private static class PoolConfig {
+        final int size;
+        final int queueSize;
+        final boolean virtualThreads;
+
+        PoolConfig(int size, int queueSize, boolean virtualThreads) {
+            this.size = Math.max(1, size);
+            this.queueSize = Math.max(0, queueSize);
+            this.virtualThreads = virtualThreads;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PoolConfig)) {
+                return false;
+            }
+            var other = (PoolConfig) obj;
+            return size == other.size && queueSize == other.queueSize && virtualThreads == other.virtualThreads;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, queueSize, virtualThreads);
+        }
+    }
+
+
+    private static class Pools {
+        final Map<Workload, PoolConfig> configs;
+
+        final ExecutorService general;
+
+        final Map<Workload, ExecutorService> workloads = new EnumMap<>(Workload.class);
+
+        Pools(Map<Workload, PoolConfig> configs) {
+            this.configs = configs;
+            general = new InstrumentedExecutorService(
+                    "general", Executors.newCachedThreadPool(createThreadFactory("general")), 0);
+            configs.forEach((workload, config) -> workloads.put(workload, createPool(workload, config)));
+        }
+
+        boolean isShutdown() {
+            return general.isShutdown();
+        }
+
+        private static ExecutorService createPool(Workload workload, PoolConfig config) {
+            String name = workload.name().toLowerCase();
+            int maxTasks = config.size + config.queueSize;
+            if (config.virtualThreads) {
+                var virtualExecutor = createVirtualThreadExecutor();
+                if (virtualExecutor != null) {
+                    // Virtual threads are cheap to create, so the number of threads does not need to be limited
+                    // separately from the number of tasks.
+                    return new InstrumentedExecutorService(name, virtualExecutor, maxTasks);
+                }
+                LOG.warn("Virtual threads were requested for the {} thread pool, but they are not supported by " +
+                                 "this JVM. Platform threads will be used instead.", name);
+            }
+            var threadPool = new ThreadPoolExecutor(
+                    config.size, config.size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    createThreadFactory(name));
+            threadPool.allowCoreThreadTimeOut(true);
+            return new InstrumentedExecutorService(name, threadPool, maxTasks);
+        }
+
+        // Virtual threads are only available on Java 21 and later, but the build targets Java 17, so the method is
+        // looked up reflectively.
+        private static ExecutorService createVirtualThreadExecutor() {
+            try {
+                return (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor")
+                        .invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+
+        private static ThreadFactory createThreadFactory(String name) {
+            return new ThreadFactoryBuilder()
+                    .setNameFormat("mpf-" + name + "-%d")
+                    .build();
         }
     }
 
 
     // Regular CompletableFuture runs tasks on ForkJoinPool.commonPool() by default.
     // ForkJoinPool.commonPool() is for non-blocking CPU bound tasks.
-    // This version runs tasks on ThreadUtil.THREAD_POOL by default.
+    // This version runs tasks on one of ThreadUtil's pools by default.
     public static class CustomCompletableFuture<T> extends CompletableFuture<T> {
 
         private final ExecutorService _defaultExecutor;
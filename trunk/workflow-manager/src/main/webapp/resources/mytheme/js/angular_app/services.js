@@ -548,6 +548,19 @@ AppServices.factory('ServerSidePush',
                             $rootScope.$broadcast('SSPC_HEARTBEAT', json);
                             break;
                         case 'SSPC_JOBSTATUS':
+                            if (json.event === 'OnProgressChanged') {
+                                // Progress updates for multiple jobs are batched in to a single message, so
+                                // broadcast them individually in the same format as OnStatusChanged.
+                                json.content.jobs.forEach(function (jobProgress) {
+                                    $rootScope.$broadcast('SSPC_JOBSTATUS', {
+                                        channel: json.channel,
+                                        event: 'OnStatusChanged',
+                                        timestamp: json.timestamp,
+                                        content: jobProgress
+                                    });
+                                });
+                                break;
+                            }
                             // still broadcast for cancellations
                             $rootScope.$broadcast('SSPC_JOBSTATUS', json);
 
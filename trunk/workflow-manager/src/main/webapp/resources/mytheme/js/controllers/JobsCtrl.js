@@ -46,6 +46,13 @@ var JobsCtrl = function ($scope, $log, $timeout, ServerSidePush, JobsService, No
 
     var couldNotGetJobTableMsgId = null;
 
+    var lastPage = null;
+    var pendingPage = null;
+
+    var getPageKey = function (d) {
+        return JSON.stringify([d.search, d.length, d.order]);
+    };
+
     var buildJobTable = function () {
         if (jobTable != null) {
             jobTable.clear();
@@ -62,6 +69,23 @@ var JobsCtrl = function ($scope, $log, $timeout, ServerSidePush, JobsService, No
                     type: "POST",
                     data: function (d) {//extra params
                         d.search = d.search.value;
+                        // When moving to the next page, send the last job on the current page so the server
+                        // can seek to it instead of skipping "start" rows.
+                        var pageKey = getPageKey(d);
+                        if (lastPage && lastPage.lastJobId != null && lastPage.key === pageKey
+                                && d.start === lastPage.start + d.length) {
+                            d.afterJobId = lastPage.lastJobId;
+                        }
+                        pendingPage = {key: pageKey, start: d.start};
+                    },
+                    dataSrc: function (json) {
+                        if (pendingPage) {
+                            var rows = json.data;
+                            pendingPage.lastJobId = rows.length > 0 ? rows[rows.length - 1].jobId : null;
+                            lastPage = pendingPage;
+                            pendingPage = null;
+                        }
+                        return json.data;
                     }
                 },
                 language: {
@@ -0,0 +1,149 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.mvc.controller;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mitre.mpf.rest.api.JobPageListModel;
+import org.mitre.mpf.rest.api.JobPageModel;
+import org.mitre.mpf.wfm.data.access.JobRequestDao;
+import org.mitre.mpf.wfm.data.access.JobRequestSearch;
+import org.mitre.mpf.wfm.data.access.JobRequestSummary;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.event.JobProgress;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class TestJobController {
+
+    @InjectMocks
+    private JobController _jobController;
+
+    @Mock
+    private JobRequestDao _mockJobRequestDao;
+
+    @Mock
+    private JobProgress _mockJobProgress;
+
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+        when(_mockJobRequestDao.countFiltered(JobRequestSearch.ALL))
+                .thenReturn(50L);
+        when(_mockJobProgress.getJobProgress(anyLong()))
+                .thenReturn(Optional.empty());
+    }
+
+
+    @Test
+    public void usesKeysetWhenClientSendsLastJobId() {
+        var summaries = List.of(
+                new JobRequestSummary(9, "PIPELINE", 4, BatchJobStatusType.COMPLETE, Instant.ofEpochSecond(10),
+                                      Instant.ofEpochSecond(20), null),
+                new JobRequestSummary(8, "PIPELINE", 4, BatchJobStatusType.IN_PROGRESS, Instant.ofEpochSecond(10),
+                                      null, null));
+        when(_mockJobRequestDao.findSummaryPage(JobRequestSearch.ALL, "timeReceived", true, 10, 2, 10L))
+                .thenReturn(summaries);
+        when(_mockJobProgress.getJobProgress(8))
+                .thenReturn(Optional.of(40f));
+
+        JobPageListModel model = _jobController.getJobStatusFiltered(
+                3, 10, 2, "", "2", "desc", 10L, null, null, null, null);
+
+        assertEquals(3, (int) model.getDraw());
+        assertEquals(50, model.getRecordsTotal());
+        assertEquals(50, model.getRecordsFiltered());
+        assertEquals(List.of(9L, 8L), model.getData().stream().map(JobPageModel::getJobId).collect(toList()));
+        assertEquals(100, model.getData().get(0).getJobProgress(), 0);
+        assertEquals(40, model.getData().get(1).getJobProgress(), 0);
+
+        // The total count is cached by the DAO and there is no filter, so only one count is needed.
+        verify(_mockJobRequestDao, times(1)).countFiltered(any());
+    }
+
+
+    @Test
+    public void mapsColumnsToSortProperties() {
+        _jobController.getJobStatusFiltered(1, 0, 10, null, "1", "asc", null, null, null, null, null);
+        verify(_mockJobRequestDao)
+                .findSummaryPage(JobRequestSearch.ALL, "pipeline", false, 0, 10, null);
+
+        _jobController.getJobStatusFiltered(1, 0, 10, null, "4", "desc", null, null, null, null, null);
+        verify(_mockJobRequestDao)
+                .findSummaryPage(JobRequestSearch.ALL, "status", true, 0, 10, null);
+
+        // Unknown columns fall back to sorting by id.
+        _jobController.getJobStatusFiltered(1, 20, 10, null, "99", "desc", 7L, null, null, null, null);
+        verify(_mockJobRequestDao)
+                .findSummaryPage(JobRequestSearch.ALL, "id", true, 20, 10, 7L);
+    }
+
+
+    @Test
+    public void countsFilteredJobsWhenSearching() {
+        var statuses = List.of(BatchJobStatusType.COMPLETE);
+        var expectedSearch = new JobRequestSearch("ocv", statuses, "OCV FACE", null, null);
+        when(_mockJobRequestDao.countFiltered(expectedSearch))
+                .thenReturn(5L);
+
+        JobPageListModel model = _jobController.getJobStatusFiltered(
+                1, 0, 10, " OCV ", "0", "desc", null, statuses, "OCV FACE", null, null);
+
+        assertEquals(50, model.getRecordsTotal());
+        assertEquals(5, model.getRecordsFiltered());
+        verify(_mockJobRequestDao)
+                .findSummaryPage(expectedSearch, "id", true, 0, 10, null);
+    }
+
+
+    @Test
+    public void searchThatMatchesNothingReturnsEmptyPage() {
+        var expectedSearch = new JobRequestSearch("zzz", null, null, null, null);
+        when(_mockJobRequestDao.countFiltered(expectedSearch))
+                .thenReturn(0L);
+
+        JobPageListModel model = _jobController.getJobStatusFiltered(
+                1, 0, 10, "zzz", "2", "desc", 4L, null, null, null, null);
+
+        assertEquals(50, model.getRecordsTotal());
+        assertEquals(0, model.getRecordsFiltered());
+        assertEquals(List.of(), model.getData());
+        verify(_mockJobRequestDao)
+                .findSummaryPage(expectedSearch, "timeReceived", true, 0, 10, 4L);
+        verify(_mockJobProgress, never()).getJobProgress(anyLong());
+    }
+}
@@ -0,0 +1,69 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.test;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simple timing harness used by the *Benchmark classes in the test tree. Those classes do not match the test class
+ * naming pattern, so they are not run as part of the build. Run one with, for example,
+ * {@code mvn test -Dtest=TrackCodecBenchmark}. The results are only meant for comparing approaches on the same
+ * machine.
+ */
+public class BenchmarkUtil {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BenchmarkUtil.class);
+
+    private BenchmarkUtil() {
+    }
+
+
+    /**
+     * Runs the task warmupIterations times so that it gets JIT compiled, then logs and returns the average time
+     * in milliseconds of measuredIterations more runs.
+     */
+    public static double time(String label, int warmupIterations, int measuredIterations,
+                              ThrowingRunnable task) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredIterations; i++) {
+            task.run();
+        }
+        double msPerRun = (System.nanoTime() - start) / 1e6 / measuredIterations;
+        LOG.info(String.format("%s: %.3f ms per run (%d runs)", label, msPerRun, measuredIterations));
+        return msPerRun;
+    }
+
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
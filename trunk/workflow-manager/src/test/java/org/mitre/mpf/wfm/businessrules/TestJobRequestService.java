@@ -44,7 +44,9 @@ import org.mitre.mpf.wfm.data.entities.persistent.*;
 import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.enums.UriScheme;
+import org.mitre.mpf.wfm.service.JobStatisticsService;
 import org.mitre.mpf.wfm.service.JobStatusBroadcaster;
+import org.mitre.mpf.wfm.service.RemoteMediaCache;
 import org.mitre.mpf.wfm.service.WorkflowPropertyService;
 import org.mitre.mpf.wfm.service.pipeline.PipelineService;
 import org.mitre.mpf.wfm.util.*;
@@ -74,8 +76,8 @@ public class TestJobRequestService {
 
     private final JmsUtils _mockJmsUtils = mock(JmsUtils.class);
 
-    private final InProgressBatchJobsService _inProgressJobs = new InProgressBatchJobsService(_mockPropertiesUtil,
-                                                                                              null);
+    private final InProgressBatchJobsService _inProgressJobs = new InProgressBatchJobsService(
+            _mockPropertiesUtil, null, mock(RemoteMediaCache.class));
 
     private final JobRequestDao _mockJobRequestDao = mock(JobRequestDao.class);
 
@@ -83,13 +85,16 @@ public class TestJobRequestService {
 
     private final JobStatusBroadcaster _mockJobStatusBroadcaster = mock(JobStatusBroadcaster.class);
 
+    private final JobStatisticsService _mockJobStatisticsService = mock(JobStatisticsService.class);
+
     private final ProducerTemplate _mockProduceTemplate = mock(ProducerTemplate.class);
 
 
     private final JobRequestService _jobRequestService
             = new JobRequestServiceImpl(_mockPropertiesUtil, _aggregateJobPropertiesUtil, _mockPipelineService,
                                         _jsonUtils, _mockJmsUtils, _inProgressJobs, _mockJobRequestDao,
-                                        _mockMarkupResultDao, _mockJobStatusBroadcaster, _mockProduceTemplate);
+                                        _mockMarkupResultDao, _mockJobStatusBroadcaster,
+                                        _mockJobStatisticsService, _mockProduceTemplate);
 
     @Rule
     public TemporaryFolder _temporaryFolder = new TemporaryFolder();
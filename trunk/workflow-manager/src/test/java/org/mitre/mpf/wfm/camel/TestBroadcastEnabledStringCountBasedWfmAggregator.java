@@ -0,0 +1,173 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Test;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.JobPipelineElements;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.event.JobProgress;
+import org.mitre.mpf.wfm.service.JobStatusBroadcaster;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class TestBroadcastEnabledStringCountBasedWfmAggregator {
+
+    private static final long JOB_ID = 123;
+
+    private final CamelContext _camelContext = new DefaultCamelContext();
+
+    @InjectMocks
+    private BroadcastEnabledStringCountBasedWfmAggregator _aggregator;
+
+    @Mock
+    private InProgressBatchJobsService _mockInProgressJobs;
+
+    @Spy
+    private JobProgress _jobProgress = new JobProgress();
+
+    @Mock
+    private JobStatusBroadcaster _mockJobStatusBroadcaster;
+
+    @Mock
+    private BatchJob _mockJob;
+
+    @Mock
+    private Media _mockMedia1;
+
+    @Mock
+    private Media _mockMedia2;
+
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        var pipelineElements = mock(JobPipelineElements.class);
+        when(pipelineElements.getTaskCount())
+                .thenReturn(2);
+
+        when(_mockJob.getId())
+                .thenReturn(JOB_ID);
+        when(_mockJob.getStatus())
+                .thenReturn(BatchJobStatusType.IN_PROGRESS);
+        when(_mockJob.getPipelineElements())
+                .thenReturn(pipelineElements);
+        doReturn(ImmutableList.of(_mockMedia1, _mockMedia2))
+                .when(_mockJob).getMedia();
+        when(_mockJob.getMedia(1))
+                .thenReturn(_mockMedia1);
+        when(_mockJob.getMedia(2))
+                .thenReturn(_mockMedia2);
+        when(_mockMedia1.getId())
+                .thenReturn(1L);
+        when(_mockMedia2.getId())
+                .thenReturn(2L);
+
+        when(_mockInProgressJobs.getJob(JOB_ID))
+                .thenReturn(_mockJob);
+    }
+
+
+    private float aggregate(Long taskMediaId, int aggregatedCount, int splitSize) {
+        Exchange oldExchange = null;
+        if (aggregatedCount > 1) {
+            oldExchange = new DefaultExchange(_camelContext);
+            oldExchange.getIn().setHeader(MpfHeaders.AGGREGATED_COUNT, aggregatedCount - 1);
+        }
+        Exchange newExchange = new DefaultExchange(_camelContext);
+        newExchange.getIn().setHeader(MpfHeaders.JOB_ID, JOB_ID);
+        newExchange.getIn().setHeader(MpfHeaders.SPLIT_SIZE, splitSize);
+        if (taskMediaId != null) {
+            newExchange.getIn().setHeader(MpfHeaders.TASK_MEDIA_ID, taskMediaId);
+        }
+        _aggregator.aggregate(oldExchange, newExchange);
+
+        var progressCaptor = ArgumentCaptor.forClass(Double.class);
+        verify(_mockJobStatusBroadcaster, atLeastOnce())
+                .broadcastProgress(eq(JOB_ID), progressCaptor.capture(), eq(BatchJobStatusType.IN_PROGRESS));
+        List<Double> allProgress = progressCaptor.getAllValues();
+        return allProgress.get(allProgress.size() - 1).floatValue();
+    }
+
+
+    @Test
+    public void usesJobTaskIndexWithoutTaskMedia() {
+        when(_mockJob.getCurrentTaskIndex())
+                .thenReturn(1);
+
+        assertEquals(62.5, aggregate(null, 1, 4), 0.01);
+        assertEquals(100, aggregate(null, 4, 4), 0.01);
+        verify(_jobProgress).setJobProgress(JOB_ID, 100);
+    }
+
+
+    @Test
+    public void progressDoesNotGoBackwardsWhenMediaAreOnDifferentTasks() {
+        // The job's current task index is the slowest media's task index.
+        when(_mockJob.getCurrentTaskIndex())
+                .thenReturn(0);
+        when(_mockMedia1.getCurrentTaskIndex())
+                .thenReturn(1);
+        when(_mockMedia2.getCurrentTaskIndex())
+                .thenReturn(0);
+
+        // Media 1 has finished one of the two tasks, and is a quarter of the way through the second.
+        assertEquals(31.25, aggregate(1L, 1, 4), 0.01);
+        assertEquals(50, aggregate(1L, 4, 4), 0.01);
+        // Combining the job's task index with media 2's progress in its task would report 12.5%.
+        assertEquals(56.25, aggregate(2L, 1, 4), 0.01);
+        assertEquals(75, aggregate(2L, 4, 4), 0.01);
+
+        // Media 1 reached the end of the pipeline, and media 2 moved on to the second task.
+        when(_mockMedia1.getCurrentTaskIndex())
+                .thenReturn(2);
+        when(_mockMedia2.getCurrentTaskIndex())
+                .thenReturn(1);
+        when(_mockJob.getCurrentTaskIndex())
+                .thenReturn(1);
+        assertEquals(87.5, aggregate(2L, 1, 2), 0.01);
+        assertEquals(100, aggregate(2L, 2, 2), 0.01);
+    }
+}
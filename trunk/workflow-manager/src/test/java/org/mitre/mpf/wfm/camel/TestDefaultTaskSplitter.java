@@ -0,0 +1,275 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.impl.DefaultMessage;
+import org.junit.Before;
+import org.junit.Test;
+import org.mitre.mpf.rest.api.pipelines.ActionType;
+import org.mitre.mpf.rest.api.pipelines.Algorithm;
+import org.mitre.mpf.rest.api.pipelines.Task;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionTaskSplitter;
+import org.mitre.mpf.wfm.camel.operations.markup.MarkupSplitter;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.JobPipelineElements;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.data.entities.persistent.SystemPropertiesSnapshot;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TestDefaultTaskSplitter {
+
+    private static final long JOB_ID = 123;
+
+    @InjectMocks
+    private DefaultTaskSplitter _defaultTaskSplitter;
+
+    @Mock
+    private DetectionTaskSplitter _mockDetectionSplitter;
+
+    @Mock
+    private MarkupSplitter _mockMarkupSplitter;
+
+    @Mock
+    private InProgressBatchJobsService _mockInProgressJobs;
+
+    @Mock
+    private BatchJob _mockJob;
+
+    @Mock
+    private Media _mockMedia1;
+
+    @Mock
+    private Media _mockMedia2;
+
+    private final Task _detectionTask = mock(Task.class);
+
+    private final Task _markupTask = mock(Task.class);
+
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        var detectionAlgorithm = mock(Algorithm.class);
+        when(detectionAlgorithm.getActionType())
+                .thenReturn(ActionType.DETECTION);
+        var markupAlgorithm = mock(Algorithm.class);
+        when(markupAlgorithm.getActionType())
+                .thenReturn(ActionType.MARKUP);
+
+        var pipelineElements = mock(JobPipelineElements.class);
+        when(pipelineElements.getTaskCount())
+                .thenReturn(2);
+        when(pipelineElements.getTask(0))
+                .thenReturn(_detectionTask);
+        when(pipelineElements.getAlgorithm(0, 0))
+                .thenReturn(detectionAlgorithm);
+        when(pipelineElements.getTask(1))
+                .thenReturn(_markupTask);
+        when(pipelineElements.getAlgorithm(1, 0))
+                .thenReturn(markupAlgorithm);
+
+        when(_mockJob.getId())
+                .thenReturn(JOB_ID);
+        when(_mockJob.getPipelineElements())
+                .thenReturn(pipelineElements);
+        doReturn(ImmutableList.of(_mockMedia1, _mockMedia2))
+                .when(_mockJob).getMedia();
+        when(_mockJob.getMedia(1))
+                .thenReturn(_mockMedia1);
+        when(_mockJob.getMedia(2))
+                .thenReturn(_mockMedia2);
+        when(_mockMedia1.getId())
+                .thenReturn(1L);
+        when(_mockMedia2.getId())
+                .thenReturn(2L);
+        setPerMediaTaskProgression(true);
+
+        when(_mockInProgressJobs.getJob(JOB_ID))
+                .thenReturn(_mockJob);
+    }
+
+
+    private void setPerMediaTaskProgression(boolean enabled) {
+        when(_mockJob.getSystemPropertiesSnapshot())
+                .thenReturn(new SystemPropertiesSnapshot(
+                        Map.of("detection.task.progression.per.media", String.valueOf(enabled))));
+    }
+
+    private List<Message> split(Long taskMediaId) {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(MpfHeaders.JOB_ID, JOB_ID);
+        exchange.getIn().setHeader(MpfHeaders.JMS_PRIORITY, 4);
+        if (taskMediaId != null) {
+            exchange.getIn().setHeader(MpfHeaders.TASK_MEDIA_ID, taskMediaId);
+        }
+        return _defaultTaskSplitter.split(exchange);
+    }
+
+    private static List<Message> createMessages(int count) {
+        var builder = ImmutableList.<Message>builder();
+        for (int i = 0; i < count; i++) {
+            builder.add(new DefaultMessage());
+        }
+        return builder.build();
+    }
+
+    private static void assertGroup(List<Message> group, long mediaId) {
+        assertTrue(group.stream().allMatch(m -> m.getHeader(MpfHeaders.TASK_MEDIA_ID).equals(mediaId)));
+        assertTrue(group.stream().allMatch(m -> m.getHeader(MpfHeaders.SPLIT_SIZE).equals(group.size())));
+        assertTrue(group.stream().allMatch(m -> m.getHeader(MpfHeaders.JOB_ID).equals(JOB_ID)));
+        assertEquals(1, group.stream().map(m -> m.getHeader(MpfHeaders.CORRELATION_ID)).distinct().count());
+    }
+
+
+    @Test
+    public void usesOneCorrelationIdPerMedia() {
+        var media1Messages = createMessages(2);
+        when(_mockDetectionSplitter.performSplit(_mockJob, _detectionTask, 0, List.of(_mockMedia1)))
+                .thenReturn(media1Messages);
+        // Media 2 is already on the markup task.
+        when(_mockMedia2.getCurrentTaskIndex())
+                .thenReturn(1);
+        var media2Messages = createMessages(1);
+        when(_mockMarkupSplitter.performSplit(_mockJob, _markupTask, 1, List.of(_mockMedia2)))
+                .thenReturn(media2Messages);
+
+        var messages = split(null);
+
+        assertEquals(3, messages.size());
+        assertGroup(media1Messages, 1);
+        assertGroup(media2Messages, 2);
+        assertNotEquals(media1Messages.get(0).getHeader(MpfHeaders.CORRELATION_ID),
+                        media2Messages.get(0).getHeader(MpfHeaders.CORRELATION_ID));
+        assertTrue(messages.stream().noneMatch(m -> m.getHeader(MpfHeaders.EMPTY_SPLIT) != null));
+    }
+
+
+    @Test
+    public void onlySplitsTaskMedia() {
+        when(_mockMedia2.getCurrentTaskIndex())
+                .thenReturn(1);
+        var media2Messages = createMessages(2);
+        when(_mockMarkupSplitter.performSplit(_mockJob, _markupTask, 1, List.of(_mockMedia2)))
+                .thenReturn(media2Messages);
+
+        var messages = split(2L);
+
+        assertEquals(media2Messages, messages);
+        assertGroup(messages, 2);
+        verifyZeroInteractions(_mockDetectionSplitter);
+    }
+
+
+    @Test
+    public void createsEmptySplitMessageForMediaWithNoWork() {
+        var media1Messages = createMessages(2);
+        when(_mockDetectionSplitter.performSplit(_mockJob, _detectionTask, 0, List.of(_mockMedia1)))
+                .thenReturn(media1Messages);
+        when(_mockDetectionSplitter.performSplit(_mockJob, _detectionTask, 0, List.of(_mockMedia2)))
+                .thenReturn(List.of());
+
+        var messages = split(null);
+
+        assertEquals(3, messages.size());
+        assertGroup(media1Messages, 1);
+
+        var media2Messages = messages.stream()
+                .filter(m -> m.getHeader(MpfHeaders.TASK_MEDIA_ID).equals(2L))
+                .collect(toList());
+        assertEquals(1, media2Messages.size());
+        assertGroup(media2Messages, 2);
+        assertEquals(Boolean.TRUE, media2Messages.get(0).getHeader(MpfHeaders.EMPTY_SPLIT));
+        assertNotEquals(media1Messages.get(0).getHeader(MpfHeaders.CORRELATION_ID),
+                        media2Messages.get(0).getHeader(MpfHeaders.CORRELATION_ID));
+    }
+
+
+    @Test
+    public void createsSingleErrorMessageWithoutTaskMediaWhenSplitFails() {
+        when(_mockDetectionSplitter.performSplit(any(), any(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("test"));
+
+        var messages = split(null);
+
+        assertEquals(1, messages.size());
+        var message = messages.get(0);
+        assertEquals(Boolean.TRUE, message.getHeader(MpfHeaders.EMPTY_SPLIT));
+        assertEquals(Boolean.TRUE, message.getHeader(MpfHeaders.SPLITTING_ERROR));
+        assertEquals(1, message.getHeader(MpfHeaders.SPLIT_SIZE));
+        // EndOfTaskProcessor skips the remaining tasks for all media when TASK_MEDIA_ID is missing.
+        assertNull(message.getHeader(MpfHeaders.TASK_MEDIA_ID));
+        verify(_mockInProgressJobs).setJobStatus(JOB_ID, BatchJobStatusType.ERROR);
+    }
+
+
+    @Test
+    public void keepsTaskMediaWhenSplitForSingleMediaFails() {
+        when(_mockDetectionSplitter.performSplit(any(), any(), anyInt(), any()))
+                .thenThrow(new IllegalStateException("test"));
+
+        var messages = split(1L);
+
+        assertEquals(1, messages.size());
+        assertEquals(Boolean.TRUE, messages.get(0).getHeader(MpfHeaders.SPLITTING_ERROR));
+        assertEquals(1L, messages.get(0).getHeader(MpfHeaders.TASK_MEDIA_ID));
+    }
+
+
+    @Test
+    public void usesOneCorrelationIdForJobWhenPerMediaTaskProgressionDisabled() {
+        setPerMediaTaskProgression(false);
+        var jobMessages = createMessages(3);
+        when(_mockDetectionSplitter.performSplit(_mockJob, _detectionTask, 0, _mockJob.getMedia()))
+                .thenReturn(jobMessages);
+
+        var messages = split(null);
+
+        assertEquals(jobMessages, messages);
+        assertTrue(messages.stream().allMatch(m -> m.getHeader(MpfHeaders.TASK_MEDIA_ID) == null));
+        assertTrue(messages.stream().allMatch(m -> m.getHeader(MpfHeaders.SPLIT_SIZE).equals(3)));
+        assertEquals(1, messages.stream().map(m -> m.getHeader(MpfHeaders.CORRELATION_ID)).collect(toSet()).size());
+    }
+}
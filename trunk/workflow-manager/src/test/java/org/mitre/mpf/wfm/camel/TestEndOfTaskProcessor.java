@@ -0,0 +1,225 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Before;
+import org.junit.Test;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.JobPipelineElements;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.data.entities.persistent.SystemPropertiesSnapshot;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.event.JobProgress;
+import org.mitre.mpf.wfm.service.JobStatusBroadcaster;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TestEndOfTaskProcessor {
+
+    private static final long JOB_ID = 123;
+
+    @InjectMocks
+    private EndOfTaskProcessor _endOfTaskProcessor;
+
+    @Mock
+    private InProgressBatchJobsService _mockInProgressJobs;
+
+    @Mock
+    private JobProgress _mockJobProgress;
+
+    @Mock
+    private JobStatusBroadcaster _mockJobStatusBroadcaster;
+
+    @Mock
+    private BatchJob _mockJob;
+
+    @Mock
+    private Media _mockMedia1;
+
+    @Mock
+    private Media _mockMedia2;
+
+
+    @Before
+    public void init() {
+        MockitoAnnotations.initMocks(this);
+
+        var pipelineElements = mock(JobPipelineElements.class);
+        when(pipelineElements.getTaskCount())
+                .thenReturn(2);
+
+        when(_mockJob.getId())
+                .thenReturn(JOB_ID);
+        when(_mockJob.getPriority())
+                .thenReturn(4);
+        when(_mockJob.isOutputEnabled())
+                .thenReturn(true);
+        when(_mockJob.getPipelineElements())
+                .thenReturn(pipelineElements);
+        when(_mockJob.getSystemPropertiesSnapshot())
+                .thenReturn(new SystemPropertiesSnapshot(Map.of("detection.task.progression.per.media", "true")));
+        doReturn(ImmutableList.of(_mockMedia1, _mockMedia2))
+                .when(_mockJob).getMedia();
+        when(_mockJob.getMedia(1))
+                .thenReturn(_mockMedia1);
+        when(_mockJob.getMedia(2))
+                .thenReturn(_mockMedia2);
+        when(_mockMedia1.getId())
+                .thenReturn(1L);
+        when(_mockMedia2.getId())
+                .thenReturn(2L);
+
+        when(_mockInProgressJobs.getJob(JOB_ID))
+                .thenReturn(_mockJob);
+    }
+
+
+    private Exchange runProcessor(Long taskMediaId) {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(MpfHeaders.JOB_ID, JOB_ID);
+        exchange.getIn().setHeader(MpfHeaders.JMS_PRIORITY, 4);
+        if (taskMediaId != null) {
+            exchange.getIn().setHeader(MpfHeaders.TASK_MEDIA_ID, taskMediaId);
+        }
+        _endOfTaskProcessor.process(exchange);
+        return exchange;
+    }
+
+    private static boolean isRouteStopped(Exchange exchange) {
+        return exchange.getProperty(Exchange.ROUTE_STOP, false, Boolean.class);
+    }
+
+
+    @Test
+    public void mediaWithRemainingTasksContinuesAlone() {
+        when(_mockInProgressJobs.incrementTask(JOB_ID, 1, false))
+                .thenReturn(false);
+        when(_mockMedia1.getCurrentTaskIndex())
+                .thenReturn(1);
+
+        Exchange exchange = runProcessor(1L);
+
+        verify(_mockInProgressJobs).incrementTask(JOB_ID, 1, false);
+        verify(_mockInProgressJobs, never()).incrementTask(JOB_ID);
+        assertEquals(1L, exchange.getOut().getHeader(MpfHeaders.TASK_MEDIA_ID));
+        assertNull(exchange.getOut().getHeader(MpfHeaders.JOB_COMPLETE));
+        assertFalse(isRouteStopped(exchange));
+        verifyZeroInteractions(_mockJobStatusBroadcaster);
+    }
+
+
+    @Test
+    public void stopsRouteWhenMediaFinishesBeforeOtherMedia() {
+        when(_mockInProgressJobs.incrementTask(JOB_ID, 1, false))
+                .thenReturn(false);
+        when(_mockMedia1.getCurrentTaskIndex())
+                .thenReturn(2);
+
+        Exchange exchange = runProcessor(1L);
+
+        assertNull(exchange.getOut().getHeader(MpfHeaders.TASK_MEDIA_ID));
+        assertNull(exchange.getOut().getHeader(MpfHeaders.JOB_COMPLETE));
+        assertTrue(isRouteStopped(exchange));
+        verifyZeroInteractions(_mockJobStatusBroadcaster);
+    }
+
+
+    @Test
+    public void completesJobWhenLastMediaFinishes() {
+        when(_mockInProgressJobs.incrementTask(JOB_ID, 2, false))
+                .thenReturn(true);
+        when(_mockMedia2.getCurrentTaskIndex())
+                .thenReturn(2);
+
+        Exchange exchange = runProcessor(2L);
+
+        assertNull(exchange.getOut().getHeader(MpfHeaders.TASK_MEDIA_ID));
+        assertEquals(Boolean.TRUE, exchange.getOut().getHeader(MpfHeaders.JOB_COMPLETE));
+        assertFalse(isRouteStopped(exchange));
+        verify(_mockJobStatusBroadcaster)
+                .broadcast(eq(JOB_ID), eq(99.0), eq(BatchJobStatusType.BUILDING_OUTPUT_OBJECT), any());
+        verify(_mockJobProgress)
+                .setJobProgress(JOB_ID, 99);
+    }
+
+
+    @Test
+    public void skipsRemainingTasksForFailedMedia() {
+        when(_mockMedia1.isFailed())
+                .thenReturn(true);
+        when(_mockInProgressJobs.incrementTask(JOB_ID, 1, true))
+                .thenReturn(false);
+        when(_mockMedia1.getCurrentTaskIndex())
+                .thenReturn(2);
+
+        Exchange exchange = runProcessor(1L);
+
+        verify(_mockInProgressJobs).incrementTask(JOB_ID, 1, true);
+        assertTrue(isRouteStopped(exchange));
+    }
+
+
+    @Test
+    public void skipsRemainingTasksForAllMediaWhenSplitForWholeJobFails() {
+        when(_mockInProgressJobs.incrementTask(JOB_ID, 1, true))
+                .thenReturn(false);
+        when(_mockInProgressJobs.incrementTask(JOB_ID, 2, true))
+                .thenReturn(true);
+
+        Exchange exchange = runProcessor(null);
+
+        verify(_mockInProgressJobs).incrementTask(JOB_ID, 1, true);
+        verify(_mockInProgressJobs).incrementTask(JOB_ID, 2, true);
+        assertEquals(Boolean.TRUE, exchange.getOut().getHeader(MpfHeaders.JOB_COMPLETE));
+        assertFalse(isRouteStopped(exchange));
+    }
+
+
+    @Test
+    public void stopsRouteWhenSplitForWholeJobFailsAfterAllMediaFinished() {
+        // incrementTask returns false for media that already reached the end of the pipeline, so the job's
+        // completion was already reported by another exchange.
+        Exchange exchange = runProcessor(null);
+
+        verify(_mockInProgressJobs).incrementTask(JOB_ID, 1, true);
+        verify(_mockInProgressJobs).incrementTask(JOB_ID, 2, true);
+        assertNull(exchange.getOut().getHeader(MpfHeaders.JOB_COMPLETE));
+        assertTrue(isRouteStopped(exchange));
+    }
+}
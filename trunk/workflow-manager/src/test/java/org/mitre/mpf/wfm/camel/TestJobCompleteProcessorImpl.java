@@ -0,0 +1,117 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.mitre.mpf.interop.*;
+import org.mitre.mpf.wfm.util.ObjectMapperFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestJobCompleteProcessorImpl {
+
+    private final ObjectMapper _objectMapper = ObjectMapperFactory.customObjectMapper();
+
+
+    @Test
+    public void streamedOutputObjectIsIdenticalToEagerOutputObject() throws IOException {
+        var loadCount = new AtomicInteger();
+        JsonOutputObject streamed = createOutputObject((source, tracks) -> {
+            Supplier<SortedSet<JsonTrackOutputObject>> trackSupplier = () -> {
+                loadCount.incrementAndGet();
+                return tracks.get();
+            };
+            return new JobCompleteProcessorImpl.StreamedActionOutputObject(source, "ALGO", trackSupplier);
+        });
+        JsonOutputObject eager = createOutputObject(
+                (source, tracks) -> JsonActionOutputObject.factory(source, "ALGO", tracks.get()));
+
+        // Tracks are only loaded while the output object is being written.
+        assertEquals(0, loadCount.get());
+
+        byte[] streamedBytes = _objectMapper.writeValueAsBytes(streamed);
+        assertArrayEquals(_objectMapper.writeValueAsBytes(eager), streamedBytes);
+        assertEquals(3, loadCount.get());
+
+        // Writing the streamed output object must not change it.
+        assertArrayEquals(streamedBytes, _objectMapper.writeValueAsBytes(streamed));
+    }
+
+
+    private interface ActionFactory {
+        JsonActionOutputObject create(String source, Supplier<SortedSet<JsonTrackOutputObject>> tracks);
+    }
+
+
+    private static JsonOutputObject createOutputObject(ActionFactory actionFactory) {
+        var outputObject = new JsonOutputObject(
+                1, "object-id", new JsonPipeline("PIPELINE", "description"), 4, "site", "external-id",
+                Instant.ofEpochMilli(1000), Instant.ofEpochMilli(2000), "COMPLETE");
+
+        var media = new JsonMediaOutputObject(1, "file:///video.mp4", "VIDEO", "video/mp4", 10, "sha",
+                                              "COMPLETE");
+        media.getDetectionTypes().computeIfAbsent("FACE", k -> new TreeSet<>())
+                .add(actionFactory.create("+#FACE ACTION", () -> createTracks("FACE", 2)));
+        media.getDetectionTypes().computeIfAbsent("FACE", k -> new TreeSet<>())
+                .add(actionFactory.create("+#FACE ACTION#OTHER FACE ACTION", () -> createTracks("FACE", 1)));
+        media.getDetectionTypes().computeIfAbsent("CLASS", k -> new TreeSet<>())
+                .add(actionFactory.create("+#CLASS ACTION", () -> createTracks("CLASS", 3)));
+        media.getDetectionTypes().computeIfAbsent(JsonActionOutputObject.NO_TRACKS_TYPE, k -> new TreeSet<>())
+                .add(new JsonActionOutputObject("+#EMPTY ACTION", "ALGO"));
+        outputObject.getMedia().add(media);
+        return outputObject;
+    }
+
+
+    private static SortedSet<JsonTrackOutputObject> createTracks(String type, int count) {
+        var tracks = new TreeSet<JsonTrackOutputObject>();
+        for (int i = 0; i < count; i++) {
+            var detectionProperties = new TreeMap<>(Map.of("PROP", "value " + i));
+            var detections = List.of(
+                    new JsonDetectionOutputObject(i, i + 1, 10, 20, 0.5f, detectionProperties, i * 2,
+                                                  i * 200, "COMPLETED", "file:///artifact.png"),
+                    new JsonDetectionOutputObject(i + 2, i + 3, 10, 20, 0.75f, new TreeMap<>(), i * 2 + 1,
+                                                  i * 200 + 100, "NOT_ATTEMPTED", null));
+            tracks.add(new JsonTrackOutputObject(
+                    type + i, i * 2, i * 2 + 1, i * 200, i * 200 + 100, type, "+#" + type, 0.75f,
+                    Map.of("TRACK_PROP", "track value " + i), detections.get(1), detections));
+        }
+        return tracks;
+    }
+}
@@ -0,0 +1,302 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.camel.operations.detection;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mitre.mpf.rest.api.pipelines.Action;
+import org.mitre.mpf.rest.api.pipelines.ActionType;
+import org.mitre.mpf.rest.api.pipelines.Algorithm;
+import org.mitre.mpf.wfm.buffers.DetectionProtobuf;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.enums.MpfEndpoints;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TestDetectionRequestDispatcher {
+
+    private static final String ALGORITHM = "TEST_ALGO";
+
+    private static final String ACTION = "TEST_ACTION";
+
+    private static final String QUEUE = "jms:MPF.DETECTION_TEST_ALGO_REQUEST";
+
+    private final PropertiesUtil _mockPropertiesUtil = mock(PropertiesUtil.class);
+
+    private final InProgressBatchJobsService _mockInProgressJobs = mock(InProgressBatchJobsService.class);
+
+    private final ProducerTemplate _mockProducerTemplate = mock(ProducerTemplate.class);
+
+    private final List<Object> _sentBodies = new CopyOnWriteArrayList<>();
+
+    private final DetectionRequestDispatcher _dispatcher = new DetectionRequestDispatcher(
+            _mockPropertiesUtil, _mockInProgressJobs, _mockProducerTemplate, new DefaultCamelContext(),
+            new DetectionDeadLetterProcessor());
+
+
+    @BeforeClass
+    public static void initClass() {
+        ThreadUtil.start();
+    }
+
+
+    public TestDetectionRequestDispatcher() {
+        when(_mockPropertiesUtil.isDetectionDispatcherEnabled())
+                .thenReturn(true);
+        when(_mockPropertiesUtil.getDetectionDispatcherMaxInFlightPerAlgorithm())
+                .thenReturn(1);
+        when(_mockPropertiesUtil.getDetectionDispatcherSendRetryDelay())
+                .thenReturn(1L);
+        when(_mockPropertiesUtil.getDetectionDispatcherSendMaxAttempts())
+                .thenReturn(3);
+
+        doAnswer(inv -> _sentBodies.add(inv.getArgument(1)))
+                .when(_mockProducerTemplate).sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+
+        var action = new Action(ACTION, "description", ALGORITHM, List.of());
+        var algorithm = new Algorithm(
+                ALGORITHM, "description", ActionType.DETECTION,
+                new Algorithm.Requires(List.of()),
+                new Algorithm.Provides(List.of(), List.of()),
+                true, true);
+        for (long jobId : new long[] { 1, 2 }) {
+            BatchJob job = mock(BatchJob.class, RETURNS_DEEP_STUBS);
+            when(job.getPipelineElements().getAction(ACTION))
+                    .thenReturn(action);
+            when(job.getPipelineElements().getAlgorithm(ALGORITHM))
+                    .thenReturn(algorithm);
+            when(_mockInProgressJobs.getJob(jobId))
+                    .thenReturn(job);
+        }
+    }
+
+
+    @Test
+    public void onlyDispatchesDetectionRequestsWhenEnabled() {
+        assertTrue(_dispatcher.shouldDispatch(createExchange(1, 4, "body")));
+
+        Exchange markupExchange = createExchange(1, 4, "body");
+        markupExchange.getIn().setHeader(MpfHeaders.RECIPIENT_QUEUE, "jms:MPF.MARKUP_TEST_ALGO_REQUEST");
+        assertFalse(_dispatcher.shouldDispatch(markupExchange));
+
+        when(_mockPropertiesUtil.isDetectionDispatcherEnabled())
+                .thenReturn(false);
+        assertFalse(_dispatcher.shouldDispatch(createExchange(1, 4, "body")));
+    }
+
+
+    @Test
+    public void holdsRequestsBeyondInFlightLimit() {
+        when(_mockPropertiesUtil.getDetectionDispatcherMaxInFlightPerAlgorithm())
+                .thenReturn(2);
+
+        submit(1, 4, "a1", "a2", "a3");
+        assertEquals(List.of("a1", "a2"), _sentBodies);
+        assertEquals(1, _dispatcher.getHeldRequestCount(QUEUE.substring("jms:".length())));
+
+        _dispatcher.responseReceived(1, ACTION);
+        assertEquals(List.of("a1", "a2", "a3"), _sentBodies);
+        assertEquals(0, _dispatcher.getHeldRequestCount(QUEUE.substring("jms:".length())));
+
+        // There is nothing left to send.
+        _dispatcher.responseReceived(1, ACTION);
+        assertEquals(3, _sentBodies.size());
+
+        verify(_mockProducerTemplate, times(3))
+                .sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+    }
+
+
+    @Test
+    public void laterJobDoesNotWaitForEarlierJobToDrain() {
+        submit(1, 0, "a1", "a2", "a3", "a4", "a5");
+        submit(2, 0, "b1", "b2");
+
+        for (int i = 0; i < 6; i++) {
+            _dispatcher.responseReceived(_sentBodies.get(i).toString().startsWith("a") ? 1 : 2, ACTION);
+        }
+
+        assertEquals(List.of("a1", "a2", "b1", "a3", "b2", "a4", "a5"), _sentBodies);
+    }
+
+
+    @Test
+    public void higherPriorityJobsGetMoreTurns() {
+        submit(1, 0, "a1", "a2", "a3", "a4", "a5", "a6");
+        submit(2, 1, "b1", "b2", "b3", "b4", "b5", "b6");
+
+        for (int i = 0; i < 8; i++) {
+            _dispatcher.responseReceived(_sentBodies.get(i).toString().startsWith("a") ? 1 : 2, ACTION);
+        }
+
+        // Job 1 has a weight of 1 and job 2 has a weight of 2.
+        assertEquals(List.of("a1", "a2", "b1", "b2", "a3", "b3", "b4", "a4", "b5"), _sentBodies);
+    }
+
+
+    @Test
+    public void releasesHeldRequestsWhenJobCancelled() {
+        submit(1, 4, "a1", "a2", "a3");
+        submit(2, 4, "b1");
+        assertEquals(List.of("a1"), _sentBodies);
+
+        _dispatcher.releaseJob(1);
+        assertEquals(List.of("a1", "a2", "a3"), _sentBodies);
+
+        // The released requests still count against the limit until their cancellation responses arrive.
+        _dispatcher.responseReceived(1, ACTION);
+        _dispatcher.responseReceived(1, ACTION);
+        assertEquals(3, _sentBodies.size());
+        _dispatcher.responseReceived(1, ACTION);
+        assertEquals(List.of("a1", "a2", "a3", "b1"), _sentBodies);
+    }
+
+
+    @Test
+    public void completedJobNoLongerCountsAgainstLimit() {
+        submit(1, 4, "a1");
+        submit(2, 4, "b1");
+        assertEquals(List.of("a1"), _sentBodies);
+
+        // For example, the response was lost, but the job was still completed.
+        _dispatcher.jobCompleted(1);
+        assertEquals(List.of("a1", "b1"), _sentBodies);
+
+        // Late responses for the completed job are ignored.
+        _dispatcher.responseReceived(1, ACTION);
+        submit(2, 4, "b2");
+        assertEquals(List.of("a1", "b1"), _sentBodies);
+    }
+
+
+    @Test
+    public void failedSendIsRetried() throws InterruptedException {
+        doThrow(new IllegalStateException("test"))
+                .doAnswer(inv -> _sentBodies.add(inv.getArgument(1)))
+                .when(_mockProducerTemplate).sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+
+        submit(1, 4, "a1", "a2");
+
+        // The failed request keeps its place in front of the requests that were submitted after it.
+        for (int i = 0; i < 500 && _sentBodies.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("a1"), _sentBodies);
+        verify(_mockProducerTemplate, times(2))
+                .sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+
+        _dispatcher.responseReceived(1, ACTION);
+        assertEquals(List.of("a1", "a2"), _sentBodies);
+    }
+
+
+    @Test
+    public void failedSendIsCompletedWithErrorResponseAfterMaxAttempts() throws Exception {
+        doThrow(new IllegalStateException("test"))
+                .when(_mockProducerTemplate).sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+
+        var request = DetectionProtobuf.DetectionRequest.newBuilder()
+                .setRequestId(5)
+                .setMediaId(6)
+                .setTaskIndex(0)
+                .setActionIndex(0)
+                .setTaskName("TEST_TASK")
+                .setActionName(ACTION)
+                .setDataUri("/tmp/video.mp4")
+                .setDataType(DetectionProtobuf.DetectionRequest.DataType.VIDEO)
+                .setVideoRequest(DetectionProtobuf.DetectionRequest.VideoRequest.newBuilder()
+                                         .setStartFrame(10)
+                                         .setStopFrame(20))
+                .build();
+        Exchange exchange = createExchange(1, 4, "");
+        exchange.getIn().setBody(request.toByteArray());
+        _dispatcher.submit(exchange);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> headersCaptor = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Object> bodyCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(_mockProducerTemplate, timeout(5000))
+                .sendBodyAndHeaders(eq(MpfEndpoints.COMPLETED_DETECTIONS), bodyCaptor.capture(),
+                                    headersCaptor.capture());
+        verify(_mockProducerTemplate, times(3))
+                .sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+
+        // The error response is processed like any other response, so the job's task can complete.
+        var response = DetectionProtobuf.DetectionResponse.parseFrom((byte[]) bodyCaptor.getValue());
+        assertEquals(DetectionProtobuf.DetectionError.DEAD_LETTER, response.getError());
+        assertEquals(5, response.getRequestId());
+        assertEquals(6, response.getMediaId());
+        assertEquals(10, response.getVideoResponses(0).getStartFrame());
+        assertEquals(20, response.getVideoResponses(0).getStopFrame());
+        assertEquals(1L, headersCaptor.getValue().get(MpfHeaders.JOB_ID));
+
+        // The request counts against the limit until its error response is received.
+        doAnswer(inv -> _sentBodies.add(inv.getArgument(1)))
+                .when(_mockProducerTemplate).sendBodyAndHeaders(eq(QUEUE), any(), anyMap());
+        submit(2, 4, "b1");
+        assertTrue(_sentBodies.isEmpty());
+
+        _dispatcher.responseReceived(1, ACTION);
+        assertEquals(List.of("b1"), _sentBodies);
+    }
+
+
+    private void submit(long jobId, int priority, String... bodies) {
+        for (String body : bodies) {
+            _dispatcher.submit(createExchange(jobId, priority, body));
+        }
+    }
+
+
+    private static Exchange createExchange(long jobId, int priority, String body) {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(MpfHeaders.RECIPIENT_QUEUE, QUEUE);
+        exchange.getIn().setHeader(MpfHeaders.JOB_ID, jobId);
+        exchange.getIn().setHeader(MpfHeaders.JMS_PRIORITY, priority);
+        exchange.getIn().setBody(body);
+        return exchange;
+    }
+}
@@ -40,6 +40,7 @@ import org.mitre.mpf.wfm.enums.MediaType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.JsonUtils;
+import org.mitre.mpf.wfm.util.PropertyView;
 import org.mockito.ArgumentCaptor;
 
 import java.util.Collection;
@@ -211,9 +212,9 @@ public class TestMovingTrackLabelProcessor {
                 MpfConstants.MOVING_TRACK_MAX_IOU, String.valueOf(maxIou),
                 MpfConstants.MOVING_TRACK_MIN_DETECTIONS, String.valueOf(minDetections));
 
-        when(mockAggregateJobPropertiesUtil.getCombinedProperties(
+        when(mockAggregateJobPropertiesUtil.getPropertyView(
                 same(mockJob), same(mockMedia), any(Action.class)))
-                .thenReturn(props::get);
+                .thenReturn(new PropertyView(props::get));
 
         when(mockInProgressJobs.getTracks(jobId, mediaId, 0, 0))
                 .thenReturn(new TreeSet<>(inputTracks));
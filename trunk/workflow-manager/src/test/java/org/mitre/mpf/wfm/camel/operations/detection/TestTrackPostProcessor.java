@@ -0,0 +1,189 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel.operations.detection;
+
+import com.google.common.collect.ImmutableSortedSet;
+import org.junit.Test;
+import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingContext;
+import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.enums.MediaType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+
+import static java.util.stream.Collectors.toCollection;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TestTrackPostProcessor {
+
+    private static final long JOB_ID = 1234;
+
+    private final InProgressBatchJobsService _mockInProgressJobs = mock(InProgressBatchJobsService.class);
+
+    private final BatchJob _mockJob = mock(BatchJob.class, RETURNS_DEEP_STUBS);
+
+    private final Media _mockVideo = createMedia(1, MediaType.VIDEO);
+
+    private final Media _mockImage = createMedia(2, MediaType.IMAGE);
+
+
+    public TestTrackPostProcessor() {
+        when(_mockInProgressJobs.getJob(JOB_ID))
+                .thenReturn(_mockJob);
+        when(_mockJob.getId())
+                .thenReturn(JOB_ID);
+        when(_mockJob.getPipelineElements().getTask(0).getActions().size())
+                .thenReturn(1);
+        when(_mockJob.getMedia())
+                .thenAnswer(inv -> List.of(_mockVideo, _mockImage));
+
+        when(_mockInProgressJobs.getTracks(JOB_ID, 1, 0, 0))
+                .thenReturn(ImmutableSortedSet.of(createTrack(1, "a"), createTrack(5, "b")));
+        when(_mockInProgressJobs.getTracks(JOB_ID, 2, 0, 0))
+                .thenReturn(ImmutableSortedSet.of(createTrack(0, "c")));
+    }
+
+
+    @Test
+    public void loadsAndStoresTracksOncePerMedia() {
+        TrackTransformer dropFirstTrack = (job, media, taskIndex, actionIndex, action) ->
+                Optional.of(tracks -> tracks.stream()
+                        .skip(1)
+                        .collect(toCollection(TreeSet::new)));
+        TrackTransformer addProperty = (job, media, taskIndex, actionIndex, action) ->
+                Optional.of(tracks -> tracks.stream()
+                        .map(t -> createTrack(t.getStartOffsetFrameInclusive(), "transformed"))
+                        .collect(toCollection(TreeSet::new)));
+
+        TrackPostProcessor.processTracks(_mockInProgressJobs, new TrackMergingContext(JOB_ID, 0), null,
+                                         List.of(dropFirstTrack, addProperty));
+
+        verify(_mockInProgressJobs, times(1))
+                .getTracks(JOB_ID, 1, 0, 0);
+        verify(_mockInProgressJobs, times(1))
+                .getTracks(JOB_ID, 2, 0, 0);
+
+        verify(_mockInProgressJobs)
+                .setTracks(JOB_ID, 1, 0, 0, ImmutableSortedSet.of(createTrack(5, "transformed")));
+        verify(_mockInProgressJobs)
+                .setTracks(JOB_ID, 2, 0, 0, ImmutableSortedSet.of());
+    }
+
+
+    @Test
+    public void doesNotLoadTracksWhenNoTransformerApplies() {
+        TrackTransformer videoOnly = (job, media, taskIndex, actionIndex, action) ->
+                media.getType() == MediaType.VIDEO
+                        ? Optional.of(UnaryOperator.identity())
+                        : Optional.empty();
+
+        TrackPostProcessor.processTracks(_mockInProgressJobs, new TrackMergingContext(JOB_ID, 0), null,
+                                         List.of(videoOnly));
+
+        verify(_mockInProgressJobs)
+                .getTracks(JOB_ID, 1, 0, 0);
+        verify(_mockInProgressJobs, never())
+                .getTracks(JOB_ID, 2, 0, 0);
+        // The identity transform does not change the tracks, so they are not stored.
+        verify(_mockInProgressJobs, never())
+                .setTracks(anyLong(), anyLong(), anyInt(), anyInt(), any());
+    }
+
+
+    @Test
+    public void skipsFailedMedia() {
+        when(_mockImage.isFailed())
+                .thenReturn(true);
+        TrackTransformer transformer = (job, media, taskIndex, actionIndex, action) ->
+                Optional.of(tracks -> ImmutableSortedSet.of());
+
+        TrackPostProcessor.processTracks(_mockInProgressJobs, new TrackMergingContext(JOB_ID, 0), null,
+                                         List.of(transformer));
+
+        verify(_mockInProgressJobs)
+                .setTracks(JOB_ID, 1, 0, 0, ImmutableSortedSet.of());
+        verify(_mockInProgressJobs, never())
+                .getTracks(JOB_ID, 2, 0, 0);
+    }
+
+
+    @Test
+    public void onlyProcessesTaskMediaWhenProvided() {
+        TrackTransformer transformer = (job, media, taskIndex, actionIndex, action) ->
+                Optional.of(tracks -> ImmutableSortedSet.of());
+
+        TrackPostProcessor.processTracks(_mockInProgressJobs, new TrackMergingContext(JOB_ID, 0), 2L,
+                                         List.of(transformer));
+
+        verify(_mockInProgressJobs, never())
+                .getTracks(JOB_ID, 1, 0, 0);
+        verify(_mockInProgressJobs)
+                .setTracks(JOB_ID, 2, 0, 0, ImmutableSortedSet.of());
+    }
+
+
+    @Test
+    public void propagatesTransformerExceptions() {
+        var exception = new IllegalStateException("intentional");
+        TrackTransformer transformer = (job, media, taskIndex, actionIndex, action) ->
+                Optional.of(tracks -> { throw exception; });
+
+        try {
+            TrackPostProcessor.processTracks(_mockInProgressJobs, new TrackMergingContext(JOB_ID, 0), null,
+                                             List.of(transformer));
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+        verify(_mockInProgressJobs, never())
+                .setTracks(anyLong(), anyLong(), anyInt(), anyInt(), any());
+    }
+
+
+    private static Media createMedia(long id, MediaType type) {
+        var media = mock(Media.class);
+        when(media.getId())
+                .thenReturn(id);
+        when(media.getType())
+                .thenReturn(type);
+        return media;
+    }
+
+
+    private static Track createTrack(int startFrame, String propertyValue) {
+        return new Track(JOB_ID, 1, 0, 0, startFrame, startFrame + 1, 0, 0, "TEST", 1,
+                         List.of(), Map.of("PROP", propertyValue));
+    }
+}
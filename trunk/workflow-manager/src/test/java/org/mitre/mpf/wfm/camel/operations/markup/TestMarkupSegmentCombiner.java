@@ -0,0 +1,202 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.camel.operations.markup;
+
+import org.apache.camel.ProducerTemplate;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mitre.mpf.wfm.buffers.Markup;
+import org.mitre.mpf.wfm.enums.MpfEndpoints;
+import org.mitre.mpf.wfm.enums.MpfHeaders;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TestMarkupSegmentCombiner {
+
+    private static final long JOB_ID = 123;
+
+    private static final Map<String, Object> HEADERS = Map.of(MpfHeaders.JOB_ID, JOB_ID);
+
+    @Rule
+    public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+    private final ProducerTemplate _mockProducerTemplate = mock(ProducerTemplate.class);
+
+    private final List<List<Path>> _concatenatedSegments = new CopyOnWriteArrayList<>();
+
+    private final MarkupSegmentCombiner _combiner = new MarkupSegmentCombiner(_mockProducerTemplate) {
+        @Override
+        protected void concatenate(List<Path> segmentPaths, Path destinationPath) throws IOException {
+            _concatenatedSegments.add(segmentPaths);
+            Files.createFile(destinationPath);
+        }
+    };
+
+
+    @BeforeClass
+    public static void initClass() {
+        ThreadUtil.start();
+    }
+
+
+    @Test
+    public void combinesOutOfOrderSegmentsInOrder() throws IOException {
+        Path combinedPath = _tempFolder.getRoot().toPath().resolve("combined.avi");
+        var segments = List.of(
+                createSegmentResponse(0, 3, combinedPath, false),
+                createSegmentResponse(1, 3, combinedPath, false),
+                createSegmentResponse(2, 3, combinedPath, false));
+
+        assertFalse(_combiner.addSegment(JOB_ID, segments.get(2), HEADERS));
+        assertFalse(_combiner.addSegment(JOB_ID, segments.get(0), HEADERS));
+        assertNothingCombined();
+
+        assertTrue(_combiner.addSegment(JOB_ID, segments.get(1), HEADERS));
+        Markup.MarkupResponse combinedResponse = getCombinedResponse();
+
+        assertFalse(combinedResponse.getHasError());
+        assertFalse(combinedResponse.hasSegment());
+        assertEquals(combinedPath.toUri().toString(), combinedResponse.getOutputFileUri());
+        assertEquals(30, combinedResponse.getTimeProcessing());
+
+        assertEquals(1, _concatenatedSegments.size());
+        assertEquals(List.of(getOutputPath(segments.get(0)), getOutputPath(segments.get(1)),
+                             getOutputPath(segments.get(2))),
+                     _concatenatedSegments.get(0));
+        for (var segment : segments) {
+            assertFalse(Files.exists(getOutputPath(segment)));
+        }
+    }
+
+
+    @Test
+    public void reportsFailedSegment() throws IOException {
+        Path combinedPath = _tempFolder.getRoot().toPath().resolve("combined.avi");
+        var goodSegment = createSegmentResponse(0, 2, combinedPath, false);
+        var failedSegment = createSegmentResponse(1, 2, combinedPath, true);
+
+        assertFalse(_combiner.addSegment(JOB_ID, failedSegment, HEADERS));
+        assertTrue(_combiner.addSegment(JOB_ID, goodSegment, HEADERS));
+        Markup.MarkupResponse combinedResponse = getCombinedResponse();
+
+        assertTrue(combinedResponse.getHasError());
+        assertEquals("segment 1 failed", combinedResponse.getErrorMessage());
+        assertFalse(combinedResponse.hasOutputFileUri());
+        assertTrue(_concatenatedSegments.isEmpty());
+        assertFalse(Files.exists(getOutputPath(goodSegment)));
+    }
+
+
+    @Test
+    public void jobCompletedDiscardsIncompleteVideos() throws IOException {
+        Path combinedPath = _tempFolder.getRoot().toPath().resolve("combined.avi");
+        var firstSegment = createSegmentResponse(0, 2, combinedPath, false);
+        var secondSegment = createSegmentResponse(1, 2, combinedPath, false);
+
+        long otherJobId = JOB_ID + 1;
+        Path otherCombinedPath = _tempFolder.getRoot().toPath().resolve("other-combined.avi");
+        var otherJobSegment = createSegmentResponse(0, 2, otherCombinedPath, false);
+
+        assertFalse(_combiner.addSegment(JOB_ID, firstSegment, HEADERS));
+        assertFalse(_combiner.addSegment(otherJobId, otherJobSegment, HEADERS));
+
+        _combiner.jobCompleted(JOB_ID);
+        assertFalse(Files.exists(getOutputPath(firstSegment)));
+        assertTrue(Files.exists(getOutputPath(otherJobSegment)));
+
+        // The first segment was discarded, so a late response for the second segment does not complete the video.
+        assertFalse(_combiner.addSegment(JOB_ID, secondSegment, HEADERS));
+        _combiner.jobCompleted(JOB_ID);
+        assertFalse(Files.exists(getOutputPath(secondSegment)));
+
+        assertTrue(_combiner.addSegment(
+                otherJobId, createSegmentResponse(1, 2, otherCombinedPath, false), HEADERS));
+        assertEquals(otherCombinedPath.toUri().toString(), getCombinedResponse().getOutputFileUri());
+    }
+
+
+    private void assertNothingCombined() {
+        verifyZeroInteractions(_mockProducerTemplate);
+        assertTrue(_concatenatedSegments.isEmpty());
+    }
+
+
+    private Markup.MarkupResponse getCombinedResponse() throws IOException {
+        var bodyCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(_mockProducerTemplate, timeout(5000))
+                .sendBodyAndHeaders(eq(MpfEndpoints.COMPLETED_MARKUP), bodyCaptor.capture(), eq(HEADERS));
+        return Markup.MarkupResponse.parseFrom((byte[]) bodyCaptor.getValue());
+    }
+
+
+    private Markup.MarkupResponse createSegmentResponse(int index, int count, Path combinedPath, boolean hasError)
+            throws IOException {
+        var builder = Markup.MarkupResponse.newBuilder()
+                .setMediaIndex(0)
+                .setMediaId(5)
+                .setRequestId(index)
+                .setHasError(hasError)
+                .setTimeProcessing(10)
+                .setTaskIndex(1)
+                .setActionIndex(0)
+                .setSegment(Markup.MarkupSegment.newBuilder()
+                        .setIndex(index)
+                        .setCount(count)
+                        .setBeginFrame(index * 10)
+                        .setEndFrame(index * 10 + 9)
+                        .setCombinedDestinationUri(combinedPath.toUri().toString()));
+        if (hasError) {
+            builder.setErrorMessage("segment " + index + " failed");
+        }
+        else {
+            Path segmentPath = _tempFolder.newFile(
+                    combinedPath.getFileName() + "-segment-" + index + ".avi").toPath();
+            builder.setOutputFileUri(segmentPath.toUri().toString());
+        }
+        return builder.build();
+    }
+
+
+    private static Path getOutputPath(Markup.MarkupResponse response) {
+        return Path.of(URI.create(response.getOutputFileUri()));
+    }
+}
@@ -31,11 +31,14 @@ import org.junit.Assert;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.mitre.mpf.wfm.buffers.Markup;
 import org.mitre.mpf.wfm.data.entities.transients.Detection;
 import org.mitre.mpf.wfm.data.entities.transients.Track;
 
+import java.awt.*;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class TestMarkupSplitter {
@@ -266,4 +269,65 @@ public class TestMarkupSplitter {
             Assert.assertEquals("abc", MarkupSplitter.getLabel(detection, TEXT_PROP_NAME, NUMERIC_PROP_NAME).get());
         }
     }
+
+
+    @Test
+    public void onlyKeyframesAreSent() {
+        var detection1 = new Detection(10, 10, 100, 100, 0.5f, 5, 500, Map.of());
+        var detection2 = new Detection(20, 20, 100, 100, 0.9f, 35, 3500, Map.of());
+        var detection3 = new Detection(30, 30, 100, 100, 0.5f, 65, 6500, Map.of("FILLED_GAP", "true"));
+        var track = new Track(777, 888, 1, 0, 5, 65, 500, 6500, "FACE", 0.9f,
+                              List.of(detection3, detection1, detection2), Map.of());
+
+        Markup.BoundingBoxTrack boundingBoxTrack = MarkupSplitter.createBoundingBoxTrack(
+                track, Color.RED, false, TEXT_PROP_NAME, NUMERIC_PROP_NAME);
+
+        Assert.assertFalse(boundingBoxTrack.hasSpanLastFrame());
+        Assert.assertEquals(3, boundingBoxTrack.getKeyframesCount());
+
+        Assert.assertEquals(5, boundingBoxTrack.getKeyframes(0).getFrameNumber());
+        Assert.assertEquals(35, boundingBoxTrack.getKeyframes(1).getFrameNumber());
+        Assert.assertEquals(65, boundingBoxTrack.getKeyframes(2).getFrameNumber());
+
+        Assert.assertEquals(20, boundingBoxTrack.getKeyframes(1).getBoundingBox().getX());
+        Assert.assertTrue(boundingBoxTrack.getKeyframes(1).getBoundingBox().getExemplar());
+        Assert.assertEquals(Markup.BoundingBoxSource.TRACKING_FILLED_GAP,
+                            boundingBoxTrack.getKeyframes(2).getBoundingBox().getSource());
+        Assert.assertEquals(Color.RED.getRed(), boundingBoxTrack.getKeyframes(0).getBoundingBox().getRed());
+    }
+
+    @Test
+    public void speechTracksAreSentAsSpans() {
+        var detection1 = new Detection(0, 0, 0, 0, 0.5f, 5, 500, Map.of());
+        var detection2 = new Detection(0, 0, 0, 0, 0.9f, 35, 3500, Map.of());
+        var track = new Track(777, 888, 1, 0, 3, 40, 300, 4000, "SPEECH", 0.9f,
+                              List.of(detection1, detection2), Map.of());
+
+        Markup.BoundingBoxTrack boundingBoxTrack = MarkupSplitter.createBoundingBoxTrack(
+                track, Color.RED, false, TEXT_PROP_NAME, NUMERIC_PROP_NAME);
+
+        Assert.assertEquals(1, boundingBoxTrack.getKeyframesCount());
+        Assert.assertEquals(3, boundingBoxTrack.getKeyframes(0).getFrameNumber());
+        Assert.assertEquals(40, boundingBoxTrack.getSpanLastFrame());
+    }
+
+
+    @Test
+    public void segmentsHaveFixedLengthWhenNoKeyframesAreNearby() {
+        Assert.assertEquals(List.of(0, 300, 600, 900),
+                            MarkupSplitter.getSegmentBeginFrames(1000, 300, new TreeSet<>()));
+        Assert.assertEquals(List.of(0, 300, 600, 900),
+                            MarkupSplitter.getSegmentBeginFrames(1000, 300, new TreeSet<>(List.of(0, 2000))));
+    }
+
+    @Test
+    public void segmentsAreAlignedOnNearestKeyframes() {
+        var keyframes = new TreeSet<>(List.of(0, 250, 500, 750, 1000));
+        Assert.assertEquals(List.of(0, 250, 500, 750),
+                            MarkupSplitter.getSegmentBeginFrames(1000, 300, keyframes));
+
+        keyframes = new TreeSet<>(List.of(0, 280, 310, 650));
+        Assert.assertEquals(List.of(0, 310, 650, 900),
+                            MarkupSplitter.getSegmentBeginFrames(1000, 300, keyframes));
+    }
 }
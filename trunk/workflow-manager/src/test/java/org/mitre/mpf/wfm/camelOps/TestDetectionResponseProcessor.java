@@ -34,6 +34,8 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mitre.mpf.rest.api.pipelines.*;
 import org.mitre.mpf.wfm.buffers.DetectionProtobuf;
+import org.mitre.mpf.wfm.buffers.Metrics;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionRequestDispatcher;
 import org.mitre.mpf.wfm.camel.operations.detection.DetectionResponseProcessor;
 import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingContext;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
@@ -43,16 +45,20 @@ import org.mitre.mpf.wfm.enums.BatchJobStatusType;
 import org.mitre.mpf.wfm.enums.MpfConstants;
 import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.enums.UriScheme;
+import org.mitre.mpf.wfm.segmenting.AdaptiveSegmentingPlanner;
 import org.mitre.mpf.wfm.service.pipeline.PipelineService;
 import org.mitre.mpf.wfm.util.*;
 import org.mockito.*;
 
 import java.net.URI;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.*;
 
 
@@ -69,6 +75,12 @@ public class TestDetectionResponseProcessor {
     @Mock
     private AggregateJobPropertiesUtil mockAggregateJobPropertiesUtil;
 
+    @Mock
+    private AdaptiveSegmentingPlanner mockAdaptiveSegmentingPlanner;
+
+    @Mock
+    private DetectionRequestDispatcher mockDetectionRequestDispatcher;
+
     @InjectMocks
     private DetectionResponseProcessor detectionResponseProcessor;
 
@@ -148,8 +160,9 @@ public class TestDetectionResponseProcessor {
         when(inProgressJobs.getJob(JOB_ID))
                 .thenReturn(job);
 
-        when(mockAggregateJobPropertiesUtil.getValue(MpfConstants.CONFIDENCE_THRESHOLD_PROPERTY, job, media, action))
-                .thenReturn(String.valueOf(0.1));
+        when(mockAggregateJobPropertiesUtil.getPropertyView(job, media, action))
+                .thenReturn(new PropertyView(
+                        Map.of(MpfConstants.CONFIDENCE_THRESHOLD_PROPERTY, String.valueOf(0.1))::get));
 
     }
 
@@ -186,6 +199,7 @@ public class TestDetectionResponseProcessor {
                 .setActionName(DETECTION_RESPONSE_ACTION_NAME)
                 .setActionIndex(1)
                 .setRequestId(123456)
+                .setMetrics(Metrics.MetricsMessage.newBuilder().setProcessingTime(2100))
                 .build();
 
         Exchange exchange = new DefaultExchange(new DefaultCamelContext());
@@ -200,6 +214,9 @@ public class TestDetectionResponseProcessor {
         Assert.assertEquals(JOB_ID, processorResponse.getJobId());
         Assert.assertEquals(1, processorResponse.getTaskIndex());
 
+        verify(mockAdaptiveSegmentingPlanner)
+                .recordProcessingTime(DETECTION_RESPONSE_ALG_NAME, STOP_FRAME - START_FRAME + 1, 2100);
+
         verify(inProgressJobs, never())
                 .setJobStatus(eq(JOB_ID), any(BatchJobStatusType.class)); // job is already IN_PROGRESS at this point
         verify(inProgressJobs, never())
@@ -209,7 +226,121 @@ public class TestDetectionResponseProcessor {
         verify(inProgressJobs, never())
                 .addJobWarning(eq(JOB_ID), any(), any());
         verify(inProgressJobs, times(1))
-                .addTrack(track(JOB_ID, 5));
+                .addTracks(tracks(JOB_ID, 5));
+        verify(inProgressJobs, never())
+                .addTrack(any());
+    }
+
+    @Test
+    public void testVideoResponsePerFeedForwardTrack() {
+        DetectionProtobuf.DetectionResponse detectionResponse = DetectionProtobuf.DetectionResponse.newBuilder()
+                .setMediaId(MEDIA_ID)
+                .addVideoResponses(videoResponse(START_FRAME, 20, 12))
+                .addVideoResponses(videoResponse(15, STOP_FRAME, 25))
+                .setTaskName(DETECTION_RESPONSE_TASK_NAME)
+                .setTaskIndex(1)
+                .setActionName(DETECTION_RESPONSE_ACTION_NAME)
+                .setActionIndex(1)
+                .setRequestId(123456)
+                .setMetrics(Metrics.MetricsMessage.newBuilder().setProcessingTime(2100))
+                .build();
+
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().getHeaders().put(MpfHeaders.JOB_ID, JOB_ID);
+        exchange.getIn().setBody(detectionResponse);
+
+        detectionResponseProcessor.wfmProcess(exchange);
+
+        verify(mockAdaptiveSegmentingPlanner)
+                .recordProcessingTime(DETECTION_RESPONSE_ALG_NAME, (20 - START_FRAME + 1) + (STOP_FRAME - 15 + 1),
+                                      2100);
+        verify(inProgressJobs, never())
+                .addDetectionProcessingError(any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Track>> tracksCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(inProgressJobs, times(1))
+                .addTracks(tracksCaptor.capture());
+        Assert.assertEquals(
+                List.of(12, 25),
+                tracksCaptor.getValue().stream()
+                        .map(Track::getStartOffsetFrameInclusive)
+                        .collect(toList()));
+    }
+
+    @Test
+    public void usesTimeSinceRequestWasSentWhenComponentDoesNotReportProcessingTime() {
+        DetectionProtobuf.DetectionResponse detectionResponse = DetectionProtobuf.DetectionResponse.newBuilder()
+                .setMediaId(MEDIA_ID)
+                .addVideoResponses(videoResponse(START_FRAME, STOP_FRAME, 12))
+                .setTaskName(DETECTION_RESPONSE_TASK_NAME)
+                .setTaskIndex(1)
+                .setActionName(DETECTION_RESPONSE_ACTION_NAME)
+                .setActionIndex(1)
+                .setRequestId(123456)
+                .build();
+
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().getHeaders().put(MpfHeaders.JOB_ID, JOB_ID);
+        exchange.getIn().getHeaders().put(MpfHeaders.REQUEST_SENT_TIME, System.currentTimeMillis() - 5000);
+        exchange.getIn().setBody(detectionResponse);
+
+        detectionResponseProcessor.wfmProcess(exchange);
+
+        verify(mockAdaptiveSegmentingPlanner)
+                .recordProcessingTime(eq(DETECTION_RESPONSE_ALG_NAME), eq(STOP_FRAME - START_FRAME + 1),
+                                      longThat(t -> t >= 5000 && t < 60_000));
+    }
+
+    @Test
+    public void testVideoResponsePerFeedForwardTrackError() {
+        DetectionProtobuf.DetectionError error = DetectionProtobuf.DetectionError.DETECTION_FAILED;
+        DetectionProtobuf.DetectionResponse detectionResponse = DetectionProtobuf.DetectionResponse.newBuilder()
+                .setError(error)
+                .setMediaId(MEDIA_ID)
+                .addVideoResponses(videoResponse(START_FRAME, 20, 12))
+                .addVideoResponses(DetectionProtobuf.DetectionResponse.VideoResponse.newBuilder()
+                        .setDetectionType("TEST")
+                        .setStartFrame(15)
+                        .setStopFrame(STOP_FRAME))
+                .setTaskName(DETECTION_RESPONSE_TASK_NAME)
+                .setTaskIndex(1)
+                .setActionName(DETECTION_RESPONSE_ACTION_NAME)
+                .setActionIndex(1)
+                .setRequestId(123456)
+                .build();
+
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().getHeaders().put(MpfHeaders.JOB_ID, JOB_ID);
+        exchange.getIn().setBody(detectionResponse);
+
+        detectionResponseProcessor.wfmProcess(exchange);
+
+        verify(inProgressJobs, times(1))
+                .addDetectionProcessingError(detectionProcessingError(JOB_ID, error, START_FRAME, STOP_FRAME,
+                        START_TIME, STOP_TIME));
+        verify(inProgressJobs, times(1))
+                .addTracks(tracks(JOB_ID, 12));
+    }
+
+    private static DetectionProtobuf.DetectionResponse.VideoResponse.Builder videoResponse(
+            int startFrame, int stopFrame, int detectionFrame) {
+        return DetectionProtobuf.DetectionResponse.VideoResponse.newBuilder()
+                .setDetectionType("TEST")
+                .setStartFrame(startFrame)
+                .setStopFrame(stopFrame)
+                .addVideoTracks(DetectionProtobuf.VideoTrack.newBuilder()
+                        .setStartFrame(detectionFrame)
+                        .setStopFrame(detectionFrame)
+                        .setConfidence(0.5f)
+                        .addFrameLocations(DetectionProtobuf.VideoTrack.FrameLocationMap.newBuilder()
+                                .setFrame(detectionFrame)
+                                .setImageLocation(DetectionProtobuf.ImageLocation.newBuilder()
+                                        .setConfidence(0.5f)
+                                        .setXLeftUpper(0)
+                                        .setYLeftUpper(10)
+                                        .setHeight(10)
+                                        .setWidth(10))));
     }
 
     @Test
@@ -386,14 +517,18 @@ public class TestDetectionResponseProcessor {
         });
     }
 
-    private static Track track(long jobId, int startFrame) {
+    private static Collection<Track> tracks(long jobId, int startFrame) {
         return ArgumentMatchers.argThat(new ArgumentMatcher<>() {
             public String toString() {
-                return "Track { jobId = " + jobId + ", startFrame = " + startFrame + " }";
+                return "[Track { jobId = " + jobId + ", startFrame = " + startFrame + " }]";
             }
 
-            public boolean matches(Track obj) {
-                return jobId == obj.getJobId() && startFrame == obj.getStartOffsetFrameInclusive();
+            public boolean matches(Collection<Track> obj) {
+                if (obj.size() != 1) {
+                    return false;
+                }
+                Track track = obj.iterator().next();
+                return jobId == track.getJobId() && startFrame == track.getStartOffsetFrameInclusive();
             }
         });
     }
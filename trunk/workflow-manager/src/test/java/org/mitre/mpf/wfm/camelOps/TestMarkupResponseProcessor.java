@@ -32,6 +32,7 @@ import org.junit.Test;
 import org.mitre.mpf.test.TestUtil;
 import org.mitre.mpf.wfm.buffers.Markup;
 import org.mitre.mpf.wfm.camel.operations.markup.MarkupResponseProcessor;
+import org.mitre.mpf.wfm.camel.operations.markup.MarkupSegmentCombiner;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.access.MarkupResultDao;
 import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
@@ -70,6 +71,9 @@ public class TestMarkupResponseProcessor {
     @Mock
     private StorageService _mockStorageService;
 
+    @Mock
+    private MarkupSegmentCombiner _mockMarkupSegmentCombiner;
+
     private static final long TEST_JOB_ID = 1236;
 
     @Before
@@ -126,6 +130,49 @@ public class TestMarkupResponseProcessor {
     }
 
 
+    @Test
+    public void onlyLastSegmentStopsRoute() {
+        when(_mockInProgressJobs.containsJob(TEST_JOB_ID))
+                .thenReturn(true);
+        when(_mockInProgressJobs.getJob(TEST_JOB_ID))
+                .thenReturn(mock(BatchJob.class));
+
+        Markup.MarkupResponse segmentResponse = Markup.MarkupResponse.newBuilder()
+                .setMediaId(1532)
+                .setMediaIndex(2)
+                .setTaskIndex(4)
+                .setActionIndex(6)
+                .setRequestId(1532)
+                .setHasError(false)
+                .setOutputFileUri("segment.avi")
+                .setSegment(Markup.MarkupSegment.newBuilder()
+                        .setIndex(0)
+                        .setCount(2)
+                        .setBeginFrame(0)
+                        .setEndFrame(9)
+                        .setCombinedDestinationUri("file:///combined.avi"))
+                .build();
+
+        when(_mockMarkupSegmentCombiner.addSegment(eq(TEST_JOB_ID), eq(segmentResponse), any()))
+                .thenReturn(false, true);
+
+        Exchange firstExchange = TestUtil.createTestExchange();
+        firstExchange.getIn().getHeaders().put(MpfHeaders.JOB_ID, TEST_JOB_ID);
+        firstExchange.getIn().setBody(segmentResponse);
+        _markupResponseProcessor.process(firstExchange);
+        assertNull(firstExchange.getProperty(Exchange.ROUTE_STOP));
+
+        Exchange lastExchange = TestUtil.createTestExchange();
+        lastExchange.getIn().getHeaders().put(MpfHeaders.JOB_ID, TEST_JOB_ID);
+        lastExchange.getIn().setBody(segmentResponse);
+        _markupResponseProcessor.process(lastExchange);
+        assertEquals(Boolean.TRUE, lastExchange.getProperty(Exchange.ROUTE_STOP));
+        assertNull(lastExchange.getOut().getBody());
+
+        verifyZeroInteractions(_mockStorageService, _mockMarkupResultDao);
+    }
+
+
     private MarkupResult runMarkupProcessor(Markup.MarkupResponse.Builder markupResponseBuilder) {
         long mediaId = 1532;
         int mediaIndex = 2;
@@ -33,11 +33,13 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.mitre.mpf.test.TestUtil;
+import org.mitre.mpf.wfm.camel.operations.mediainspection.MediaInspectionCache;
 import org.mitre.mpf.wfm.camel.operations.mediainspection.MediaInspectionProcessor;
 import org.mitre.mpf.wfm.camel.operations.mediainspection.MediaMetadataValidator;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.entities.persistent.MediaImpl;
 import org.mitre.mpf.wfm.enums.*;
+import org.mitre.mpf.wfm.util.FrameTimeInfo;
 import org.mitre.mpf.wfm.util.IoUtils;
 import org.mitre.mpf.wfm.util.JniLoader;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
@@ -52,6 +54,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
@@ -71,9 +74,12 @@ public class TestMediaInspectionProcessor {
     private final MediaMetadataValidator _mockMediaMetadataValidator
             = mock(MediaMetadataValidator.class);
 
+    private final MediaInspectionCache _mockMediaInspectionCache
+            = mock(MediaInspectionCache.class);
+
     private final MediaInspectionProcessor _mediaInspectionProcessor
             = new MediaInspectionProcessor(_mockPropertiesUtil, _mockInProgressJobs, new IoUtils(),
-                                           _mockMediaMetadataValidator);
+                                           _mockMediaMetadataValidator, _mockMediaInspectionCache);
 
     @Rule
     public TemporaryFolder _tempFolder = new TemporaryFolder();
@@ -145,6 +151,48 @@ public class TestMediaInspectionProcessor {
         LOG.info("Video media inspection test passed.");
     }
 
+
+    @Test(timeout = 5 * MINUTES)
+    public void videoInspectionResultsAreCached() {
+        long jobId = next(), mediaId = next();
+        inspectMedia(jobId, mediaId, "/samples/video_01.mp4", Collections.emptyMap());
+
+        String mediaHash = "5eacf0a11d51413300ee0f4719b7ac7b52b47310a49320703c1d2639ebbc9fea"; // `sha256sum video_01.mp4`
+
+        var entryCaptor = ArgumentCaptor.forClass(MediaInspectionCache.Entry.class);
+        verify(_mockMediaInspectionCache)
+                .put(eq(mediaHash), entryCaptor.capture());
+
+        var entry = entryCaptor.getValue();
+        assertEquals(MediaType.VIDEO, entry.getMediaType());
+        assertEquals("video/mp4", entry.getMimeType());
+        assertEquals(90, entry.getLength());
+        assertEquals("90", entry.getMetadata().get("FRAME_COUNT"));
+    }
+
+
+    @Test
+    public void cachedInspectionResultsAreUsed() {
+        String mediaHash = "5eacf0a11d51413300ee0f4719b7ac7b52b47310a49320703c1d2639ebbc9fea"; // `sha256sum video_01.mp4`
+        var frameTimeInfo = FrameTimeInfo.forConstantFrameRate(30, 0, false);
+        var metadata = Map.of("MIME_TYPE", "video/mp4", "FRAME_COUNT", "90");
+        when(_mockMediaInspectionCache.get(mediaHash))
+                .thenReturn(Optional.of(new MediaInspectionCache.Entry(
+                        MediaType.VIDEO, "video/mp4", 90, metadata, frameTimeInfo)));
+
+        long jobId = next(), mediaId = next();
+        inspectMedia(jobId, mediaId, "/samples/video_01.mp4", Collections.emptyMap());
+
+        verify(_mockInProgressJobs)
+                .addMediaInspectionInfo(jobId, mediaId, mediaHash, MediaType.VIDEO, "video/mp4", 90,
+                                        metadata);
+        verify(_mockInProgressJobs)
+                .addFrameTimeInfo(jobId, mediaId, frameTimeInfo);
+        verify(_mockMediaInspectionCache, never())
+                .put(any(), any());
+        verifyNoJobOrMediaError();
+    }
+
     @Test(timeout = 5 * MINUTES)
     public void testAudioInspection() {
         LOG.info("Starting audio media inspection test.");
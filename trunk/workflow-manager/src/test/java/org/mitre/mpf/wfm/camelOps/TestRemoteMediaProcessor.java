@@ -44,20 +44,29 @@ import org.mitre.mpf.wfm.enums.MpfHeaders;
 import org.mitre.mpf.wfm.enums.UriScheme;
 import org.mitre.mpf.wfm.util.AggregateJobPropertiesUtil;
 import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.service.RemoteMediaCache;
 import org.mitre.mpf.wfm.service.WorkflowPropertyService;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import spark.Spark;
 
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mitre.mpf.test.TestUtil.nonBlank;
 import static org.mockito.Matchers.eq;
@@ -68,6 +77,16 @@ public class TestRemoteMediaProcessor {
     private static final int MINUTES = 1000*60; // 1000 milliseconds/second & 60 seconds/minute.
     private static final String EXT_IMG = "https://raw.githubusercontent.com/openmpf/openmpf/master/trunk/mpf-system-tests/src/test/resources/samples/face/meds-aa-S001-01.jpg";
 
+    private static final String LOCAL_MEDIA_URI = "http://localhost:5000/media.mp4";
+
+    private static final String MEDIA_CONTENT = "media content";
+
+    private static final Map<String, String> HEAD_RESPONSE_HEADERS = new ConcurrentHashMap<>();
+
+    private static final AtomicReference<String> CURRENT_ETAG = new AtomicReference<>();
+
+    private static final Map<String, String> GET_REQUEST_HEADERS = new ConcurrentHashMap<>();
+
     private RemoteMediaProcessor _remoteMediaProcessor;
 
     @InjectMocks
@@ -86,6 +105,12 @@ public class TestRemoteMediaProcessor {
     @BeforeClass
     public static void initClass() {
         setHttpProxies();
+        startSpark();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        Spark.stop();
     }
 
     private static void setHttpProxies() {
@@ -120,9 +145,14 @@ public class TestRemoteMediaProcessor {
         when(_mockPropertiesUtil.getRemoteMediaDownloadSleep())
                 .thenReturn(200);
 
+        HEAD_RESPONSE_HEADERS.clear();
+        CURRENT_ETAG.set(null);
+        GET_REQUEST_HEADERS.clear();
+
         _remoteMediaProcessor = new RemoteMediaProcessor(
                 _mockInProgressJobs, null, _mockPropertiesUtil,
-                new AggregateJobPropertiesUtil(_mockPropertiesUtil, mock(WorkflowPropertyService.class)));
+                new AggregateJobPropertiesUtil(_mockPropertiesUtil, mock(WorkflowPropertyService.class)),
+                new RemoteMediaCache(_mockPropertiesUtil));
     }
 
 
@@ -215,6 +245,95 @@ public class TestRemoteMediaProcessor {
     }
 
 
+    @Test
+    public void downloadsVersionFromHeadRequest() throws Exception {
+        enableCache();
+        HEAD_RESPONSE_HEADERS.put("ETag", "\"v1\"");
+        CURRENT_ETAG.set("\"v1\"");
+
+        MediaImpl media = retrieveLocalMedia();
+
+        assertFalse(media.isFailed());
+        assertEquals(MEDIA_CONTENT, Files.readString(media.getLocalPath()));
+        assertEquals("\"v1\"", GET_REQUEST_HEADERS.get("If-Match"));
+    }
+
+
+    @Test
+    public void doesNotDownloadFileThatChangedAfterHeadRequest() throws Exception {
+        enableCache();
+        HEAD_RESPONSE_HEADERS.put("ETag", "\"v1\"");
+        CURRENT_ETAG.set("\"v2\"");
+
+        MediaImpl media = retrieveLocalMedia();
+
+        assertTrue(media.isFailed());
+        assertEquals("\"v1\"", GET_REQUEST_HEADERS.get("If-Match"));
+        verify(_mockInProgressJobs)
+                .setJobStatus(anyLong(), eq(BatchJobStatusType.IN_PROGRESS_ERRORS));
+        // The file is not downloaded again, because a retry would fail the same way.
+        verify(_mockPropertiesUtil, never())
+                .getRemoteMediaDownloadSleep();
+    }
+
+
+    @Test
+    public void usesLastModifiedWhenThereIsNoETag() throws Exception {
+        enableCache();
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        HEAD_RESPONSE_HEADERS.put("Last-Modified", lastModified);
+
+        MediaImpl media = retrieveLocalMedia();
+
+        assertFalse(media.isFailed());
+        assertEquals(MEDIA_CONTENT, Files.readString(media.getLocalPath()));
+        assertEquals(lastModified, GET_REQUEST_HEADERS.get("If-Unmodified-Since"));
+        assertNull(GET_REQUEST_HEADERS.get("If-Match"));
+    }
+
+
+    private void enableCache() throws Exception {
+        when(_mockPropertiesUtil.isRemoteMediaCacheEnabled())
+                .thenReturn(true);
+        when(_mockPropertiesUtil.getRemoteMediaCacheDirectory())
+                .thenReturn(_tempFolder.newFolder());
+        when(_mockPropertiesUtil.getRemoteMediaCacheMaxSizeMb())
+                .thenReturn(100L);
+    }
+
+
+    private MediaImpl retrieveLocalMedia() throws Exception {
+        Path localPath = _tempFolder.getRoot().toPath().resolve(UUID.randomUUID().toString());
+        MediaImpl media = new MediaImpl(
+                567, LOCAL_MEDIA_URI, UriScheme.HTTP, localPath, Collections.emptyMap(),
+                Collections.emptyMap(), null);
+        _remoteMediaProcessor.process(setupExchange(678, media));
+        return media;
+    }
+
+
+    private static void startSpark() {
+        Spark.port(5000);
+        Spark.head("/media.mp4", (req, resp) -> {
+            HEAD_RESPONSE_HEADERS.forEach(resp::header);
+            return "";
+        });
+        Spark.get("/media.mp4", (req, resp) -> {
+            for (String header : List.of("If-Match", "If-Unmodified-Since")) {
+                if (req.headers(header) != null) {
+                    GET_REQUEST_HEADERS.put(header, req.headers(header));
+                }
+            }
+            String ifMatch = req.headers("If-Match");
+            if (ifMatch != null && !ifMatch.equals(CURRENT_ETAG.get())) {
+                Spark.halt(412);
+            }
+            return MEDIA_CONTENT;
+        });
+        Spark.awaitInitialization();
+    }
+
+
     private Exchange setupExchange(long jobId, MediaImpl media) {
         return MediaTestUtil.setupExchange(jobId, media, _mockInProgressJobs);
     }
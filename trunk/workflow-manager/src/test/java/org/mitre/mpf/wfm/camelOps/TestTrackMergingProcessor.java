@@ -38,6 +38,7 @@ import org.junit.runner.notification.RunListener;
 import org.mitre.mpf.rest.api.pipelines.*;
 import org.mitre.mpf.wfm.camel.WfmProcessorInterface;
 import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingContext;
+import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingPlan;
 import org.mitre.mpf.wfm.camel.operations.detection.trackmerging.TrackMergingProcessor;
 import org.mitre.mpf.wfm.data.InProgressBatchJobsService;
 import org.mitre.mpf.wfm.data.entities.persistent.JobPipelineElements;
@@ -335,6 +336,104 @@ public class TestTrackMergingProcessor {
     }
 
 
+    @Test(timeout = 5 * MINUTES)
+    public void canMergeLongChainOfTracks() {
+        int numTracks = 50_000;
+        SortedSet<Track> tracks = new TreeSet<>();
+        for (int i = 0; i < numTracks; i++) {
+            tracks.add(createTrack("FACE", i * 2, i * 2 + 1, 10, 10, Map.of()));
+        }
+        var plan = new TrackMergingPlan(true, 2, 1, 0.6);
+
+        Set<Track> merged = TrackMergingProcessor.combine(tracks, plan);
+
+        assertEquals(1, merged.size());
+        Track mergedTrack = merged.iterator().next();
+        assertEquals(0, mergedTrack.getStartOffsetFrameInclusive());
+        assertEquals(numTracks * 2 - 1, mergedTrack.getEndOffsetFrameInclusive());
+        assertEquals(numTracks * 2, mergedTrack.getDetections().size());
+    }
+
+
+    @Test(timeout = 5 * MINUTES)
+    public void canHandleManyTracksThatDoNotMerge() {
+        int numTracks = 50_000;
+        SortedSet<Track> tracks = new TreeSet<>();
+        for (int i = 0; i < numTracks; i++) {
+            // Adjacent tracks are in different locations, so they do not overlap.
+            tracks.add(createTrack("FACE", i, i, (i % 2) * 1000, 10, Map.of()));
+        }
+        var plan = new TrackMergingPlan(true, 2, 1, 0.6);
+
+        assertEquals(tracks, new TreeSet<>(TrackMergingProcessor.combine(tracks, plan)));
+    }
+
+
+    @Test
+    public void doesNotMergeTracksWithDifferentTypes() {
+        SortedSet<Track> tracks = new TreeSet<>(List.of(
+                createTrack("FACE", 0, 9, 10, 10, Map.of()),
+                createTrack("PERSON", 10, 19, 10, 10, Map.of()),
+                createTrack("FACE", 10, 19, 10, 10, Map.of()),
+                createTrack("PERSON", 20, 29, 10, 10, Map.of())));
+        var plan = new TrackMergingPlan(true, 2, 1, 0.6);
+
+        var merged = new TreeSet<>(TrackMergingProcessor.combine(tracks, plan));
+        assertEquals(2, merged.size());
+        assertEquals(List.of(0, 10), merged.stream()
+                .map(Track::getStartOffsetFrameInclusive)
+                .collect(toList()));
+        assertEquals(List.of(19, 29), merged.stream()
+                .map(Track::getEndOffsetFrameInclusive)
+                .collect(toList()));
+    }
+
+
+    @Test
+    public void mergesFirstCandidateInNaturalOrder() {
+        var track1 = createTrack("FACE", 0, 9, 10, 10, Map.of());
+        // Both track2 and track3 start within the gap after track1. track2 is merged because it starts first.
+        var track2 = createTrack("FACE", 11, 12, 10, 10, Map.of());
+        // After track2 is merged, track3 starts before the end of the merged track, so it can no longer be merged.
+        // If track3 were merged first, the result would be 0-30 and 11-12.
+        var track3 = createTrack("FACE", 12, 30, 10, 10, Map.of());
+        var plan = new TrackMergingPlan(true, 5, 1, 0.6);
+
+        var merged = new TreeSet<>(TrackMergingProcessor.combine(new TreeSet<>(List.of(track1, track2, track3)),
+                                                                 plan));
+        assertEquals(2, merged.size());
+        assertEquals(0, merged.first().getStartOffsetFrameInclusive());
+        assertEquals(12, merged.first().getEndOffsetFrameInclusive());
+        assertEquals(12, merged.last().getStartOffsetFrameInclusive());
+        assertEquals(30, merged.last().getEndOffsetFrameInclusive());
+    }
+
+
+    @Test
+    public void onlyMergesClassTracksWithSameClassification() {
+        SortedSet<Track> tracks = new TreeSet<>(List.of(
+                createTrack("CLASS", 0, 9, 10, 10, Map.of("CLASSIFICATION", "dog")),
+                createTrack("CLASS", 10, 19, 10, 10, Map.of("CLASSIFICATION", "cat")),
+                createTrack("CLASS", 20, 29, 10, 10, Map.of("CLASSIFICATION", "cat"))));
+        var plan = new TrackMergingPlan(true, 2, 1, 0.6);
+
+        var merged = new TreeSet<>(TrackMergingProcessor.combine(tracks, plan));
+        assertEquals(2, merged.size());
+        assertEquals(9, merged.first().getEndOffsetFrameInclusive());
+        assertEquals(10, merged.last().getStartOffsetFrameInclusive());
+        assertEquals(29, merged.last().getEndOffsetFrameInclusive());
+    }
+
+
+    private static Track createTrack(String type, int startFrame, int stopFrame, int x, int y,
+                                     Map<String, String> detectionProperties) {
+        var detections = ImmutableSortedSet.of(
+                new Detection(x, y, 50, 50, 0.5f, startFrame, 0, detectionProperties),
+                new Detection(x, y, 50, 50, 0.5f, stopFrame, 0, detectionProperties));
+        return new Track(TEST_JOB_ID, 1, 0, 0, startFrame, stopFrame, 0, 0, type, 0.5f, detections, Map.of());
+    }
+
+
     private static JobPipelineElements createTestPipeline(Map<String, String> actionPropsMap) {
         Algorithm algorithm = new Algorithm(
                 "detectionAlgo", "description", ActionType.DETECTION,
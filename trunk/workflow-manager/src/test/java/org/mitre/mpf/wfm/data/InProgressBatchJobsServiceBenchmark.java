@@ -0,0 +1,122 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data;
+
+import org.junit.Test;
+import org.mitre.mpf.test.BenchmarkUtil;
+import org.mitre.mpf.wfm.data.entities.persistent.JobPipelineElements;
+import org.mitre.mpf.wfm.data.entities.persistent.SystemPropertiesSnapshot;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.enums.IssueCodes;
+import org.mitre.mpf.wfm.service.RemoteMediaCache;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * Measures how updates to different jobs in {@link InProgressBatchJobsService} scale with the number of threads.
+ * Each Redis call is simulated with a short delay, so with per-job locking the time per run should drop as threads
+ * are added, up to the number of jobs. Not run by the build, see {@link BenchmarkUtil}.
+ */
+public class InProgressBatchJobsServiceBenchmark {
+
+    private static final int NUM_JOBS = 8;
+
+    private static final int UPDATES_PER_JOB = 200;
+
+    private static final long REDIS_CALL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+
+    @Test
+    public void updateDifferentJobsConcurrently() throws Exception {
+        // stubOnly so that the mock does not record every call.
+        var redis = mock(Redis.class, withSettings().stubOnly());
+        doAnswer(inv -> {
+            LockSupport.parkNanos(REDIS_CALL_NANOS);
+            return null;
+        }).when(redis).addTrack(any());
+
+        var inProgressJobs = new InProgressBatchJobsService(mock(PropertiesUtil.class), redis,
+                                                            mock(RemoteMediaCache.class));
+        var pipelineElements = mock(JobPipelineElements.class);
+        when(pipelineElements.getName())
+                .thenReturn("TEST PIPELINE");
+        when(pipelineElements.getTaskCount())
+                .thenReturn(1);
+        for (long jobId = 1; jobId <= NUM_JOBS; jobId++) {
+            inProgressJobs.addJob(jobId, null, mock(SystemPropertiesSnapshot.class), pipelineElements,
+                                  4, false, null, null, List.of(), Map.of(), Map.of());
+        }
+
+        for (int numThreads : new int[] { 1, 2, 4, 8 }) {
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            try {
+                BenchmarkUtil.time(numThreads + " threads updating " + NUM_JOBS + " jobs", 2, 5,
+                                   () -> updateJobs(inProgressJobs, executor, numThreads));
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+
+    private static void updateJobs(InProgressBatchJobsService inProgressJobs, ExecutorService executor,
+                                   int numThreads) throws Exception {
+        var startLatch = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < numThreads; i++) {
+            int threadNum = i;
+            futures.add(executor.submit(() -> {
+                startLatch.await();
+                // Each thread updates its own share of the jobs.
+                for (long jobId = threadNum + 1; jobId <= NUM_JOBS; jobId += numThreads) {
+                    for (int j = 0; j < UPDATES_PER_JOB; j++) {
+                        inProgressJobs.addTrack(
+                                new Track(jobId, 5, 0, 0, 0, 10, 0, 100, "FACE", 0.5f, List.of(), Map.of()));
+                        inProgressJobs.addJobWarning(jobId, IssueCodes.OTHER, "warning");
+                    }
+                }
+                return null;
+            }));
+        }
+        startLatch.countDown();
+        for (var future : futures) {
+            future.get();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mitre.mpf.test.BenchmarkUtil;
+import org.mitre.mpf.wfm.data.entities.transients.Detection;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares storing the tracks from a detection response one RPUSH at a time with storing them using
+ * {@link Redis#addTracks}. Like {@link TestRedis}, this requires a Redis server. Not run by the build, see
+ * {@link BenchmarkUtil}.
+ */
+@ContextConfiguration(locations = "classpath:applicationContext.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+@ActiveProfiles("jenkins")
+public class RedisTrackStorageBenchmark {
+
+    private static final long JOB_ID = 43533;
+
+    private static final long MEDIA_ID = 624;
+
+    private static final int NUM_TRACKS = 500;
+
+    @Autowired
+    private Redis _redis;
+
+
+    @Test
+    public void storeTracksFromOneResponse() throws Exception {
+        List<Track> tracks = createTracks();
+        try {
+            // Clearing the track list is included in both measurements.
+            BenchmarkUtil.time(NUM_TRACKS + " tracks with addTrack", 5, 20, () -> {
+                _redis.setTracks(JOB_ID, MEDIA_ID, 0, 0, List.of());
+                tracks.forEach(_redis::addTrack);
+            });
+            BenchmarkUtil.time(NUM_TRACKS + " tracks with addTracks", 5, 20, () -> {
+                _redis.setTracks(JOB_ID, MEDIA_ID, 0, 0, List.of());
+                _redis.addTracks(tracks);
+            });
+        }
+        finally {
+            _redis.setTracks(JOB_ID, MEDIA_ID, 0, 0, List.of());
+        }
+    }
+
+
+    private static List<Track> createTracks() {
+        var tracks = new ArrayList<Track>(NUM_TRACKS);
+        for (int i = 0; i < NUM_TRACKS; i++) {
+            int startFrame = i * 10;
+            var detections = new ArrayList<Detection>();
+            for (int frame = startFrame; frame < startFrame + 10; frame++) {
+                detections.add(new Detection(10, 20, 30, 40, 0.5f, frame, frame * 33,
+                                             ImmutableSortedMap.of("CLASSIFICATION", "person")));
+            }
+            tracks.add(new Track(JOB_ID, MEDIA_ID, 0, 0, startFrame, startFrame + 9, startFrame * 33,
+                                 (startFrame + 9) * 33, "FACE", 0.5f, detections, Map.of()));
+        }
+        return tracks;
+    }
+}
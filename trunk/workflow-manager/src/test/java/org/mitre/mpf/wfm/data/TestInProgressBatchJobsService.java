@@ -0,0 +1,221 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data;
+
+import org.junit.Test;
+import org.mitre.mpf.wfm.data.entities.persistent.BatchJob;
+import org.mitre.mpf.wfm.data.entities.persistent.JobPipelineElements;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.data.entities.persistent.MediaImpl;
+import org.mitre.mpf.wfm.data.entities.persistent.SystemPropertiesSnapshot;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.enums.IssueCodes;
+import org.mitre.mpf.wfm.enums.UriScheme;
+import org.mitre.mpf.wfm.service.RemoteMediaCache;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TestInProgressBatchJobsService {
+
+    private final Redis _mockRedis = mock(Redis.class);
+
+    private final InProgressBatchJobsService _inProgressJobs
+            = new InProgressBatchJobsService(mock(PropertiesUtil.class), _mockRedis,
+                                             mock(RemoteMediaCache.class));
+
+
+    @Test
+    public void redisIoForOneJobDoesNotBlockOtherJobs() throws Exception {
+        addJob(1);
+        addJob(2);
+
+        var job1RedisCallStarted = new CountDownLatch(1);
+        var releaseJob1RedisCall = new CountDownLatch(1);
+        doAnswer(inv -> {
+            job1RedisCallStarted.countDown();
+            assertTrue(releaseJob1RedisCall.await(30, TimeUnit.SECONDS));
+            return null;
+        }).when(_mockRedis).addTrack(argThat(t -> t.getJobId() == 1));
+
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> job1Future = executor.submit(() -> _inProgressJobs.addTrack(createTrack(1)));
+            assertTrue(job1RedisCallStarted.await(30, TimeUnit.SECONDS));
+
+            // Job 1 is blocked inside a Redis call. None of these should wait for it.
+            _inProgressJobs.addTrack(createTrack(2));
+            _inProgressJobs.addJobError(2, IssueCodes.OTHER, "error");
+            _inProgressJobs.setJobStatus(2, BatchJobStatusType.IN_PROGRESS);
+            _inProgressJobs.incrementTask(2);
+            _inProgressJobs.setJobStatus(1, BatchJobStatusType.IN_PROGRESS);
+            assertFalse(job1Future.isDone());
+
+            releaseJob1RedisCall.countDown();
+            job1Future.get(30, TimeUnit.SECONDS);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        verify(_mockRedis, times(2))
+                .addTrack(any());
+        assertEquals(BatchJobStatusType.IN_PROGRESS, _inProgressJobs.getJob(1).getStatus());
+        assertEquals(1, _inProgressJobs.getJob(2).getCurrentTaskIndex());
+        assertEquals(1, _inProgressJobs.getJob(2).getErrors().get(0L).size());
+    }
+
+
+    @Test
+    public void canUpdateJobsConcurrently() throws Exception {
+        int numJobs = 8;
+        int numUpdatesPerThread = 500;
+        for (int jobId = 1; jobId <= numJobs; jobId++) {
+            addJob(jobId);
+        }
+
+        int numThreads = numJobs * 2;
+        var executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            var startLatch = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                long jobId = i % numJobs + 1;
+                int threadNum = i;
+                futures.add(executor.submit(() -> {
+                    startLatch.await();
+                    for (int j = 0; j < numUpdatesPerThread; j++) {
+                        _inProgressJobs.addTrack(createTrack(jobId));
+                        _inProgressJobs.addJobWarning(jobId, IssueCodes.OTHER,
+                                                      "warning " + threadNum + '-' + j);
+                        _inProgressJobs.incrementTask(jobId);
+                    }
+                    return null;
+                }));
+            }
+            startLatch.countDown();
+            for (var future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        verify(_mockRedis, times(numThreads * numUpdatesPerThread))
+                .addTrack(any());
+        int numThreadsPerJob = numThreads / numJobs;
+        for (int jobId = 1; jobId <= numJobs; jobId++) {
+            BatchJob job = _inProgressJobs.getJob(jobId);
+            assertEquals(numThreadsPerJob * numUpdatesPerThread, job.getCurrentTaskIndex());
+            assertEquals(numThreadsPerJob * numUpdatesPerThread, job.getWarnings().get(0L).size());
+        }
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsExceptionWhenJobAddedTwice() {
+        addJob(1);
+        addJob(1);
+    }
+
+
+    @Test
+    public void canClearJob() {
+        addJob(1);
+        assertTrue(_inProgressJobs.containsJob(1));
+
+        _inProgressJobs.clearJob(1);
+
+        assertFalse(_inProgressJobs.containsJob(1));
+        verify(_mockRedis)
+                .clearTracks(argThat(j -> j.getId() == 1));
+    }
+
+
+    @Test
+    public void canTrackTaskProgressPerMedia() {
+        addJob(1, 3, List.of(createMedia(10), createMedia(11)));
+        BatchJob job = _inProgressJobs.getJob(1);
+
+        assertFalse(_inProgressJobs.incrementTask(1, 10, false));
+        assertEquals(1, job.getMedia(10).getCurrentTaskIndex());
+        assertEquals(0, job.getMedia(11).getCurrentTaskIndex());
+        assertEquals(0, job.getCurrentTaskIndex());
+
+        // Skipping the remaining tasks moves the media past the end of the pipeline.
+        assertFalse(_inProgressJobs.incrementTask(1, 11, true));
+        assertEquals(3, job.getMedia(11).getCurrentTaskIndex());
+        assertEquals(1, job.getCurrentTaskIndex());
+
+        assertFalse(_inProgressJobs.incrementTask(1, 10, false));
+        assertTrue(_inProgressJobs.incrementTask(1, 10, false));
+        assertEquals(3, job.getMedia(10).getCurrentTaskIndex());
+        assertEquals(3, job.getCurrentTaskIndex());
+
+        // The job should only be reported as complete once.
+        assertFalse(_inProgressJobs.incrementTask(1, 10, false));
+        assertFalse(_inProgressJobs.incrementTask(1, 11, true));
+        assertEquals(3, job.getMedia(10).getCurrentTaskIndex());
+    }
+
+
+    private void addJob(long jobId) {
+        addJob(jobId, 1, List.of());
+    }
+
+
+    private void addJob(long jobId, int taskCount, List<Media> media) {
+        var pipelineElements = mock(JobPipelineElements.class);
+        when(pipelineElements.getName())
+                .thenReturn("TEST PIPELINE");
+        when(pipelineElements.getTaskCount())
+                .thenReturn(taskCount);
+
+        _inProgressJobs.addJob(jobId, null, mock(SystemPropertiesSnapshot.class), pipelineElements,
+                               4, false, null, null, media, Map.of(), Map.of());
+    }
+
+
+    private static Media createMedia(long mediaId) {
+        return new MediaImpl(mediaId, "file:///samples/video_01.mp4", UriScheme.FILE,
+                             Paths.get("/samples/video_01.mp4"), Map.of(), Map.of(), null);
+    }
+
+
+    private static Track createTrack(long jobId) {
+        return new Track(jobId, 5, 0, 0, 0, 10, 0, 100, "FACE", 0.5f, List.of(), Map.of());
+    }
+}
@@ -200,6 +200,43 @@ public class TestRedis {
     }
 
 
+    @Test
+    public void canAddTracksInBatch() {
+        var batch = new ArrayList<Track>(_currentTracks);
+        batch.add(_differentTaskTrack);
+        _redis.addTracks(batch);
+        _redis.addTracks(List.of());
+
+        assertEquals(_currentTracks, _redis.getTracks(TEST_JOB_ID, TEST_MEDIA_ID, 0, 0));
+        assertEquals(Collections.singleton(_differentTaskTrack),
+                     _redis.getTracks(TEST_JOB_ID, TEST_MEDIA_ID, 1, 0));
+    }
+
+
+    @Test
+    public void canAddLargeBatchOfTracks() {
+        int numTracks = 2_000;
+        var tracks = new ArrayList<Track>(numTracks);
+        for (int i = 0; i < numTracks; i++) {
+            tracks.add(new Track(TEST_JOB_ID, TEST_MEDIA_ID, 0, 0, i, i + 10, i * 33, (i + 10) * 33,
+                                 "FACE", 0.5f, createDetections(), Map.of()));
+        }
+        _redis.addTracks(tracks);
+
+        SortedSet<Track> retrievedTracks = _redis.getTracks(TEST_JOB_ID, TEST_MEDIA_ID, 0, 0);
+        assertEquals(numTracks, retrievedTracks.size());
+        assertEquals(new TreeSet<>(tracks), retrievedTracks);
+    }
+
+
+    @Test
+    public void canSetTracksToEmpty() {
+        addAllTestTracksToRedis();
+        _redis.setTracks(TEST_JOB_ID, TEST_MEDIA_ID, 0, 0, List.of());
+        assertTrue(_redis.getTracks(TEST_JOB_ID, TEST_MEDIA_ID, 0, 0).isEmpty());
+    }
+
+
     @Test
     public void canHandleMissingTrackList() {
         SortedSet<Track> retrievedTracks = _redis.getTracks(TEST_JOB_ID, TEST_MEDIA_ID, 0, 0);
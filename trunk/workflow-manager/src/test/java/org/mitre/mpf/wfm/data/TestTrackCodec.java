@@ -0,0 +1,135 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.junit.Test;
+import org.mitre.mpf.wfm.WfmProcessingException;
+import org.mitre.mpf.wfm.data.entities.transients.Detection;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.enums.ArtifactExtractionStatus;
+import org.mitre.mpf.wfm.util.JsonUtils;
+import org.mitre.mpf.wfm.util.ObjectMapperFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestTrackCodec {
+
+    private final JsonUtils _jsonUtils = new JsonUtils(ObjectMapperFactory.customObjectMapper());
+
+
+    @Test
+    public void canRoundTripTrack() {
+        var detection1 = new Detection(-5, 10, 100, 200, 0.25f, 1_000_000, 33_366_666,
+                                       ImmutableSortedMap.of("CLASSIFICATION", "car", "UNICODE", "ünïcödé"));
+        var detection2 = new Detection(7, -8, 9, 10, 0.75f, 1_000_030, 33_367_667,
+                                       ImmutableSortedMap.of("CLASSIFICATION", "car"));
+        detection2.setArtifactPath("file:///artifacts/frame-1000030.png");
+        detection2.setArtifactExtractionStatus(ArtifactExtractionStatus.COMPLETED);
+
+        var track = new Track(Long.MAX_VALUE, 623, 1, 2, 1_000_000, 1_000_030, 33_366_666, 33_367_667,
+                              "VEHICLE", 0.75f, List.of(detection1, detection2),
+                              ImmutableSortedMap.of("CLASSIFICATION", "car"));
+        track.setArtifactExtractionTrackIndex(3);
+
+        byte[] encoded = TrackCodec.encode(track);
+        assertTrue(TrackCodec.isEncoded(encoded));
+
+        Track decoded = TrackCodec.decode(encoded);
+        assertEquals(track, decoded);
+        assertEquals(3, decoded.getArtifactExtractionTrackIndex());
+        assertEquals(track.getExemplar(), decoded.getExemplar());
+
+        Detection decodedDetection2 = decoded.getDetections().last();
+        assertEquals("file:///artifacts/frame-1000030.png", decodedDetection2.getArtifactPath());
+        assertEquals(ArtifactExtractionStatus.COMPLETED, decodedDetection2.getArtifactExtractionStatus());
+        assertEquals(ArtifactExtractionStatus.NOT_ATTEMPTED,
+                     decoded.getDetections().first().getArtifactExtractionStatus());
+    }
+
+
+    @Test
+    public void canRoundTripEmptyTrack() {
+        var track = new Track(1, 2, 0, 0, 0, 0, 0, 0, null, Float.NaN, List.of(), Map.of());
+        Track decoded = TrackCodec.decode(TrackCodec.encode(track));
+        assertEquals(track, decoded);
+        assertNull(decoded.getType());
+        assertNull(decoded.getExemplar());
+    }
+
+
+    @Test
+    public void canDistinguishFromSmile() {
+        var track = createLongTrack(10);
+        assertFalse(TrackCodec.isEncoded(_jsonUtils.serialize(track)));
+        assertTrue(TrackCodec.isEncoded(TrackCodec.encode(track)));
+    }
+
+
+    @Test
+    public void binaryEncodingIsSmallerThanSmile() {
+        var track = createLongTrack(1_000);
+        byte[] smile = _jsonUtils.serialize(track);
+        byte[] binary = TrackCodec.encode(track);
+
+        assertEquals(track, TrackCodec.decode(binary));
+        assertEquals(track, _jsonUtils.deserialize(smile, Track.class));
+        assertTrue(String.format("Expected binary encoding (%s bytes) to be at least 2 times smaller than Smile " +
+                                         "(%s bytes).", binary.length, smile.length),
+                   binary.length * 2 < smile.length);
+    }
+
+
+    @Test(expected = WfmProcessingException.class)
+    public void throwsExceptionWhenDataTruncated() {
+        byte[] encoded = TrackCodec.encode(createLongTrack(10));
+        TrackCodec.decode(Arrays.copyOf(encoded, encoded.length / 2));
+    }
+
+
+    private static Track createLongTrack(int numDetections) {
+        int startFrame = 50_000;
+        var detections = new ArrayList<Detection>(numDetections);
+        for (int i = 0; i < numDetections; i++) {
+            int frame = startFrame + i * 2;
+            detections.add(new Detection(300 + i % 7, 200 - i % 5, 64, 80, 0.5f + (i % 50) / 100f,
+                                         frame, (int) (frame * 33.3667),
+                                         ImmutableSortedMap.of("CLASSIFICATION", "person",
+                                                               "CLASSIFICATION CONFIDENCE LIST", "0.9; 0.1",
+                                                               "CLASSIFICATION LIST", "person; dog")));
+        }
+        int endFrame = startFrame + (numDetections - 1) * 2;
+        return new Track(1234, 5678, 0, 0, startFrame, endFrame, (int) (startFrame * 33.3667),
+                         (int) (endFrame * 33.3667), "CLASS", 0.99f, detections,
+                         ImmutableSortedMap.of("CLASSIFICATION", "person"));
+    }
+}
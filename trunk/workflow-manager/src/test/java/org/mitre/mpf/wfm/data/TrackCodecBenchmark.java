@@ -0,0 +1,83 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data;
+
+import com.google.common.collect.ImmutableSortedMap;
+import org.junit.Test;
+import org.mitre.mpf.test.BenchmarkUtil;
+import org.mitre.mpf.wfm.data.entities.transients.Detection;
+import org.mitre.mpf.wfm.data.entities.transients.Track;
+import org.mitre.mpf.wfm.util.JsonUtils;
+import org.mitre.mpf.wfm.util.ObjectMapperFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+
+/**
+ * Compares the size and the encoding and decoding time of {@link TrackCodec} with the Smile encoding that is used
+ * when redis.track.binary.encoding.enabled is false. Not run by the build, see {@link BenchmarkUtil}.
+ */
+public class TrackCodecBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrackCodecBenchmark.class);
+
+    private final JsonUtils _jsonUtils = new JsonUtils(ObjectMapperFactory.customObjectMapper());
+
+
+    @Test
+    public void encodeAndDecodeLongTrack() throws Exception {
+        Track track = createTrack(1_000);
+        byte[] smile = _jsonUtils.serialize(track);
+        byte[] binary = TrackCodec.encode(track);
+        LOG.info("Encoded size of a track with 1000 detections: Smile: {} bytes, binary: {} bytes",
+                 smile.length, binary.length);
+
+        BenchmarkUtil.time("Smile encode", 200, 1_000, () -> _jsonUtils.serialize(track));
+        BenchmarkUtil.time("Binary encode", 200, 1_000, () -> TrackCodec.encode(track));
+        BenchmarkUtil.time("Smile decode", 200, 1_000, () -> _jsonUtils.deserialize(smile, Track.class));
+        BenchmarkUtil.time("Binary decode", 200, 1_000, () -> TrackCodec.decode(binary));
+    }
+
+
+    private static Track createTrack(int numDetections) {
+        int startFrame = 50_000;
+        var detections = new ArrayList<Detection>(numDetections);
+        for (int i = 0; i < numDetections; i++) {
+            int frame = startFrame + i * 2;
+            detections.add(new Detection(300 + i % 7, 200 - i % 5, 64, 80, 0.5f + (i % 50) / 100f,
+                                         frame, (int) (frame * 33.3667),
+                                         ImmutableSortedMap.of("CLASSIFICATION", "person",
+                                                               "CLASSIFICATION CONFIDENCE LIST", "0.9; 0.1",
+                                                               "CLASSIFICATION LIST", "person; dog")));
+        }
+        int endFrame = startFrame + (numDetections - 1) * 2;
+        return new Track(1234, 5678, 0, 0, startFrame, endFrame, (int) (startFrame * 33.3667),
+                         (int) (endFrame * 33.3667), "CLASS", 0.99f, detections,
+                         ImmutableSortedMap.of("CLASSIFICATION", "person"));
+    }
+}
@@ -0,0 +1,222 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.data.access.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.*;
+import org.mitre.mpf.wfm.data.access.JobRequestSearch;
+import org.mitre.mpf.wfm.data.access.JobRequestSummary;
+import org.mitre.mpf.wfm.data.entities.persistent.JobRequest;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+
+public class TestHibernateJobRequestDao {
+
+    private static SessionFactory _sessionFactory;
+
+    private HibernateJobRequestDaoImpl _jobRequestDao;
+
+
+    @BeforeClass
+    public static void initClass() {
+        var registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DRIVER, "org.h2.Driver")
+                .applySetting(AvailableSettings.URL, "jdbc:h2:mem:TestHibernateJobRequestDao;DB_CLOSE_DELAY=-1")
+                .applySetting(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .applySetting(AvailableSettings.CURRENT_SESSION_CONTEXT_CLASS, "thread")
+                .build();
+        _sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(JobRequest.class)
+                .buildMetadata()
+                .buildSessionFactory();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        _sessionFactory.close();
+    }
+
+
+    @Before
+    public void init() {
+        _jobRequestDao = new HibernateJobRequestDaoImpl();
+        ReflectionTestUtils.setField(_jobRequestDao, "sessionFactory", _sessionFactory);
+        _sessionFactory.getCurrentSession().beginTransaction();
+
+        // Jobs 2, 3, and 4 were received at the same time, so they can only be ordered by id.
+        addJob(1, localTime(2021, 3, 4, 12, 30), "OCV FACE", BatchJobStatusType.COMPLETE);
+        addJob(2, localTime(2021, 3, 4, 13, 0), "DARKNET", BatchJobStatusType.IN_PROGRESS);
+        addJob(3, localTime(2021, 3, 4, 13, 0), "OCV FACE", BatchJobStatusType.COMPLETE_WITH_ERRORS);
+        addJob(4, localTime(2021, 3, 4, 13, 0), "TESSERACT", BatchJobStatusType.ERROR);
+        addJob(5, localTime(2021, 4, 1, 0, 0), "DARKNET", BatchJobStatusType.COMPLETE);
+        addJob(6, localTime(2022, 1, 1, 0, 0), "OCV FACE", BatchJobStatusType.CANCELLED);
+        _sessionFactory.getCurrentSession().flush();
+    }
+
+    @After
+    public void cleanup() {
+        _sessionFactory.getCurrentSession().getTransaction().rollback();
+    }
+
+
+    private static Instant localTime(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    private static void addJob(long id, Instant timeReceived, String pipeline, BatchJobStatusType status) {
+        var jobRequest = new JobRequest();
+        jobRequest.setId(id);
+        jobRequest.setTimeReceived(timeReceived);
+        jobRequest.setPipeline(pipeline);
+        jobRequest.setStatus(status);
+        _sessionFactory.getCurrentSession().save(jobRequest);
+    }
+
+
+    private List<Long> findPage(JobRequestSearch search, String sortProperty, boolean descending,
+                                int offset, int pageSize, Long afterId) {
+        return _jobRequestDao.findSummaryPage(search, sortProperty, descending, offset, pageSize, afterId)
+                .stream()
+                .map(JobRequestSummary::getId)
+                .collect(toList());
+    }
+
+    private List<Long> search(String searchTerm) {
+        return findPage(new JobRequestSearch(searchTerm, null, null, null, null), "id", false, 0, 100, null);
+    }
+
+
+    @Test
+    public void canPageByIdUsingKeyset() {
+        assertEquals(List.of(1L, 2L), findPage(JobRequestSearch.ALL, "id", false, 0, 2, null));
+        assertEquals(List.of(3L, 4L), findPage(JobRequestSearch.ALL, "id", false, 2, 2, 2L));
+        assertEquals(List.of(5L, 6L), findPage(JobRequestSearch.ALL, "id", false, 4, 2, 4L));
+        assertEquals(List.of(), findPage(JobRequestSearch.ALL, "id", false, 6, 2, 6L));
+
+        assertEquals(List.of(6L, 5L), findPage(JobRequestSearch.ALL, "id", true, 0, 2, null));
+        assertEquals(List.of(4L, 3L), findPage(JobRequestSearch.ALL, "id", true, 2, 2, 5L));
+        assertEquals(List.of(2L, 1L), findPage(JobRequestSearch.ALL, "id", true, 4, 2, 3L));
+        assertEquals(List.of(), findPage(JobRequestSearch.ALL, "id", true, 6, 2, 1L));
+    }
+
+
+    @Test
+    public void keysetIgnoresOffset() {
+        // A stale offset must not skip rows once the client sends the last id it received.
+        assertEquals(List.of(3L, 4L), findPage(JobRequestSearch.ALL, "id", false, 100, 2, 2L));
+        assertEquals(List.of(4L, 3L), findPage(JobRequestSearch.ALL, "timeReceived", true, 100, 2, 5L));
+    }
+
+
+    @Test
+    public void canPageByTimeReceivedAscendingWithTies() {
+        assertEquals(List.of(1L, 2L), findPage(JobRequestSearch.ALL, "timeReceived", false, 0, 2, null));
+        assertEquals(List.of(3L, 4L), findPage(JobRequestSearch.ALL, "timeReceived", false, 2, 2, 2L));
+        assertEquals(List.of(4L, 5L), findPage(JobRequestSearch.ALL, "timeReceived", false, 3, 2, 3L));
+        assertEquals(List.of(5L, 6L), findPage(JobRequestSearch.ALL, "timeReceived", false, 4, 2, 4L));
+        assertEquals(List.of(2L, 3L), findPage(JobRequestSearch.ALL, "timeReceived", false, 1, 2, 1L));
+    }
+
+
+    @Test
+    public void canPageByTimeReceivedDescendingWithTies() {
+        assertEquals(List.of(6L, 5L), findPage(JobRequestSearch.ALL, "timeReceived", true, 0, 2, null));
+        assertEquals(List.of(4L, 3L), findPage(JobRequestSearch.ALL, "timeReceived", true, 2, 2, 5L));
+        assertEquals(List.of(3L, 2L), findPage(JobRequestSearch.ALL, "timeReceived", true, 3, 2, 4L));
+        assertEquals(List.of(2L, 1L), findPage(JobRequestSearch.ALL, "timeReceived", true, 4, 2, 3L));
+        assertEquals(List.of(1L), findPage(JobRequestSearch.ALL, "timeReceived", true, 5, 2, 2L));
+    }
+
+
+    @Test
+    public void keysetCombinesWithSearch() {
+        var search = new JobRequestSearch("ocv", null, null, null, null);
+        assertEquals(List.of(1L, 3L), findPage(search, "timeReceived", false, 0, 2, null));
+        assertEquals(List.of(6L), findPage(search, "timeReceived", false, 2, 2, 3L));
+        assertEquals(List.of(3L, 1L), findPage(search, "timeReceived", true, 1, 2, 6L));
+    }
+
+
+    @Test
+    public void usesOffsetWhenSortPropertyDoesNotSupportKeyset() {
+        assertEquals(List.of(3L, 1L), findPage(JobRequestSearch.ALL, "pipeline", true, 2, 2, 6L));
+    }
+
+
+    @Test
+    public void canSearchByPartialDate() {
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), search("2021"));
+        assertEquals(List.of(1L, 2L, 3L, 4L), search("2021-03"));
+        assertEquals(List.of(5L), search("2021-4"));
+        assertEquals(List.of(1L, 2L, 3L, 4L), search("2021-03-04"));
+        assertEquals(List.of(1L), search("2021-03-04 12"));
+        assertEquals(List.of(2L, 3L, 4L), search("2021-03-04T13:00"));
+        assertEquals(List.of(6L), search("2022-01-01 00:00:00"));
+    }
+
+
+    @Test
+    public void canSearchByIdStatusAndPipeline() {
+        assertEquals(List.of(4L), search("4"));
+        assertEquals(List.of(1L, 3L, 5L), search("complete"));
+        assertEquals(List.of(2L, 5L), search("DarkNet"));
+    }
+
+
+    @Test
+    public void searchThatMatchesNothingReturnsEmptyPage() {
+        for (var term : List.of("zzz", "999", "2021-13", "2021-02-30", "2020", "99999999999999999999")) {
+            var search = new JobRequestSearch(term, null, null, null, null);
+            assertEquals(term, List.of(), findPage(search, "timeReceived", true, 0, 10, null));
+            assertEquals(term, List.of(), findPage(search, "timeReceived", true, 0, 10, 3L));
+            assertEquals(term, 0, _jobRequestDao.countFiltered(search));
+        }
+    }
+
+
+    @Test
+    public void canCountFilteredJobs() {
+        assertEquals(6, _jobRequestDao.countFiltered(JobRequestSearch.ALL));
+        assertEquals(4, _jobRequestDao.countFiltered(new JobRequestSearch("2021-03", null, null, null, null)));
+        assertEquals(2, _jobRequestDao.countFiltered(new JobRequestSearch(
+                "ocv", List.of(BatchJobStatusType.COMPLETE, BatchJobStatusType.CANCELLED), null, null, null)));
+        assertEquals(1, _jobRequestDao.countFiltered(new JobRequestSearch(
+                null, null, "OCV FACE", localTime(2021, 3, 5, 0, 0), localTime(2022, 1, 2, 0, 0))));
+    }
+}
@@ -0,0 +1,102 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.segmenting;
+
+import org.junit.Test;
+import org.mitre.mpf.test.BenchmarkUtil;
+import org.mitre.mpf.wfm.buffers.AlgorithmPropertyProtocolBuffer;
+import org.mitre.mpf.wfm.buffers.DetectionProtobuf;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionContext;
+import org.mitre.mpf.wfm.data.entities.persistent.MediaImpl;
+import org.mitre.mpf.wfm.enums.UriScheme;
+
+import java.net.URI;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares building every detection request for a long video from scratch with deriving them from a shared
+ * request prototype, as {@link VideoMediaSegmenter} does. Not run by the build, see {@link BenchmarkUtil}.
+ */
+public class MediaSegmenterBenchmark {
+
+    private static final int FRAME_COUNT = 100_000;
+
+    private static final int SEGMENT_LENGTH = 20;
+
+
+    @Test
+    public void createRequestsForLongVideo() throws Exception {
+        URI mediaUri = URI.create("file:///example.avi");
+        var media = new MediaImpl(1, mediaUri.toString(), UriScheme.get(mediaUri), Paths.get(mediaUri), Map.of(),
+                                  Map.of(), null);
+        media.setLength(FRAME_COUNT);
+        for (int i = 0; i < 50; i++) {
+            media.addMetadata("mediaKey" + i, "mediaValue" + i);
+        }
+
+        var algorithmProperties = new ArrayList<AlgorithmPropertyProtocolBuffer.AlgorithmProperty>();
+        for (int i = 0; i < 100; i++) {
+            algorithmProperties.add(AlgorithmPropertyProtocolBuffer.AlgorithmProperty.newBuilder()
+                                            .setPropertyName("algoKey" + i)
+                                            .setPropertyValue("algoValue" + i)
+                                            .build());
+        }
+        var context = new DetectionContext(1, 0, "STAGE_NAME", 0, "ACTION_NAME", true, algorithmProperties,
+                                           Set.of(), new SegmentingPlan(SEGMENT_LENGTH, 1, 1, 1));
+
+        String label = (FRAME_COUNT / SEGMENT_LENGTH) + " segments";
+        BenchmarkUtil.time(label + ", request built from scratch for each segment", 5, 20, () -> {
+            for (int start = 0; start < FRAME_COUNT; start += SEGMENT_LENGTH) {
+                var prototype = MediaSegmenter.createRequestPrototype(
+                        media, context, DetectionProtobuf.DetectionRequest.DataType.VIDEO);
+                createRequest(prototype, start);
+            }
+        });
+        BenchmarkUtil.time(label + ", requests derived from a shared prototype", 5, 20, () -> {
+            var prototype = MediaSegmenter.createRequestPrototype(
+                    media, context, DetectionProtobuf.DetectionRequest.DataType.VIDEO);
+            for (int start = 0; start < FRAME_COUNT; start += SEGMENT_LENGTH) {
+                createRequest(prototype, start);
+            }
+        });
+        BenchmarkUtil.time(label + ", VideoMediaSegmenter", 5, 20,
+                           () -> new VideoMediaSegmenter().createDetectionRequestMessages(media, context));
+    }
+
+
+    private static DetectionProtobuf.DetectionRequest createRequest(
+            DetectionProtobuf.DetectionRequest prototype, int startFrame) {
+        return MediaSegmenter.createRequest(prototype)
+                .setVideoRequest(DetectionProtobuf.DetectionRequest.VideoRequest.newBuilder()
+                                         .setStartFrame(startFrame)
+                                         .setStopFrame(startFrame + SEGMENT_LENGTH - 1))
+                .build();
+    }
+}
@@ -0,0 +1,191 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.segmenting;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mitre.mpf.wfm.camel.operations.detection.DetectionRequestDispatcher;
+import org.mitre.mpf.wfm.data.entities.persistent.Media;
+import org.mitre.mpf.wfm.util.BrokerQueueMonitor;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+
+public class TestAdaptiveSegmentingPlanner {
+
+    private static final String ALGORITHM = "TEST_ALGO";
+
+    private static final String QUEUE = "MPF.DETECTION_TEST_ALGO_REQUEST";
+
+    private final PropertiesUtil _mockPropertiesUtil = mock(PropertiesUtil.class);
+
+    private final BrokerQueueMonitor _mockQueueMonitor = mock(BrokerQueueMonitor.class);
+
+    private final DetectionRequestDispatcher _mockDetectionRequestDispatcher = mock(DetectionRequestDispatcher.class);
+
+    private final Media _mockMedia = mock(Media.class);
+
+    private final SegmentingPlan _configuredPlan = new SegmentingPlan(200, 20, 1, 10);
+
+    private AdaptiveSegmentingPlanner _planner;
+
+
+    @Before
+    public void init() {
+        when(_mockPropertiesUtil.isAdaptiveSegmentingEnabled())
+                .thenReturn(true);
+        when(_mockPropertiesUtil.getAdaptiveSegmentMaxScale())
+                .thenReturn(4.0);
+        when(_mockPropertiesUtil.getAdaptiveSegmentsPerInstance())
+                .thenReturn(2);
+        when(_mockPropertiesUtil.getAdaptiveSegmentMinDurationMs())
+                .thenReturn(5000L);
+
+        when(_mockMedia.getLength())
+                .thenReturn(10_000);
+
+        _planner = new AdaptiveSegmentingPlanner(_mockPropertiesUtil, _mockQueueMonitor,
+                                                 _mockDetectionRequestDispatcher);
+    }
+
+
+    @Test
+    public void doesNotChangePlanWhenDisabled() {
+        when(_mockPropertiesUtil.isAdaptiveSegmentingEnabled())
+                .thenReturn(false);
+        assertSame(_configuredPlan, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1));
+        verifyZeroInteractions(_mockQueueMonitor);
+    }
+
+
+    @Test
+    public void doesNotChangePlanWhenBrokerUnavailable() {
+        when(_mockQueueMonitor.getQueueStatus(QUEUE))
+                .thenReturn(Optional.empty());
+        assertSame(_configuredPlan, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1));
+    }
+
+
+    @Test
+    public void spreadsMediaAcrossIdleInstances() {
+        setQueueStatus(10, 0);
+        SegmentingPlan plan = _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1);
+        // 10 idle instances * 2 segments per instance = 20 segments of 500 frames.
+        assertEquals(500, plan.getTargetSegmentLength());
+        assertEquals(50, plan.getMinSegmentLength());
+        assertEquals(_configuredPlan.getSamplingInterval(), plan.getSamplingInterval());
+        assertEquals(_configuredPlan.getMinGapBetweenSegments(), plan.getMinGapBetweenSegments());
+    }
+
+
+    @Test
+    public void dividesIdleInstancesAmongVideos() {
+        setQueueStatus(20, 0);
+        // 20 idle instances * 2 segments per instance = 40 segments of 250 frames.
+        assertEquals(250, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1)
+                .getTargetSegmentLength());
+        // Each of the 2 videos gets 20 segments of 500 frames.
+        assertEquals(500, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 2)
+                .getTargetSegmentLength());
+        // Each of the 4 videos would get 10 segments of 1000 frames, but that is more than the upper bound.
+        assertEquals(800, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 4)
+                .getTargetSegmentLength());
+    }
+
+
+    @Test
+    public void usesLongerSegmentsWhenQueueHasBacklog() {
+        setQueueStatus(4, 100);
+        SegmentingPlan plan = _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1);
+        assertEquals(800, plan.getTargetSegmentLength());
+    }
+
+
+    @Test
+    public void includesRequestsHeldByDispatcherInBacklog() {
+        setQueueStatus(4, 0);
+        when(_mockDetectionRequestDispatcher.getHeldRequestCount(QUEUE))
+                .thenReturn(100);
+        SegmentingPlan plan = _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1);
+        assertEquals(800, plan.getTargetSegmentLength());
+    }
+
+
+    @Test
+    public void doesNotShrinkSegmentsBelowLowerBound() {
+        setQueueStatus(400, 0);
+        SegmentingPlan plan = _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1);
+        assertEquals(50, plan.getTargetSegmentLength());
+    }
+
+
+    @Test
+    public void doesNotShrinkSegmentsBelowMinDuration() {
+        setQueueStatus(400, 0);
+        // 10 ms per frame, so a 5 second segment is 500 frames.
+        _planner.recordProcessingTime(ALGORITHM, 200, 2000);
+        SegmentingPlan plan = _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1);
+        assertEquals(500, plan.getTargetSegmentLength());
+
+        // Times for other algorithms are tracked separately.
+        _planner.recordProcessingTime("OTHER_ALGO", 200, 200_000);
+        assertEquals(500, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1)
+                .getTargetSegmentLength());
+    }
+
+
+    @Test
+    public void processingTimeEstimateIsSmoothed() {
+        assertEquals(200, AdaptiveSegmentingPlanner.calculateTargetLength(
+                200, 10_000, 400, 0, 1, 25.0, 2, 4, 5000));
+
+        setQueueStatus(400, 0);
+        _planner.recordProcessingTime(ALGORITHM, 100, 1000);
+        _planner.recordProcessingTime(ALGORITHM, 100, 6000);
+        // 10 + 0.2 * (60 - 10) = 20 ms per frame
+        assertEquals(250, _planner.adjust(_configuredPlan, ALGORITHM, QUEUE, _mockMedia, 1).getTargetSegmentLength());
+    }
+
+
+    @Test
+    public void doesNotSegmentWhenSegmentingDisabled() {
+        assertEquals(-1, AdaptiveSegmentingPlanner.calculateTargetLength(
+                -1, 10_000, 10, 0, 1, null, 2, 4, 5000));
+    }
+
+
+    private void setQueueStatus(long consumerCount, long queueSize) {
+        when(_mockQueueMonitor.getQueueStatus(QUEUE))
+                .thenReturn(Optional.of(new BrokerQueueMonitor.QueueStatus(consumerCount, queueSize)));
+    }
+}
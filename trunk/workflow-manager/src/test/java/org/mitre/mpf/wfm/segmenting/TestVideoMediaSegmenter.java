@@ -46,6 +46,8 @@ import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mitre.mpf.wfm.segmenting.TestMediaSegmenter.*;
 
@@ -97,6 +99,12 @@ public class TestVideoMediaSegmenter {
 				           .allMatch(dr -> dr.getAlgorithmPropertyList().size() == 2));
 		assertContainsAlgoProperty("algoKey1", "algoValue1", detectionRequests);
 		assertContainsAlgoProperty("algoKey2", "algoValue2", detectionRequests);
+
+		// Segments are derived from the same request prototype, so they share the immutable properties.
+		assertSame(detectionRequests.get(0).getAlgorithmProperty(0),
+		           detectionRequests.get(1).getAlgorithmProperty(0));
+		assertSame(detectionRequests.get(0).getMediaMetadata(0),
+		           detectionRequests.get(1).getMediaMetadata(0));
 	}
 
 
@@ -196,6 +204,75 @@ public class TestVideoMediaSegmenter {
 
 
 
+	@Test
+	public void canBatchOverlappingFeedForwardTracks() {
+		Media media = createTestMedia();
+
+		Set<Track> tracks = createTestTracks();
+
+		DetectionContext context = createTestDetectionContext(
+				1,
+				ImmutableMap.of("FEED_FORWARD_TYPE", "FRAME", "FEED_FORWARD_BATCH_MAX_TRACKS", "2"),
+				tracks);
+
+		List<DetectionRequest> detectionRequests = runSegmenter(media, context);
+
+		assertEquals(1, detectionRequests.size());
+		assertContainsExpectedMediaMetadata(detectionRequests);
+
+		DetectionRequest.VideoRequest videoRequest = detectionRequests.get(0).getVideoRequest();
+		assertFalse(videoRequest.hasFeedForwardTrack());
+		assertEquals(2, videoRequest.getStartFrame());
+		assertEquals(40, videoRequest.getStopFrame());
+		assertEquals(2, videoRequest.getFeedForwardTracksCount());
+
+		// Tracks are ordered by start frame.
+		DetectionProtobuf.VideoTrack longTrack = videoRequest.getFeedForwardTracks(0);
+		assertEquals(3, longTrack.getFrameLocationsCount());
+		assertEquals(2, longTrack.getStartFrame());
+		assertEquals(40, longTrack.getStopFrame());
+
+		DetectionProtobuf.VideoTrack shortTrack = videoRequest.getFeedForwardTracks(1);
+		assertEquals(1, shortTrack.getFrameLocationsCount());
+		assertContainsFrameLocation(5, shortTrack);
+	}
+
+
+	@Test
+	public void feedForwardBatchesRespectFrameSpanAndGap() {
+		Media media = createTestMedia();
+
+		Set<Track> tracks = ImmutableSet.of(
+				createTrack(createDetection(0, 0.5f), createDetection(4, 0.5f)),
+				createTrack(createDetection(8, 0.5f)),
+				createTrack(createDetection(30, 0.5f)),
+				createTrack(createDetection(35, 0.5f), createDetection(45, 0.5f)));
+
+		DetectionContext context = createTestDetectionContext(
+				1,
+				ImmutableMap.of("FEED_FORWARD_TYPE", "FRAME",
+				                "FEED_FORWARD_BATCH_MAX_TRACKS", "10",
+				                "FEED_FORWARD_BATCH_MAX_FRAME_GAP", "5",
+				                "FEED_FORWARD_BATCH_MAX_FRAME_SPAN", "12"),
+				tracks);
+
+		List<DetectionRequest> detectionRequests = runSegmenter(media, context);
+		assertEquals(3, detectionRequests.size());
+
+		// Frames 0-4 and 8 are within the gap and span limits.
+		assertContainsSegment(0, 8, detectionRequests);
+		// Frames 30 and 35-45 are within the gap limit, but together would span 16 frames.
+		assertContainsSegment(30, 30, detectionRequests);
+		assertContainsSegment(35, 45, detectionRequests);
+
+		int totalTracks = detectionRequests.stream()
+				.mapToInt(dr -> dr.getVideoRequest().getFeedForwardTracksCount())
+				.sum();
+		assertEquals(4, totalTracks);
+	}
+
+
+
 	@Test
 	public void noMessagesCreatedWhenNoTracks() {
 		Media media = createTestMedia();
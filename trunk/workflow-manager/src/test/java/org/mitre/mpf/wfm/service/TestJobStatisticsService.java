@@ -0,0 +1,186 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.service;
+
+import org.junit.Test;
+import org.mitre.mpf.wfm.data.access.JobRequestDao;
+import org.mitre.mpf.wfm.data.access.JobRequestStatistics;
+import org.mitre.mpf.wfm.data.entities.persistent.JobRequest;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TestJobStatisticsService {
+
+    private final JobRequestDao _mockJobRequestDao = mock(JobRequestDao.class);
+
+    private final JobStatisticsService _jobStatisticsService = new JobStatisticsService(_mockJobRequestDao);
+
+
+    @Test
+    public void loadsStatisticsWithSingleQuery() {
+        when(_mockJobRequestDao.getStatistics(null))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE A", BatchJobStatusType.COMPLETE, 3, 600, 100, 300, 3),
+                        new JobRequestStatistics("PIPELINE A", BatchJobStatusType.ERROR, 1, 50, 50, 50, 1),
+                        new JobRequestStatistics("PIPELINE B", BatchJobStatusType.IN_PROGRESS, 2, 0, 0, 0, 0)));
+
+        var model = _jobStatisticsService.getStatistics();
+        _jobStatisticsService.getStatistics();
+
+        verify(_mockJobRequestDao).getStatistics(null);
+        verifyNoMoreInteractions(_mockJobRequestDao);
+
+        assertEquals(6, model.getTotalJobs());
+        assertEquals(2, model.getJobTypes());
+
+        var pipelineA = model.getAggregatePipelineStatsMap().get("PIPELINE A");
+        assertEquals(4, pipelineA.getCount());
+        assertEquals(4, pipelineA.getValidCount());
+        assertEquals(650, pipelineA.getTotalTime());
+        assertEquals(50, pipelineA.getMinTime());
+        assertEquals(300, pipelineA.getMaxTime());
+        assertEquals(Map.of("COMPLETE", 3L, "ERROR", 1L), pipelineA.getStates());
+
+        var pipelineB = model.getAggregatePipelineStatsMap().get("PIPELINE B");
+        assertEquals(2, pipelineB.getCount());
+        assertEquals(0, pipelineB.getMinTime());
+        assertEquals(Map.of("IN_PROGRESS", 2L), pipelineB.getStates());
+    }
+
+
+    @Test
+    public void updatesStatisticsWhenJobCompletes() {
+        when(_mockJobRequestDao.getStatistics(null))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.COMPLETE, 1, 100, 100, 100, 1)));
+        _jobStatisticsService.initialize();
+
+        var jobRequest = createJobRequest(BatchJobStatusType.IN_PROGRESS, 1000, null);
+        _jobStatisticsService.update(null, jobRequest);
+
+        var previous = JobStatisticsService.snapshot(jobRequest);
+        jobRequest.setStatus(BatchJobStatusType.COMPLETE);
+        jobRequest.setTimeCompleted(Instant.ofEpochMilli(1500));
+        _jobStatisticsService.update(previous, jobRequest);
+
+        var pipelineStats = _jobStatisticsService.getStatistics().getAggregatePipelineStatsMap().get("PIPELINE");
+        assertEquals(2, pipelineStats.getCount());
+        assertEquals(2, pipelineStats.getValidCount());
+        assertEquals(600, pipelineStats.getTotalTime());
+        assertEquals(100, pipelineStats.getMinTime());
+        assertEquals(500, pipelineStats.getMaxTime());
+        assertEquals(Map.of("COMPLETE", 2L), pipelineStats.getStates());
+
+        verify(_mockJobRequestDao).getStatistics(null);
+        verifyNoMoreInteractions(_mockJobRequestDao);
+    }
+
+
+    @Test
+    public void requeriesPipelineWhenMaxTimeIsRemoved() {
+        when(_mockJobRequestDao.getStatistics(null))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.COMPLETE, 2, 600, 100, 500, 2)));
+        _jobStatisticsService.initialize();
+
+        // Resubmitting the job that had the max time removes its time from the statistics.
+        var jobRequest = createJobRequest(BatchJobStatusType.COMPLETE, 1000, 1500L);
+        var previous = JobStatisticsService.snapshot(jobRequest);
+        jobRequest.setStatus(BatchJobStatusType.IN_PROGRESS);
+        jobRequest.setTimeReceived(Instant.ofEpochMilli(2000));
+        jobRequest.setTimeCompleted(null);
+        _jobStatisticsService.update(previous, jobRequest);
+
+        when(_mockJobRequestDao.getStatistics("PIPELINE"))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.COMPLETE, 1, 100, 100, 100, 1),
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.IN_PROGRESS, 1, 0, 0, 0, 0)));
+
+        var pipelineStats = _jobStatisticsService.getStatistics().getAggregatePipelineStatsMap().get("PIPELINE");
+        verify(_mockJobRequestDao).getStatistics("PIPELINE");
+        assertEquals(2, pipelineStats.getCount());
+        assertEquals(100, pipelineStats.getMaxTime());
+        assertEquals(Map.of("COMPLETE", 1L, "IN_PROGRESS", 1L), pipelineStats.getStates());
+    }
+
+
+    @Test
+    public void requeriesPipelineWhenRemovedTimeIsWithinRoundingOfMaxTime() {
+        // The database has the job's time as 501 ms because it rounded the job's times to microseconds.
+        when(_mockJobRequestDao.getStatistics(null))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.COMPLETE, 2, 601, 100, 501, 2)));
+        _jobStatisticsService.initialize();
+
+        var jobRequest = createJobRequest(BatchJobStatusType.COMPLETE, 1000, 1500L);
+        var previous = JobStatisticsService.snapshot(jobRequest);
+        jobRequest.setStatus(BatchJobStatusType.ERROR);
+        _jobStatisticsService.update(previous, jobRequest);
+
+        when(_mockJobRequestDao.getStatistics("PIPELINE"))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.COMPLETE, 1, 100, 100, 100, 1),
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.ERROR, 1, 501, 501, 501, 1)));
+
+        _jobStatisticsService.getStatistics();
+        verify(_mockJobRequestDao).getStatistics("PIPELINE");
+    }
+
+
+    @Test
+    public void ignoresUpdatesBeforeStatisticsAreLoaded() {
+        _jobStatisticsService.update(null, createJobRequest(BatchJobStatusType.IN_PROGRESS, 1000, null));
+        verifyZeroInteractions(_mockJobRequestDao);
+
+        when(_mockJobRequestDao.getStatistics(null))
+                .thenReturn(List.of(
+                        new JobRequestStatistics("PIPELINE", BatchJobStatusType.IN_PROGRESS, 1, 0, 0, 0, 0)));
+        var model = _jobStatisticsService.getStatistics();
+        assertEquals(1, model.getTotalJobs());
+    }
+
+
+    private static JobRequest createJobRequest(BatchJobStatusType status, long timeReceived, Long timeCompleted) {
+        var jobRequest = new JobRequest();
+        jobRequest.setId(1);
+        jobRequest.setPipeline("PIPELINE");
+        jobRequest.setStatus(status);
+        jobRequest.setTimeReceived(Instant.ofEpochMilli(timeReceived));
+        if (timeCompleted != null) {
+            jobRequest.setTimeCompleted(Instant.ofEpochMilli(timeCompleted));
+        }
+        return jobRequest;
+    }
+}
@@ -0,0 +1,230 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+package org.mitre.mpf.wfm.service;
+
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.cpr.BroadcasterFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mitre.mpf.mvc.controller.AtmosphereController;
+import org.mitre.mpf.mvc.model.AtmosphereMessage;
+import org.mitre.mpf.mvc.model.JobProgressBatchMessage;
+import org.mitre.mpf.mvc.model.JobStatusMessage;
+import org.mitre.mpf.wfm.enums.BatchJobStatusType;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class TestJobStatusBroadcaster {
+
+    private final PropertiesUtil _mockPropertiesUtil = mock(PropertiesUtil.class);
+
+    private final Broadcaster _mockBroadcaster = mock(Broadcaster.class);
+
+    private final JobStatusBroadcaster _jobStatusBroadcaster = new JobStatusBroadcaster(_mockPropertiesUtil);
+
+
+    @BeforeClass
+    public static void initClass() {
+        ThreadUtil.start();
+    }
+
+    @Before
+    public void init() {
+        var mockFactory = mock(BroadcasterFactory.class);
+        doReturn(_mockBroadcaster)
+                .when(mockFactory).lookup("/");
+        ReflectionTestUtils.setField(AtmosphereController.class, "staticFactory", mockFactory);
+
+        when(_mockPropertiesUtil.isBroadcastJobStatusEnabled())
+                .thenReturn(true);
+        // Long enough that the scheduled flush does not run during a test unless the test waits for it.
+        when(_mockPropertiesUtil.getBroadcastJobProgressInterval())
+                .thenReturn(60_000L);
+    }
+
+    @After
+    public void cleanup() {
+        ReflectionTestUtils.setField(AtmosphereController.class, "staticFactory", null);
+    }
+
+
+    private List<AtmosphereMessage> getBroadcastMessages() {
+        var captor = ArgumentCaptor.forClass(AtmosphereMessage.class);
+        verify(_mockBroadcaster, atLeast(0)).broadcast(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static List<Map<String, ?>> getJobs(AtmosphereMessage message) {
+        assertTrue(message instanceof JobProgressBatchMessage);
+        @SuppressWarnings("unchecked")
+        var jobs = (List<Map<String, ?>>) message.getContent().get("jobs");
+        return jobs;
+    }
+
+
+    @Test
+    public void coalescesProgressUpdates() {
+        _jobStatusBroadcaster.broadcastProgress(1, 10, BatchJobStatusType.IN_PROGRESS);
+        _jobStatusBroadcaster.broadcastProgress(2, 50, BatchJobStatusType.IN_PROGRESS);
+        _jobStatusBroadcaster.broadcastProgress(1, 20, BatchJobStatusType.IN_PROGRESS_WARNINGS);
+        verifyZeroInteractions(_mockBroadcaster);
+
+        _jobStatusBroadcaster.flushProgress();
+
+        var messages = getBroadcastMessages();
+        assertEquals(1, messages.size());
+        var jobs = getJobs(messages.get(0));
+        assertEquals(2, jobs.size());
+
+        var job1 = jobs.stream().filter(j -> j.get("id").equals(1L)).findAny().orElseThrow();
+        assertEquals(20.0, job1.get("progress"));
+        assertEquals("IN_PROGRESS_WARNINGS", job1.get("jobStatus"));
+
+        var job2 = jobs.stream().filter(j -> j.get("id").equals(2L)).findAny().orElseThrow();
+        assertEquals(50.0, job2.get("progress"));
+
+        // Nothing new to send.
+        _jobStatusBroadcaster.flushProgress();
+        verify(_mockBroadcaster, times(1)).broadcast(any());
+    }
+
+
+    @Test
+    public void sendsProgressAfterInterval() {
+        when(_mockPropertiesUtil.getBroadcastJobProgressInterval())
+                .thenReturn(10L);
+
+        _jobStatusBroadcaster.broadcastProgress(1, 10, BatchJobStatusType.IN_PROGRESS);
+        verify(_mockBroadcaster, timeout(5000))
+                .broadcast(isA(JobProgressBatchMessage.class));
+
+        _jobStatusBroadcaster.broadcastProgress(1, 30, BatchJobStatusType.IN_PROGRESS);
+        verify(_mockBroadcaster, timeout(5000).times(2))
+                .broadcast(isA(JobProgressBatchMessage.class));
+
+        var progress = getBroadcastMessages().stream()
+                .map(m -> getJobs(m).get(0).get("progress"))
+                .collect(toList());
+        assertEquals(List.of(10.0, 30.0), progress);
+    }
+
+
+    @Test
+    public void sendsProgressImmediatelyWhenIntervalIsZero() {
+        when(_mockPropertiesUtil.getBroadcastJobProgressInterval())
+                .thenReturn(0L);
+
+        _jobStatusBroadcaster.broadcastProgress(1, 10, BatchJobStatusType.IN_PROGRESS);
+        _jobStatusBroadcaster.broadcastProgress(1, 20, BatchJobStatusType.IN_PROGRESS);
+
+        var messages = getBroadcastMessages();
+        assertEquals(2, messages.size());
+        assertTrue(messages.stream().allMatch(m -> m instanceof JobStatusMessage));
+        assertEquals(20.0, messages.get(1).getContent().get("progress"));
+
+        _jobStatusBroadcaster.flushProgress();
+        verify(_mockBroadcaster, times(2)).broadcast(any());
+    }
+
+
+    @Test
+    public void doesNotSendProgressWhenDisabled() {
+        when(_mockPropertiesUtil.isBroadcastJobStatusEnabled())
+                .thenReturn(false);
+
+        _jobStatusBroadcaster.broadcastProgress(1, 10, BatchJobStatusType.IN_PROGRESS);
+        _jobStatusBroadcaster.broadcast(1, 100, BatchJobStatusType.COMPLETE);
+        _jobStatusBroadcaster.flushProgress();
+        verifyZeroInteractions(_mockBroadcaster);
+    }
+
+
+    @Test
+    public void statusChangeDropsPendingProgress() {
+        _jobStatusBroadcaster.broadcastProgress(1, 10, BatchJobStatusType.IN_PROGRESS);
+        _jobStatusBroadcaster.broadcastProgress(2, 50, BatchJobStatusType.IN_PROGRESS);
+        _jobStatusBroadcaster.broadcast(1, 100, BatchJobStatusType.COMPLETE);
+
+        _jobStatusBroadcaster.flushProgress();
+
+        var messages = getBroadcastMessages();
+        assertEquals(2, messages.size());
+        assertTrue(messages.get(0) instanceof JobStatusMessage);
+        assertEquals("COMPLETE", messages.get(0).getContent().get("jobStatus"));
+
+        var jobs = getJobs(messages.get(1));
+        assertEquals(1, jobs.size());
+        assertEquals(2L, jobs.get(0).get("id"));
+    }
+
+
+    @Test
+    public void statusChangeWaitsForProgressBeingSent() throws Exception {
+        var flushStarted = new CountDownLatch(1);
+        var releaseFlush = new CountDownLatch(1);
+        doAnswer(inv -> {
+            flushStarted.countDown();
+            assertTrue(releaseFlush.await(5, TimeUnit.SECONDS));
+            return null;
+        }).when(_mockBroadcaster).broadcast(isA(JobProgressBatchMessage.class));
+
+        _jobStatusBroadcaster.broadcastProgress(1, 90, BatchJobStatusType.IN_PROGRESS);
+        var flushFuture = ThreadUtil.runAsync(_jobStatusBroadcaster::flushProgress);
+        assertTrue(flushStarted.await(5, TimeUnit.SECONDS));
+
+        // The flush has already removed job 1's progress, so the status change must wait until the progress
+        // has been sent. Otherwise, clients would receive the stale progress after the final status.
+        var statusFuture = ThreadUtil.runAsync(
+                () -> _jobStatusBroadcaster.broadcast(1, 100, BatchJobStatusType.COMPLETE));
+        Thread.sleep(100);
+        assertFalse(statusFuture.isDone());
+
+        releaseFlush.countDown();
+        flushFuture.get(5, TimeUnit.SECONDS);
+        statusFuture.get(5, TimeUnit.SECONDS);
+
+        InOrder inOrder = inOrder(_mockBroadcaster);
+        inOrder.verify(_mockBroadcaster)
+                .broadcast(isA(JobProgressBatchMessage.class));
+        inOrder.verify(_mockBroadcaster)
+                .broadcast(isA(JobStatusMessage.class));
+    }
+}
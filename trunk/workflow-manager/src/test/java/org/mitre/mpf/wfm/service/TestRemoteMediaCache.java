@@ -0,0 +1,185 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.service;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mitre.mpf.test.TestUtil;
+import org.mitre.mpf.wfm.util.PropertiesUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestRemoteMediaCache {
+
+    private static final String URI = "https://example.com/video.mp4";
+
+    @Rule
+    public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+    private final PropertiesUtil _mockPropertiesUtil = mock(PropertiesUtil.class);
+
+    private final RemoteMediaCache _remoteMediaCache = new RemoteMediaCache(_mockPropertiesUtil);
+
+    private final AtomicInteger _downloadCount = new AtomicInteger();
+
+    private Path _cacheDir;
+
+
+    @Before
+    public void init() throws IOException {
+        _cacheDir = _tempFolder.newFolder("cache").toPath();
+        when(_mockPropertiesUtil.isRemoteMediaCacheEnabled())
+                .thenReturn(true);
+        when(_mockPropertiesUtil.getRemoteMediaCacheDirectory())
+                .thenReturn(_cacheDir.toFile());
+        when(_mockPropertiesUtil.getRemoteMediaCacheMaxSizeMb())
+                .thenReturn(1024L);
+    }
+
+
+    @Test
+    public void sameMediaIsOnlyDownloadedOnce() throws Exception {
+        Path job1Path = _tempFolder.getRoot().toPath().resolve("job1");
+        Path job2Path = _tempFolder.getRoot().toPath().resolve("job2");
+
+        _remoteMediaCache.retrieve(1, URI, "v1", job1Path, this::download);
+        _remoteMediaCache.retrieve(2, URI, "v1", job2Path, this::download);
+
+        assertEquals(1, _downloadCount.get());
+        assertEquals("content", Files.readString(job1Path));
+        assertEquals("content", Files.readString(job2Path));
+    }
+
+
+    @Test
+    public void concurrentRequestsWaitForSingleDownload() throws Exception {
+        var downloadStarted = new CountDownLatch(1);
+        var allowDownload = new CountDownLatch(1);
+        Path job1Path = _tempFolder.getRoot().toPath().resolve("job1");
+        Path job2Path = _tempFolder.getRoot().toPath().resolve("job2");
+
+        var job1Future = CompletableFuture.runAsync(() -> {
+            try {
+                _remoteMediaCache.retrieve(1, URI, "v1", job1Path, p -> {
+                    downloadStarted.countDown();
+                    await(allowDownload);
+                    download(p);
+                });
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(downloadStarted.await(10, TimeUnit.SECONDS));
+
+        var job2Future = CompletableFuture.runAsync(() -> {
+            try {
+                _remoteMediaCache.retrieve(2, URI, "v1", job2Path, this::download);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        allowDownload.countDown();
+        job1Future.get(10, TimeUnit.SECONDS);
+        job2Future.get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, _downloadCount.get());
+        assertEquals("content", Files.readString(job2Path));
+    }
+
+
+    @Test
+    public void changedMediaIsDownloadedAgain() throws Exception {
+        _remoteMediaCache.retrieve(1, URI, "v1", _tempFolder.newFile().toPath(), this::download);
+        _remoteMediaCache.retrieve(2, URI, "v2", _tempFolder.newFile().toPath(), this::download);
+        _remoteMediaCache.retrieve(3, URI, null, _tempFolder.newFile().toPath(), this::download);
+        assertEquals(3, _downloadCount.get());
+    }
+
+
+    @Test
+    public void failedDownloadIsNotCached() throws Exception {
+        TestUtil.assertThrows(IOException.class, () -> _remoteMediaCache.retrieve(
+                1, URI, "v1", _tempFolder.newFile().toPath(), p -> {
+                    throw new IOException("intentional");
+                }));
+        _remoteMediaCache.retrieve(2, URI, "v1", _tempFolder.newFile().toPath(), this::download);
+        assertEquals(1, _downloadCount.get());
+    }
+
+
+    @Test
+    public void mediaIsOnlyEvictedAfterRelease() throws Exception {
+        when(_mockPropertiesUtil.getRemoteMediaCacheMaxSizeMb())
+                .thenReturn(0L);
+        Path jobPath = _tempFolder.getRoot().toPath().resolve("job1");
+
+        _remoteMediaCache.retrieve(1, URI, "v1", jobPath, this::download);
+        assertEquals(1, countCacheFiles());
+
+        _remoteMediaCache.release(1);
+        assertEquals(0, countCacheFiles());
+        assertEquals("Job's copy should not be removed by eviction.",
+                     "content", Files.readString(jobPath));
+    }
+
+
+    private void download(Path path) throws IOException {
+        _downloadCount.incrementAndGet();
+        Files.writeString(path, "content");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long countCacheFiles() throws IOException {
+        try (var files = Files.list(_cacheDir)) {
+            return files.count();
+        }
+    }
+}
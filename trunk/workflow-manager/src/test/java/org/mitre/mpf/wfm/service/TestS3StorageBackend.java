@@ -27,11 +27,15 @@
 
 package org.mitre.mpf.wfm.service;
 
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableTable;
 import com.google.common.collect.Table;
 import com.google.common.io.ByteStreams;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.*;
 import org.junit.rules.TemporaryFolder;
 import org.mitre.mpf.interop.JsonOutputObject;
@@ -56,6 +60,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntUnaryOperator;
 
@@ -89,6 +94,8 @@ public class TestS3StorageBackend {
 
     private static final String BUCKET_WITH_EXISTING_OBJECT = "EXISTING_OBJECT_BUCKET";
 
+    private static final String EXPECTED_ETAG = "EXPECTED_ETAG";
+
     private static final Collection<String> OBJECTS_POSTED = Collections.synchronizedList(new ArrayList<>());
 
     private static final AtomicInteger GET_COUNT = new AtomicInteger(0);
@@ -97,6 +104,10 @@ public class TestS3StorageBackend {
 
     private static final AtomicInteger REQUESTED_PUT_FAILURES = new AtomicInteger(0);
 
+    private static final Map<Integer, byte[]> MULTIPART_UPLOAD_PARTS = new ConcurrentSkipListMap<>();
+
+    private static final Collection<String> MULTIPART_UPLOAD_HASHES = Collections.synchronizedList(new ArrayList<>());
+
     @BeforeClass
     public static void initClass() {
         startSpark();
@@ -113,6 +124,13 @@ public class TestS3StorageBackend {
         GET_COUNT.set(0);
         REQUESTED_GET_FAILURES.set(0);
         REQUESTED_PUT_FAILURES.set(0);
+        MULTIPART_UPLOAD_PARTS.clear();
+        MULTIPART_UPLOAD_HASHES.clear();
+    }
+
+    @After
+    public void cleanup() {
+        _s3StorageBackend.shutdown();
     }
 
     private static Map<String, String> getS3Properties() {
@@ -309,8 +327,8 @@ public class TestS3StorageBackend {
 
         try {
             JsonOutputObject outputObject = setJobProperties(s3Properties);
-            when(_mockLocalStorageBackend.store(outputObject))
-                    .thenReturn(filePath.toUri());
+            when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                    .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
 
             _s3StorageBackend.store(outputObject);
             fail("Expected StorageException");
@@ -457,8 +475,8 @@ public class TestS3StorageBackend {
         Path filePath = getTestFileCopy();
 
         JsonOutputObject outputObject = setJobProperties(getS3Properties());
-        when(_mockLocalStorageBackend.store(outputObject))
-                .thenReturn(filePath.toUri());
+        when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
 
         URI remoteUri = _s3StorageBackend.store(outputObject);
         assertEquals(EXPECTED_URI, remoteUri);
@@ -467,6 +485,83 @@ public class TestS3StorageBackend {
     }
 
 
+    @Test
+    public void canStoreJsonOutputObjectUsingMultipartUpload() throws IOException, StorageException {
+        when(_mockPropertiesUtil.getS3MultipartUploadThreshold())
+                .thenReturn(1L);
+        when(_mockPropertiesUtil.getS3MultipartUploadPartSize())
+                .thenReturn(100_000L);
+        when(_mockPropertiesUtil.getS3UploadThreadCount())
+                .thenReturn(2);
+        Path filePath = getTestFileCopy();
+
+        JsonOutputObject outputObject = setJobProperties(getS3Properties());
+        when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
+
+        URI remoteUri = _s3StorageBackend.store(outputObject);
+        assertEquals(EXPECTED_URI, remoteUri);
+        assertFalse(Files.exists(filePath));
+        assertEquals(List.of(RESULTS_BUCKET + '/' + EXPECTED_OBJECT_KEY), OBJECTS_POSTED);
+        // video_01.mp4 is about 350 KB, so it is sent in four 100 KB parts.
+        assertEquals(Set.of(1, 2, 3, 4), MULTIPART_UPLOAD_PARTS.keySet());
+        assertEquals(List.of(EXPECTED_HASH), MULTIPART_UPLOAD_HASHES);
+    }
+
+
+    @Test
+    public void reusesClientWhenEndpointAndCredentialsMatch() {
+        Map<String, String> s3Properties = getS3Properties();
+        try (var lease = _s3StorageBackend.getS3Client(S3_HOST, 2, s3Properties::get);
+                var sameLease = _s3StorageBackend.getS3Client(S3_HOST, 2, getS3Properties()::get)) {
+            assertSame(lease.getClient(), sameLease.getClient());
+            assertSame(lease.getTransferManager(), sameLease.getTransferManager());
+
+            assertNotSame(lease.getClient(), getClient("http://localhost:5001/", 2, s3Properties));
+            assertNotSame(lease.getClient(), getClient(S3_HOST, 3, s3Properties));
+
+            var otherCredentials = getS3Properties();
+            otherCredentials.put(MpfConstants.S3_SECRET_KEY_PROPERTY, "<OTHER_SECRET_KEY>");
+            assertNotSame(lease.getClient(), getClient(S3_HOST, 2, otherCredentials));
+
+            _s3StorageBackend.shutdown();
+            assertNotSame(lease.getClient(), getClient(S3_HOST, 2, s3Properties));
+        }
+    }
+
+
+    @Test
+    public void doesNotShutDownEvictedClientUntilLeasesAreClosed() {
+        var lease = _s3StorageBackend.getS3Client(S3_HOST, 2, getS3Properties()::get);
+        var otherLease = _s3StorageBackend.getS3Client(S3_HOST, 2, getS3Properties()::get);
+        AmazonS3 client = lease.getClient();
+
+        _s3StorageBackend.shutdown();
+        assertTrue(client.doesObjectExist(BUCKET_WITH_EXISTING_OBJECT, EXPECTED_OBJECT_KEY));
+
+        lease.close();
+        // Closing a lease more than once must not release another operation's lease.
+        lease.close();
+        assertTrue(client.doesObjectExist(BUCKET_WITH_EXISTING_OBJECT, EXPECTED_OBJECT_KEY));
+
+        otherLease.close();
+        try {
+            client.doesObjectExist(BUCKET_WITH_EXISTING_OBJECT, EXPECTED_OBJECT_KEY);
+            fail("Expected exception");
+        }
+        catch (IllegalStateException | AmazonClientException expected) {
+            // The client's connection pool was shut down.
+        }
+    }
+
+
+    private AmazonS3 getClient(String endpoint, int retryCount, Map<String, String> s3Properties) {
+        try (var lease = _s3StorageBackend.getS3Client(endpoint, retryCount, s3Properties::get)) {
+            return lease.getClient();
+        }
+    }
+
+
     @Test
     public void doesNotStoreDuplicateOutputObject() throws IOException, StorageException {
         Path filePath = getTestFileCopy();
@@ -475,8 +570,8 @@ public class TestS3StorageBackend {
         s3Properties.put(MpfConstants.S3_RESULTS_BUCKET_PROPERTY, S3_HOST + BUCKET_WITH_EXISTING_OBJECT);
 
         JsonOutputObject outputObject = setJobProperties(s3Properties);
-        when(_mockLocalStorageBackend.store(outputObject))
-                .thenReturn(filePath.toUri());
+        when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
 
         URI remoteUri = _s3StorageBackend.store(outputObject);
         assertEquals(URI.create(S3_HOST + BUCKET_WITH_EXISTING_OBJECT + '/' + EXPECTED_OBJECT_KEY), remoteUri);
@@ -492,8 +587,8 @@ public class TestS3StorageBackend {
         Path filePath = getTestFileCopy();
 
         JsonOutputObject outputObject = setJobProperties(s3Properties);
-        when(_mockLocalStorageBackend.store(outputObject))
-                .thenReturn(filePath.toUri());
+        when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
 
         try {
             _s3StorageBackend.store(outputObject);
@@ -517,8 +612,8 @@ public class TestS3StorageBackend {
         s3Properties.put(MpfConstants.S3_RESULTS_BUCKET_PROPERTY, S3_HOST + "BAD_BUCKET");
 
         JsonOutputObject outputObject = setJobProperties(s3Properties);
-        when(_mockLocalStorageBackend.store(outputObject))
-                .thenReturn(filePath.toUri());
+        when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
 
         try {
             _s3StorageBackend.store(outputObject);
@@ -544,8 +639,8 @@ public class TestS3StorageBackend {
         Path filePath = getTestFileCopy();
 
         JsonOutputObject outputObject = setJobProperties(getS3Properties());
-        when(_mockLocalStorageBackend.store(outputObject))
-                .thenReturn(filePath.toUri());
+        when(_mockLocalStorageBackend.storeWithSha256(outputObject))
+                .thenReturn(Pair.of(filePath.toUri(), EXPECTED_HASH));
 
         URI remoteUri = _s3StorageBackend.store(outputObject);
         assertEquals(EXPECTED_URI, remoteUri);
@@ -585,6 +680,36 @@ public class TestS3StorageBackend {
     }
 
 
+    @Test
+    public void canDownloadFromS3WhenETagMatches() throws IOException, StorageException {
+        Path localPath = _tempFolder.newFolder().toPath().resolve("temp_downloaded_media");
+
+        _s3StorageBackend.downloadFromS3(EXPECTED_URI.toString(), getS3Properties()::get, localPath,
+                                         EXPECTED_ETAG);
+
+        String sha;
+        try (InputStream is = Files.newInputStream(localPath)) {
+            sha = DigestUtils.sha256Hex(is);
+        }
+        assertEquals(EXPECTED_HASH, sha);
+    }
+
+
+    @Test
+    public void doesNotDownloadFromS3WhenETagChanged() throws IOException {
+        Path localPath = _tempFolder.newFolder().toPath().resolve("temp_downloaded_media");
+        try {
+            _s3StorageBackend.downloadFromS3(EXPECTED_URI.toString(), getS3Properties()::get, localPath,
+                                             "OLD_ETAG");
+            fail("Expected StorageException to be thrown.");
+        }
+        catch (StorageException e) {
+            assertTrue(e.getMessage().contains("OLD_ETAG"));
+        }
+        assertEquals(1, GET_COUNT.get());
+    }
+
+
     @Test
     public void canRetryDownloadAndFailWhenServerError() throws IOException {
         int retryCount = 2;
@@ -684,6 +809,10 @@ public class TestS3StorageBackend {
                     || !EXPECTED_OBJECT_KEY.equals(key)) {
                 Spark.halt(500);
             }
+            String ifMatch = req.headers("If-Match");
+            if (ifMatch != null && !ifMatch.replace("\"", "").equals(EXPECTED_ETAG)) {
+                Spark.halt(412);
+            }
             Path path = Paths.get(TestUtil.findFile("/samples/video_01.mp4"));
             long fileSize = Files.size(path);
             resp.header("Content-Length", String.valueOf(fileSize));
@@ -698,6 +827,15 @@ public class TestS3StorageBackend {
         Spark.put("/:bucket/*", (req, resp) -> {
             String bucket = req.params(":bucket");
             String key = req.splat()[0];
+            if (req.queryParams("uploadId") != null) {
+                byte[] part;
+                try (InputStream is = req.raw().getInputStream()) {
+                    part = ByteStreams.toByteArray(is);
+                }
+                MULTIPART_UPLOAD_PARTS.put(Integer.parseInt(req.queryParams("partNumber")), part);
+                resp.header("ETag", '"' + DigestUtils.md5Hex(part) + '"');
+                return "";
+            }
             OBJECTS_POSTED.add(bucket + '/' + key);
 
             if (REQUESTED_PUT_FAILURES.getAndUpdate(decrementUntilZero) > 0
@@ -711,6 +849,28 @@ public class TestS3StorageBackend {
             return "";
         });
 
+        // S3 client uses "POST ?uploads" to begin a multipart upload and "POST ?uploadId=" to complete it.
+        Spark.post("/:bucket/*", (req, resp) -> {
+            String bucket = req.params(":bucket");
+            String key = req.splat()[0];
+            if (req.queryParams().contains("uploads")) {
+                return "<InitiateMultipartUploadResult>"
+                        + "<Bucket>" + bucket + "</Bucket><Key>" + key + "</Key><UploadId>UPLOAD_ID</UploadId>"
+                        + "</InitiateMultipartUploadResult>";
+            }
+
+            try (InputStream is = req.raw().getInputStream()) {
+                ByteStreams.exhaust(is);
+            }
+            OBJECTS_POSTED.add(bucket + '/' + key);
+            var digest = DigestUtils.getSha256Digest();
+            MULTIPART_UPLOAD_PARTS.values().forEach(digest::update);
+            MULTIPART_UPLOAD_HASHES.add(Hex.encodeHexString(digest.digest()));
+            return "<CompleteMultipartUploadResult>"
+                    + "<Bucket>" + bucket + "</Bucket><Key>" + key + "</Key><ETag>\"ETAG\"</ETag>"
+                    + "</CompleteMultipartUploadResult>";
+        });
+
         Spark.awaitInitialization();
     }
 }
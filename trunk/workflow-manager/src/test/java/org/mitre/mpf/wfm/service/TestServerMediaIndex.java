@@ -0,0 +1,318 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.service;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mitre.mpf.mvc.model.DirectoryTreeNode;
+import org.mitre.mpf.mvc.model.ServerMediaFile;
+import org.mitre.mpf.wfm.util.IoUtils;
+import org.mitre.mpf.wfm.util.ThreadUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class TestServerMediaIndex {
+
+    @Rule
+    public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+    private final IoUtils _mockIoUtils = mock(IoUtils.class);
+
+    private final ServerMediaIndex _serverMediaIndex = new ServerMediaIndex(_mockIoUtils);
+
+
+    @BeforeClass
+    public static void initClass() {
+        ThreadUtil.start();
+    }
+
+
+    public TestServerMediaIndex() {
+        when(_mockIoUtils.getPathContentType(any()))
+                .thenReturn("video/mp4");
+    }
+
+
+    @After
+    public void cleanup() {
+        _serverMediaIndex.stop();
+    }
+
+
+    @Test
+    public void canListIndexedFiles() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        Files.createFile(root.resolve("b.mp4"));
+        Files.createFile(root.resolve("A.mp4"));
+        Path subdir = Files.createDirectories(root.resolve("sub/dir"));
+        Files.createFile(subdir.resolve("c.mp4"));
+
+        startIndex();
+
+        assertEquals(List.of("A.mp4", "b.mp4"), getNames(_serverMediaIndex.getFiles(root.toString(), false).get()));
+        assertEquals(List.of("A.mp4", "b.mp4", "c.mp4"),
+                     getNames(_serverMediaIndex.getFiles(root.toString(), true).get()));
+        assertTrue(_serverMediaIndex.getFiles(root.resolve("missing").toString(), false).isEmpty());
+
+        var file = _serverMediaIndex.getFiles(subdir.toString(), false).get().get(0);
+        assertEquals("video/mp4", file.getContentType());
+        assertEquals(subdir.toAbsolutePath().toString(), file.getDirectory());
+        verify(_mockIoUtils, times(3))
+                .getPathContentType(any());
+    }
+
+
+    @Test
+    public void canBuildDirectoryTree() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        Files.createDirectories(root.resolve("b/nested"));
+        Files.createDirectories(root.resolve("A"));
+        Files.createDirectories(root.resolve("upload/dir"));
+        Files.createFile(root.resolve("b/file.mp4"));
+
+        startIndex();
+
+        var tree = _serverMediaIndex.getDirectoryTree(root.toString(), root.resolve("upload").toString()).get();
+        assertEquals(root.toAbsolutePath().toString(), tree.getFullPath());
+        assertFalse(tree.isCanUpload());
+        assertEquals(List.of("A", "b", "upload"), getNodeNames(tree));
+
+        var bNode = tree.getNodes().get(1);
+        assertEquals(root.resolve("b").toAbsolutePath().toString(), bNode.getFullPath());
+        assertEquals(List.of("nested"), getNodeNames(bNode));
+        assertNull(bNode.getNodes().get(0).getNodes());
+        assertNull(tree.getNodes().get(0).getNodes());
+
+        var uploadNode = tree.getNodes().get(2);
+        assertTrue(uploadNode.isCanUpload());
+        assertTrue(uploadNode.getNodes().get(0).isCanUpload());
+
+        assertEquals(List.of("nested"),
+                     getNodeNames(_serverMediaIndex.getDirectoryTree(root.resolve("b").toString(), "/upload").get()));
+        assertTrue(_serverMediaIndex.getDirectoryTree(root.resolve("missing").toString(), "/upload").isEmpty());
+    }
+
+
+    @Test
+    public void canPageWithPrefix() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        for (String name : List.of("abc1", "ABC2", "abc3", "abd", "other", "ab")) {
+            Files.createFile(root.resolve(name));
+        }
+
+        startIndex();
+
+        var page = _serverMediaIndex.getPage(root.toString(), "abc", 1, 1, 7).get();
+        assertEquals(7, page.getDraw());
+        assertEquals(3, page.getRecordsFiltered());
+        assertEquals(6, page.getRecordsTotal());
+        assertEquals(List.of("ABC2"), getNames(page.getData()));
+
+        page = _serverMediaIndex.getPage(root.toString(), "AB", 0, 10, 0).get();
+        assertEquals(List.of("ab", "abc1", "ABC2", "abc3", "abd"), getNames(page.getData()));
+
+        page = _serverMediaIndex.getPage(root.toString(), "abc2", 0, 10, 0).get();
+        assertEquals(List.of("ABC2"), getNames(page.getData()));
+
+        page = _serverMediaIndex.getPage(root.toString(), "", 4, 10, 0).get();
+        assertEquals(List.of("abd", "other"), getNames(page.getData()));
+    }
+
+
+    @Test
+    public void doesNotDetectContentTypeOfUnchangedFiles() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        Path file = Files.createFile(root.resolve("file.mp4"));
+
+        startIndex();
+        verify(_mockIoUtils)
+                .getPathContentType(file.toRealPath());
+
+        _serverMediaIndex.addFiles(List.of(file));
+        verify(_mockIoUtils, times(1))
+                .getPathContentType(any());
+
+        Files.write(file, new byte[] { 1, 2, 3 });
+        _serverMediaIndex.addFiles(List.of(file));
+        verify(_mockIoUtils, atLeast(2))
+                .getPathContentType(file.toRealPath());
+    }
+
+
+    @Test
+    public void isEmptyUntilStarted() {
+        assertFalse(_serverMediaIndex.isReady());
+        assertTrue(_serverMediaIndex.getFiles(_tempFolder.getRoot().toString(), false).isEmpty());
+        assertTrue(_serverMediaIndex.getPage(_tempFolder.getRoot().toString(), "", 0, 10, 0).isEmpty());
+        verifyZeroInteractions(_mockIoUtils);
+    }
+
+
+    @Test
+    public void updatesIndexWhenFilesChange() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        Files.createFile(root.resolve("existing.mp4"));
+        startIndex();
+        when(_mockIoUtils.getPathContentType(any()))
+                .thenAnswer(inv -> Files.size(inv.getArgument(0)) == 0 ? "video/mp4" : "image/png");
+
+        Path file = Files.createFile(root.resolve("new.mp4"));
+        waitFor(() -> getRootNames().contains("new.mp4"));
+        assertEquals(List.of("existing.mp4", "new.mp4"), getRootNames());
+
+        Files.write(file, new byte[] { 1, 2, 3 });
+        waitFor(() -> "image/png".equals(getRootFile("new.mp4").getContentType()));
+
+        Files.delete(file);
+        waitFor(() -> !getRootNames().contains("new.mp4"));
+        assertEquals(List.of("existing.mp4"), getRootNames());
+    }
+
+
+    @Test
+    public void updatesIndexWhenDirectoriesChange() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        startIndex();
+
+        Path subdir = Files.createDirectory(root.resolve("sub"));
+        waitFor(() -> _serverMediaIndex.getFiles(subdir.toString(), false).isPresent());
+
+        // Created after the new directory is being watched.
+        Files.createFile(subdir.resolve("a.mp4"));
+        waitFor(() -> getNames(_serverMediaIndex.getFiles(root.toString(), true).get()).contains("a.mp4"));
+        assertEquals(List.of("a.mp4"), getNames(_serverMediaIndex.getFiles(subdir.toString(), false).get()));
+
+        Files.delete(subdir.resolve("a.mp4"));
+        Files.delete(subdir);
+        waitFor(() -> _serverMediaIndex.getFiles(subdir.toString(), false).isEmpty());
+        assertTrue(_serverMediaIndex.getFiles(root.toString(), true).get().isEmpty());
+    }
+
+
+    @Test
+    public void rescansDirectoryAfterOverflow() throws IOException, InterruptedException {
+        Path root = _tempFolder.getRoot().toPath();
+        Files.createFile(root.resolve("removed.mp4"));
+        Path subdir = Files.createDirectory(root.resolve("sub"));
+        startIndex();
+
+        Files.delete(root.resolve("removed.mp4"));
+        Files.createFile(root.resolve("added.mp4"));
+        Files.delete(subdir);
+        _serverMediaIndex.handleEvent(root, overflowEvent());
+
+        waitFor(() -> getRootNames().equals(List.of("added.mp4"))
+                && _serverMediaIndex.getFiles(subdir.toString(), false).isEmpty());
+    }
+
+
+    @Test
+    public void stopsEventThread() throws IOException, InterruptedException {
+        startIndex();
+        waitFor(() -> findEventThread() != null);
+
+        _serverMediaIndex.stop();
+        waitFor(() -> findEventThread() == null);
+    }
+
+
+    private void startIndex() throws IOException, InterruptedException {
+        _serverMediaIndex.start(_tempFolder.getRoot().toString());
+        for (int i = 0; i < 100 && !_serverMediaIndex.isReady(); i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(_serverMediaIndex.isReady());
+    }
+
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+
+    private List<String> getRootNames() {
+        return getNames(_serverMediaIndex.getFiles(_tempFolder.getRoot().toString(), false).get());
+    }
+
+
+    private ServerMediaFile getRootFile(String name) {
+        return _serverMediaIndex.getFiles(_tempFolder.getRoot().toString(), false).get().stream()
+                .filter(f -> f.getName().equals(name))
+                .findAny()
+                .orElseThrow();
+    }
+
+
+    private static Thread findEventThread() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("server-media-index-events"))
+                .findAny()
+                .orElse(null);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private static WatchEvent<Object> overflowEvent() {
+        WatchEvent<Object> event = mock(WatchEvent.class);
+        when(event.kind())
+                .thenReturn(StandardWatchEventKinds.OVERFLOW);
+        return event;
+    }
+
+
+    private static List<String> getNodeNames(DirectoryTreeNode node) {
+        return node.getNodes().stream()
+                .map(DirectoryTreeNode::getText)
+                .collect(Collectors.toList());
+    }
+
+
+    private static List<String> getNames(List<ServerMediaFile> files) {
+        return files.stream()
+                .map(ServerMediaFile::getName)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,76 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+package org.mitre.mpf.wfm.util;
+
+import org.junit.Test;
+import org.mitre.mpf.test.TestUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestPropertyView {
+
+    @Test
+    public void resolvesEachPropertyOnce() {
+        var resolveCounts = new HashMap<String, Integer>();
+        var properties = Map.of("INT", "5", "DOUBLE", "0.5", "BOOL", "TRUE", "BAD", "abc");
+        var view = new PropertyView(pn -> {
+            resolveCounts.merge(pn, 1, Integer::sum);
+            return properties.get(pn);
+        });
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(5, view.getInt("INT"));
+            assertEquals(0.5, view.getDouble("DOUBLE"), 0);
+            assertTrue(view.getBoolean("BOOL"));
+            assertEquals("5", view.get("INT"));
+            assertNull(view.get("MISSING"));
+        }
+
+        assertEquals(Map.of("INT", 1, "DOUBLE", 1, "BOOL", 1, "MISSING", 1), resolveCounts);
+    }
+
+
+    @Test
+    public void throwsWhenNumericPropertyIsInvalidOrMissing() {
+        var view = new PropertyView(Map.of("BAD", "abc")::get);
+
+        for (int i = 0; i < 2; i++) {
+            TestUtil.assertThrows(NumberFormatException.class, () -> view.getInt("BAD"));
+            TestUtil.assertThrows(NumberFormatException.class, () -> view.getDouble("BAD"));
+            TestUtil.assertThrows(NumberFormatException.class, () -> view.getInt("MISSING"));
+            TestUtil.assertThrows(NumberFormatException.class, () -> view.getDouble("MISSING"));
+        }
+
+        assertEquals(7, view.getInt("BAD", 7));
+        assertEquals(1.5, view.getDouble("MISSING", 1.5), 0);
+        assertFalse(view.getBoolean("MISSING"));
+    }
+}
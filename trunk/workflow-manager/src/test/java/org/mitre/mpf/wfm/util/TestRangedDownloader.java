@@ -0,0 +1,149 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.util;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mitre.mpf.test.TestUtil;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class TestRangedDownloader {
+
+    @Rule
+    public TemporaryFolder _tempFolder = new TemporaryFolder();
+
+    private final byte[] _content = new byte[10_000];
+
+    private final List<String> _requestedRanges = new CopyOnWriteArrayList<>();
+
+
+    @BeforeClass
+    public static void initClass() {
+        ThreadUtil.start();
+    }
+
+
+    public TestRangedDownloader() {
+        new Random(5).nextBytes(_content);
+    }
+
+
+    @Test
+    public void onlySplitsLargeFiles() {
+        var downloader = new RangedDownloader(4, 1000, 0, 0);
+        assertFalse(downloader.shouldSplit(1000));
+        assertTrue(downloader.shouldSplit(1001));
+
+        assertFalse(new RangedDownloader(1, 1000, 0, 0).shouldSplit(10_000));
+        assertFalse(new RangedDownloader(4, 0, 0, 0).shouldSplit(10_000));
+    }
+
+
+    @Test
+    public void canDownloadInParts() throws IOException {
+        var destination = _tempFolder.newFile().toPath();
+        new RangedDownloader(3, 3000, 0, 0)
+                .download("test", _content.length, destination, this::openRange);
+
+        assertArrayEquals(_content, Files.readAllBytes(destination));
+        assertEquals(4, _requestedRanges.size());
+        assertTrue(_requestedRanges.containsAll(List.of(
+                "0-2999", "3000-5999", "6000-8999", "9000-9999")));
+    }
+
+
+    @Test
+    public void onlyRemainingBytesAreRequestedAfterFailure() throws IOException {
+        var hasFailed = new AtomicBoolean();
+        var destination = _tempFolder.newFile().toPath();
+
+        new RangedDownloader(2, 5000, 1, 0).download(
+                "test", _content.length, destination, (begin, end) -> {
+                    InputStream inputStream = openRange(begin, end);
+                    if (begin != 5000 || hasFailed.getAndSet(true)) {
+                        return inputStream;
+                    }
+                    return failAfter(inputStream, 1000);
+                });
+
+        assertArrayEquals(_content, Files.readAllBytes(destination));
+        assertTrue(_requestedRanges.contains("6000-9999"));
+    }
+
+
+    @Test
+    public void throwsWhenRetriesExhausted() throws IOException {
+        var destination = _tempFolder.newFile().toPath();
+        var downloader = new RangedDownloader(2, 5000, 2, 0);
+
+        TestUtil.assertThrows(IOException.class, () -> downloader.download(
+                "test", _content.length, destination, (begin, end) -> {
+                    _requestedRanges.add(begin + "-" + end);
+                    throw new IOException("intentional");
+                }));
+        // Each of the two ranges is attempted once and then retried twice.
+        assertTrue(_requestedRanges.size() <= 6);
+    }
+
+
+    private InputStream openRange(long begin, long end) {
+        _requestedRanges.add(begin + "-" + end);
+        return new ByteArrayInputStream(_content, (int) begin, (int) (end - begin + 1));
+    }
+
+
+    private static InputStream failAfter(InputStream inputStream, int byteCount) {
+        return new FilterInputStream(inputStream) {
+            int _remaining = byteCount;
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (_remaining <= 0) {
+                    throw new IOException("intentional");
+                }
+                int bytesRead = super.read(buffer, offset, Math.min(length, _remaining));
+                _remaining -= bytesRead;
+                return bytesRead;
+            }
+        };
+    }
+}
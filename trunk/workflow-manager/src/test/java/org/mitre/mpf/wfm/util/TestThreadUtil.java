@@ -0,0 +1,141 @@
+/******************************************************************************
+ * NOTICE                                                                     *
+ *                                                                            *
+ * This software (or technical data) was produced for the U.S. Government     *
+ * under contract, and is subject to the Rights in Data-General Clause        *
+ * 52.227-14, Alt. IV (DEC 2007).                                             *
+ *                                                                            *
+ * Copyright 2021 The MITRE Corporation. All Rights Reserved.                 *
+ ******************************************************************************/
+
+/******************************************************************************
+ * Copyright 2021 The MITRE Corporation                                       *
+ *                                                                            *
+ * Licensed under the Apache License, Version 2.0 (the "License");            *
+ * you may not use this file except in compliance with the License.           *
+ * You may obtain a copy of the License at                                    *
+ *                                                                            *
+ *    http://www.apache.org/licenses/LICENSE-2.0                              *
+ *                                                                            *
+ * Unless required by applicable law or agreed to in writing, software        *
+ * distributed under the License is distributed on an "AS IS" BASIS,          *
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.   *
+ * See the License for the specific language governing permissions and        *
+ * limitations under the License.                                             *
+ ******************************************************************************/
+
+
+
+package org.mitre.mpf.wfm.util;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestThreadUtil {
+
+    @BeforeClass
+    public static void initClass() {
+        ThreadUtil.start();
+    }
+
+
+    @Test
+    public void runsWorkloadsOnTheirOwnPools() {
+        String ioThread = ThreadUtil.callAsync(ThreadUtil.Workload.IO, () -> Thread.currentThread().getName())
+                .join();
+        assertTrue(ioThread, ioThread.startsWith("mpf-io-"));
+
+        String cpuThread = ThreadUtil.callAsync(ThreadUtil.Workload.CPU, () -> Thread.currentThread().getName())
+                .join();
+        assertTrue(cpuThread, cpuThread.startsWith("mpf-cpu-"));
+
+        String generalThread = ThreadUtil.callAsync(() -> Thread.currentThread().getName()).join();
+        assertTrue(generalThread, generalThread.startsWith("mpf-general-"));
+    }
+
+
+    @Test
+    public void delayedTasksRunOnWorkloadPool() {
+        long start = System.nanoTime();
+        String thread = ThreadUtil.callAsync(ThreadUtil.Workload.CALLBACK, 50, TimeUnit.MILLISECONDS,
+                                             () -> Thread.currentThread().getName())
+                .join();
+        assertTrue(thread, thread.startsWith("mpf-callback-"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+
+    @Test
+    public void callerRunsTaskWhenPoolIsFull() throws InterruptedException {
+        var delegate = Executors.newSingleThreadExecutor();
+        var executor = new InstrumentedExecutorService("test", delegate, 1);
+        try {
+            var blockingTaskStarted = new CountDownLatch(1);
+            var releaseBlockingTask = new CountDownLatch(1);
+            executor.execute(() -> {
+                blockingTaskStarted.countDown();
+                try {
+                    releaseBlockingTask.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(blockingTaskStarted.await(10, TimeUnit.SECONDS));
+
+            var callingThread = Thread.currentThread();
+            var ranOnCallingThread = new boolean[1];
+            executor.execute(() -> ranOnCallingThread[0] = Thread.currentThread() == callingThread);
+            assertTrue(ranOnCallingThread[0]);
+
+            releaseBlockingTask.countDown();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    public void queuesDelayedTaskWhenPoolIsFull() throws InterruptedException {
+        var delegate = Executors.newSingleThreadExecutor();
+        var executor = new InstrumentedExecutorService("test", delegate, 1);
+        try {
+            var blockingTaskStarted = new CountDownLatch(1);
+            var releaseBlockingTask = new CountDownLatch(1);
+            executor.execute(() -> {
+                blockingTaskStarted.countDown();
+                try {
+                    releaseBlockingTask.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            assertTrue(blockingTaskStarted.await(10, TimeUnit.SECONDS));
+
+            var delayedTaskThread = new CompletableFuture<String>();
+            CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS, executor::executeQueued)
+                    .execute(() -> delayedTaskThread.complete(Thread.currentThread().getName()));
+
+            // The delay scheduler thread must not run the task while the pool is full.
+            Thread.sleep(100);
+            assertFalse(delayedTaskThread.isDone());
+
+            releaseBlockingTask.countDown();
+            String threadName = delayedTaskThread.orTimeout(10, TimeUnit.SECONDS).join();
+            assertFalse(threadName, threadName.contains("CompletableFutureDelayScheduler"));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+}